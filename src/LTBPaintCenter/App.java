@@ -2,22 +2,59 @@ package LTBPaintCenter;
 
 import javax.swing.SwingUtilities;
 import LTBPaintCenter.controller.LoginController;
+import LTBPaintCenter.dao.CheckoutJournal;
 import LTBPaintCenter.model.DatabaseSetup;
+import LTBPaintCenter.server.PosServer;
+import LTBPaintCenter.sync.SyncEngine;
+import LTBPaintCenter.sync.SyncPeer;
 
 /**
  * This is the main entry point of the application.
  * It initializes the database and starts the login screen.
+ *
+ * Started with --server [port], it runs the POS as an HTTP/JSON server
+ * instead, without any screens (see PosServer).
+ *
+ * With -Dltb.sync=URL-or-folder, the inventory and sales are synced with
+ * other terminals in the background (see SyncEngine). A hub URL also needs
+ * -Dltb.sync.token, set to the same value on the hub.
  */
 public class App {
     
     /**
      * Main method - starts the application.
-     * First initializes the database, then shows the login screen.
+     * First initializes the database, then shows the login screen
+     * (or starts the server if --server is given).
      */
     public static void main(String[] args) {
+        boolean serverMode = args.length > 0 && args[0].equals("--server");
+        if (serverMode) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
         // Set up the database tables if they don't exist
         DatabaseSetup.initializeDatabase();
 
+        // Save any checkouts the last run journaled but did not get into the database
+        CheckoutJournal.recover();
+
+        // Exchange changes with the other terminals every few seconds
+        SyncPeer peer = SyncEngine.peerFromSystemProperty();
+        if (peer != null) {
+            SyncEngine.startBackground(peer, Long.getLong("ltb.sync.interval", 30));
+        }
+
+        if (serverMode) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : PosServer.DEFAULT_PORT;
+            try {
+                PosServer.run(port);
+            } catch (Exception e) {
+                System.err.println("Could not start the POS server: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
         // Start the GUI on the Event Dispatch Thread (required for Swing)
         SwingUtilities.invokeLater(() -> {
             new LoginController().show();
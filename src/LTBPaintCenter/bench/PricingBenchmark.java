@@ -0,0 +1,71 @@
+package LTBPaintCenter.bench;
+
+import LTBPaintCenter.model.PricedCart;
+import LTBPaintCenter.model.PricingEngine;
+import LTBPaintCenter.model.SaleItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This is a small command-line benchmark for the PricingEngine.
+ * For carts of 1 to 500 lines it compares pricing the whole cart again
+ * with re-pricing only the changed line, as the POS cart does.
+ *
+ * Run it with: java -cp out LTBPaintCenter.bench.PricingBenchmark
+ */
+public class PricingBenchmark {
+    private static final int[] CART_SIZES = {1, 10, 50, 100, 200, 500};
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int MEASURED_ROUNDS = 100_000;
+
+    // Keeps results alive so the JIT cannot drop the work
+    private static long sink;
+
+    public static void main(String[] args) {
+        PricingEngine engine = PricingEngine.STANDARD;
+        System.out.printf("%6s %16s %16s%n", "lines", "full (ns/op)", "one line (ns/op)");
+        for (int size : CART_SIZES) {
+            List<SaleItem> items = randomCart(size, new Random(size));
+            PricedCart cart = engine.price(items);
+
+            measureFull(engine, items, WARMUP_ROUNDS);
+            measureIncremental(engine, cart, WARMUP_ROUNDS);
+            double full = measureFull(engine, items, MEASURED_ROUNDS);
+            double incremental = measureIncremental(engine, cart, MEASURED_ROUNDS);
+            System.out.printf("%6d %16.0f %16.0f%n", size, full, incremental);
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static double measureFull(PricingEngine engine, List<SaleItem> items, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            SaleItem changed = items.get(i % items.size());
+            changed.setQty(1 + (i & 7));
+            sink += engine.price(items).getTotalCents();
+        }
+        return (System.nanoTime() - start) / (double) rounds;
+    }
+
+    private static double measureIncremental(PricingEngine engine, PricedCart cart, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            int index = i % cart.size();
+            PricedCart.Line line = cart.getLine(index);
+            cart = engine.set(cart, index, line.getProductId(), line.getName(),
+                    line.getUnitCents() / 100.0, 1 + (i & 7));
+            sink += cart.getTotalCents();
+        }
+        return (System.nanoTime() - start) / (double) rounds;
+    }
+
+    private static List<SaleItem> randomCart(int size, Random random) {
+        List<SaleItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new SaleItem(i + 1, "Paint " + i, random.nextInt(500_000) / 100.0, 1 + random.nextInt(10)));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,106 @@
+package LTBPaintCenter.bench;
+
+import LTBPaintCenter.model.Inventory;
+import LTBPaintCenter.model.Product;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.SaleItem;
+import LTBPaintCenter.model.SalesColumns;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing the brand/type breakdown computed the old way
+ * (looping over Sale/SaleItem objects like MonitoringController.updateBreakdownSummaries)
+ * with the columnar store's parallel aggregation, on 1 million sold lines.
+ *
+ * Run it with: java -cp out LTBPaintCenter.bench.SalesAggregationBenchmark [lines]
+ * It prints the average milliseconds per full breakdown for both approaches.
+ */
+public class SalesAggregationBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // Build a catalog of 2000 products spread over 40 brands and 12 types
+        Inventory inventory = new Inventory();
+        Random random = new Random(42);
+        for (int id = 1; id <= 2000; id++) {
+            inventory.addProduct(new Product(id, "Paint " + id, 100 + random.nextInt(900), 50,
+                    "Brand " + (id % 40), "Color " + (id % 25), "Type " + (id % 12),
+                    LocalDate.now(), null, "Active"));
+        }
+
+        // Build the sales: 4 lines per receipt, one receipt per minute
+        List<Sale> sales = new ArrayList<>(lines / 4 + 1);
+        SalesColumns columns = new SalesColumns();
+        columns.setProductLookup(inventory::getProduct);
+        long start = System.currentTimeMillis() - lines * 15_000L;
+        for (int i = 0; i < lines; i += 4) {
+            Sale sale = new Sale("S" + i, new Date(start + i * 15_000L));
+            for (int j = 0; j < 4 && i + j < lines; j++) {
+                Product p = inventory.getProduct(1 + random.nextInt(2000));
+                sale.addItem(new SaleItem(p.getId(), p.getName(), p.getPrice(), 1 + random.nextInt(5)));
+            }
+            sales.add(sale);
+            columns.append(sale);
+        }
+
+        System.out.printf("Lines: %,d  Receipts: %,d  Parallelism: %d%n", lines, sales.size(),
+                java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+
+        double objectMs = measure(() -> objectLoop(sales, inventory));
+        double columnMs = measure(() -> columnar(columns));
+
+        System.out.printf("Object loop (updateBreakdownSummaries): %8.2f ms/op%n", objectMs);
+        System.out.printf("Columnar fork-join aggregation:         %8.2f ms/op%n", columnMs);
+        System.out.printf("Speed-up: %.1fx%n", objectMs / columnMs);
+    }
+
+    private static double measure(java.util.function.Supplier<Object> work) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink = work.get();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink = work.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (sink == null) {
+            System.out.println("(empty result)");
+        }
+        return elapsed / 1e6 / MEASURED_ROUNDS;
+    }
+
+    // Same logic as MonitoringController.updateBreakdownSummaries
+    private static Object objectLoop(List<Sale> sales, Inventory inventory) {
+        Map<String, Double> brandTotals = new LinkedHashMap<>();
+        Map<String, Double> typeTotals = new LinkedHashMap<>();
+        for (Sale sale : sales) {
+            for (SaleItem item : sale.getItems()) {
+                Product product = inventory.getProduct(item.getProductId());
+                String brand = (product != null && product.getBrand() != null &&
+                               !product.getBrand().isBlank()) ? product.getBrand() : "Unknown";
+                String type = (product != null && product.getType() != null &&
+                              !product.getType().isBlank()) ? product.getType() : "Unknown";
+                brandTotals.put(brand, brandTotals.getOrDefault(brand, 0.0) + item.getSubtotal());
+                typeTotals.put(type, typeTotals.getOrDefault(type, 0.0) + item.getSubtotal());
+            }
+        }
+        return new Object[]{brandTotals, typeTotals};
+    }
+
+    private static Object columnar(SalesColumns columns) {
+        Map<String, Double> brandTotals = columns.revenueByName(SalesColumns.Key.BRAND, null, null);
+        Map<String, Double> typeTotals = columns.revenueByName(SalesColumns.Key.TYPE, null, null);
+        return new Object[]{brandTotals, typeTotals};
+    }
+}
@@ -1,5 +1,6 @@
 package LTBPaintCenter.controller;
 
+import LTBPaintCenter.dao.AsyncDao;
 import LTBPaintCenter.dao.InventoryDAO;
 import LTBPaintCenter.model.AdminAuthUtil;
 import LTBPaintCenter.model.Database;
@@ -8,38 +9,54 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This controller manages the inventory operations.
  * It acts as a middle layer between the user interface (InventoryPanel) 
  * and the database layer (InventoryDAO).
  * All operations require admin password authentication.
+ * The database work runs through AsyncDao, so the Swing event thread never
+ * uses JDBC itself: the add, update and delete methods return a
+ * CompletableFuture that completes when the database is done.
  */
 public class InventoryController {
 
-    private final InventoryDAO inventoryDAO;
+    // Opened on first use, which is on a background thread
+    private InventoryDAO inventoryDAO;
     private final LTBPaintCenter.view.InventoryPanel view;
 
     /**
-     * Constructor - sets up the database connection and creates the view
+     * Constructor - creates the view. The database connection is opened
+     * the first time the inventory is loaded.
      */
     public InventoryController() {
-        Connection conn = null;
-        try {
-            conn = Database.getConnection();
-            if (conn == null) {
-                System.err.println("ERROR: Failed to get database connection!");
-            } else {
-                // Ensure autocommit is enabled for SQLite
-                conn.setAutoCommit(true);
+        this.view = new LTBPaintCenter.view.InventoryPanel(this);
+    }
+
+    /**
+     * Gets the DAO, opening the database connection the first time.
+     *
+     * @return The inventory DAO
+     */
+    private synchronized InventoryDAO dao() {
+        if (inventoryDAO == null) {
+            Connection conn = null;
+            try {
+                conn = Database.getConnection();
+                if (conn == null) {
+                    System.err.println("ERROR: Failed to get database connection!");
+                } else {
+                    // Ensure autocommit is enabled for SQLite
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("ERROR: Failed to create database connection: " + e.getMessage());
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            System.err.println("ERROR: Failed to create database connection: " + e.getMessage());
-            e.printStackTrace();
+            inventoryDAO = new InventoryDAO(conn);
         }
-        
-        inventoryDAO = new InventoryDAO(conn);
-        this.view = new LTBPaintCenter.view.InventoryPanel(this);
+        return inventoryDAO;
     }
 
     /**
@@ -56,25 +73,22 @@ public class InventoryController {
      * @param qty Quantity in stock
      * @param dateImported Date when product was imported
      * @param expirationDate Expiration date (can be null)
-     * @return true if successful, false otherwise
+     * @return Completes with true if successful, false otherwise (also when the password was wrong)
      */
-    public boolean addBatch(String productCode, String name, String brand, String color, 
+    public CompletableFuture<Boolean> addBatch(String productCode, String name, String brand, String color,
                            String type, double price, int qty, LocalDate dateImported, 
                            LocalDate expirationDate) {
-        // Require admin password before allowing add operation
-        boolean authenticated = AdminAuthUtil.requireAdminPasswordPopup(view);
-        if (!authenticated) {
-            return false;
-        }
-
         // Determine the status based on expiration date and quantity
-        String status = determineStatus(expirationDate, qty);
+        String status = InventoryBatch.statusFor(expirationDate, qty);
         
         // Create the batch object (product code will be auto-generated in DAO if null)
         InventoryBatch batch = new InventoryBatch(0, productCode, name, brand, color, type, 
                                                    price, qty, dateImported, expirationDate, status);
         
-        return inventoryDAO.addBatch(batch);
+        // Require admin password before allowing add operation
+        return AdminAuthUtil.requireAdminPasswordPopup(view).thenCompose(authenticated -> authenticated
+                ? AsyncDao.supply("add batch", () -> dao().addBatch(batch))
+                : CompletableFuture.completedFuture(false));
     }
     
     /**
@@ -82,44 +96,78 @@ public class InventoryController {
      * This is used by the UI to show users what ID will be generated.
      * 
      * @param date The date to generate the ID for
-     * @return A product ID string in MMDDYYXXX format
+     * @return Completes with a product ID string in MMDDYYXXX format
      */
-    public String generateProductIdPreview(LocalDate date) {
-        if (date == null) {
-            date = LocalDate.now();
-        }
-        return inventoryDAO.generateProductId(date);
+    public CompletableFuture<String> generateProductIdPreview(LocalDate date) {
+        LocalDate day = date != null ? date : LocalDate.now();
+        return AsyncDao.supply("product ID preview", () -> dao().generateProductId(day));
     }
 
     /**
      * Gets all inventory batches from the database.
      * Automatically refreshes statuses before returning.
+     * This uses the database on the calling thread, so call it from a
+     * background thread (loadAllBatches() does that for the Swing panels).
      * 
      * @return A list of all inventory batches
      */
     public List<InventoryBatch> getAllBatches() {
-        inventoryDAO.refreshStatuses();
-        return inventoryDAO.getAllBatches();
+        dao().refreshStatuses();
+        return dao().getAllBatches();
+    }
+
+    /**
+     * Loads all inventory batches in the background.
+     *
+     * @return The batches, once loaded
+     */
+    public CompletableFuture<List<InventoryBatch>> loadAllBatches() {
+        return AsyncDao.supply("load inventory", this::getAllBatches);
+    }
+
+    /**
+     * Searches the inventory and returns one page of ranked results.
+     * Safe to call from a background thread.
+     *
+     * @param text The search text
+     * @param brand Only this brand, or null for all brands
+     * @param color Only this color, or null for all colors
+     * @param pageSize The number of rows per page
+     * @param page The page number, starting at 0
+     * @return The matching rows for that page
+     */
+    public InventoryDAO.SearchPage searchBatches(String text, String brand, String color, int pageSize, int page) {
+        return dao().searchBatches(text, brand, color, pageSize, page);
     }
 
     /**
      * Updates an existing inventory batch.
      * Requires admin password authentication.
      * 
-     * @param batch The batch with updated information
-     * @return true if successful, false otherwise
+     * @param batch The batch with updated information (and the version it was loaded with)
+     * @return Completes with true if successful, false otherwise; completes with a
+     *         ConcurrentUpdateException if someone else changed the batch since it was loaded
      */
-    public boolean updateBatch(InventoryBatch batch) {
+    public CompletableFuture<Boolean> updateBatch(InventoryBatch batch) {
         // Require admin password before allowing update operation
-        boolean authenticated = AdminAuthUtil.requireAdminPasswordPopup(view);
-        if (!authenticated) {
-            return false;
-        }
+        return AdminAuthUtil.requireAdminPasswordPopup(view).thenCompose(authenticated -> authenticated
+                ? saveMergedBatch(batch)
+                : CompletableFuture.completedFuture(false));
+    }
 
+    /**
+     * Saves a batch that was merged after a ConcurrentUpdateException.
+     * The admin password was already given for the update that conflicted.
+     *
+     * @param batch The merged batch (with the version of the current row)
+     * @return Completes with true if successful, false otherwise; completes with a
+     *         ConcurrentUpdateException if the batch changed again in the meantime
+     */
+    public CompletableFuture<Boolean> saveMergedBatch(InventoryBatch batch) {
         // Update the status based on current expiration and quantity
-        batch.setStatus(determineStatus(batch.getExpirationDate(), batch.getQuantity()));
+        batch.setStatus(InventoryBatch.statusFor(batch.getExpirationDate(), batch.getQuantity()));
         
-        return inventoryDAO.updateBatch(batch);
+        return AsyncDao.supply("update batch", () -> dao().updateBatch(batch));
     }
 
     /**
@@ -127,27 +175,24 @@ public class InventoryController {
      * Requires admin password authentication.
      * 
      * @param id The ID of the batch to delete
-     * @return true if successful, false otherwise
+     * @return Completes with true if successful, false otherwise
      */
-    public boolean deleteBatch(int id) {
+    public CompletableFuture<Boolean> deleteBatch(int id) {
         // Require admin password before allowing delete operation
-        boolean authenticated = AdminAuthUtil.requireAdminPasswordPopup(view);
-        if (!authenticated) {
-            return false;
-        }
-
-        return inventoryDAO.deleteBatch(id);
+        return AdminAuthUtil.requireAdminPasswordPopup(view).thenCompose(authenticated -> authenticated
+                ? AsyncDao.supply("delete batch", () -> dao().deleteBatch(id))
+                : CompletableFuture.completedFuture(false));
     }
 
     /**
      * Gets all batches that are available for Point of Sale (POS).
      * Filters out expired products and products with zero quantity.
+     * Like getAllBatches(), call it from a background thread.
      * 
      * @return A list of available batches for POS
      */
     public List<InventoryBatch> getAvailableForPOS() {
-        inventoryDAO.refreshStatuses();
-        List<InventoryBatch> allBatches = inventoryDAO.getAllBatches();
+        List<InventoryBatch> allBatches = getAllBatches();
         
         // Filter to only include non-expired products with quantity > 0
         return allBatches.stream()
@@ -156,42 +201,10 @@ public class InventoryController {
                 .toList();
     }
 
-    /**
-     * Determines the status of a product based on expiration date and quantity.
-     * Statuses can be: "Expired", "Expiring Soon", "Out of Stock", "Low Stock", or "Active"
-     * 
-     * @param expirationDate The expiration date (can be null)
-     * @param qty The quantity in stock
-     * @return A status string
-     */
-    private String determineStatus(LocalDate expirationDate, int qty) {
-        LocalDate today = LocalDate.now();
-        
-        // Check expiration status first
-        if (expirationDate != null) {
-            // Product is expired if expiration date is today or in the past
-            if (!expirationDate.isAfter(today)) {
-                return "Expired";
-            }
-            // Product is expiring soon if expiration is within the next 7 days
-            if (expirationDate.isBefore(today.plusDays(7))) {
-                return "Expiring Soon";
-            }
-        }
-        
-        // Check stock level
-        if (qty <= 0) {
-            return "Out of Stock";
-        } else if (qty <= 5) {
-            return "Low Stock";
-        } else {
-            return "Active";
-        }
-    }
-
     /**
      * Generates status logs for the monitoring system.
      * Creates formatted log messages for expired, expiring, low stock, and out of stock items.
+     * Like getAllBatches(), call it from a background thread.
      * 
      * @return A string containing formatted log messages
      */
@@ -1,6 +1,7 @@
 package LTBPaintCenter.controller;
 
 import LTBPaintCenter.dao.AdminDAO;
+import LTBPaintCenter.dao.AsyncDao;
 import LTBPaintCenter.view.LoginPanel;
 import LTBPaintCenter.model.Global;
 import javax.swing.*;
@@ -44,17 +45,23 @@ public class LoginController {
                 return;
             }
 
-            boolean authenticated = false;
-
             // Check if user is admin
             if ("admin".equalsIgnoreCase(username)) {
-                // Verify admin password from database
-                authenticated = AdminDAO.verifyPassword(password);
-                if (!authenticated) {
-                    JOptionPane.showMessageDialog(frame, "Invalid admin password", 
-                            "Login failed", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+                // Verify admin password from database in the background; the button is off until then
+                view.getBtnLogin().setEnabled(false);
+                AsyncDao.onEdt(AsyncDao.supply("verify admin password", () -> AdminDAO.verifyPassword(password)), authenticated -> {
+                    view.getBtnLogin().setEnabled(true);
+                    if (!authenticated) {
+                        JOptionPane.showMessageDialog(frame, "Invalid admin password", 
+                                "Login failed", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
+                    openMainWindow(username);
+                }, error -> {
+                    view.getBtnLogin().setEnabled(true);
+                    JOptionPane.showMessageDialog(frame, "The admin password could not be checked",
+                            "Login failed", JOptionPane.ERROR_MESSAGE);
+                });
             }
             // Check if user is cashier
             else if ("cashier".equalsIgnoreCase(username)) {
@@ -64,35 +71,41 @@ public class LoginController {
                             "Login failed", JOptionPane.WARNING_MESSAGE);
                     return;
                 }
-                authenticated = true;
+                openMainWindow(username);
             } else {
                 JOptionPane.showMessageDialog(frame, "Unknown username", 
                         "Login failed", JOptionPane.WARNING_MESSAGE);
-                return;
             }
+        });
+    }
 
-            // Login successful - set global state
-            Global.currentUser = username;
-            Global.isAdminMode = "admin".equalsIgnoreCase(username);
+    /**
+     * Closes the login window and opens the main application.
+     *
+     * @param username The user who logged in
+     */
+    private void openMainWindow(String username) {
+        // Login successful - set global state
+        Global.currentUser = username;
+        Global.isAdminMode = "admin".equalsIgnoreCase(username);
 
-            // Launch main application on the Event Dispatch Thread
-            SwingUtilities.invokeLater(() -> {
-                frame.dispose();  // Close login window
+        // Launch main application on the Event Dispatch Thread
+        SwingUtilities.invokeLater(() -> {
+            frame.dispose();  // Close login window
 
-                MainController mainController = new MainController();
+            MainController mainController = new MainController();
 
-                // If admin logged in, enable admin mode in the main frame
-                if (Global.isAdminMode) {
-                    try {
-                        var frameObj = mainController.getFrame();
-                        if (frameObj != null) {
-                            frameObj.setAdminMode(true);
-                        }
-                    } catch (Exception ex) {
-                        // Ignore errors if setAdminMode doesn't exist
+            // If admin logged in, enable admin mode in the main frame
+            if (Global.isAdminMode) {
+                try {
+                    var frameObj = mainController.getFrame();
+                    if (frameObj != null) {
+                        frameObj.setAdminMode(true);
                     }
+                } catch (Exception ex) {
+                    // Ignore errors if setAdminMode doesn't exist
                 }
-            });
+            }
         });
     }
 
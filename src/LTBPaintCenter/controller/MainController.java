@@ -1,13 +1,27 @@
 package LTBPaintCenter.controller;
 
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.dao.CheckoutDAO;
+import LTBPaintCenter.dao.CheckoutJournal;
 import LTBPaintCenter.dao.ProductDAO;
+import LTBPaintCenter.dao.PromotionDAO;
+import LTBPaintCenter.dao.ReservationDAO;
 import LTBPaintCenter.dao.SaleReferenceGenerator;
 import LTBPaintCenter.model.*;
+import LTBPaintCenter.server.PosApi;
+import LTBPaintCenter.server.PosClient;
+import LTBPaintCenter.sync.SyncEngine;
 import LTBPaintCenter.view.MainFrame;
 import LTBPaintCenter.util.ReceiptPrinter;
 import javax.swing.*;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This is the main controller that coordinates all the other controllers.
@@ -24,9 +38,20 @@ public class MainController {
     private InventoryController inventoryController;
     private MonitoringController monitoringController;
 
+    // The reference and cart of the last checkout that could not be saved
+    private String pendingReference;
+    private String pendingCartHash;
+    // Set while a checkout waits for the database, so a second click does not start another
+    private boolean checkingOut;
+
+    // The POS server this terminal sells through (-Dltb.server), or null to use the local database
+    private final PosApi remote = PosClient.fromSystemProperty();
+
     /**
      * Constructor - sets up the entire application.
      * Initializes inventory, reports, controllers, and loads data from database.
+     * The window opens right away; the sales and products are loaded in the
+     * background while the panels show a loading bar.
      */
     public MainController() {
         // Create the main data models
@@ -37,24 +62,31 @@ public class MainController {
         Global.inventory = inventory;
         Global.report = report;
 
-        // Load previous sales from database so monitoring can show them
-        try {
-            report.loadFromDatabase();
-        } catch (Exception ignored) {
-            // If there are no previous sales, that's okay
-        }
+        // Let the sales index and columns find the brand/type of each sold product
+        report.setProductLookup(inventory::getProduct);
 
         // Set up all the controllers and the main window
         initializeControllers();
         initializeFrame();
-        loadProductsFromDatabase();
 
-        // Connect the checkout handler to the POS panel
+        // Connect the checkout and the product loading to the POS panel
         posController.getView().setCheckoutHandler(this::handleCheckout);
+        posController.setProductReloader(this::reloadProducts);
+
+        // Show the database stock again once journaled sales are saved
+        CheckoutJournal.setOnApplied(() -> SwingUtilities.invokeLater(this::reloadProducts));
+        // and the reference a sale was saved under if another terminal had used its reference
+        CheckoutJournal.setOnRenamed((sale, saved) -> SwingUtilities.invokeLater(() -> showRenamedSale(sale, saved)));
+
+        // Add the stock and sales of the other terminals after a sync brought their changes
+        SyncEngine.setOnApplied(this::applySynced);
 
         // Show the POS panel by default when the app starts
         frame.showPanel("POS");
         frame.setVisible(true);
+
+        // Load previous sales from database so monitoring can show them, and the products
+        loadFromDatabase();
     }
 
     /**
@@ -71,7 +103,7 @@ public class MainController {
      * Also stores them in the Global class for easy access.
      */
     private void initializeControllers() {
-        posController = new POSController(inventory, report);
+        posController = new POSController(remote);
         inventoryController = new InventoryController();
         monitoringController = new MonitoringController(report, inventory);
 
@@ -91,75 +123,351 @@ public class MainController {
         frame.addPanel(monitoringController.getView(), "Monitoring");
     }
 
+    // The active promotions, kept so the POS can be refreshed after a sync without loading them again
+    private List<Promotion> promotions = List.of();
+
+    /** The products and what the POS view shows with them, loaded together in the background. */
+    private static final class Catalog {
+        List<Product> products;
+        Map<Integer, Integer> reservedByOthers;
+        List<Promotion> promotions;
+    }
+
     /**
-     * Loads all products from the database into the inventory.
-     * Also refreshes the inventory and POS views to show the latest data.
+     * Loads all sales and products from the database in the background,
+     * then refreshes the Inventory, POS and Monitoring views.
      */
-    private void loadProductsFromDatabase() {
+    private void loadFromDatabase() {
+        CompletableFuture<List<Sale>> sales = monitoringController.getLoadingIndicator()
+                .track("Loading sales...", AsyncDao.supply("load sales", Report::readFromDatabase));
+        CompletableFuture<Catalog> catalog = posController.getView().getLoadingIndicator()
+                .track("Loading products...", AsyncDao.supply("load products", this::loadCatalog));
+
+        AsyncDao.onEdt(CompletableFuture.allOf(sales, catalog), done -> {
+            showCatalog(catalog.join());
+            report.load(sales.join());
+            monitoringController.refresh();
+        });
+    }
+
+    /**
+     * Reloads the products into the inventory and refreshes the Inventory and POS views.
+     * The products are loaded in the background.
+     * The Monitoring view is left alone so it can be updated incrementally.
+     */
+    private void reloadProducts() {
+        AsyncDao.onEdt(posController.getView().getLoadingIndicator().track("Loading products...",
+                AsyncDao.supply("load products", this::loadCatalog)), this::showCatalog);
+    }
+
+    // Runs on a background thread
+    private Catalog loadCatalog() {
+        if (remote != null) {
+            Catalog catalog = loadCatalogFromServer();
+            if (catalog != null) {
+                return catalog;
+            }
+        }
+        Catalog catalog = new Catalog();
+        catalog.products = ProductDAO.getAll();
+        catalog.reservedByOthers = ReservationDAO.getReservedByOthers(Global.terminalId);
+        catalog.promotions = PromotionDAO.getActivePromotions();
+        return catalog;
+    }
+
+    private void showCatalog(Catalog catalog) {
         // Clear existing inventory
         inventory.clear();
-        
-        // Get all products from database
-        List<Product> dbProducts = ProductDAO.getAll();
-        for (Product product : dbProducts) {
+        for (Product product : catalog.products) {
             inventory.addProduct(product);
         }
+        promotions = catalog.promotions;
+        showInventory(catalog.reservedByOthers);
+    }
 
-        // Refresh all views to show the updated data
+    // Refreshes the Inventory and POS views from the in-memory inventory
+    private void showInventory(Map<Integer, Integer> reservedByOthers) {
+        report.invalidateBrandIndex();
         inventoryController.refreshInventory();
-        posController.getView().refreshProducts(inventory.getAllBatches());
-        monitoringController.refresh();
+        Collection<ProductBatch> batches = inventory.getAllBatches();
+        posController.getView().refreshProducts(batches, reservedByOthers);
+        posController.getView().setPromotions(new PromotionEngine(promotions, batches));
+    }
+
+    /**
+     * Shows a sale under the reference the journal saved it with, after another
+     * terminal used its reference first, and tells the cashier: the receipt
+     * that was given out still has the old reference.
+     *
+     * @param sale The sale as it was recorded
+     * @param savedReference The reference it was saved under
+     */
+    private void showRenamedSale(Sale sale, String savedReference) {
+        if (report.renameSale(sale, savedReference)) {
+            monitoringController.refresh();
+        }
+        JOptionPane.showMessageDialog(frame, "Sale " + sale.getId() + " was saved as " + savedReference
+                        + " because another terminal used the same reference.\nPlease correct the reference on its receipt.",
+                "Sale Reference Changed", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Adds what a sync brought from the other terminals: only the batches it
+     * changed are read again, and its sales are recorded one by one like a checkout.
+     * Runs on the sync thread; the views are updated on the Swing event thread.
+     *
+     * @param applied The synced sales and changed batch IDs
+     */
+    private void applySynced(SyncEngine.Applied applied) {
+        Set<Integer> ids = applied.getBatchIds();
+        // With a POS server the catalog has the server's IDs, so it is loaded from there again
+        boolean local = remote == null;
+        List<Product> changed = local ? ProductDAO.getByIds(ids) : List.of();
+        Map<Integer, Integer> reserved = local && !ids.isEmpty()
+                ? ReservationDAO.getReservedByOthers(Global.terminalId) : Map.of();
+
+        SwingUtilities.invokeLater(() -> {
+            if (!local) {
+                reloadProducts();
+            } else if (!ids.isEmpty()) {
+                for (int id : ids) {
+                    inventory.removeProduct(id);
+                }
+                for (Product product : changed) {
+                    inventory.addProduct(product);
+                }
+                showInventory(reserved);
+            }
+            for (Sale sale : applied.getSales()) {
+                report.recordCommittedSale(sale);
+                monitoringController.onSaleRecorded(sale);
+            }
+        });
+    }
+
+    /**
+     * Loads the products, the other terminals' reservations and the promotions
+     * from the POS server.
+     *
+     * @return The catalog, or null if the server cannot be reached (the local database is used then)
+     */
+    private Catalog loadCatalogFromServer() {
+        try {
+            Catalog catalog = new Catalog();
+            catalog.products = new java.util.ArrayList<>();
+            for (ProductBatch b : remote.getCatalog(null)) {
+                Product product = new Product(b.getId(), b.getName(), b.getPrice(), b.getQuantity(),
+                        b.getBrand(), b.getColor(), b.getType(), null, b.getExpirationDate(),
+                        InventoryBatch.statusFor(b.getExpirationDate(), b.getQuantity()));
+                product.setProductCode(b.getProductCode());
+                catalog.products.add(product);
+            }
+            catalog.reservedByOthers = remote.getReservedByOthers(Global.terminalId);
+            catalog.promotions = remote.getPromotions();
+            return catalog;
+        } catch (IOException e) {
+            System.err.println("Could not load the catalog from the POS server: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets a new sale reference. With a POS server the server hands it out, so
+     * terminals that share the server never pick the same number.
+     * Runs on a background thread.
+     *
+     * @return The reference, or null if the server could not be reached
+     */
+    private String newReference() {
+        if (remote == null) {
+            return SaleReferenceGenerator.generateSaleReference(LocalDate.now());
+        }
+        try {
+            return remote.newReference();
+        } catch (IOException e) {
+            System.err.println("Could not get a sale reference from the POS server: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sends a cart to the POS server, which prices it again and saves the sale.
+     *
+     * @param referenceNo The sale reference
+     * @param cart The priced cart
+     * @return The server's receipt, or a FAILED receipt if the server could not be reached
+     */
+    private PosApi.Receipt checkoutOnServer(String referenceNo, PricedCart cart) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        for (PricedCart.Line line : cart.getLines()) {
+            lines.merge(line.getProductId(), line.getQty(), Integer::sum);
+        }
+        try {
+            return remote.checkout(referenceNo, lines);
+        } catch (IOException e) {
+            // The sale may have been saved; the retry sends the same reference
+            System.err.println("Checkout on the POS server failed: " + e.getMessage());
+            return new PosApi.Receipt(referenceNo, CheckoutDAO.Result.FAILED, null);
+        }
+    }
+
+    /**
+     * Takes the stock of a sale out of the in-memory inventory and refreshes the POS cards.
+     * The products are loaded again from the database once the journal has saved the sale.
+     *
+     * @param sale The sale
+     */
+    private void takeOutOfInventory(Sale sale) {
+        for (SaleItem item : sale.getItems()) {
+            if (!item.isDiscount()) {
+                inventory.updateQuantity(item.getProductId(), -item.getQty());
+            }
+        }
+        AsyncDao.onEdt(AsyncDao.supply("load reservations", () -> ReservationDAO.getReservedByOthers(Global.terminalId)),
+                reserved -> posController.getView().refreshProducts(inventory.getAllBatches(), reserved));
     }
 
     /**
      * Handles the checkout process when a sale is completed.
      * Creates a sale record, updates inventory, and optionally saves a PDF receipt.
+     * The database and server calls run in the background through AsyncDao;
+     * the dialogs are shown on the Swing event thread between them.
      * 
-     * @param cart The list of items being purchased
-     * @return true if checkout was successful, false otherwise
+     * @param cart The priced cart being purchased
+     * @return Completes on the event thread with true if checkout was successful, false otherwise
      */
-    private boolean handleCheckout(List<SaleItem> cart) {
+    private CompletableFuture<Boolean> handleCheckout(PricedCart cart) {
         // Check if cart is empty
         if (cart == null || cart.isEmpty()) {
             JOptionPane.showMessageDialog(frame, "Cart is empty");
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
+        if (checkingOut) {
+            return CompletableFuture.completedFuture(false);
+        }
+        checkingOut = true;
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        // Always completed on the event thread, like checkingOut is used
+        done.whenComplete((ok, error) -> checkingOut = false);
+
+        // Trying the same cart again after a failed save keeps its reference,
+        // so a sale that was saved after all is not saved a second time
+        String cartHash = cart.getHash();
+        CompletableFuture<String> reference = cartHash.equals(pendingCartHash)
+                ? CompletableFuture.completedFuture(pendingReference)
+                : AsyncDao.supply("sale reference", this::newReference);
+        AsyncDao.onEdt(reference, referenceNo -> confirmCheckout(cart, cartHash, referenceNo, done),
+                error -> done.complete(false));
+        return done;
+    }
 
+    // Shows the checkout dialog and saves the sale in the background if it is confirmed
+    private void confirmCheckout(PricedCart cart, String cartHash, String referenceNo, CompletableFuture<Boolean> done) {
+        if (referenceNo == null) {
+            JOptionPane.showMessageDialog(frame, "The POS server cannot be reached. Please try again.");
+            done.complete(false);
+            return;
+        }
         // Show checkout dialog with summary (VATable, Non-VAT, Subtotal, VAT 12%, Total)
         java.awt.Frame owner = frame;
-        String referenceNo = SaleReferenceGenerator.generateSaleReference(LocalDate.now());
         LTBPaintCenter.view.CheckoutDialog dialog = new LTBPaintCenter.view.CheckoutDialog(owner, cart, referenceNo);
         dialog.setVisible(true);
         
         // If user cancelled, don't proceed with checkout
         if (!dialog.isConfirmed()) {
-            return false;
+            done.complete(false);
+            return;
+        }
+
+        LTBPaintCenter.view.LoadingIndicator loading = posController.getView().getLoadingIndicator();
+        // Taken before the background work: the products can be reloaded while it runs
+        Map<Integer, Sku> skus = inventory.getSkus();
+        CompletableFuture<PosApi.Receipt> saving = loading.track("Saving sale...",
+                AsyncDao.supply("checkout", () -> saveSale(referenceNo, cart, cartHash, skus)));
+        AsyncDao.onEdt(saving, receipt -> done.complete(finishCheckout(cart, cartHash, referenceNo, receipt)), error -> {
+            JOptionPane.showMessageDialog(frame, "Checkout failed: " + error.getMessage());
+            done.complete(false);
+        });
+    }
+
+    /**
+     * Saves the sale on the POS server, or through the checkout journal.
+     * Runs in the background.
+     *
+     * @param referenceNo The sale reference
+     * @param cart The priced cart
+     * @param cartHash The hash of the cart, to find an earlier try that was saved
+     * @param skus The products the cart was priced with
+     * @return The reference the sale was saved under, the outcome and the sale
+     */
+    private PosApi.Receipt saveSale(String referenceNo, PricedCart cart, String cartHash, Map<Integer, Sku> skus) {
+        if (remote != null) {
+            // The server prices the cart again, splits it into batches and saves it
+            return checkoutOnServer(referenceNo, cart);
         }
+        // Split each cart line across its batches, first-expired first-out
+        Sale sale = Sku.toSale(referenceNo, cart, skus);
 
+        // Journal the sale (it is saved to the database in the background)
+        CheckoutDAO.Result outcome = CheckoutJournal.commit(sale, cartHash);
+        for (int tries = 0; outcome == CheckoutDAO.Result.REFERENCE_TAKEN && tries < 3; tries++) {
+            // Another terminal used this number first; take the next one
+            referenceNo = SaleReferenceGenerator.generateSaleReference(LocalDate.now());
+            sale = Sku.toSale(referenceNo, cart, skus);
+            outcome = CheckoutJournal.commit(sale, cartHash);
+        }
+        if (outcome == CheckoutDAO.Result.ALREADY_COMMITTED) {
+            // An earlier try was saved after all; report that sale, not a new one
+            Sale saved = CheckoutDAO.loadSale(referenceNo);
+            if (saved != null) {
+                sale = saved;
+            }
+        }
+        return new PosApi.Receipt(referenceNo, outcome, sale);
+    }
+
+    /**
+     * Shows the outcome of a checkout, records the sale and offers the PDF receipt.
+     *
+     * @param cart The priced cart
+     * @param cartHash The hash of the cart
+     * @param requested The reference a retry of this cart sends again (the sale can be saved under another one)
+     * @param receipt What saveSale() returned
+     * @return true if the sale was saved
+     */
+    private boolean finishCheckout(PricedCart cart, String cartHash, String requested, PosApi.Receipt receipt) {
+        String referenceNo = receipt.getReference();
+        CheckoutDAO.Result outcome = receipt.getResult();
+        Sale sale = receipt.getSale();
         try {
-            // Create a new sale with this reference number
-            Sale sale = new Sale(referenceNo);
-
-            // Process each item in the cart
-            for (SaleItem item : cart) {
-                sale.addItem(item);
-
-                // Update inventory - reduce quantity by the amount sold
-                Product product = inventory.getProduct(item.getProductId());
-                if (product != null) {
-                    int newQuantity = Math.max(0, product.getQuantity() - item.getQty());
-                    product.setQuantity(newQuantity);
-                    ProductDAO.update(product);
-                }
+            if (outcome == CheckoutDAO.Result.FAILED) {
+                pendingReference = remote != null ? requested : referenceNo;
+                pendingCartHash = cartHash;
+                JOptionPane.showMessageDialog(frame,
+                        "Checkout failed: the sale could not be saved. Please try again.");
+                return false;
+            }
+            pendingReference = null;
+            pendingCartHash = null;
+            if (!outcome.isSaved()) {
+                reloadProducts();
+                JOptionPane.showMessageDialog(frame,
+                        "Checkout failed: the stock changed. Please check the cart and try again.");
+                return false;
+            }
+            if (remote != null || outcome == CheckoutDAO.Result.ALREADY_COMMITTED) {
+                // The server (or the earlier try) has the new stock
+                reloadProducts();
+            } else {
+                // The database may not have the sale yet, so take its stock out here
+                takeOutOfInventory(sale);
             }
 
-            // Record the sale in the report
-            report.recordSale(sale);
+            // Record the sale in the report (already journaled or saved)
+            report.recordCommittedSale(sale);
             
-            // Refresh all views to show updated data
-            monitoringController.refresh();
-            inventoryController.refreshInventory();
-            loadProductsFromDatabase();
+            // Monitoring only applies this sale's lines
+            monitoringController.onSaleRecorded(sale);
 
             // Ask user if they want to save a PDF receipt
             int choice = JOptionPane.showConfirmDialog(frame, 
@@ -184,7 +492,12 @@ public class MainController {
                     }
                     
                     try {
-                        ReceiptPrinter.saveAsPDF(cart, path, referenceNo);
+                        if (remote != null && sale != null) {
+                            // Print what the server saved: its prices, promotions and batches
+                            ReceiptPrinter.saveAsPDF(sale.getItems(), path, referenceNo);
+                        } else {
+                            ReceiptPrinter.saveAsPDF(cart, path, referenceNo);
+                        }
                         JOptionPane.showMessageDialog(frame, "Receipt saved to: " + path);
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(frame, 
@@ -1,9 +1,13 @@
 package LTBPaintCenter.controller;
 
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.dao.BranchReportDAO;
+import LTBPaintCenter.dao.DbWriteExecutor;
 import LTBPaintCenter.dao.ProductDAO;
 import LTBPaintCenter.model.*;
 import LTBPaintCenter.view.MonitoringPanel;
 import javax.swing.*;
+import java.io.File;
 import java.util.*;
 
 /**
@@ -19,6 +23,19 @@ public class MonitoringController {
     // Track revenue totals by brand and type
     private final Map<String, Double> brandTotals = new LinkedHashMap<>();
     private final Map<String, Double> typeTotals = new LinkedHashMap<>();
+    private static final String TIME_SERIES_MODE = "Revenue Over Time";
+    private static final String BRANCH_MODE = "Branch Revenue";
+    // Other stores' database files for the consolidated report, and their revenue
+    private final List<File> branchFiles = new ArrayList<>();
+    private final Map<String, Double> branchTotals = new LinkedHashMap<>();
+    // Increased for every alert reload; older loads that finish late are dropped
+    private long alertGeneration;
+    // About five years of hourly buckets; longer ranges use daily buckets
+    private static final int MAX_HOURLY_BUCKETS = 5 * 366 * 24;
+    // The filter the totals above were computed for (null means no limit)
+    private String filterBrand;
+    private Date filterFrom;
+    private Date filterTo;
 
     /**
      * Constructor - sets up the monitoring controller and view.
@@ -51,6 +68,25 @@ public class MonitoringController {
         
         populateBrandFilter();
         refresh();
+
+        // Refresh the live KPI strip once per second while the panel is on screen
+        javax.swing.Timer kpiTimer = new javax.swing.Timer(1000, e -> {
+            if (view.isShowing()) {
+                updateKpis();
+            }
+        });
+        kpiTimer.setRepeats(true);
+        kpiTimer.start();
+    }
+
+    /**
+     * Shows the current KPI figures. These are O(1) reads from the report's
+     * KpiTracker, so this is cheap enough to run on every timer tick.
+     */
+    public void updateKpis() {
+        KpiTracker kpis = report.getKpis();
+        view.updateKpis(kpis.getLastHour(), kpis.getToday(), kpis.getLastWeek());
+        view.updateDbMetrics(DbWriteExecutor.getMetrics());
     }
 
     /**
@@ -62,22 +98,25 @@ public class MonitoringController {
         return view;
     }
 
+    /**
+     * Gets the loading bar of the monitoring view, for work started by other controllers.
+     *
+     * @return The loading indicator
+     */
+    public LTBPaintCenter.view.LoadingIndicator getLoadingIndicator() {
+        return view.getLoadingIndicator();
+    }
+
     /**
      * Attaches event listeners to the view components.
      */
     private void attachListeners() {
         view.getBtnApplyFilter().addActionListener(e -> applyFilters());
         view.getBtnClearFilter().addActionListener(e -> clearFilters());
+        view.getBtnBranches().addActionListener(e -> chooseBranches());
 
         // Update chart when chart mode changes
-        view.getCbChartMode().addActionListener(e -> {
-            String selected = (String) view.getCbChartMode().getSelectedItem();
-            if ("Type Revenue".equals(selected)) {
-                view.getBarChartPanel().setData(typeTotals);
-            } else {
-                view.getBarChartPanel().setData(brandTotals);
-            }
-        });
+        view.getCbChartMode().addActionListener(e -> showChart());
     }
 
     /**
@@ -88,10 +127,60 @@ public class MonitoringController {
         List<Sale> allSales = report.getSales();
         view.refreshSales(allSales);
 
-        updateBreakdownSummaries(allSales);
+        setFilter(null, null, null);
+        updateBreakdownFromColumns(null, null);
         populateBrandFilter();
+        refreshAlerts();
+    }
+
+    /**
+     * Updates the monitoring view after one new sale was recorded.
+     * The sale's lines are added to the current brand/type totals and the sales table
+     * instead of recomputing everything, so the work depends only on the size of the sale.
+     * A sale outside the current filter only refreshes the alerts.
+     * 
+     * @param sale The sale that was just recorded
+     */
+    public void onSaleRecorded(Sale sale) {
+        if (matchesFilter(sale)) {
+            view.appendSale(sale);
+            long second = sale.getDate().getTime() / 1000L;
+            boolean timeSeries = isTimeSeriesShown();
+            for (SaleItem item : sale.getItems()) {
+                Product product = inventory.getProduct(item.getProductId());
+                brandTotals.merge(brandOf(item, product), item.getSubtotal(), Double::sum);
+                typeTotals.merge(typeOf(item, product), item.getSubtotal(), Double::sum);
+                // Like SalesColumns.timeBuckets, the chart only counts the lines of the filtered brand
+                if (timeSeries && (filterBrand == null || (!item.isDiscount() && isFilterBrand(product)))) {
+                    view.getTimeSeriesPanel().addSale(second, item.getSubtotal(), item.isDiscount() ? 0 : item.getQty());
+                }
+            }
+            if (timeSeries) {
+                // Only the summaries need redrawing; the chart already has the new lines
+                showSummaries();
+            } else {
+                showBreakdown();
+            }
+        }
+        refreshAlerts();
+    }
 
-        // Update alerts with latest inventory data from database
+    /**
+     * Reloads the stock alerts from the database (in the background).
+     */
+    public void refreshAlerts() {
+        long generation = ++alertGeneration;
+        AsyncDao.onEdt(view.getLoadingIndicator().track("Loading alerts...",
+                AsyncDao.supply("load alerts", MonitoringController::loadAlertBatches)), batches -> {
+            // Only the newest load is shown
+            if (generation == alertGeneration) {
+                view.updateAlerts(batches);
+            }
+        });
+    }
+
+    // Runs on a background thread
+    private static List<InventoryBatch> loadAlertBatches() {
         java.util.List<InventoryBatch> batches = new java.util.ArrayList<>();
         for (Product product : ProductDAO.getAll()) {
             InventoryBatch batch = new InventoryBatch(
@@ -109,7 +198,7 @@ public class MonitoringController {
             );
             batches.add(batch);
         }
-        view.updateAlerts(batches);
+        return batches;
     }
 
     /**
@@ -144,31 +233,72 @@ public class MonitoringController {
             return;
         }
 
-        // Filter sales
-        List<Sale> filtered = new ArrayList<>();
-        for (Sale sale : report.getSales()) {
-            // Check if sale is within date range
-            boolean withinDate = dateFrom == null || !sale.getDate().before(dateFrom);
-            if (dateTo != null && sale.getDate().after(dateTo)) {
-                withinDate = false;
-            }
+        setFilter(selectedBrand.equals("All Brands") ? null : selectedBrand, dateFrom, dateTo);
+        loadBranches(dateFrom, dateTo);
 
-            // Check if sale matches brand filter
-            boolean matchesBrand = true;
-            if (!selectedBrand.equals("All Brands")) {
-                matchesBrand = sale.getItems().stream().anyMatch(item -> {
-                    Product product = inventory.getProduct(item.getProductId());
-                    return product != null && selectedBrand.equalsIgnoreCase(product.getBrand());
-                });
-            }
+        // Look up the matching sales in the date index (binary search, no full scan)
+        if (selectedBrand.equals("All Brands")) {
+            view.refreshSales(report.getSalesBetween(dateFrom, dateTo));
+            updateBreakdownFromColumns(dateFrom, dateTo);
+        } else {
+            List<Sale> filtered = report.getSalesBetween(selectedBrand, dateFrom, dateTo);
+            view.refreshSales(filtered);
+            updateBreakdownSummaries(filtered);
+        }
+    }
+
+    private void setFilter(String brand, Date from, Date to) {
+        filterBrand = brand;
+        filterFrom = from;
+        filterTo = to;
+    }
 
-            if (withinDate && matchesBrand) {
-                filtered.add(sale);
+    /**
+     * Checks whether a sale falls inside the current brand and date filter.
+     * Dates are compared to the second, like the sales index does.
+     */
+    private boolean matchesFilter(Sale sale) {
+        long time = sale.getDate().getTime() / 1000L;
+        if (filterFrom != null && time < filterFrom.getTime() / 1000L) {
+            return false;
+        }
+        if (filterTo != null && time > filterTo.getTime() / 1000L) {
+            return false;
+        }
+        if (filterBrand == null) {
+            return true;
+        }
+        for (SaleItem item : sale.getItems()) {
+            if (isFilterBrand(inventory.getProduct(item.getProductId()))) {
+                return true;
             }
         }
+        return false;
+    }
+
+    // The one brand comparison used by the filter, the totals and the time series (trimmed, ignoring case)
+    private boolean isFilterBrand(Product product) {
+        return filterBrand != null && product != null && product.getBrand() != null
+                && product.getBrand().trim().equalsIgnoreCase(filterBrand.trim());
+    }
+
+    // Discount lines have no product; they get their own group instead of "Unknown"
+    private static String brandOf(SaleItem item, Product product) {
+        return item.isDiscount() ? SaleItem.DISCOUNT_GROUP : brandOf(product);
+    }
+
+    private static String typeOf(SaleItem item, Product product) {
+        return item.isDiscount() ? SaleItem.DISCOUNT_GROUP : typeOf(product);
+    }
+
+    private static String brandOf(Product product) {
+        return (product != null && product.getBrand() != null &&
+                !product.getBrand().isBlank()) ? product.getBrand() : "Unknown";
+    }
 
-        view.refreshSales(filtered);
-        updateBreakdownSummaries(filtered);
+    private static String typeOf(Product product) {
+        return (product != null && product.getType() != null &&
+                !product.getType().isBlank()) ? product.getType() : "Unknown";
     }
 
     /**
@@ -250,6 +380,82 @@ public class MonitoringController {
         }
 
         refresh();
+        loadBranches(null, null);
+    }
+
+    /**
+     * Lets the user pick the database files of the other branches and
+     * shows the consolidated report for the current date range.
+     */
+    private void chooseBranches() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Choose Branch Databases");
+        chooser.setMultiSelectionEnabled(true);
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("SQLite databases (*.db)", "db"));
+        if (!branchFiles.isEmpty()) {
+            chooser.setCurrentDirectory(branchFiles.get(0).getParentFile());
+        }
+        if (chooser.showOpenDialog(view) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        branchFiles.clear();
+        branchFiles.addAll(Arrays.asList(chooser.getSelectedFiles()));
+        loadBranches(filterFrom, filterTo);
+    }
+
+    /**
+     * Reads the chosen branch files in the background and shows their revenue
+     * and alerts. Does nothing if no branches were chosen.
+     *
+     * @param from The start date (inclusive), or null
+     * @param to The end date (inclusive), or null
+     */
+    private void loadBranches(Date from, Date to) {
+        if (branchFiles.isEmpty()) {
+            return;
+        }
+        List<File> files = new ArrayList<>(branchFiles);
+        view.getBtnBranches().setEnabled(false);
+        AsyncDao.onEdt(view.getLoadingIndicator().track("Loading branches...",
+                AsyncDao.supply("load branches", () -> BranchReportDAO.load(files, from, to))), report -> {
+            view.getBtnBranches().setEnabled(true);
+            showBranches(report);
+        }, error -> view.getBtnBranches().setEnabled(true));
+    }
+
+    /**
+     * Shows a consolidated branch report in the Branches tab and the Branch Revenue chart.
+     */
+    private void showBranches(BranchReport report) {
+        branchTotals.clear();
+        branchTotals.putAll(report.getBranchRevenue());
+
+        StringBuilder text = new StringBuilder();
+        Map<String, List<InventoryBatch>> alerts = new LinkedHashMap<>();
+        for (BranchReport.Branch b : report.getBranches()) {
+            if (b.getError() != null) {
+                text.append(String.format("%s – not read (%s)%n", b.getName(), b.getError()));
+                continue;
+            }
+            text.append(String.format("%s – ₱%.2f | %d receipts | %d units%n",
+                    b.getName(), b.getRevenue(), b.getReceipts(), b.getUnits()));
+            alerts.put(b.getName(), b.getAlerts());
+        }
+        text.append(String.format("All branches – ₱%.2f | %d receipts | %d units%n",
+                report.getRevenue(), report.getReceipts(), report.getUnits()));
+        text.append(String.format("%nBy brand:%n"));
+        for (Map.Entry<String, Double> entry : report.getBrandTotals().entrySet()) {
+            text.append(String.format("  %s – ₱%.2f%n", entry.getKey(), entry.getValue()));
+        }
+        text.append(String.format("By type:%n"));
+        for (Map.Entry<String, Double> entry : report.getTypeTotals().entrySet()) {
+            text.append(String.format("  %s – ₱%.2f%n", entry.getKey(), entry.getValue()));
+        }
+
+        view.updateBranches(text.toString().trim(), alerts);
+        if (BRANCH_MODE.equals(view.getCbChartMode().getSelectedItem())) {
+            showChart();
+        }
     }
 
     /**
@@ -266,16 +472,42 @@ public class MonitoringController {
         for (Sale sale : sales) {
             for (SaleItem item : sale.getItems()) {
                 Product product = inventory.getProduct(item.getProductId());
-                String brand = (product != null && product.getBrand() != null && 
-                               !product.getBrand().isBlank()) ? product.getBrand() : "Unknown";
-                String type = (product != null && product.getType() != null && 
-                              !product.getType().isBlank()) ? product.getType() : "Unknown";
-                
-                brandTotals.put(brand, brandTotals.getOrDefault(brand, 0.0) + item.getSubtotal());
-                typeTotals.put(type, typeTotals.getOrDefault(type, 0.0) + item.getSubtotal());
+                brandTotals.merge(brandOf(item, product), item.getSubtotal(), Double::sum);
+                typeTotals.merge(typeOf(item, product), item.getSubtotal(), Double::sum);
             }
         }
 
+        showBreakdown();
+    }
+
+    /**
+     * Updates the revenue breakdown for all sales in a date range.
+     * Uses the columnar sales store, which sums the lines in parallel.
+     * 
+     * @param from The start date (inclusive), or null
+     * @param to The end date (inclusive), or null
+     */
+    private void updateBreakdownFromColumns(Date from, Date to) {
+        SalesColumns columns = report.getColumns();
+        brandTotals.clear();
+        brandTotals.putAll(columns.revenueByName(SalesColumns.Key.BRAND, from, to));
+        typeTotals.clear();
+        typeTotals.putAll(columns.revenueByName(SalesColumns.Key.TYPE, from, to));
+        showBreakdown();
+    }
+
+    /**
+     * Shows the current brand and type totals in the summary areas and the chart.
+     */
+    private void showBreakdown() {
+        showSummaries();
+        showChart();
+    }
+
+    /**
+     * Shows the current brand and type totals in the summary text areas.
+     */
+    private void showSummaries() {
         // Build brand summary text
         StringBuilder brandText = new StringBuilder();
         for (Map.Entry<String, Double> entry : brandTotals.entrySet()) {
@@ -296,13 +528,49 @@ public class MonitoringController {
 
         // Update the view
         view.updateBreakdown(brandText.toString(), typeText.toString());
+    }
 
-        // Update chart based on selected mode
+    /**
+     * Shows the chart selected in the chart mode box.
+     */
+    private void showChart() {
         String mode = (String) view.getCbChartMode().getSelectedItem();
-        if ("Type Revenue".equals(mode)) {
+        if (TIME_SERIES_MODE.equals(mode)) {
+            view.getTimeSeriesPanel().setData(buildTimeBuckets());
+            view.showTimeSeriesChart(true);
+            return;
+        }
+        view.showTimeSeriesChart(false);
+        if (BRANCH_MODE.equals(mode)) {
+            view.getBarChartPanel().setData(branchTotals);
+        } else if ("Type Revenue".equals(mode)) {
             view.getBarChartPanel().setData(typeTotals);
         } else {
             view.getBarChartPanel().setData(brandTotals);
         }
     }
-}
+
+    private boolean isTimeSeriesShown() {
+        return TIME_SERIES_MODE.equals(view.getCbChartMode().getSelectedItem());
+    }
+
+    /**
+     * Sums revenue and units over time for the current filter.
+     * Buckets start at local midnight of the first day and are one hour wide,
+     * or one day wide when the range is too long for hourly buckets.
+     */
+    private SalesColumns.TimeBuckets buildTimeBuckets() {
+        List<Sale> all = report.getSales();
+        Date first = filterFrom != null ? filterFrom : (all.isEmpty() ? new Date() : all.get(0).getDate());
+        Date last = filterTo != null ? filterTo : (all.isEmpty() ? new Date() : all.get(all.size() - 1).getDate());
+
+        long start = java.time.Instant.ofEpochMilli(first.getTime())
+                .atZone(java.time.ZoneId.systemDefault()).toLocalDate()
+                .atStartOfDay(java.time.ZoneId.systemDefault()).toEpochSecond();
+        long end = Math.max(start + 1, last.getTime() / 1000L + 1);
+
+        long bucketSeconds = (end - start) / 3600 <= MAX_HOURLY_BUCKETS ? 3600 : 86400;
+        int count = (int) Math.max(1, (end - start + bucketSeconds - 1) / bucketSeconds);
+        return report.getColumns().timeBuckets(start, bucketSeconds, count, filterBrand);
+    }
+}
\ No newline at end of file
@@ -1,142 +1,114 @@
 package LTBPaintCenter.controller;
 
-import LTBPaintCenter.dao.ProductDAO;
-import LTBPaintCenter.dao.SaleReferenceGenerator;
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.dao.ReservationDAO;
 import LTBPaintCenter.model.*;
+import LTBPaintCenter.server.PosApi;
 import LTBPaintCenter.view.POSPanel;
-import javax.swing.*;
-import java.time.LocalDate;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This controller manages the Point of Sale (POS) system.
- * It handles the checkout process, updates inventory when items are sold,
- * and refreshes the product display.
+ * This controller manages the Point of Sale (POS) panel and the stock
+ * reservations of its cart. The checkout itself and loading the products
+ * are done by MainController, which also keeps the shared inventory.
  */
 public class POSController {
     
-    private final Inventory inventory;
-    private final Report report;
     private final POSPanel view;
+    // The POS server, or null when the local database is used
+    private final PosApi remote;
+    // Reloads the products into the inventory and the POS cards (set by MainController)
+    private Runnable productReloader = () -> { };
+    // The last reservation write; the next one starts after it, so they are saved in the order the cart changed
+    private CompletableFuture<?> lastReservation = CompletableFuture.completedFuture(null);
+
+    // Deletes timed-out stock reservations of all terminals in the background
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "reservation-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Constructor - sets up the POS controller and view.
-     * 
-     * @param inventory The inventory system
-     * @param report The sales report system
+     *
+     * @param remote The POS server that keeps the reservations, or null to use the local database
      */
-    public POSController(Inventory inventory, Report report) {
-        this.inventory = inventory;
-        this.report = report;
+    public POSController(PosApi remote) {
         this.view = new POSPanel();
+        this.remote = remote;
 
         attachHandlers();
-        refreshPOS();
     }
 
     /**
      * Attaches event handlers to the view.
      */
     private void attachHandlers() {
-        view.setCheckoutHandler(this::handleCheckout);
-    }
+        view.setReservationHandler(new POSPanel.ReservationHandler() {
+            @Override
+            public CompletableFuture<Boolean> reserve(int productId, int qty, Map<Integer, Integer> cart,
+                                                      Map<Integer, List<Integer>> batches) {
+                // With a POS server the reservations are kept in the server's database
+                return queue("reserve stock", () -> remote != null
+                        ? remote.reserve(Global.terminalId, productId, qty, cart)
+                        : ReservationDAO.reserveInCart(Global.terminalId, productId, qty, cart, batches));
+            }
 
-    /**
-     * Handles the checkout process when a sale is completed.
-     * Validates stock, updates inventory, and records the sale.
-     * 
-     * @param cart The list of items being purchased
-     * @return true if checkout was successful, false otherwise
-     */
-    private boolean handleCheckout(List<SaleItem> cart) {
-        if (cart == null || cart.isEmpty()) {
-            JOptionPane.showMessageDialog(view, "Cart is empty");
-            return false;
-        }
+            @Override
+            public void releaseAll() {
+                queue("release reservations", () -> {
+                    releaseReservations();
+                    return null;
+                });
+            }
+        });
 
-        // Show checkout confirmation dialog with summary
-        java.awt.Frame owner = null;
-        java.awt.Window window = SwingUtilities.getWindowAncestor(view);
-        if (window instanceof java.awt.Frame frame) {
-            owner = frame;
+        // Start with no reservations left over from a previous run of this terminal
+        AsyncDao.run("release reservations", this::releaseReservations);
+        if (remote == null) {
+            SWEEPER.scheduleWithFixedDelay(ReservationDAO::sweepExpired, 1, 1, TimeUnit.MINUTES);
         }
-        
-        String referenceNo = SaleReferenceGenerator.generateSaleReference(LocalDate.now());
-        LTBPaintCenter.view.CheckoutDialog dialog = 
-                new LTBPaintCenter.view.CheckoutDialog(owner, cart, referenceNo);
-        dialog.setVisible(true);
-        
-        if (!dialog.isConfirmed()) {
-            return false;  // User cancelled
-        }
-
-        // Generate a sale ID using the shared MMDDYYXXX pattern
-        Sale sale = new Sale(referenceNo);
-
-        try {
-            // Process each item in the cart
-            for (SaleItem item : cart) {
-                Product product = inventory.getProduct(item.getProductId());
-                
-                // Validate product exists
-                if (product == null) {
-                    throw new Exception("Product not found: " + item.getName());
-                }
-                
-                // Validate sufficient stock
-                if (item.getQty() > product.getQuantity()) {
-                    throw new Exception("Not enough stock for " + product.getName());
-                }
+    }
 
-                // Add item to sale
-                sale.addItem(item);
-                
-                // Update inventory (reduce quantity)
-                inventory.updateQuantity(item.getProductId(), -item.getQty());
-            }
+    // Runs on a background thread
+    private void releaseReservations() throws IOException {
+        if (remote != null) {
+            remote.releaseReservations(Global.terminalId);
+        } else {
+            ReservationDAO.releaseAll(Global.terminalId);
+        }
+    }
 
-            // Record the sale
-            report.recordSale(sale);
-            refreshPOS();
-            return true;
+    // Runs a reservation write in the background once the ones before it are done (called on the event thread)
+    private <T> CompletableFuture<T> queue(String name, AsyncDao.Work<T, ?> work) {
+        CompletableFuture<T> next = lastReservation.handle((result, error) -> null)
+                .thenCompose(ignored -> AsyncDao.supply(name, work));
+        lastReservation = next;
+        return next;
+    }
 
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(view, "Checkout failed: " + e.getMessage());
-            return false;
-        }
+    /**
+     * Sets how the products are reloaded when the POS display is refreshed.
+     *
+     * @param reloader Loads the products (in the background) and shows them
+     */
+    public void setProductReloader(Runnable reloader) {
+        this.productReloader = reloader != null ? reloader : () -> { };
     }
 
     /**
-     * Refreshes the POS display with the latest products.
-     * Loads products directly from the database to show current stock levels.
+     * Refreshes the POS display with the latest products from the database,
+     * so the cards show current stock levels.
      */
     public void refreshPOS() {
-        // Get all available products from database
-        java.util.List<Product> products = ProductDAO.getAvailableForPOS();
-        java.util.List<ProductBatch> batches = new java.util.ArrayList<>();
-        java.time.LocalDate today = java.time.LocalDate.now();
-        
-        // Convert Products to ProductBatches for the POS view
-        for (Product product : products) {
-            // Only include products that are in stock and not expired
-            if (product.getQuantity() > 0 && 
-                (product.getExpirationDate() == null || 
-                 product.getExpirationDate().isAfter(today))) {
-                batches.add(new ProductBatch(
-                        product.getId(), 
-                        product.getName(), 
-                        product.getBrand(), 
-                        product.getColor(), 
-                        product.getType(),
-                        product.getPrice(), 
-                        product.getQuantity(), 
-                        product.getDateImported(), 
-                        product.getExpirationDate()
-                ));
-            }
-        }
-        
-        view.refreshProducts(batches);
+        productReloader.run();
     }
 
     /**
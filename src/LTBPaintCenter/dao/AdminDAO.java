@@ -6,6 +6,7 @@ import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  * This class handles admin password management.
@@ -49,27 +50,30 @@ public class AdminDAO {
      * @return true if password was changed successfully, false otherwise
      */
     public static boolean changePassword(String currentPassword, String newPassword) {
-        try (Connection conn = Database.getConnection()) {
-            // First verify the current password
-            String[] hashAndSalt = getHashAndSalt(conn);
-            if (hashAndSalt == null) {
-                return false;
-            }
-            
-            String expectedHash = hashAndSalt[0];
-            String salt = hashAndSalt[1];
-            String actualHash = hashPassword(currentPassword, salt);
-            
-            if (!constantTimeEquals(expectedHash, actualHash)) {
-                return false;  // Current password is wrong
-            }
-            
-            // Generate new salt and hash for the new password
-            String newSalt = generateSalt();
-            String newHash = hashPassword(newPassword, newSalt);
-            setHashAndSalt(conn, newHash, newSalt);
-            
-            return true;
+        try {
+            // The check and the write run in one transaction on the write executor
+            return DbWriteExecutor.execute("change password", conn -> {
+                // First verify the current password
+                String[] hashAndSalt = getHashAndSalt(conn);
+                if (hashAndSalt == null) {
+                    return false;
+                }
+
+                String expectedHash = hashAndSalt[0];
+                String salt = hashAndSalt[1];
+                String actualHash = hashPassword(currentPassword, salt);
+
+                if (!constantTimeEquals(expectedHash, actualHash)) {
+                    return false;  // Current password is wrong
+                }
+
+                // Generate new salt and hash for the new password
+                String newSalt = generateSalt();
+                String newHash = hashPassword(newPassword, newSalt);
+                setHashAndSalt(conn, newHash, newSalt);
+
+                return true;
+            });
         } catch (Exception e) {
             System.err.println("[AdminDAO] changePassword failed: " + e.getMessage());
             return false;
@@ -102,8 +106,9 @@ public class AdminDAO {
      * @param conn The database connection
      * @param hash The password hash
      * @param salt The salt used for hashing
+     * @throws SQLException If the update fails
      */
-    static void setHashAndSalt(Connection conn, String hash, String salt) {
+    static void setHashAndSalt(Connection conn, String hash, String salt) throws SQLException {
         try (PreparedStatement update = conn.prepareStatement(
                 "UPDATE admin_settings SET password_hash=?, salt=? WHERE id=1")) {
             update.setString(1, hash);
@@ -119,8 +124,6 @@ public class AdminDAO {
                     insert.executeUpdate();
                 }
             }
-        } catch (Exception e) {
-            System.err.println("[AdminDAO] setHashAndSalt error: " + e.getMessage());
         }
     }
 
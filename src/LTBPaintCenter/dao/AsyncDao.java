@@ -0,0 +1,158 @@
+package LTBPaintCenter.dao;
+
+import java.awt.EventQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * This class runs database work away from the Swing event thread, so a slow
+ * disk never freezes the window. The event thread should never use JDBC
+ * itself; it hands the work to this class and gets a CompletableFuture back.
+ *
+ * Every task gets its own virtual thread when the JDK has them (Java 21+),
+ * otherwise a plain daemon thread. A semaphore with PERMITS tasks bounds how
+ * many of them use the database at the same time; the others wait for a
+ * permit without holding a connection.
+ *
+ * Results are passed back to the Swing event thread with onEdt(). Code that
+ * needs the answer before it can go on (for example checking a password
+ * before saving) continues in the onEdt() callback, and turns off the
+ * buttons that started it until then.
+ */
+public final class AsyncDao {
+
+    // System property that changes the number of tasks using the database at once
+    public static final String PERMITS_PROPERTY = "ltb.db.permits";
+    public static final int PERMITS = Math.max(1, Integer.getInteger(PERMITS_PROPERTY, 4));
+
+    /** Runs tasks on the Swing event thread, for CompletableFuture's *Async methods. */
+    public static final Executor EDT = EventQueue::invokeLater;
+
+    private static final Semaphore DB_PERMITS = new Semaphore(PERMITS, true);
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    /**
+     * A piece of database work.
+     *
+     * @param <T> The type of the result
+     * @param <E> The checked exception the work can throw
+     */
+    public interface Work<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * A piece of database work without a result.
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private AsyncDao() {
+    }
+
+    /**
+     * Creates one virtual thread per task if the JDK has them, otherwise
+     * daemon threads. The permits limit the database work either way.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            // Looked up by name so the application still builds and runs on Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "db-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Runs database work in the background.
+     * If the work fails, the error is printed and the future completes with it.
+     *
+     * @param name What the work does, for the error message
+     * @param work The work; it must not touch Swing components
+     * @return The result of the work
+     */
+    public static <T> CompletableFuture<T> supply(String name, Work<T, ?> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            boolean acquired = false;
+            try {
+                DB_PERMITS.acquire();
+                acquired = true;
+                future.complete(work.call());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+            } catch (Throwable t) {
+                System.err.println("[AsyncDao] " + name + " failed: " + t);
+                future.completeExceptionally(t);
+            } finally {
+                if (acquired) {
+                    DB_PERMITS.release();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs database work without a result in the background.
+     *
+     * @param name What the work does, for the error message
+     * @param task The work; it must not touch Swing components
+     * @return Completes when the work is done
+     */
+    public static CompletableFuture<Void> run(String name, Task task) {
+        return supply(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Passes the result of background work to the Swing event thread.
+     * Errors were already printed by supply(), so they are only ignored here.
+     *
+     * @param future The background work
+     * @param onSuccess Receives the result on the event thread
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<? super T> onSuccess) {
+        onEdt(future, onSuccess, error -> { });
+    }
+
+    /**
+     * Passes the result or the error of background work to the Swing event thread.
+     *
+     * @param future The background work
+     * @param onSuccess Receives the result on the event thread
+     * @param onError Receives the error (not wrapped in a CompletionException) on the event thread
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<? super T> onSuccess,
+                                 Consumer<Throwable> onError) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                onError.accept(unwrap(error));
+            }
+        }, EDT);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,285 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.BranchReport;
+import LTBPaintCenter.model.InventoryBatch;
+import LTBPaintCenter.model.SaleItem;
+import java.io.File;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads the sales and stock of several branches, each written by
+ * its own copy of this app, straight from their database files.
+ *
+ * The files are ATTACHed read-only to an in-memory connection, so nothing is
+ * copied and a branch that is still open in its own store is not disturbed.
+ * SQLite allows at most MAX_ATTACHED files per connection, so the branches are
+ * split into batches. Every batch runs on its own connection in a thread pool
+ * and sums its branches with one UNION ALL query per figure; the partial sums
+ * of the batches are then merged into one BranchReport.
+ */
+public class BranchReportDAO {
+
+    // SQLite's default limit on attached databases per connection
+    public static final int MAX_ATTACHED = 10;
+    // The file name this app gives its own database
+    private static final String DEFAULT_DB_NAME = "ltbpaintcenter";
+    private static final int LOW_STOCK = 5;
+    private static final int EXPIRY_WARNING_DAYS = 7;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "branch-report");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Builds the consolidated report for the given branch files.
+     * A branch that cannot be read is kept in the report with its error set,
+     * so one bad file does not stop the other branches.
+     *
+     * @param files The branch database files
+     * @param from The start date (inclusive), or null
+     * @param to The end date (inclusive), or null
+     * @return The figures of every branch, in the order of the files
+     */
+    public static BranchReport load(List<File> files, Date from, Date to) {
+        List<BranchReport.Branch> branches = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (File f : files) {
+            String name = branchName(f);
+            String unique = name;
+            for (int i = 2; !names.add(unique); i++) {
+                unique = name + " (" + i + ")";
+            }
+            branches.add(new BranchReport.Branch(unique, f));
+        }
+
+        // Small sets of branches are spread over the threads; large ones fill each connection
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int batchSize = Math.max(1, Math.min(MAX_ATTACHED, (branches.size() + threads - 1) / threads));
+        List<Future<BranchReport>> parts = new ArrayList<>();
+        for (int i = 0; i < branches.size(); i += batchSize) {
+            List<BranchReport.Branch> batch = branches.subList(i, Math.min(branches.size(), i + batchSize));
+            parts.add(POOL.submit(() -> loadBatch(batch, from, to)));
+        }
+
+        BranchReport report = new BranchReport();
+        for (Future<BranchReport> part : parts) {
+            try {
+                report.merge(part.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // loadBatch catches its own errors, so this should not happen
+                System.err.println("Branch report failed: " + e.getCause());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Gets the name of a branch from its file: the file name without .db, or
+     * the store's folder when the file still has this app's default name.
+     */
+    static String branchName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        if (!name.equalsIgnoreCase(DEFAULT_DB_NAME)) {
+            return name;
+        }
+        // <store>/src/LTBPaintCenter/ltbpaintcenter.db -> <store>
+        File dir = file.getAbsoluteFile().getParentFile();
+        while (dir != null && (dir.getName().equals("LTBPaintCenter") || dir.getName().equals("src"))) {
+            dir = dir.getParentFile();
+        }
+        return dir != null && !dir.getName().isEmpty() ? dir.getName() : name;
+    }
+
+    // Reads one batch of at most MAX_ATTACHED branches on its own connection
+    private static BranchReport loadBatch(List<BranchReport.Branch> batch, Date from, Date to) {
+        BranchReport part = new BranchReport();
+        // Attached alias -> branch, only for the branches that could be attached
+        Map<String, BranchReport.Branch> attached = new LinkedHashMap<>();
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            for (int i = 0; i < batch.size(); i++) {
+                BranchReport.Branch branch = batch.get(i);
+                part.addBranch(branch);
+                String alias = "b" + i;
+                String error = attach(conn, branch.getFile(), alias);
+                if (error == null) {
+                    attached.put(alias, branch);
+                } else {
+                    branch.setError(error);
+                    System.err.println("Branch " + branch.getName() + " skipped: " + error);
+                }
+            }
+            if (attached.isEmpty()) {
+                return part;
+            }
+
+            loadTotals(conn, attached, from, to);
+            loadRevenue(conn, attached, part, from, to);
+            loadAlerts(conn, attached);
+        } catch (SQLException e) {
+            System.err.println("Failed to read branches: " + e.getMessage());
+            for (BranchReport.Branch b : batch) {
+                if (b.getError() == null) b.setError(e.getMessage());
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Attaches a branch file read-only and checks that it has this app's tables.
+     *
+     * @return null if attached, otherwise the reason it is not
+     */
+    private static String attach(Connection conn, File file, String alias) {
+        if (!file.isFile()) {
+            return "file not found";
+        }
+        try (PreparedStatement ps = conn.prepareStatement("ATTACH DATABASE ? AS " + alias)) {
+            ps.setString(1, file.toURI() + "?mode=ro");
+            ps.execute();
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+        try (Statement st = conn.createStatement()) {
+            st.executeQuery("SELECT 1 FROM " + alias + ".sales LIMIT 0").close();
+            st.executeQuery("SELECT 1 FROM " + alias + ".inventory LIMIT 0").close();
+            return null;
+        } catch (SQLException e) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("DETACH DATABASE " + alias);
+            } catch (SQLException ignored) {
+                // Nothing else to clean up
+            }
+            return "not a branch database";
+        }
+    }
+
+    // Revenue, receipts and units per branch
+    private static void loadTotals(Connection conn, Map<String, BranchReport.Branch> attached,
+                                   Date from, Date to) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (String alias : attached.keySet()) {
+            if (sql.length() > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT '").append(alias).append("' AS branch, COALESCE(SUM(total), 0) AS revenue, ")
+               .append("COUNT(DISTINCT COALESCE(NULLIF(sale_reference, ''), 'S' || id)) AS receipts, ")
+               .append("COALESCE(SUM(CASE WHEN product_id <> ").append(SaleItem.DISCOUNT_PRODUCT_ID)
+               .append(" THEN quantity ELSE 0 END), 0) AS units FROM ").append(alias).append(".sales")
+               .append(dateFilter("sale_date", from, to));
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            bindDates(ps, attached.size(), from, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    attached.get(rs.getString("branch"))
+                            .setTotals(rs.getDouble("revenue"), rs.getLong("receipts"), rs.getLong("units"));
+                }
+            }
+        }
+    }
+
+    // Revenue per brand and type; each branch's lines are matched with its own inventory
+    private static void loadRevenue(Connection conn, Map<String, BranchReport.Branch> attached,
+                                    BranchReport part, Date from, Date to) throws SQLException {
+        String discount = "s.product_id = " + SaleItem.DISCOUNT_PRODUCT_ID;
+        StringBuilder sql = new StringBuilder();
+        for (String alias : attached.keySet()) {
+            if (sql.length() > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT CASE WHEN ").append(discount).append(" THEN '").append(SaleItem.DISCOUNT_GROUP)
+               .append("' ELSE COALESCE(NULLIF(TRIM(i.brand), ''), 'Unknown') END AS brand, ")
+               .append("CASE WHEN ").append(discount).append(" THEN '").append(SaleItem.DISCOUNT_GROUP)
+               .append("' ELSE COALESCE(NULLIF(TRIM(i.type), ''), 'Unknown') END AS type, ")
+               .append("SUM(s.total) AS revenue FROM ").append(alias).append(".sales s LEFT JOIN ")
+               .append(alias).append(".inventory i ON i.id = s.product_id")
+               .append(dateFilter("s.sale_date", from, to))
+               .append(" GROUP BY 1, 2");
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            bindDates(ps, attached.size(), from, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    part.addRevenue(rs.getString("brand"), rs.getString("type"), rs.getDouble("revenue"));
+                }
+            }
+        }
+    }
+
+    // Batches that are low, sold out, expired or expiring within a week, per branch
+    private static void loadAlerts(Connection conn, Map<String, BranchReport.Branch> attached) throws SQLException {
+        LocalDate warnDate = LocalDate.now().plusDays(EXPIRY_WARNING_DAYS);
+        // Expiration dates are stored as epoch milliseconds, or as text in older files
+        long warnMillis = warnDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String condition = " WHERE qty <= " + LOW_STOCK
+                + " OR (typeof(expiration_date) IN ('integer', 'real') AND expiration_date < " + warnMillis + ")"
+                + " OR (typeof(expiration_date) = 'text' AND expiration_date <> '' AND substr(expiration_date, 1, 10) <= '"
+                + warnDate + "')";
+
+        StringBuilder sql = new StringBuilder();
+        for (String alias : attached.keySet()) {
+            if (sql.length() > 0) sql.append(" UNION ALL ");
+            sql.append("SELECT '").append(alias).append("' AS branch, id, name, brand, color, type, price, qty, ")
+               .append("date_imported, expiration_date, status FROM ").append(alias).append(".inventory")
+               .append(condition);
+        }
+        sql.append(" ORDER BY branch, name");
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql.toString())) {
+            while (rs.next()) {
+                InventoryBatch batch = new InventoryBatch(
+                        rs.getInt("id"),
+                        null,
+                        rs.getString("name"),
+                        rs.getString("brand"),
+                        rs.getString("color"),
+                        rs.getString("type"),
+                        rs.getDouble("price"),
+                        rs.getInt("qty"),
+                        InventoryDAO.readLocalDate(rs, "date_imported"),
+                        InventoryDAO.readLocalDate(rs, "expiration_date"),
+                        rs.getString("status")
+                );
+                attached.get(rs.getString("branch")).getAlerts().add(batch);
+            }
+        }
+    }
+
+    // Sale dates are stored as local "yyyy-MM-dd HH:mm:ss" text, so they compare as strings
+    private static String dateFilter(String column, Date from, Date to) {
+        if (from == null && to == null) {
+            return "";
+        }
+        String date = "substr(replace(" + column + ", 'T', ' '), 1, 19)";
+        StringBuilder where = new StringBuilder(" WHERE ");
+        if (from != null) where.append(date).append(" >= ?");
+        if (from != null && to != null) where.append(" AND ");
+        if (to != null) where.append(date).append(" <= ?");
+        return where.toString();
+    }
+
+    private static void bindDates(PreparedStatement ps, int branches, Date from, Date to) throws SQLException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        int index = 1;
+        for (int i = 0; i < branches; i++) {
+            if (from != null) ps.setString(index++, format.format(from));
+            if (to != null) ps.setString(index++, format.format(to));
+        }
+    }
+}
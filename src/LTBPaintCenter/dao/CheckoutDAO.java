@@ -0,0 +1,319 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.Database;
+import LTBPaintCenter.model.Global;
+import LTBPaintCenter.model.Report;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.SaleItem;
+import java.sql.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class saves a checkout to the database in one transaction.
+ *
+ * The stock of every batch in the sale is taken out with a guarded update
+ * (only if the batch still has enough), and the sales rows are inserted on
+ * the same connection. If any batch is short, nothing is saved.
+ * The transaction runs on the DbWriteExecutor, which retries it while
+ * another terminal holds the database lock.
+ *
+ * A checkout is idempotent. The transaction starts by inserting the sale's
+ * header row, whose reference is unique. If the reference is already there
+ * with the same cart hash, the sale was saved by an earlier try (one that
+ * timed out, or a crash after the commit) and nothing is done again.
+ */
+public class CheckoutDAO {
+
+    /** The outcome of a checkout. */
+    public enum Result {
+        /** The stock was taken out and the sale was saved. */
+        COMMITTED,
+        /** The same cart was already saved under this reference; nothing was changed. */
+        ALREADY_COMMITTED,
+        /** A batch no longer has enough stock; nothing was saved. */
+        STOCK_CHANGED,
+        /** Another sale already uses this reference; nothing was saved. */
+        REFERENCE_TAKEN,
+        /** The database failed. The sale may or may not be saved, so try again with the same reference. */
+        FAILED;
+
+        /** @return true if the sale is in the database */
+        public boolean isSaved() {
+            return this == COMMITTED || this == ALREADY_COMMITTED;
+        }
+    }
+
+    /**
+     * Takes the sold quantities out of stock and saves the sale, all or nothing.
+     * Calling it again with the same reference and cart hash does nothing and
+     * returns ALREADY_COMMITTED.
+     *
+     * @param sale The sale, with one item per batch (discount lines have no stock)
+     * @param cartHash The hash of the priced cart (PricedCart.getHash())
+     * @return The outcome
+     */
+    public static Result commitSale(Sale sale, String cartHash) {
+        String sql = "UPDATE inventory SET qty = qty - ?, version = version + 1 WHERE id = ? AND qty >= ?";
+        try {
+            return DbWriteExecutor.execute("checkout " + sale.getId(), conn -> {
+                // The header goes first: it takes the write lock and claims the reference
+                if (!insertHeader(conn, sale.getId(), cartHash, sale.getTotal())) {
+                    String savedHash = getCartHash(conn, sale.getId());
+                    if (cartHash.equals(savedHash)) {
+                        return Result.ALREADY_COMMITTED;
+                    }
+                    System.err.println("Checkout cancelled: reference " + sale.getId() + " is already used");
+                    return Result.REFERENCE_TAKEN;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (SaleItem item : sale.getItems()) {
+                        if (item.isDiscount()) continue;
+                        ps.setInt(1, item.getQty());
+                        ps.setInt(2, item.getProductId());
+                        ps.setInt(3, item.getQty());
+                        if (ps.executeUpdate() == 0) {
+                            // Another sale took this stock first
+                            conn.rollback();
+                            System.err.println("Checkout cancelled: not enough stock left in batch " + item.getProductId());
+                            return Result.STOCK_CHANGED;
+                        }
+                    }
+                }
+                Report.insertSaleRows(conn, sale);
+                return Result.COMMITTED;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error saving checkout: " + e.getMessage());
+            return Result.FAILED;
+        }
+    }
+
+    /**
+     * Saves a sale from the checkout journal, as part of the caller's transaction.
+     *
+     * The cashier already confirmed this sale, so it is always saved. The
+     * journal checked the stock before taking the sale, but another terminal
+     * can still sell the same batch in the meantime: the sold quantity is then
+     * taken out anyway, so the batch's stock goes below 0 and matches the sales
+     * rows, and the batch is reported as oversold. If another terminal used the
+     * same reference the sale is saved under the reference followed by this
+     * terminal's ID. A sale that is already saved with the same cart hash is
+     * skipped, so replaying the journal is safe.
+     *
+     * @param conn The open connection (auto-commit off)
+     * @param sale The journaled sale
+     * @param cartHash The hash of its cart
+     * @return The reference it was saved under, or null if it was already saved
+     * @throws SQLException If the database fails
+     */
+    static String applyJournaled(Connection conn, Sale sale, String cartHash) throws SQLException {
+        String reference = sale.getId();
+        for (int n = 1; !insertHeader(conn, reference, cartHash, sale.getTotal()); n++) {
+            if (cartHash.equals(getCartHash(conn, reference))) {
+                return null;
+            }
+            reference = renamedReference(sale.getId(), n);
+        }
+
+        Sale saved = sale;
+        if (!reference.equals(sale.getId())) {
+            System.err.println("Sale " + sale.getId() + " was saved as " + reference
+                    + " because another terminal used the same reference");
+            saved = new Sale(reference, sale.getDate());
+            for (SaleItem item : sale.getItems()) {
+                saved.addItem(item);
+            }
+        }
+
+        try (PreparedStatement take = conn.prepareStatement(
+                     "UPDATE inventory SET qty = qty - ?, version = version + 1 WHERE id = ? AND qty >= ?");
+             PreparedStatement oversell = conn.prepareStatement(
+                     "UPDATE inventory SET qty = qty - ?, version = version + 1 WHERE id = ?")) {
+            for (SaleItem item : saved.getItems()) {
+                if (item.isDiscount()) continue;
+                take.setInt(1, item.getQty());
+                take.setInt(2, item.getProductId());
+                take.setInt(3, item.getQty());
+                if (take.executeUpdate() == 0) {
+                    oversell.setInt(1, item.getQty());
+                    oversell.setInt(2, item.getProductId());
+                    oversell.executeUpdate();
+                    System.err.println("Batch " + item.getProductId() + " was oversold by sale " + reference
+                            + "; its stock is now below 0 and must be counted again");
+                }
+            }
+        }
+        Report.insertSaleRows(conn, saved);
+        return reference;
+    }
+
+    /**
+     * Gets the stock of some batches.
+     *
+     * @param batchIds The batch IDs
+     * @return Batch ID -> quantity (batches that do not exist are left out)
+     * @throws SQLException If the query fails
+     */
+    static Map<Integer, Integer> getStock(Collection<Integer> batchIds) throws SQLException {
+        Map<Integer, Integer> stock = new HashMap<>();
+        if (batchIds.isEmpty()) {
+            return stock;
+        }
+        String sql = "SELECT id, qty FROM inventory WHERE id IN ("
+                + String.join(", ", Collections.nCopies(batchIds.size(), "?")) + ")";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : batchIds) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stock.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+        return stock;
+    }
+
+    /**
+     * Gets the reference a sale is saved under when its own reference is taken:
+     * the reference followed by this terminal's ID (and a number after the first try).
+     *
+     * @param reference The reference that was taken
+     * @param attempt 1 for the first rename, 2 for the next, and so on
+     * @return The new reference
+     */
+    public static String renamedReference(String reference, int attempt) {
+        return reference + "-" + Global.terminalId + (attempt > 1 ? "-" + attempt : "");
+    }
+
+    /**
+     * Finds the reference a cart was saved under: the reference itself, or one
+     * of the renamed references this terminal used because it was taken.
+     *
+     * @param reference The reference the cart was sent with
+     * @param cartHash The hash of the cart
+     * @return The saved reference, or null if this cart is not saved under it (or the database failed)
+     */
+    public static String findSavedReference(String reference, String cartHash) {
+        String renamed = renamedReference(reference, 1);
+        String sql = "SELECT sale_reference FROM sale_headers WHERE cart_hash = ? AND (sale_reference = ? " +
+                "OR (terminal_id = ? AND substr(sale_reference, 1, ?) = ?)) ORDER BY sale_reference LIMIT 1";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, cartHash);
+            ps.setString(2, reference);
+            ps.setString(3, Global.terminalId);
+            ps.setInt(4, renamed.length());
+            ps.setString(5, renamed);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking sale " + reference + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Claims a sale reference; returns false if it is already used
+    private static boolean insertHeader(Connection conn, String reference, String cartHash, double total)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO sale_headers (sale_reference, cart_hash, terminal_id, total) " +
+                "VALUES (?, ?, ?, ?) ON CONFLICT(sale_reference) DO NOTHING")) {
+            ps.setString(1, reference);
+            ps.setString(2, cartHash);
+            ps.setString(3, Global.terminalId);
+            ps.setDouble(4, total);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Gets the cart hash saved with a sale reference.
+     *
+     * @param conn An open connection
+     * @param reference The sale reference
+     * @return The cart hash, or null if the reference is not used
+     * @throws SQLException If the query fails
+     */
+    private static String getCartHash(Connection conn, String reference) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT cart_hash FROM sale_headers WHERE sale_reference = ?")) {
+            ps.setString(1, reference);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Gets the cart hash a sale reference was saved with.
+     *
+     * @param reference The sale reference
+     * @return The cart hash, or null if the reference is not used (or the database failed)
+     */
+    public static String getSavedCartHash(String reference) {
+        try {
+            return findCartHash(reference);
+        } catch (SQLException e) {
+            System.err.println("Error checking sale " + reference + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the cart hash a sale reference was saved with.
+     *
+     * @param reference The sale reference
+     * @return The cart hash, or null if the reference is not used
+     * @throws SQLException If the database fails
+     */
+    static String findCartHash(String reference) throws SQLException {
+        try (Connection conn = Database.getConnection()) {
+            return getCartHash(conn, reference);
+        }
+    }
+
+    /**
+     * Loads a saved sale by its reference, as it was committed
+     * (used to show the original result when a checkout is replayed).
+     *
+     * @param reference The sale reference
+     * @return The sale, or null if it is not found
+     */
+    public static Sale loadSale(String reference) {
+        String sql = "SELECT product_id, product_name, quantity, price, sale_date FROM sales " +
+                "WHERE sale_reference = ? ORDER BY id";
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Sale sale = null;
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, reference);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (sale == null) {
+                        java.util.Date date;
+                        try {
+                            date = format.parse(rs.getString("sale_date"));
+                        } catch (ParseException | NullPointerException e) {
+                            date = new java.util.Date();
+                        }
+                        sale = new Sale(reference, date);
+                    }
+                    sale.addItem(new SaleItem(rs.getInt("product_id"), rs.getString("product_name"),
+                            rs.getDouble("price"), rs.getInt("quantity")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading sale " + reference + ": " + e.getMessage());
+        }
+        return sale;
+    }
+}
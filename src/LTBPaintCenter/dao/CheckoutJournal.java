@@ -0,0 +1,633 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.Database;
+import LTBPaintCenter.model.Global;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.SaleItem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * This class is the write-ahead journal of the checkouts on this terminal.
+ *
+ * A checkout is first appended to a memory-mapped file and the cashier gets
+ * the confirmation as soon as it is on disk. Before that, the stock of its
+ * batches is read from the database, less the sales of this journal that are
+ * not saved yet, so a sale this terminal cannot fill is refused right away. Checkouts that arrive while the
+ * file is being synced wait for the next sync, and that one sync covers all
+ * of them (group commit), so a rush costs one fsync per group instead of the
+ * several fsyncs of a SQLite transaction per sale. A background thread then
+ * saves the journaled sales into the SQLite tables in batches, one
+ * transaction per batch.
+ *
+ * File layout: a 16-byte header (magic, format, epoch), then records of
+ * [payload length][epoch][CRC32 of epoch and payload][payload]. Reading stops
+ * at the first record with a bad length, another epoch or a bad checksum
+ * (a write that was cut off). When every record is saved in SQLite the epoch
+ * is increased, which empties the journal without rewriting it.
+ *
+ * Every terminal has its own journal file (checkout-<terminal ID>.journal)
+ * and keeps it locked while it runs, so terminals sharing one database never
+ * write into each other's journal. If the file is locked by another program,
+ * the journal cannot be used, or it is full, checkouts go straight to the database.
+ *
+ * On startup the journal is replayed, together with any other journal file
+ * that no running terminal holds (for example after the terminal ID changed).
+ * Saving a sale is idempotent (see CheckoutDAO), so sales that were already
+ * saved before a crash are skipped. If another terminal took a sale's
+ * reference in the meantime, the sale is saved under a new one and the
+ * rename listener is told, so the screens can show the reference that was saved.
+ */
+public final class CheckoutJournal {
+
+    /** The journal size; it is emptied whenever all records are saved. */
+    public static final int SIZE = 4 * 1024 * 1024;
+    // The most sales saved in one SQLite transaction
+    private static final int MAX_BATCH = 64;
+
+    private static final int MAGIC = 0x4C54424A; // "LTBJ"
+    private static final int FORMAT = 1;
+    private static final int FILE_HEADER = 16;
+    private static final int RECORD_HEADER = 16;
+
+    private static volatile CheckoutJournal instance;
+    private static boolean opened;
+    private static volatile Runnable onApplied;
+    private static volatile BiConsumer<Sale, String> onRenamed;
+
+    private final File file;
+    // Kept open while the journal is used; closing it releases the lock
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when a sync finishes
+    private final Condition synced = lock.newCondition();
+    // Signalled when there are records to save
+    private final Condition hasWork = lock.newCondition();
+
+    // All positions are guarded by the lock
+    private long epoch;
+    private int writePos;     // End of the records written
+    private int durablePos;   // End of the records synced to disk
+    private int appliedPos;   // End of the records saved in SQLite
+    private boolean syncing;  // A thread is syncing right now
+
+    // Sales in the journal that are not saved in SQLite yet: reference -> cart hash, end position and quantities
+    private final ConcurrentSkipListMap<String, Pending> pending = new ConcurrentSkipListMap<>();
+
+    private static final class Pending {
+        final String cartHash;
+        final int end;
+        // Batch ID -> quantity sold, still to be taken out of the database stock
+        final Map<Integer, Integer> batchQty;
+
+        Pending(String cartHash, int end, Map<Integer, Integer> batchQty) {
+            this.cartHash = cartHash;
+            this.end = end;
+            this.batchQty = batchQty;
+        }
+    }
+
+    // One record read back from the journal
+    private static final class Record {
+        final Sale sale;
+        final String cartHash;
+        final int end;
+
+        Record(Sale sale, String cartHash, int end) {
+            this.sale = sale;
+            this.cartHash = cartHash;
+            this.end = end;
+        }
+    }
+
+    private CheckoutJournal(File file, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the journal and saves any sales left in it by the last run into
+     * SQLite, before the sales and stock are loaded. Then starts the
+     * background thread. Call it once at startup, after the database is set up.
+     */
+    public static synchronized void recover() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        File own = Database.getDataFile("checkout-" + Global.terminalId.replaceAll("[^A-Za-z0-9._-]", "_") + ".journal");
+        try {
+            instance = open(own);
+            if (instance == null) {
+                System.err.println("Checkout journal " + own.getName() + " is in use by another program, saving sales directly");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Checkout journal not available, saving sales directly: " + e.getMessage());
+        }
+        recoverOthers(own);
+        if (instance == null) {
+            return;
+        }
+        if (!instance.pending.isEmpty()) {
+            instance.drain();
+        }
+        Thread applier = new Thread(instance::applyLoop, "journal-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * Sets what to run after a batch of journaled sales is saved in SQLite
+     * (for example reloading the stock). It runs on the journal thread.
+     *
+     * @param listener The listener, or null
+     */
+    public static void setOnApplied(Runnable listener) {
+        onApplied = listener;
+    }
+
+    /**
+     * Sets what to run when a journaled sale had to be saved under another
+     * reference, because another terminal used its reference first. It gets
+     * the sale as the cashier was shown it and the reference that was saved,
+     * and runs on the journal thread before the applied listener.
+     *
+     * @param listener The listener, or null
+     */
+    public static void setOnRenamed(BiConsumer<Sale, String> listener) {
+        onRenamed = listener;
+    }
+
+    /**
+     * Commits a checkout. The sale is appended to the journal and this returns
+     * once it is on disk; it is saved in SQLite shortly after. If the journal is
+     * not available or full, the sale is saved straight to the database.
+     *
+     * @param sale The sale, with one item per batch
+     * @param cartHash The hash of the priced cart
+     * @return COMMITTED once the sale is durable, ALREADY_COMMITTED if the same cart
+     *         was already committed with this reference, STOCK_CHANGED if a batch does not
+     *         have enough stock left, or the result of CheckoutDAO.commitSale
+     */
+    public static CheckoutDAO.Result commit(Sale sale, String cartHash) {
+        CheckoutJournal journal;
+        synchronized (CheckoutJournal.class) {
+            if (!opened) {
+                recover();
+            }
+            journal = instance;
+        }
+        if (journal != null && !journal.pending.containsKey(sale.getId())) {
+            // A retry of a direct save that failed may have been saved after all
+            // (and is no longer in the journal), so look for its header first
+            try {
+                String savedHash = CheckoutDAO.findCartHash(sale.getId());
+                if (savedHash != null) {
+                    return cartHash.equals(savedHash) ? CheckoutDAO.Result.ALREADY_COMMITTED
+                            : CheckoutDAO.Result.REFERENCE_TAKEN;
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not check sale " + sale.getId() + ": " + e.getMessage());
+                return CheckoutDAO.Result.FAILED;
+            }
+        }
+        if (journal != null) {
+            try {
+                CheckoutDAO.Result result = journal.append(sale, cartHash);
+                if (result != null) {
+                    return result;
+                }
+                System.err.println("Checkout journal is full, saving sale " + sale.getId() + " directly");
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Checkout journal failed, saving sale " + sale.getId() + " directly: " + e.getMessage());
+            }
+        }
+        return CheckoutDAO.commitSale(sale, cartHash);
+    }
+
+    /**
+     * Gets the highest sale reference with a prefix that is in the journal but
+     * not yet in the database (so a new reference does not repeat it).
+     *
+     * @param prefix The reference prefix (MMDDYY)
+     * @return The highest pending reference, or null if there is none
+     */
+    public static String highestPendingReference(String prefix) {
+        CheckoutJournal journal = instance;
+        if (journal == null) {
+            return null;
+        }
+        Map.Entry<String, Pending> e = journal.pending.floorEntry(prefix + "999");
+        return e != null && e.getKey().startsWith(prefix) ? e.getKey() : null;
+    }
+
+    /**
+     * Opens and locks a journal file.
+     *
+     * @return The journal, or null if another program holds the lock
+     */
+    private static CheckoutJournal open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            CheckoutJournal journal = new CheckoutJournal(file, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE));
+            journal.load();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Saves the sales left in journal files no running terminal holds, then deletes the empty files
+    private static void recoverOthers(File own) {
+        File[] files = own.getAbsoluteFile().getParentFile().listFiles((dir, name) ->
+                name.equals("checkout.journal") || (name.startsWith("checkout-") && name.endsWith(".journal")));
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getAbsoluteFile().equals(own.getAbsoluteFile())) {
+                continue;
+            }
+            CheckoutJournal other;
+            try {
+                other = open(f);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not open checkout journal " + f.getName() + ": " + e.getMessage());
+                continue;
+            }
+            if (other == null) {
+                continue; // Another terminal is using it
+            }
+            boolean empty;
+            try {
+                other.drain();
+                empty = other.pending.isEmpty();
+            } finally {
+                try {
+                    other.channel.close();
+                } catch (IOException ignored) {
+                    // The lock is released when the process ends
+                }
+            }
+            // Windows keeps a mapped file until it is garbage collected; it is then deleted on a later start
+            if (empty && !f.delete()) {
+                f.deleteOnExit();
+            }
+        }
+    }
+
+    // Reads the header and the records of the current epoch
+    private void load() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT);
+            buffer.putLong(8, 1);
+            buffer.force(0, FILE_HEADER);
+        }
+        epoch = buffer.getLong(8);
+        int pos = FILE_HEADER;
+        while (true) {
+            Record r = read(pos);
+            if (r == null) break;
+            pending.put(r.sale.getId(), new Pending(r.cartHash, r.end, quantities(r.sale)));
+            pos = r.end;
+        }
+        writePos = durablePos = pos;
+        appliedPos = FILE_HEADER;
+    }
+
+    // Appends a sale and waits until it is on disk; returns null if the journal is full
+    private CheckoutDAO.Result append(Sale sale, String cartHash) throws IOException {
+        byte[] payload = encode(sale, cartHash);
+        lock.lock();
+        try {
+            int end;
+            Pending existing = pending.get(sale.getId());
+            if (existing != null) {
+                // A retry of a checkout that is already in the journal
+                if (!existing.cartHash.equals(cartHash)) {
+                    return CheckoutDAO.Result.REFERENCE_TAKEN;
+                }
+                end = existing.end;
+            } else {
+                if (writePos + RECORD_HEADER + payload.length > SIZE) {
+                    return null;
+                }
+                // Checked under the lock, so two checkouts of this terminal cannot both take the last stock
+                Map<Integer, Integer> batchQty = quantities(sale);
+                CheckoutDAO.Result refused = checkStock(sale.getId(), batchQty);
+                if (refused != null) {
+                    return refused;
+                }
+                buffer.putInt(writePos, payload.length);
+                buffer.putLong(writePos + 4, epoch);
+                buffer.putInt(writePos + 12, checksum(epoch, payload));
+                buffer.put(writePos + RECORD_HEADER, payload);
+                writePos += RECORD_HEADER + payload.length;
+                end = writePos;
+                pending.put(sale.getId(), new Pending(cartHash, end, batchQty));
+            }
+
+            // Group commit: one thread syncs everything written so far while the others wait
+            while (durablePos < end) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                int from = durablePos;
+                int to = writePos;
+                lock.unlock();
+                boolean ok = false;
+                try {
+                    buffer.force(from, to - from);
+                    ok = true;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    if (ok) {
+                        durablePos = Math.max(durablePos, to);
+                        hasWork.signalAll();
+                    }
+                    synced.signalAll();
+                }
+            }
+            return existing != null ? CheckoutDAO.Result.ALREADY_COMMITTED : CheckoutDAO.Result.COMMITTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Batch ID -> quantity of a sale's stock lines
+    private static Map<Integer, Integer> quantities(Sale sale) {
+        Map<Integer, Integer> batchQty = new HashMap<>();
+        for (SaleItem item : sale.getItems()) {
+            if (!item.isDiscount()) {
+                batchQty.merge(item.getProductId(), item.getQty(), Integer::sum);
+            }
+        }
+        return batchQty;
+    }
+
+    /**
+     * Checks that every batch of a sale has enough stock in the database, less
+     * what the sales waiting in this journal will take out (lock held).
+     *
+     * @return null if there is enough, STOCK_CHANGED if not, FAILED if the database could not be read
+     */
+    private CheckoutDAO.Result checkStock(String reference, Map<Integer, Integer> batchQty) {
+        Map<Integer, Integer> stock;
+        try {
+            stock = CheckoutDAO.getStock(batchQty.keySet());
+        } catch (SQLException e) {
+            System.err.println("Could not check the stock of sale " + reference + ": " + e.getMessage());
+            return CheckoutDAO.Result.FAILED;
+        }
+        // A sale is removed from pending only after its stock is out of the database,
+        // so for a moment it can be counted twice; that only errs on the safe side
+        for (Pending p : pending.values()) {
+            for (Map.Entry<Integer, Integer> e : p.batchQty.entrySet()) {
+                stock.computeIfPresent(e.getKey(), (id, qty) -> qty - e.getValue());
+            }
+        }
+        for (Map.Entry<Integer, Integer> e : batchQty.entrySet()) {
+            if (stock.getOrDefault(e.getKey(), 0) < e.getValue()) {
+                System.err.println("Checkout cancelled: not enough stock left in batch " + e.getKey());
+                return CheckoutDAO.Result.STOCK_CHANGED;
+            }
+        }
+        return null;
+    }
+
+    // The background thread: saves synced records into SQLite in batches
+    private void applyLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (appliedPos >= durablePos) {
+                    resetIfEmpty();
+                    hasWork.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!applyBatch()) {
+                try {
+                    // The database failed; the records stay in the journal for the next try
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Saves everything that is synced (used on startup)
+    private void drain() {
+        while (true) {
+            lock.lock();
+            try {
+                if (appliedPos >= durablePos) {
+                    resetIfEmpty();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!applyBatch()) {
+                return;
+            }
+        }
+    }
+
+    // Saves up to MAX_BATCH records in one transaction; returns false if the database failed
+    private boolean applyBatch() {
+        List<Record> batch = new ArrayList<>();
+        lock.lock();
+        try {
+            int pos = appliedPos;
+            while (batch.size() < MAX_BATCH && pos < durablePos) {
+                Record r = read(pos);
+                if (r == null) break;
+                batch.add(r);
+                pos = r.end;
+            }
+            if (batch.isEmpty()) {
+                if (appliedPos >= durablePos) {
+                    return false;
+                }
+                // A synced record cannot be read; set it aside so the records after it are not held up
+                quarantine(appliedPos);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Journaled sale -> the reference it was saved under, for the sales that had to be renamed
+        Map<Sale, String> renamed = new LinkedHashMap<>();
+        try {
+            DbWriteExecutor.execute("journal batch", conn -> {
+                // Filled again if the transaction is retried
+                renamed.clear();
+                for (Record r : batch) {
+                    String saved = CheckoutDAO.applyJournaled(conn, r.sale, r.cartHash);
+                    if (saved != null && !saved.equals(r.sale.getId())) {
+                        renamed.put(r.sale, saved);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Could not save journaled sales yet: " + e.getMessage());
+            return false;
+        }
+
+        lock.lock();
+        try {
+            appliedPos = batch.get(batch.size() - 1).end;
+            for (Record r : batch) {
+                pending.remove(r.sale.getId());
+            }
+        } finally {
+            lock.unlock();
+        }
+        BiConsumer<Sale, String> renameListener = onRenamed;
+        if (renameListener != null) {
+            renamed.forEach(renameListener);
+        }
+        Runnable listener = onApplied;
+        if (listener != null) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * Copies a damaged record to a .bad file next to the journal and skips it
+     * (lock held). Its sales are not saved; they are named in the error log.
+     * If its length is damaged too, the rest of the synced records is skipped.
+     */
+    private void quarantine(int pos) {
+        int length = buffer.getInt(pos);
+        int end = length > 0 && pos + RECORD_HEADER + length <= durablePos
+                ? pos + RECORD_HEADER + length : durablePos;
+        byte[] bytes = new byte[end - pos];
+        buffer.get(pos, bytes);
+        File bad = new File(file.getPath() + "." + System.currentTimeMillis() + ".bad");
+        try (FileOutputStream out = new FileOutputStream(bad)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            System.err.println("Could not save the damaged journal record: " + e.getMessage());
+        }
+
+        List<String> lost = new ArrayList<>();
+        pending.entrySet().removeIf(e -> {
+            boolean skipped = e.getValue().end > pos && e.getValue().end <= end;
+            if (skipped) lost.add(e.getKey());
+            return skipped;
+        });
+        System.err.println("Checkout journal record at " + pos + " is damaged and was moved to " + bad.getName()
+                + (lost.isEmpty() ? "" : "; sales not saved: " + String.join(", ", lost)));
+        appliedPos = end;
+    }
+
+    // Empties the journal by starting a new epoch once every record is saved (lock held)
+    private void resetIfEmpty() {
+        if (appliedPos == writePos && writePos > FILE_HEADER && !syncing) {
+            epoch++;
+            buffer.putLong(8, epoch);
+            buffer.force(0, FILE_HEADER);
+            writePos = durablePos = appliedPos = FILE_HEADER;
+        }
+    }
+
+    // Reads the record at a position; returns null at the end of the log or at a damaged record
+    private Record read(int pos) {
+        if (pos + RECORD_HEADER > SIZE) return null;
+        int length = buffer.getInt(pos);
+        if (length <= 0 || pos + RECORD_HEADER + length > SIZE) return null;
+        long recordEpoch = buffer.getLong(pos + 4);
+        if (recordEpoch != epoch) return null;
+        byte[] payload = new byte[length];
+        buffer.get(pos + RECORD_HEADER, payload);
+        if (buffer.getInt(pos + 12) != checksum(recordEpoch, payload)) return null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            in.readByte(); // record version
+            String reference = in.readUTF();
+            String cartHash = in.readUTF();
+            Sale sale = new Sale(reference, new Date(in.readLong()));
+            int items = in.readInt();
+            for (int i = 0; i < items; i++) {
+                int productId = in.readInt();
+                String name = in.readUTF();
+                double price = in.readDouble();
+                int qty = in.readInt();
+                sale.addItem(new SaleItem(productId, name, price, qty));
+            }
+            return new Record(sale, cartHash, pos + RECORD_HEADER + length);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(Sale sale, String cartHash) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeUTF(sale.getId());
+        out.writeUTF(cartHash);
+        out.writeLong(sale.getDate().getTime());
+        out.writeInt(sale.getItems().size());
+        for (SaleItem item : sale.getItems()) {
+            out.writeInt(item.getProductId());
+            out.writeUTF(item.getName());
+            out.writeDouble(item.getPrice());
+            out.writeInt(item.getQty());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(long epoch, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (epoch >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,31 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.InventoryBatch;
+
+/**
+ * This exception means a batch could not be saved because someone else
+ * (a checkout or another terminal) changed it after it was loaded.
+ * It carries the batch as it is now, so the caller can merge and try again.
+ */
+public class ConcurrentUpdateException extends Exception {
+
+    private final transient InventoryBatch current;
+
+    /**
+     * Creates the exception.
+     *
+     * @param id The batch ID
+     * @param current The batch as it is now in the database, or null if it was deleted
+     */
+    public ConcurrentUpdateException(int id, InventoryBatch current) {
+        super(current == null
+                ? "Batch " + id + " was deleted by someone else."
+                : "Batch " + id + " was changed by someone else.");
+        this.current = current;
+    }
+
+    /** @return The batch as it is now in the database, or null if it was deleted */
+    public InventoryBatch getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,324 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.Database;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs every database write of the application.
+ *
+ * Writes from this process are queued and run one at a time on a single
+ * "db-writer" thread, so two screens of the same terminal never fight over
+ * the SQLite write lock. Another terminal (or a long read) can still hold
+ * the lock, and SQLite then answers SQLITE_BUSY or SQLITE_LOCKED. The write
+ * is then tried again after a random, growing pause (exponential backoff
+ * with jitter) until it works or the deadline has passed.
+ *
+ * A write is retried from the start, so the work must only touch the
+ * database (no counters or lists changed inside it). The figures in
+ * {@link #getMetrics()} show how often writes had to wait, so contention
+ * can be seen before writes start failing.
+ */
+public final class DbWriteExecutor {
+
+    /**
+     * One database write. It may run more than once if the database is busy.
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        /**
+         * Does the write.
+         *
+         * @param conn The connection to use
+         * @return The result
+         * @throws SQLException If the write fails
+         */
+        T run(Connection conn) throws SQLException;
+    }
+
+    /** How long a write keeps retrying before it gives up. */
+    public static final long DEADLINE_MS = 10_000;
+    // The first pause, and the longest pause, between two tries
+    private static final long BASE_DELAY_MS = 10;
+    private static final long MAX_DELAY_MS = 500;
+
+    // SQLite result codes (the low byte of the extended codes)
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private static volatile Thread writerThread;
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-writer");
+        t.setDaemon(true);
+        writerThread = t;
+        return t;
+    });
+
+    private static final AtomicLong writes = new AtomicLong();
+    private static final AtomicLong retries = new AtomicLong();
+    private static final AtomicLong busyWrites = new AtomicLong();
+    private static final AtomicLong failedWrites = new AtomicLong();
+    private static final AtomicLong lockWaitNanos = new AtomicLong();
+    private static final AtomicLong maxLockWaitNanos = new AtomicLong();
+    private static final AtomicLong queueWaitNanos = new AtomicLong();
+
+    private DbWriteExecutor() {
+    }
+
+    /**
+     * Runs a write in its own transaction on a new connection.
+     * The transaction is committed if the work returns, and rolled back if it throws.
+     *
+     * @param name A short name for the log (e.g. "checkout")
+     * @param work The write
+     * @param <T> The result type
+     * @return The result of the work
+     * @throws SQLException If the write fails, or the database stayed busy until the deadline
+     */
+    public static <T> T execute(String name, Work<T> work) throws SQLException {
+        return submit(name, () -> {
+            try (Connection conn = Database.getConnection()) {
+                // Fail fast on a held lock; the backoff below does the waiting (and counts it)
+                setBusyTimeout(conn, 0);
+                conn.setAutoCommit(false);
+                try {
+                    T result = work.run(conn);
+                    conn.commit();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    rollbackQuietly(conn);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a write on a connection the caller already has open (for example
+     * the long-lived connection of the inventory screen). The connection is
+     * used as it is, so with auto-commit on every statement commits by itself.
+     * Its busy timeout is turned off during the write, so a held lock is waited
+     * for (and counted) by the backoff instead of inside the driver.
+     *
+     * @param conn The open connection
+     * @param name A short name for the log
+     * @param work The write
+     * @param <T> The result type
+     * @return The result of the work
+     * @throws SQLException If the write fails, or the database stayed busy until the deadline
+     */
+    public static <T> T execute(Connection conn, String name, Work<T> work) throws SQLException {
+        return submit(name, () -> {
+            int oldTimeout = setBusyTimeout(conn, 0);
+            try {
+                return work.run(conn);
+            } finally {
+                // Reads on this connection keep the driver's usual wait
+                setBusyTimeout(conn, oldTimeout);
+            }
+        });
+    }
+
+    // Sets how long SQLite itself waits for a lock; returns the old value in milliseconds
+    private static int setBusyTimeout(Connection conn, int millis) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            int old = 0;
+            try (java.sql.ResultSet rs = st.executeQuery("PRAGMA busy_timeout")) {
+                if (rs.next()) old = rs.getInt(1);
+            }
+            if (old != millis) {
+                st.execute("PRAGMA busy_timeout = " + millis);
+            }
+            return old;
+        }
+    }
+
+    // Queues the write on the writer thread (or runs it directly if this is the writer thread) and waits
+    private static <T> T submit(String name, Attempt<T> attempt) throws SQLException {
+        if (Thread.currentThread() == writerThread) {
+            // A write started from inside another write; queueing it would wait forever
+            return runWithRetry(name, attempt);
+        }
+        long queued = System.nanoTime();
+        Future<T> future = WRITER.submit(() -> {
+            queueWaitNanos.addAndGet(System.nanoTime() - queued);
+            return runWithRetry(name, attempt);
+        });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for " + name, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new SQLException(name + " failed", cause);
+        }
+    }
+
+    // One try of a write; called again when the database is busy
+    private interface Attempt<T> {
+        T run() throws SQLException;
+    }
+
+    private static <T> T runWithRetry(String name, Attempt<T> attempt) throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + DEADLINE_MS * 1_000_000L;
+        int tries = 0;
+        while (true) {
+            try {
+                T result = attempt.run();
+                writes.incrementAndGet();
+                if (tries > 0) {
+                    recordLockWait(System.nanoTime() - start);
+                }
+                return result;
+            } catch (SQLException e) {
+                if (!isBusy(e)) {
+                    failedWrites.incrementAndGet();
+                    throw e;
+                }
+                if (tries == 0) {
+                    busyWrites.incrementAndGet();
+                }
+                long delay = backoffMillis(tries);
+                if (System.nanoTime() + delay * 1_000_000L > deadline) {
+                    recordLockWait(System.nanoTime() - start);
+                    failedWrites.incrementAndGet();
+                    System.err.println("Database stayed busy, giving up on " + name + " after "
+                            + (tries + 1) + " tries: " + e.getMessage());
+                    throw e;
+                }
+                tries++;
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failedWrites.incrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the pause before the next try: a random time between 0 and
+     * BASE_DELAY_MS * 2^tries (at most MAX_DELAY_MS). The randomness keeps
+     * two terminals from retrying at the same moment again and again.
+     *
+     * @param tries The number of tries that already failed, minus one
+     * @return The pause in milliseconds (at least 1)
+     */
+    static long backoffMillis(int tries) {
+        long cap = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(tries, 16));
+        return 1 + ThreadLocalRandom.current().nextLong(cap);
+    }
+
+    /**
+     * Checks if an error means another connection holds the lock
+     * (SQLITE_BUSY or SQLITE_LOCKED, including their extended codes).
+     *
+     * @param e The error
+     * @return true if trying again later can work
+     */
+    public static boolean isBusy(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                int code = sql.getErrorCode() & 0xff;
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+            String msg = t.getMessage();
+            if (msg != null) {
+                String m = msg.toUpperCase(Locale.ROOT);
+                if (m.contains("SQLITE_BUSY") || m.contains("SQLITE_LOCKED") || m.contains("DATABASE IS LOCKED")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void recordLockWait(long nanos) {
+        lockWaitNanos.addAndGet(nanos);
+        maxLockWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println("Rollback failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the write figures since the application started.
+     *
+     * @return A snapshot of the figures
+     */
+    public static Metrics getMetrics() {
+        return new Metrics(writes.get(), retries.get(), busyWrites.get(), failedWrites.get(),
+                lockWaitNanos.get() / 1_000_000L, maxLockWaitNanos.get() / 1_000_000L,
+                queueWaitNanos.get() / 1_000_000L);
+    }
+
+    /**
+     * The write figures at one moment.
+     */
+    public static final class Metrics {
+        private final long writes;
+        private final long retries;
+        private final long busyWrites;
+        private final long failedWrites;
+        private final long lockWaitMillis;
+        private final long maxLockWaitMillis;
+        private final long queueWaitMillis;
+
+        Metrics(long writes, long retries, long busyWrites, long failedWrites,
+                long lockWaitMillis, long maxLockWaitMillis, long queueWaitMillis) {
+            this.writes = writes;
+            this.retries = retries;
+            this.busyWrites = busyWrites;
+            this.failedWrites = failedWrites;
+            this.lockWaitMillis = lockWaitMillis;
+            this.maxLockWaitMillis = maxLockWaitMillis;
+            this.queueWaitMillis = queueWaitMillis;
+        }
+
+        /** @return The writes that succeeded */
+        public long getWrites() { return writes; }
+        /** @return The extra tries made because the database was busy */
+        public long getRetries() { return retries; }
+        /** @return The writes that found the database busy at least once */
+        public long getBusyWrites() { return busyWrites; }
+        /** @return The writes that failed (errors, or still busy at the deadline) */
+        public long getFailedWrites() { return failedWrites; }
+        /** @return The total time writes spent waiting for the lock, in milliseconds */
+        public long getLockWaitMillis() { return lockWaitMillis; }
+        /** @return The longest wait for the lock, in milliseconds */
+        public long getMaxLockWaitMillis() { return maxLockWaitMillis; }
+        /** @return The total time writes spent queued behind other writes of this terminal, in milliseconds */
+        public long getQueueWaitMillis() { return queueWaitMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("DB writes: %d | busy: %d | retries: %d | lock wait: %d ms (max %d ms) | failed: %d",
+                    writes, busyWrites, retries, lockWaitMillis, maxLockWaitMillis, failedWrites);
+        }
+    }
+}
@@ -176,19 +176,22 @@ public class InventoryDAO {
         String sql = "INSERT INTO inventory (product_code, name, brand, color, type, price, qty, " +
                      "date_imported, expiration_date, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, batch.getProductCode());
-            ps.setString(2, batch.getName());
-            ps.setString(3, batch.getBrand());
-            ps.setString(4, batch.getColor());
-            ps.setString(5, batch.getType());
-            ps.setDouble(6, batch.getPrice());
-            ps.setInt(7, batch.getQuantity());
-            ps.setDate(8, batch.getDateImported() != null ? Date.valueOf(batch.getDateImported()) : null);
-            ps.setDate(9, batch.getExpirationDate() != null ? Date.valueOf(batch.getExpirationDate()) : null);
-            ps.setString(10, batch.getStatus());
-            
-            int rowsAffected = ps.executeUpdate();
+        try {
+            int rowsAffected = DbWriteExecutor.execute(conn, "add batch", c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, batch.getProductCode());
+                    ps.setString(2, batch.getName());
+                    ps.setString(3, batch.getBrand());
+                    ps.setString(4, batch.getColor());
+                    ps.setString(5, batch.getType());
+                    ps.setDouble(6, batch.getPrice());
+                    ps.setInt(7, batch.getQuantity());
+                    ps.setDate(8, batch.getDateImported() != null ? Date.valueOf(batch.getDateImported()) : null);
+                    ps.setDate(9, batch.getExpirationDate() != null ? Date.valueOf(batch.getExpirationDate()) : null);
+                    ps.setString(10, batch.getStatus());
+                    return ps.executeUpdate();
+                }
+            });
             return rowsAffected > 0;
         } catch (SQLException e) {
             System.err.println("Error inserting batch: " + e.getMessage());
@@ -218,30 +221,239 @@ public class InventoryDAO {
         return list;
     }
 
+    /**
+     * One page of inventory search results.
+     */
+    public static class SearchPage {
+        private final List<InventoryBatch> rows;
+        private final java.util.Map<Integer, String> highlightedNames;
+        private final int totalMatches;
+
+        SearchPage(List<InventoryBatch> rows, java.util.Map<Integer, String> highlightedNames, int totalMatches) {
+            this.rows = rows;
+            this.highlightedNames = highlightedNames;
+            this.totalMatches = totalMatches;
+        }
+
+        /** @return The batches on this page, best match first */
+        public List<InventoryBatch> getRows() { return rows; }
+
+        /**
+         * Gets a batch name with the matched words marked.
+         * Matches are wrapped in HIGHLIGHT_START / HIGHLIGHT_END characters.
+         *
+         * @param id The batch ID
+         * @return The marked name, or null if there is none
+         */
+        public String getHighlightedName(int id) { return highlightedNames.get(id); }
+
+        /** @return The number of matches on all pages */
+        public int getTotalMatches() { return totalMatches; }
+    }
+
+    /** Marks the start of a matched word in a highlighted name. */
+    public static final char HIGHLIGHT_START = '\u0002';
+    /** Marks the end of a matched word in a highlighted name. */
+    public static final char HIGHLIGHT_END = '\u0003';
+
+    /**
+     * Searches the inventory with the inventory_fts full-text index.
+     * Every word typed must match the start of a word in the product code, name,
+     * brand, color or type. Results are ranked with BM25 (name and code matches
+     * count most) and only the requested page is loaded.
+     * If full-text search is not available, a LIKE search is used instead.
+     *
+     * Searches run on a background thread, so they use their own connection.
+     *
+     * @param text The search text
+     * @param brand Only this brand, or null for all brands
+     * @param color Only this color, or null for all colors
+     * @param pageSize The number of rows per page
+     * @param page The page number, starting at 0
+     * @return The matching rows for that page
+     */
+    public SearchPage searchBatches(String text, String brand, String color, int pageSize, int page) {
+        List<String> words = new ArrayList<>();
+        for (String w : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) words.add(w);
+        }
+        if (words.isEmpty()) {
+            // Only punctuation was typed; an empty MATCH is a syntax error
+            return new SearchPage(new ArrayList<>(), new java.util.HashMap<>(), 0);
+        }
+        try (Connection c = LTBPaintCenter.model.Database.getConnection()) {
+            if (hasFullTextIndex(c)) {
+                return ftsSearch(c, words, brand, color, pageSize, page);
+            }
+            return likeSearch(c, words, brand, color, pageSize, page);
+        } catch (SQLException e) {
+            System.err.println("Error searching inventory: " + e.getMessage());
+            return new SearchPage(new ArrayList<>(), new java.util.HashMap<>(), 0);
+        }
+    }
+
+    // Whether DatabaseSetup could create inventory_fts (it is missing when SQLite has no FTS5)
+    private static volatile Boolean fullTextIndex;
+
+    private static boolean hasFullTextIndex(Connection c) throws SQLException {
+        Boolean known = fullTextIndex;
+        if (known == null) {
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(
+                         "SELECT 1 FROM sqlite_master WHERE type='table' AND name='inventory_fts'")) {
+                known = rs.next();
+            }
+            if (!known) {
+                System.err.println("Full-text index not found, searching inventory with LIKE");
+            }
+            fullTextIndex = known;
+        }
+        return known;
+    }
+
+    private SearchPage ftsSearch(Connection c, List<String> words, String brand, String color,
+                                 int pageSize, int page) throws SQLException {
+        // Each word becomes a quoted prefix query: "boy"* "whi"*
+        StringBuilder match = new StringBuilder();
+        for (String w : words) {
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(w.replace("\"", "\"\"")).append("\"*");
+        }
+        String where = " WHERE inventory_fts MATCH ? AND (? IS NULL OR i.brand = ?) AND (? IS NULL OR i.color = ?)";
+        String from = " FROM inventory_fts JOIN inventory i ON i.id = inventory_fts.rowid";
+
+        int total = 0;
+        try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*)" + from + where)) {
+            bindSearch(ps, match.toString(), brand, color);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) total = rs.getInt(1);
+            }
+        }
+
+        String sql = "SELECT i.*, highlight(inventory_fts, 1, char(2), char(3)) AS hl_name" + from + where +
+                " ORDER BY bm25(inventory_fts, 8.0, 10.0, 4.0, 2.0, 2.0) LIMIT ? OFFSET ?";
+        List<InventoryBatch> rows = new ArrayList<>();
+        java.util.Map<Integer, String> names = new java.util.HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int next = bindSearch(ps, match.toString(), brand, color);
+            ps.setInt(next, pageSize);
+            ps.setInt(next + 1, page * pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    InventoryBatch b = extractBatch(rs);
+                    rows.add(b);
+                    names.put(b.getId(), rs.getString("hl_name"));
+                }
+            }
+        }
+        return new SearchPage(rows, names, total);
+    }
+
+    private int bindSearch(PreparedStatement ps, String match, String brand, String color) throws SQLException {
+        ps.setString(1, match);
+        ps.setString(2, brand);
+        ps.setString(3, brand);
+        ps.setString(4, color);
+        ps.setString(5, color);
+        return 6;
+    }
+
+    private SearchPage likeSearch(Connection c, List<String> words, String brand, String color,
+                                  int pageSize, int page) throws SQLException {
+        StringBuilder where = new StringBuilder(" WHERE (? IS NULL OR brand = ?) AND (? IS NULL OR color = ?)");
+        for (int i = 0; i < words.size(); i++) {
+            where.append(" AND (LOWER(COALESCE(product_code,'') || ' ' || name || ' ' || brand || ' ' ||" +
+                    " COALESCE(color,'') || ' ' || COALESCE(type,'')) LIKE ?)");
+        }
+
+        int total = 0;
+        try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM inventory" + where)) {
+            bindLike(ps, words, brand, color);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) total = rs.getInt(1);
+            }
+        }
+
+        List<InventoryBatch> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT * FROM inventory" + where + " ORDER BY name LIMIT ? OFFSET ?")) {
+            int next = bindLike(ps, words, brand, color);
+            ps.setInt(next, pageSize);
+            ps.setInt(next + 1, page * pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(extractBatch(rs));
+            }
+        }
+        return new SearchPage(rows, new java.util.HashMap<>(), total);
+    }
+
+    private int bindLike(PreparedStatement ps, List<String> words, String brand, String color) throws SQLException {
+        ps.setString(1, brand);
+        ps.setString(2, brand);
+        ps.setString(3, color);
+        ps.setString(4, color);
+        int index = 5;
+        for (String w : words) {
+            ps.setString(index++, "%" + w + "%");
+        }
+        return index;
+    }
+
+    /**
+     * Gets one inventory batch.
+     *
+     * @param id The batch ID
+     * @return The batch, or null if it does not exist
+     */
+    public InventoryBatch getBatch(int id) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM inventory WHERE id=?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? extractBatch(rs) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving batch: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Updates an existing inventory batch in the database.
+     * The row is only written if its version is still the one the batch was
+     * loaded with; the version is then increased by one (and set on the batch).
      * 
      * @param batch The inventory batch with updated information
-     * @return true if successful, false otherwise
+     * @return true if successful, false if the database failed
+     * @throws ConcurrentUpdateException If the row was changed or deleted since it was loaded
      */
-    public boolean updateBatch(InventoryBatch batch) {
+    public boolean updateBatch(InventoryBatch batch) throws ConcurrentUpdateException {
         String sql = "UPDATE inventory SET product_code=?, name=?, brand=?, color=?, type=?, " +
-                     "price=?, qty=?, date_imported=?, expiration_date=?, status=? WHERE id=?";
+                     "price=?, qty=?, date_imported=?, expiration_date=?, status=?, version=version+1 " +
+                     "WHERE id=? AND version=?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, batch.getProductCode());
-            ps.setString(2, batch.getName());
-            ps.setString(3, batch.getBrand());
-            ps.setString(4, batch.getColor());
-            ps.setString(5, batch.getType());
-            ps.setDouble(6, batch.getPrice());
-            ps.setInt(7, batch.getQuantity());
-            ps.setDate(8, batch.getDateImported() != null ? Date.valueOf(batch.getDateImported()) : null);
-            ps.setDate(9, batch.getExpirationDate() != null ? Date.valueOf(batch.getExpirationDate()) : null);
-            ps.setString(10, batch.getStatus());
-            ps.setInt(11, batch.getId());
-            
-            return ps.executeUpdate() > 0;
+        try {
+            int rows = DbWriteExecutor.execute(conn, "update batch", c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, batch.getProductCode());
+                    ps.setString(2, batch.getName());
+                    ps.setString(3, batch.getBrand());
+                    ps.setString(4, batch.getColor());
+                    ps.setString(5, batch.getType());
+                    ps.setDouble(6, batch.getPrice());
+                    ps.setInt(7, batch.getQuantity());
+                    ps.setDate(8, batch.getDateImported() != null ? Date.valueOf(batch.getDateImported()) : null);
+                    ps.setDate(9, batch.getExpirationDate() != null ? Date.valueOf(batch.getExpirationDate()) : null);
+                    ps.setString(10, batch.getStatus());
+                    ps.setInt(11, batch.getId());
+                    ps.setInt(12, batch.getVersion());
+                    return ps.executeUpdate();
+                }
+            });
+            if (rows == 0) {
+                throw new ConcurrentUpdateException(batch.getId(), getBatch(batch.getId()));
+            }
+            batch.setVersion(batch.getVersion() + 1);
+            return true;
         } catch (SQLException e) {
             System.err.println("Error updating batch: " + e.getMessage());
             e.printStackTrace();
@@ -258,9 +470,13 @@ public class InventoryDAO {
     public boolean deleteBatch(int id) {
         String sql = "DELETE FROM inventory WHERE id=?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+        try {
+            return DbWriteExecutor.execute(conn, "delete batch", c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error deleting batch: " + e.getMessage());
             e.printStackTrace();
@@ -296,6 +512,13 @@ public class InventoryDAO {
         batch.setDateImported(readLocalDate(rs, "date_imported"));
         batch.setExpirationDate(readLocalDate(rs, "expiration_date"));
         batch.setStatus(rs.getString("status"));
+
+        // Try to get version, but don't fail if column doesn't exist
+        try {
+            batch.setVersion(rs.getInt("version"));
+        } catch (SQLException ignored) {
+            // Column might not exist in older databases
+        }
         
         return batch;
     }
@@ -309,7 +532,7 @@ public class InventoryDAO {
      * @return A LocalDate object, or null if the date is null or can't be parsed
      * @throws SQLException If there's an error reading from the database
      */
-    private LocalDate readLocalDate(ResultSet rs, String column) throws SQLException {
+    static LocalDate readLocalDate(ResultSet rs, String column) throws SQLException {
         Object val = rs.getObject(column);
         if (val == null) {
             return null;
@@ -392,7 +615,11 @@ public class InventoryDAO {
                 // Only update if status has changed
                 if (!newStatus.equals(batch.getStatus())) {
                     batch.setStatus(newStatus);
-                    updateBatch(batch);
+                    try {
+                        updateBatch(batch);
+                    } catch (ConcurrentUpdateException e) {
+                        // Changed while refreshing; its status is refreshed next time
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -5,6 +5,8 @@ import LTBPaintCenter.model.Product;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,6 +38,18 @@ public class ProductDAO {
                 expirationDate,
                 rs.getString("status")
         );
+        
+        // Try to get product_code, but don't fail if column doesn't exist
+        try {
+            product.setProductCode(rs.getString("product_code"));
+        } catch (SQLException ignored) {
+            // Column might not exist in older databases
+        }
+        try {
+            product.setVersion(rs.getInt("version"));
+        } catch (SQLException ignored) {
+            // Column might not exist in older databases
+        }
         return product;
     }
 
@@ -126,6 +140,38 @@ public class ProductDAO {
         return products;
     }
 
+    /**
+     * Gets the products with the given IDs. IDs that are not in the database
+     * (deleted products) are left out.
+     *
+     * @param ids The product IDs
+     * @return The products that exist
+     */
+    public static List<Product> getByIds(Collection<Integer> ids) {
+        List<Product> products = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        String sql = "SELECT * FROM inventory WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    products.add(fromResultSet(rs));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to load products: " + e.getMessage());
+        }
+
+        return products;
+    }
+
     /**
      * Gets all products that are available for Point of Sale.
      * Filters out expired products and products with zero quantity.
@@ -166,22 +212,23 @@ public class ProductDAO {
         String sql = "INSERT INTO inventory (name, brand, color, type, price, qty, " +
                      "date_imported, expiration_date, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, product.getName());
-            pstmt.setString(2, product.getBrand());
-            pstmt.setString(3, product.getColor());
-            pstmt.setString(4, product.getType());
-            pstmt.setDouble(5, product.getPrice());
-            pstmt.setInt(6, product.getQuantity());
-            pstmt.setDate(7, product.getDateImported() == null ? null : 
-                    Date.valueOf(product.getDateImported()));
-            pstmt.setDate(8, product.getExpirationDate() == null ? null : 
-                    Date.valueOf(product.getExpirationDate()));
-            pstmt.setString(9, product.getStatus());
-            
-            pstmt.executeUpdate();
+        try {
+            DbWriteExecutor.execute("add product", conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, product.getName());
+                    pstmt.setString(2, product.getBrand());
+                    pstmt.setString(3, product.getColor());
+                    pstmt.setString(4, product.getType());
+                    pstmt.setDouble(5, product.getPrice());
+                    pstmt.setInt(6, product.getQuantity());
+                    pstmt.setDate(7, product.getDateImported() == null ? null : 
+                            Date.valueOf(product.getDateImported()));
+                    pstmt.setDate(8, product.getExpirationDate() == null ? null : 
+                            Date.valueOf(product.getExpirationDate()));
+                    pstmt.setString(9, product.getStatus());
+                    return pstmt.executeUpdate();
+                }
+            });
         } catch (Exception e) {
             System.err.println("Failed to add product: " + e.getMessage());
         }
@@ -189,32 +236,45 @@ public class ProductDAO {
 
     /**
      * Updates an existing product in the database.
+     * The row is only written if its version is still the one the product was
+     * loaded with, so changes made in the meantime are never overwritten.
      * 
      * @param product The Product object with updated information
+     * @return true if saved, false if the row changed since it was loaded (or the database failed)
      */
-    public static void update(Product product) {
+    public static boolean update(Product product) {
         String sql = "UPDATE inventory SET name=?, brand=?, color=?, type=?, price=?, " +
-                     "qty=?, date_imported=?, expiration_date=?, status=? WHERE id=?";
+                     "qty=?, date_imported=?, expiration_date=?, status=?, version=version+1 " +
+                     "WHERE id=? AND version=?";
         
-        try (Connection conn = Database.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, product.getName());
-            pstmt.setString(2, product.getBrand());
-            pstmt.setString(3, product.getColor());
-            pstmt.setString(4, product.getType());
-            pstmt.setDouble(5, product.getPrice());
-            pstmt.setInt(6, product.getQuantity());
-            pstmt.setDate(7, product.getDateImported() == null ? null : 
-                    Date.valueOf(product.getDateImported()));
-            pstmt.setDate(8, product.getExpirationDate() == null ? null : 
-                    Date.valueOf(product.getExpirationDate()));
-            pstmt.setString(9, product.getStatus());
-            pstmt.setInt(10, product.getId());
-            
-            pstmt.executeUpdate();
+        try {
+            int rows = DbWriteExecutor.execute("update product", conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, product.getName());
+                    pstmt.setString(2, product.getBrand());
+                    pstmt.setString(3, product.getColor());
+                    pstmt.setString(4, product.getType());
+                    pstmt.setDouble(5, product.getPrice());
+                    pstmt.setInt(6, product.getQuantity());
+                    pstmt.setDate(7, product.getDateImported() == null ? null : 
+                            Date.valueOf(product.getDateImported()));
+                    pstmt.setDate(8, product.getExpirationDate() == null ? null : 
+                            Date.valueOf(product.getExpirationDate()));
+                    pstmt.setString(9, product.getStatus());
+                    pstmt.setInt(10, product.getId());
+                    pstmt.setInt(11, product.getVersion());
+                    return pstmt.executeUpdate();
+                }
+            });
+            if (rows == 0) {
+                System.err.println("Product " + product.getId() + " was changed by someone else; reload it and try again.");
+                return false;
+            }
+            product.setVersion(product.getVersion() + 1);
+            return true;
         } catch (Exception e) {
             System.err.println("Failed to update product: " + e.getMessage());
+            return false;
         }
     }
 
@@ -223,12 +283,16 @@ public class ProductDAO {
      * This is a maintenance function that should be run periodically.
      */
     public static void updateExpiredStatuses() {
-        String sql = "UPDATE inventory SET status='Expired' WHERE expiration_date IS NOT NULL " +
+        String sql = "UPDATE inventory SET status='Expired', version=version+1 WHERE COALESCE(status,'')<>'Expired' " +
+                     "AND expiration_date IS NOT NULL " +
                      "AND expiration_date < DATE('now')";
         
-        try (Connection conn = Database.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(sql);
+        try {
+            DbWriteExecutor.execute("mark expired", conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    return stmt.executeUpdate(sql);
+                }
+            });
         } catch (Exception e) {
             System.err.println("Failed to mark expired products: " + e.getMessage());
         }
@@ -0,0 +1,58 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.Database;
+import LTBPaintCenter.model.Promotion;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class handles database operations for promotion rules.
+ * Rules are only read here; they are entered into the promotions table directly.
+ */
+public class PromotionDAO {
+
+    /**
+     * Gets the promotions that are active today.
+     * A promotion is active when its active flag is set and today is
+     * between its start and end dates (a missing date means no limit).
+     *
+     * @return The active promotions, or an empty list if they can't be loaded
+     */
+    public static List<Promotion> getActivePromotions() {
+        List<Promotion> list = new ArrayList<>();
+        String sql = "SELECT * FROM promotions WHERE active = 1 " +
+                "AND (start_date IS NULL OR start_date = '' OR DATE(start_date) <= DATE('now', 'localtime')) " +
+                "AND (end_date IS NULL OR end_date = '' OR DATE(end_date) >= DATE('now', 'localtime')) " +
+                "ORDER BY id";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Promotion p = fromResultSet(rs);
+                if (p != null) list.add(p);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading promotions: " + e.getMessage());
+        }
+        return list;
+    }
+
+    // Returns null for rows with an unknown scope or discount type
+    private static Promotion fromResultSet(ResultSet rs) throws SQLException {
+        try {
+            return new Promotion(
+                    rs.getInt("id"),
+                    rs.getString("name"),
+                    Promotion.Scope.valueOf(rs.getString("scope").trim().toUpperCase()),
+                    rs.getString("scope_value"),
+                    Promotion.DiscountType.valueOf(rs.getString("discount_type").trim().toUpperCase()),
+                    rs.getDouble("discount_value"),
+                    rs.getInt("min_qty")
+            );
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println("Skipping promotion " + rs.getInt("id") + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package LTBPaintCenter.dao;
+
+import LTBPaintCenter.model.Database;
+import java.sql.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class handles the soft stock reservations of the POS carts.
+ *
+ * When a product goes into a cart, the terminal reserves that quantity for a
+ * limited time. Other terminals see the product's available-to-sell stock
+ * as its stock minus the live reservations of everyone else, so two cashiers
+ * cannot both put the last cans in their carts. Reservations are extended
+ * while the cart is in use, released when the cart is cleared, and the ones
+ * that ran out are deleted in one statement by sweepExpired().
+ *
+ * The product ID is the SKU ID used by the POS cart.
+ */
+public class ReservationDAO {
+
+    /** How long a reservation lasts without any cart activity, in seconds. */
+    public static final int TTL_SECONDS = 15 * 60;
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * Sets the quantity this terminal reserves of a product.
+     * The reservation is only made if the stock of the product's batches in the
+     * database, minus the live reservations of the other terminals, is enough.
+     * A quantity of 0 releases it.
+     *
+     * @param productId The product (SKU) ID
+     * @param terminalId The terminal
+     * @param qty The total quantity in this terminal's cart
+     * @param batchIds The IDs of the product's sellable batches (their stock is read from the database)
+     * @return true if the quantity is reserved (or released), false if there is not enough left
+     *         or the reservation could not be saved
+     */
+    public static boolean reserve(int productId, String terminalId, int qty, Collection<Integer> batchIds) {
+        if (qty <= 0) {
+            release(productId, terminalId);
+            return true;
+        }
+        if (batchIds.isEmpty()) {
+            return false;
+        }
+        long now = now();
+        String placeholders = String.join(", ", Collections.nCopies(batchIds.size(), "?"));
+        // One statement, so the check and the write cannot be split by another terminal or a sale
+        String sql = "INSERT INTO stock_reservations (product_id, terminal_id, qty, expires_at) " +
+                "SELECT ?, ?, ?, ? WHERE (SELECT COALESCE(SUM(MAX(qty, 0)), 0) FROM inventory WHERE id IN (" +
+                placeholders + ")) - COALESCE((SELECT SUM(qty) FROM stock_reservations " +
+                "WHERE product_id = ? AND terminal_id <> ? AND expires_at > ?), 0) >= ? " +
+                "ON CONFLICT(product_id, terminal_id) DO UPDATE SET qty = excluded.qty, expires_at = excluded.expires_at";
+        try {
+            return DbWriteExecutor.execute("reserve", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int i = 1;
+                    ps.setInt(i++, productId);
+                    ps.setString(i++, terminalId);
+                    ps.setInt(i++, qty);
+                    ps.setLong(i++, now + TTL_SECONDS);
+                    for (int batchId : batchIds) {
+                        ps.setInt(i++, batchId);
+                    }
+                    ps.setInt(i++, productId);
+                    ps.setString(i++, terminalId);
+                    ps.setLong(i++, now);
+                    ps.setInt(i, qty);
+                    return ps.executeUpdate() > 0;
+                }
+            });
+        } catch (SQLException e) {
+            // Not reserved: the cart line is refused rather than sold from stock nobody checked
+            System.err.println("Error reserving stock: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reserves the new cart quantity of a product (0 releases it). Any cart
+     * activity keeps the other lines reserved; if some of their reservations
+     * ran out, they are reserved again first.
+     *
+     * @param terminalId The terminal
+     * @param productId The product (SKU) ID
+     * @param qty The new cart quantity
+     * @param cart SKU ID -> quantity of every cart line, before this change
+     * @param batches SKU ID -> IDs of its sellable batches
+     * @return true if the quantity is reserved (or released)
+     */
+    public static boolean reserveInCart(String terminalId, int productId, int qty, Map<Integer, Integer> cart,
+                                        Map<Integer, ? extends Collection<Integer>> batches) {
+        if (extendAll(terminalId) < cart.size()) {
+            for (Map.Entry<Integer, Integer> line : cart.entrySet()) {
+                if (line.getKey() != productId) {
+                    reserve(line.getKey(), terminalId, line.getValue(),
+                            batches.containsKey(line.getKey()) ? batches.get(line.getKey()) : List.of());
+                }
+            }
+        }
+        return reserve(productId, terminalId, qty,
+                batches.containsKey(productId) ? batches.get(productId) : List.of());
+    }
+
+    /**
+     * Pushes back the expiry of all reservations of a terminal (called on cart activity).
+     *
+     * @param terminalId The terminal
+     * @return The number of live reservations that were extended
+     */
+    public static int extendAll(String terminalId) {
+        long now = now();
+        try {
+            return DbWriteExecutor.execute("extend reservations", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE stock_reservations SET expires_at = ? WHERE terminal_id = ? AND expires_at > ?")) {
+                    ps.setLong(1, now + TTL_SECONDS);
+                    ps.setString(2, terminalId);
+                    ps.setLong(3, now);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error extending reservations: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Releases the reservation of one product.
+     *
+     * @param productId The product (SKU) ID
+     * @param terminalId The terminal
+     */
+    public static void release(int productId, String terminalId) {
+        try {
+            DbWriteExecutor.execute("release reservation", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM stock_reservations WHERE product_id = ? AND terminal_id = ?")) {
+                    ps.setInt(1, productId);
+                    ps.setString(2, terminalId);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error releasing reservation: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Releases all reservations of a terminal (when its cart is cleared or checked out).
+     *
+     * @param terminalId The terminal
+     */
+    public static void releaseAll(String terminalId) {
+        try {
+            DbWriteExecutor.execute("release reservations", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM stock_reservations WHERE terminal_id = ?")) {
+                    ps.setString(1, terminalId);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error releasing reservations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the live reservations of all other terminals.
+     *
+     * @param terminalId This terminal (its own reservations are left out)
+     * @return Product (SKU) ID -> reserved quantity
+     */
+    public static Map<Integer, Integer> getReservedByOthers(String terminalId) {
+        Map<Integer, Integer> map = new HashMap<>();
+        String sql = "SELECT product_id, SUM(qty) FROM stock_reservations " +
+                "WHERE terminal_id <> ? AND expires_at > ? GROUP BY product_id";
+        try (Connection conn = Database.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, terminalId);
+            ps.setLong(2, now());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    map.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading reservations: " + e.getMessage());
+        }
+        return map;
+    }
+
+    /**
+     * Deletes all reservations that have run out, in one statement.
+     *
+     * @return The number of reservations deleted
+     */
+    public static int sweepExpired() {
+        long now = now();
+        try {
+            return DbWriteExecutor.execute("sweep reservations", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM stock_reservations WHERE expires_at <= ?")) {
+                    ps.setLong(1, now);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error sweeping reservations: " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -41,12 +41,18 @@ public final class SaleReferenceGenerator {
                 return buildFallbackId(datePrefix);
             }
 
-            String sql = "SELECT sale_reference FROM sales " +
-                    "WHERE sale_reference IS NOT NULL AND sale_reference LIKE ? " +
-                    "ORDER BY sale_reference DESC";
+            // Every saved sale has a header, and the header's primary key index
+            // answers this range without reading the sales rows. A sale saved under
+            // a renamed reference (like 101825003-T1) sorts above the plain ones,
+            // so only references that are exactly MMDDYY plus three digits are looked at
+            String sql = "SELECT sale_reference FROM sale_headers " +
+                    "WHERE sale_reference BETWEEN ? AND ? AND sale_reference GLOB ? " +
+                    "ORDER BY sale_reference DESC LIMIT 1";
 
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, datePrefix + "%");
+                ps.setString(1, datePrefix + "000");
+                ps.setString(2, datePrefix + "999");
+                ps.setString(3, datePrefix + "[0-9][0-9][0-9]");
 
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -76,6 +82,16 @@ public final class SaleReferenceGenerator {
             return datePrefix + "001";
         }
 
+        // Sales still in the checkout journal are not in sale_headers yet
+        String pending = CheckoutJournal.highestPendingReference(datePrefix);
+        if (pending != null && pending.length() == datePrefix.length() + 3) {
+            try {
+                maxIncrement = Math.max(maxIncrement, Integer.parseInt(pending.substring(datePrefix.length())));
+            } catch (NumberFormatException ignored) {
+                // Skip malformed codes
+            }
+        }
+
         int nextIncrement = maxIncrement + 1;
         return datePrefix + String.format("%03d", nextIncrement);
     }
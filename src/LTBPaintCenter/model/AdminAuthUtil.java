@@ -1,8 +1,10 @@
 package LTBPaintCenter.model;
 
 import LTBPaintCenter.dao.AdminDAO;
+import LTBPaintCenter.dao.AsyncDao;
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This utility class handles admin password authentication.
@@ -15,11 +17,13 @@ public final class AdminAuthUtil {
      * Shows a password dialog and verifies the admin password.
      * This is required before performing sensitive operations like
      * adding, updating, or deleting inventory items.
+     * The dialog is shown right away; the password is checked against the
+     * database in the background, so call this on the Swing event thread.
      * 
      * @param parent The parent component for the dialog (usually a JFrame or JPanel)
-     * @return true if password is correct, false otherwise
+     * @return Completes on the event thread with true if the password is correct, false otherwise
      */
-    public static boolean requireAdminPasswordPopup(Component parent) {
+    public static CompletableFuture<Boolean> requireAdminPasswordPopup(Component parent) {
         // Create a password field for user input
         JPasswordField passwordField = new JPasswordField();
         
@@ -33,24 +37,32 @@ public final class AdminAuthUtil {
         
         // If user cancelled, return false
         if (option != JOptionPane.OK_OPTION) {
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
         
         // Get the password from the field
         String password = new String(passwordField.getPassword());
         
-        // Verify the password against the database
-        boolean isValid = AdminDAO.verifyPassword(password);
-        
-        // If password is wrong, show an error message
-        if (!isValid) {
+        // Verify the password against the database in the background
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AsyncDao.onEdt(AsyncDao.supply("verify admin password", () -> AdminDAO.verifyPassword(password)), isValid -> {
+            // If password is wrong, show an error message
+            if (!isValid) {
+                JOptionPane.showMessageDialog(
+                        parent, 
+                        "Invalid admin password.", 
+                        "Access denied", 
+                        JOptionPane.WARNING_MESSAGE);
+            }
+            result.complete(isValid);
+        }, error -> {
             JOptionPane.showMessageDialog(
-                    parent, 
-                    "Invalid admin password.", 
-                    "Access denied", 
-                    JOptionPane.WARNING_MESSAGE);
-        }
-        
-        return isValid;
+                    parent,
+                    "The admin password could not be checked.",
+                    "Access denied",
+                    JOptionPane.ERROR_MESSAGE);
+            result.complete(false);
+        });
+        return result;
     }
 }
@@ -0,0 +1,135 @@
+package LTBPaintCenter.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds consolidated sales figures for several branches (stores),
+ * each read from its own database file. It has one Branch entry per file and
+ * the brand and type revenue of all branches added together.
+ */
+public class BranchReport {
+
+    /**
+     * The figures of one branch.
+     */
+    public static final class Branch {
+        private final String name;
+        private final File file;
+        private double revenue;
+        private long receipts;
+        private long units;
+        private final List<InventoryBatch> alerts = new ArrayList<>();
+        private String error;
+
+        /**
+         * @param name The branch name shown in the Monitoring panel
+         * @param file The branch database file
+         */
+        public Branch(String name, File file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        public String getName() { return name; }
+        public File getFile() { return file; }
+        public double getRevenue() { return revenue; }
+        public long getReceipts() { return receipts; }
+        public long getUnits() { return units; }
+        /** @return Batches that are low on stock, sold out, expired or expiring soon */
+        public List<InventoryBatch> getAlerts() { return alerts; }
+        /** @return Why the branch could not be read, or null if it was read */
+        public String getError() { return error; }
+
+        public void setTotals(double revenue, long receipts, long units) {
+            this.revenue = revenue;
+            this.receipts = receipts;
+            this.units = units;
+        }
+
+        public void setError(String error) { this.error = error; }
+    }
+
+    private final List<Branch> branches = new ArrayList<>();
+    private final Map<String, Double> brandTotals = new LinkedHashMap<>();
+    private final Map<String, Double> typeTotals = new LinkedHashMap<>();
+
+    /**
+     * Adds a branch. Branches are kept in the order they were added.
+     *
+     * @param branch The branch
+     */
+    public void addBranch(Branch branch) {
+        branches.add(branch);
+    }
+
+    /**
+     * Adds part of a branch's brand and type revenue to the totals.
+     *
+     * @param brand The brand name
+     * @param type The type name
+     * @param revenue The revenue in pesos
+     */
+    public void addRevenue(String brand, String type, double revenue) {
+        brandTotals.merge(brand, revenue, Double::sum);
+        typeTotals.merge(type, revenue, Double::sum);
+    }
+
+    /**
+     * Adds all branches and totals of another report to this one.
+     *
+     * @param other The report to merge in
+     */
+    public void merge(BranchReport other) {
+        branches.addAll(other.branches);
+        other.brandTotals.forEach((k, v) -> brandTotals.merge(k, v, Double::sum));
+        other.typeTotals.forEach((k, v) -> typeTotals.merge(k, v, Double::sum));
+    }
+
+    public List<Branch> getBranches() {
+        return Collections.unmodifiableList(branches);
+    }
+
+    /** @return Revenue by brand for all branches */
+    public Map<String, Double> getBrandTotals() {
+        return Collections.unmodifiableMap(brandTotals);
+    }
+
+    /** @return Revenue by type for all branches */
+    public Map<String, Double> getTypeTotals() {
+        return Collections.unmodifiableMap(typeTotals);
+    }
+
+    /** @return Revenue by branch name, for the chart (branches that failed are left out) */
+    public Map<String, Double> getBranchRevenue() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Branch b : branches) {
+            if (b.getError() == null) {
+                result.put(b.getName(), b.getRevenue());
+            }
+        }
+        return result;
+    }
+
+    public double getRevenue() {
+        double total = 0;
+        for (Branch b : branches) total += b.getRevenue();
+        return total;
+    }
+
+    public long getReceipts() {
+        long total = 0;
+        for (Branch b : branches) total += b.getReceipts();
+        return total;
+    }
+
+    public long getUnits() {
+        long total = 0;
+        for (Branch b : branches) total += b.getUnits();
+        return total;
+    }
+}
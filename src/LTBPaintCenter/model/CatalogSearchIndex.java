@@ -0,0 +1,420 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class is a search index over the products shown in the POS.
+ *
+ * Every product's name, brand, color, type and product code are split into
+ * lower-case tokens. Tokens are kept in a sorted map, so all tokens starting
+ * with a prefix are found with one ordered lookup. Names and codes are also
+ * indexed by trigrams (every 3-character piece), which finds matches in the
+ * middle of a word without scanning the catalog. Finally, a query word that
+ * is one typo away from the start of a token still matches, so "bou whi"
+ * finds "Boysen White".
+ *
+ * Results are ranked: exact token matches first, then prefix matches, then
+ * matches inside a word, then near matches. Every query word must match.
+ *
+ * The index can be updated one product at a time (put/remove) or synchronized
+ * with a whole product list; unchanged products are not re-indexed.
+ * All public methods are synchronized, so searches may run on a background
+ * thread while the event thread updates the index.
+ */
+public class CatalogSearchIndex {
+
+    // Scores per query word, highest wins
+    private static final int EXACT = 8;
+    private static final int PREFIX = 4;
+    private static final int INFIX = 2;
+    private static final int NEAR = 1;
+
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<Integer, Integer> slotOfProduct = new HashMap<>();
+
+    // Per-slot data (a slot is a product's position in these arrays)
+    private ProductBatch[] products = new ProductBatch[256];
+    private String[] nameAndCode = new String[256];   // folded, for infix checks
+    private String[][] slotTokens = new String[256][];
+    private long[][] slotTrigrams = new long[256][];
+    private int slotCount;
+    private final List<Integer> freeSlots = new ArrayList<>();
+
+    // Scratch arrays reused by every search (guarded by the object lock)
+    private int[] totalScore = new int[256];
+    private int[] termScore = new int[256];
+    private int[] termStamp = new int[256];
+    private int[] termsMatched = new int[256];
+    private int[] touched = new int[256];
+    private int stamp;
+
+    /**
+     * Makes the index contain exactly the given products.
+     * Products whose searchable text did not change keep their index entries.
+     *
+     * @param batches The current products
+     */
+    public synchronized void sync(Collection<ProductBatch> batches) {
+        Set<Integer> keep = new HashSet<>();
+        for (ProductBatch b : batches) {
+            keep.add(b.getId());
+            Integer slot = slotOfProduct.get(b.getId());
+            if (slot != null && sameText(products[slot], b)) {
+                products[slot] = b; // Only stock/price changed; tokens are still valid
+            } else {
+                put(b);
+            }
+        }
+        for (Integer id : new ArrayList<>(slotOfProduct.keySet())) {
+            if (!keep.contains(id)) {
+                remove(id);
+            }
+        }
+    }
+
+    /**
+     * Adds a product, or re-indexes it if it is already in the index.
+     *
+     * @param batch The product to index
+     */
+    public synchronized void put(ProductBatch batch) {
+        remove(batch.getId());
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.remove(freeSlots.size() - 1);
+        ensureCapacity(slot + 1);
+        products[slot] = batch;
+        slotOfProduct.put(batch.getId(), slot);
+
+        Set<String> words = new HashSet<>();
+        addWords(words, batch.getName());
+        addWords(words, batch.getBrand());
+        addWords(words, batch.getColor());
+        addWords(words, batch.getType());
+        addWords(words, batch.getProductCode());
+        slotTokens[slot] = words.toArray(new String[0]);
+        for (String word : slotTokens[slot]) {
+            tokens.computeIfAbsent(word, k -> new Postings()).add(slot);
+        }
+
+        String text = fold(batch.getName()) + " " + fold(batch.getProductCode());
+        nameAndCode[slot] = text;
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(trigram(text, i));
+        }
+        slotTrigrams[slot] = new long[grams.size()];
+        int g = 0;
+        for (Long gram : grams) {
+            slotTrigrams[slot][g++] = gram;
+            trigrams.computeIfAbsent(gram, k -> new Postings()).add(slot);
+        }
+    }
+
+    /**
+     * Removes a product from the index. Does nothing if it is not indexed.
+     *
+     * @param productId The product ID
+     */
+    public synchronized void remove(int productId) {
+        Integer slot = slotOfProduct.remove(productId);
+        if (slot == null) {
+            return;
+        }
+        for (String word : slotTokens[slot]) {
+            Postings p = tokens.get(word);
+            if (p != null && p.remove(slot) && p.size == 0) {
+                tokens.remove(word);
+            }
+        }
+        for (long gram : slotTrigrams[slot]) {
+            Postings p = trigrams.get(gram);
+            if (p != null && p.remove(slot) && p.size == 0) {
+                trigrams.remove(gram);
+            }
+        }
+        products[slot] = null;
+        nameAndCode[slot] = null;
+        slotTokens[slot] = null;
+        slotTrigrams[slot] = null;
+        freeSlots.add(slot);
+    }
+
+    /**
+     * Gets the number of indexed products.
+     *
+     * @return The product count
+     */
+    public synchronized int size() {
+        return slotOfProduct.size();
+    }
+
+    /**
+     * Finds the products matching every word of a query, best matches first.
+     * Products with the same score are ordered by name (case-insensitive).
+     *
+     * @param query The text typed by the user
+     * @return The matching products, ranked
+     */
+    public synchronized List<ProductBatch> search(String query) {
+        String[] terms = splitWords(fold(query));
+        if (terms.length == 0) {
+            return new ArrayList<>();
+        }
+
+        int touchedCount = 0;
+        for (int t = 0; t < terms.length; t++) {
+            String term = terms[t];
+            stamp++;
+
+            // 1. Exact token and 2. token prefix: one ordered walk from the term
+            for (Map.Entry<String, Postings> e : tokens.tailMap(term, true).entrySet()) {
+                if (!e.getKey().startsWith(term)) {
+                    break;
+                }
+                int score = e.getKey().length() == term.length() ? EXACT : PREFIX;
+                touchedCount = mark(e.getValue(), score, t, touchedCount);
+            }
+
+            if (term.length() >= 3) {
+                // 3. Inside a name or code: candidates from the rarest trigram, then verified
+                Postings rarest = null;
+                for (int i = 0; i + 3 <= term.length(); i++) {
+                    Postings p = trigrams.get(trigram(term, i));
+                    if (p == null) {
+                        rarest = null;
+                        break;
+                    }
+                    if (rarest == null || p.size < rarest.size) {
+                        rarest = p;
+                    }
+                }
+                if (rarest != null) {
+                    for (int i = 0; i < rarest.size; i++) {
+                        int slot = rarest.slots[i];
+                        if (nameAndCode[slot].contains(term)) {
+                            touchedCount = markSlot(slot, INFIX, t, touchedCount);
+                        }
+                    }
+                }
+
+                // 4. One typo away from the start of a token with the same first letter
+                //    (not for words with digits: codes and sizes must be typed exactly)
+                if (!hasDigit(term)) {
+                    String first = term.substring(0, 1);
+                    for (Map.Entry<String, Postings> e : tokens.tailMap(first, true).entrySet()) {
+                        String word = e.getKey();
+                        if (word.charAt(0) != term.charAt(0)) {
+                            break;
+                        }
+                        if (prefixWithinOneEdit(word, term)) {
+                            touchedCount = mark(e.getValue(), NEAR, t, touchedCount);
+                        }
+                    }
+                }
+            }
+
+            // Add this term's best score to each product it matched
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                if (termStamp[slot] == stamp && termScore[slot] > 0) {
+                    totalScore[slot] += termScore[slot];
+                    termsMatched[slot]++;
+                    termScore[slot] = 0;
+                }
+            }
+        }
+
+        List<Integer> hits = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (termsMatched[slot] == terms.length) {
+                hits.add(slot);
+            }
+        }
+        hits.sort((a, b) -> {
+            int c = Integer.compare(totalScore[b], totalScore[a]);
+            // nameAndCode starts with the folded name, so this orders ties by name
+            return c != 0 ? c : nameAndCode[a].compareTo(nameAndCode[b]);
+        });
+
+        // Reset the scratch arrays for the next search
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            totalScore[slot] = 0;
+            termsMatched[slot] = 0;
+        }
+
+        List<ProductBatch> result = new ArrayList<>(hits.size());
+        for (int slot : hits) {
+            result.add(products[slot]);
+        }
+        return result;
+    }
+
+    private int mark(Postings postings, int score, int term, int touchedCount) {
+        for (int i = 0; i < postings.size; i++) {
+            touchedCount = markSlot(postings.slots[i], score, term, touchedCount);
+        }
+        return touchedCount;
+    }
+
+    // Records a hit for the current term, keeping the best score per product
+    private int markSlot(int slot, int score, int term, int touchedCount) {
+        if (termStamp[slot] != stamp) {
+            if (term > 0 && termsMatched[slot] != term) {
+                return touchedCount; // Missed an earlier term; cannot match the whole query
+            }
+            termStamp[slot] = stamp;
+            termScore[slot] = 0;
+            // Only the first term adds products; later terms can only narrow them down
+            if (term == 0) {
+                touched[touchedCount++] = slot;
+            }
+        }
+        if (score > termScore[slot]) {
+            termScore[slot] = score;
+        }
+        return touchedCount;
+    }
+
+    /**
+     * Checks whether the start of a token is at most one edit (change, insert or
+     * delete of a character) away from the query word.
+     */
+    static boolean prefixWithinOneEdit(String token, String term) {
+        int n = term.length();
+        // Same length: at most one different character
+        if (token.length() >= n && mismatches(token, term, n) <= 1) {
+            return true;
+        }
+        // The term has one extra character: token prefix of length n - 1
+        if (token.length() >= n - 1 && oneDeletion(term, token, n - 1)) {
+            return true;
+        }
+        // The term is missing one character: token prefix of length n + 1
+        return token.length() >= n + 1 && oneDeletion(token, term, n);
+    }
+
+    private static int mismatches(String a, String b, int length) {
+        int diff = 0;
+        for (int i = 0; i < length && diff <= 1; i++) {
+            if (a.charAt(i) != b.charAt(i)) diff++;
+        }
+        return diff;
+    }
+
+    // True if deleting one character from the first (longer + 1) chars of "longer" gives shorter[0..length)
+    private static boolean oneDeletion(String longer, String shorter, int length) {
+        int i = 0;
+        while (i < length && longer.charAt(i) == shorter.charAt(i)) i++;
+        for (int j = i; j < length; j++) {
+            if (longer.charAt(j + 1) != shorter.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasDigit(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isDigit(s.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static boolean sameText(ProductBatch a, ProductBatch b) {
+        return a != null
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getBrand(), b.getBrand())
+                && Objects.equals(a.getColor(), b.getColor())
+                && Objects.equals(a.getType(), b.getType())
+                && Objects.equals(a.getProductCode(), b.getProductCode());
+    }
+
+    private static void addWords(Set<String> words, String text) {
+        words.addAll(Arrays.asList(splitWords(fold(text))));
+    }
+
+    private static String fold(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] splitWords(String folded) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // Packs 3 chars into a long, then multiplies by an odd constant so the keys
+    // stay unique but spread well across the hash table
+    private static long trigram(String s, int i) {
+        long packed = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        return packed * 0x9E3779B97F4A7C15L;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= products.length) {
+            return;
+        }
+        int capacity = Math.max(needed, products.length * 2);
+        products = Arrays.copyOf(products, capacity);
+        nameAndCode = Arrays.copyOf(nameAndCode, capacity);
+        slotTokens = Arrays.copyOf(slotTokens, capacity);
+        slotTrigrams = Arrays.copyOf(slotTrigrams, capacity);
+        totalScore = Arrays.copyOf(totalScore, capacity);
+        termScore = Arrays.copyOf(termScore, capacity);
+        termStamp = Arrays.copyOf(termStamp, capacity);
+        termsMatched = Arrays.copyOf(termsMatched, capacity);
+        touched = Arrays.copyOf(touched, capacity);
+    }
+
+    /**
+     * A sorted, growable set of slot numbers.
+     */
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            // New slots are usually the highest so far: plain append
+            int pos = size == 0 || slots[size - 1] < slot ? -size - 1 : Arrays.binarySearch(slots, 0, size, slot);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, pos, slots, pos + 1, size - pos);
+            slots[pos] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(slots, pos + 1, slots, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
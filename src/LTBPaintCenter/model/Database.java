@@ -17,6 +17,23 @@ public class Database {
     // JDBC URL for connecting to the SQLite database
     private static final String DB_URL = "jdbc:sqlite:" + DB_PATH;
 
+    // With -Dltb.edtcheck=true, every connection opened on the Swing event thread is reported
+    private static final boolean EDT_CHECK = Boolean.getBoolean("ltb.edtcheck");
+
+    /**
+     * Gets a file that is kept next to the database file (for example the checkout journal).
+     *
+     * @param name The file name
+     * @return The file in the database directory
+     */
+    public static java.io.File getDataFile(String name) {
+        java.io.File dir = new java.io.File(DB_PATH).getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        return new java.io.File(dir, name);
+    }
+
     /**
      * Gets a connection to the database.
      * Creates the directory if it doesn't exist.
@@ -31,6 +48,13 @@ public class Database {
             file.mkdirs();
         }
 
+        // Database work belongs on a background thread (see AsyncDao); name the caller that froze the window
+        if (EDT_CHECK && java.awt.EventQueue.isDispatchThread()) {
+            StackTraceElement[] stack = new Throwable().getStackTrace();
+            System.err.println("[Database] JDBC on the Swing event thread, called from "
+                    + (stack.length > 1 ? stack[1] : "unknown"));
+        }
+
         System.out.println("Using database at: " + DB_PATH);
         return DriverManager.getConnection(DB_URL);
     }
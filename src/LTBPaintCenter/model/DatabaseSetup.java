@@ -45,6 +45,16 @@ public class DatabaseSetup {
                 // Column already exists, which is fine
             }
 
+            // Row version for optimistic concurrency (every write adds 1)
+            try {
+                stmt.execute("ALTER TABLE inventory ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            } catch (Exception ignored) {
+                // Column already exists, which is fine
+            }
+
+            // Full-text search index over the inventory (kept in sync by triggers)
+            setupInventorySearch(stmt);
+
             // Create the sales table (stores all transactions)
             stmt.execute("""
                 CREATE TABLE IF NOT EXISTS sales (
@@ -67,6 +77,63 @@ public class DatabaseSetup {
                 // Column already exists, which is fine
             }
 
+            // One header row per committed sale. The reference is unique, so the same
+            // sale can never be saved twice; cart_hash tells a retry of the same cart apart
+            // from a different sale that happens to get the same reference
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS sale_headers (
+                    sale_reference TEXT PRIMARY KEY,
+                    cart_hash TEXT NOT NULL,
+                    terminal_id TEXT,
+                    total REAL NOT NULL DEFAULT 0,
+                    created_at TEXT DEFAULT (DATETIME('now'))
+                );
+            """);
+            // Sales saved before headers existed get one (their cart is unknown).
+            // Every later sale writes its own header, so this only has to run once
+            runOnce(conn, "sale_headers_backfill", """
+                INSERT OR IGNORE INTO sale_headers (sale_reference, cart_hash, total, created_at)
+                SELECT sale_reference, 'legacy', SUM(total), MIN(sale_date) FROM sales
+                WHERE sale_reference IS NOT NULL AND sale_reference <> ''
+                GROUP BY sale_reference
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_sales_reference ON sales(sale_reference)");
+
+            // Create the promotions table (brand promos, bulk and contractor discounts)
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS promotions (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    name TEXT NOT NULL,
+                    scope TEXT NOT NULL DEFAULT 'ALL',
+                    scope_value TEXT,
+                    discount_type TEXT NOT NULL DEFAULT 'PERCENT',
+                    discount_value REAL NOT NULL,
+                    min_qty INTEGER NOT NULL DEFAULT 1,
+                    start_date TEXT,
+                    end_date TEXT,
+                    active INTEGER NOT NULL DEFAULT 1
+                );
+            """);
+
+            // Create the stock_reservations table (stock held by carts on each POS terminal)
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS stock_reservations (
+                    product_id INTEGER NOT NULL,
+                    terminal_id TEXT NOT NULL,
+                    qty INTEGER NOT NULL,
+                    expires_at INTEGER NOT NULL,
+                    PRIMARY KEY (product_id, terminal_id)
+                ) WITHOUT ROWID;
+            """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reservations_expiry ON stock_reservations(expires_at)");
+
+            // Change log of inventory and sales changes, for syncing with other terminals
+            try {
+                setupChangeLog(conn, stmt);
+            } catch (SQLException e) {
+                System.err.println("Change log not available, syncing is off: " + e.getMessage());
+            }
+
             // Create the logs table (stores monitoring events and alerts)
             stmt.execute("""
                 CREATE TABLE IF NOT EXISTS logs (
@@ -117,4 +184,223 @@ public class DatabaseSetup {
             System.err.println("Database setup failed: " + e.getMessage());
         }
     }
+
+    /**
+     * Runs a one-time data migration, unless the schema_migrations table says
+     * it already ran. The migration and its record are saved together.
+     *
+     * @param conn The open connection (auto-commit on)
+     * @param name The name of the migration
+     * @param sql The statement to run
+     * @throws SQLException If the migration fails (it is then tried again on the next start)
+     */
+    private static void runOnce(Connection conn, String name, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS schema_migrations (
+                    name TEXT PRIMARY KEY,
+                    applied_at TEXT DEFAULT (DATETIME('now'))
+                );
+            """);
+        }
+        try (java.sql.PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM schema_migrations WHERE name = ?")) {
+            ps.setString(1, name);
+            try (java.sql.ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement();
+             java.sql.PreparedStatement done = conn.prepareStatement(
+                     "INSERT OR IGNORE INTO schema_migrations (name) VALUES (?)")) {
+            st.execute(sql);
+            done.setString(1, name);
+            done.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Creates the change log that other terminals sync from (see SyncEngine).
+     *
+     * Triggers write one row into change_log for every inventory insert,
+     * field change, quantity change and delete, and for every sales row.
+     * A quantity change is logged as the amount added or taken out, not the
+     * new quantity, so changes made on two terminals add up when merged.
+     * Every row gets the next number of its origin terminal, and sync_marks
+     * keeps the highest number seen per origin (the high-water marks).
+     * Nothing is logged while sync_applying has a row: changes that came from
+     * another terminal are logged by the sync engine under their own origin.
+     *
+     * @param conn The open connection
+     * @param stmt A statement on the connection
+     * @throws SQLException If the tables cannot be created
+     */
+    private static void setupChangeLog(Connection conn, Statement stmt) throws SQLException {
+        // A batch keeps the same ID on every terminal (rows that existed before are numbered by their local ID)
+        try {
+            stmt.execute("ALTER TABLE inventory ADD COLUMN sync_uid TEXT");
+        } catch (Exception ignored) {
+            // Column already exists, which is fine
+        }
+        stmt.execute("UPDATE inventory SET sync_uid = 'legacy-' || id WHERE sync_uid IS NULL");
+        stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_inventory_sync_uid ON inventory(sync_uid)");
+
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS change_log (
+                seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                origin_node TEXT NOT NULL,
+                origin_seq INTEGER NOT NULL,
+                table_name TEXT NOT NULL,
+                row_key TEXT NOT NULL,
+                op TEXT NOT NULL,
+                payload TEXT,
+                stamp TEXT NOT NULL,
+                UNIQUE (origin_node, origin_seq)
+            );
+        """);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_change_log_row ON change_log(row_key, op, stamp)");
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS sync_marks (
+                origin_node TEXT PRIMARY KEY,
+                high_seq INTEGER NOT NULL
+            ) WITHOUT ROWID;
+        """);
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS change_log_mark AFTER INSERT ON change_log BEGIN
+                INSERT INTO sync_marks (origin_node, high_seq) VALUES (new.origin_node, new.origin_seq)
+                ON CONFLICT(origin_node) DO UPDATE SET high_seq = MAX(high_seq, excluded.high_seq);
+            END;
+        """);
+        // The high-water marks of each peer at its last sync; changes every peer has are pruned
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS sync_acks (
+                peer TEXT NOT NULL,
+                origin_node TEXT NOT NULL,
+                high_seq INTEGER NOT NULL,
+                PRIMARY KEY (peer, origin_node)
+            ) WITHOUT ROWID;
+        """);
+        stmt.execute("CREATE TABLE IF NOT EXISTS sync_meta (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS sync_applying (flag INTEGER)");
+        // A crash while applying would leave the flag set and stop all logging
+        stmt.execute("DELETE FROM sync_applying");
+
+        // This terminal's name is its origin in the log (a copied database gets a new one)
+        try (java.sql.PreparedStatement ps = conn.prepareStatement(
+                "INSERT OR REPLACE INTO sync_meta (key, value) VALUES ('node_id', ?)")) {
+            ps.setString(1, Global.terminalId);
+            ps.executeUpdate();
+        }
+
+        String fields = "'product_code', i.product_code, 'name', i.name, 'brand', i.brand, 'color', i.color, "
+                + "'type', i.type, 'price', i.price, 'date_imported', i.date_imported, "
+                + "'expiration_date', i.expiration_date";
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS inventory_log_ai AFTER INSERT ON inventory BEGIN\n"
+                + "UPDATE inventory SET sync_uid = lower(hex(randomblob(16))) WHERE id = new.id AND sync_uid IS NULL;\n"
+                + logChange("'inventory'", "i.sync_uid", "INSERT", "json_object(" + fields + ", 'qty', i.qty)",
+                        "inventory i", "i.id = new.id")
+                + "END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS inventory_log_au AFTER UPDATE OF "
+                + "product_code, name, brand, color, type, price, date_imported, expiration_date ON inventory\n"
+                + "WHEN old.product_code IS NOT new.product_code OR old.name IS NOT new.name "
+                + "OR old.brand IS NOT new.brand OR old.color IS NOT new.color OR old.type IS NOT new.type "
+                + "OR old.price IS NOT new.price OR old.date_imported IS NOT new.date_imported "
+                + "OR old.expiration_date IS NOT new.expiration_date BEGIN\n"
+                + logChange("'inventory'", "i.sync_uid", "UPDATE", "json_object(" + fields + ")",
+                        "inventory i", "i.id = new.id")
+                + "END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS inventory_log_qty AFTER UPDATE OF qty ON inventory\n"
+                + "WHEN old.qty IS NOT new.qty BEGIN\n"
+                + logChange("'inventory'", "new.sync_uid", "QTY",
+                        "json_object('delta', COALESCE(new.qty, 0) - COALESCE(old.qty, 0))", null, null)
+                + "END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS inventory_log_ad AFTER DELETE ON inventory BEGIN\n"
+                + logChange("'inventory'", "old.sync_uid", "DELETE", "NULL", null, null)
+                + "END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS sales_log_ai AFTER INSERT ON sales BEGIN\n"
+                + logChange("'sales'", "COALESCE(new.sale_reference, '')", "INSERT",
+                        "json_object('product_uid', (SELECT sync_uid FROM inventory WHERE id = new.product_id), "
+                        + "'product_name', new.product_name, 'quantity', new.quantity, 'price', new.price, "
+                        + "'total', new.total, 'sale_date', new.sale_date, 'terminal_id', "
+                        + "(SELECT terminal_id FROM sale_headers WHERE sale_reference = new.sale_reference))",
+                        null, null)
+                + "END;");
+    }
+
+    // Builds the statement a trigger uses to add one change to the log
+    private static String logChange(String table, String rowKey, String op, String payload,
+                                    String from, String where) {
+        return "INSERT INTO change_log (origin_node, origin_seq, table_name, row_key, op, payload, stamp)\n"
+                + "SELECT m.value, COALESCE((SELECT high_seq FROM sync_marks WHERE origin_node = m.value), 0) + 1, "
+                + table + ", " + rowKey + ", '" + op + "', " + payload + ", "
+                + "printf('%013d|%s', CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER), m.value)\n"
+                + "FROM sync_meta m" + (from != null ? ", " + from : "") + "\n"
+                + "WHERE m.key = 'node_id' AND NOT EXISTS (SELECT 1 FROM sync_applying)"
+                + (where != null ? " AND " + where : "") + ";\n";
+    }
+
+    /**
+     * Creates the inventory_fts full-text table (SQLite FTS5) and the triggers
+     * that copy every insert, update and delete on inventory into it.
+     * The table only stores the index; the text is read back from inventory.
+     * If this SQLite build has no FTS5, searches fall back to LIKE queries.
+     *
+     * @param stmt A statement on the open connection
+     */
+    private static void setupInventorySearch(Statement stmt) {
+        try {
+            boolean exists;
+            try (java.sql.ResultSet rs = stmt.executeQuery(
+                    "SELECT 1 FROM sqlite_master WHERE type='table' AND name='inventory_fts'")) {
+                exists = rs.next();
+            }
+
+            stmt.execute("""
+                CREATE VIRTUAL TABLE IF NOT EXISTS inventory_fts USING fts5(
+                    product_code, name, brand, color, type,
+                    content='inventory', content_rowid='id',
+                    tokenize='unicode61 remove_diacritics 2',
+                    prefix='2 3'
+                );
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS inventory_fts_ai AFTER INSERT ON inventory BEGIN
+                    INSERT INTO inventory_fts(rowid, product_code, name, brand, color, type)
+                    VALUES (new.id, new.product_code, new.name, new.brand, new.color, new.type);
+                END;
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS inventory_fts_ad AFTER DELETE ON inventory BEGIN
+                    INSERT INTO inventory_fts(inventory_fts, rowid, product_code, name, brand, color, type)
+                    VALUES ('delete', old.id, old.product_code, old.name, old.brand, old.color, old.type);
+                END;
+            """);
+            // Only re-index when a searchable column changes (not on every stock update)
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS inventory_fts_au
+                AFTER UPDATE OF product_code, name, brand, color, type ON inventory BEGIN
+                    INSERT INTO inventory_fts(inventory_fts, rowid, product_code, name, brand, color, type)
+                    VALUES ('delete', old.id, old.product_code, old.name, old.brand, old.color, old.type);
+                    INSERT INTO inventory_fts(rowid, product_code, name, brand, color, type)
+                    VALUES (new.id, new.product_code, new.name, new.brand, new.color, new.type);
+                END;
+            """);
+
+            // Index the rows that existed before the search table was created
+            if (!exists) {
+                stmt.execute("INSERT INTO inventory_fts(inventory_fts) VALUES ('rebuild')");
+            }
+        } catch (SQLException e) {
+            System.err.println("Full-text search not available, using simple search: " + e.getMessage());
+        }
+    }
 }
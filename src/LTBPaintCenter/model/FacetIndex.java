@@ -0,0 +1,331 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class filters a product list by facets (brand, color, type, ...) using bitsets.
+ *
+ * Each facet value is dictionary-encoded to a small integer ID, and for every
+ * value the index keeps one bit per row (a long[] of 64-row words) telling
+ * which rows have that value. Filtering by several facets is then a word-by-word
+ * AND, and the number of rows for a combo entry is a popcount of that AND,
+ * so nothing compares strings after the index is built.
+ *
+ * The rows are also presorted by name and by price once, so a sorted result
+ * is just a walk over the presorted rows that keeps the ones whose bit is set.
+ *
+ * The index is built once per product list and never changed afterwards,
+ * so it can be read from a background search thread.
+ *
+ * @param <T> The type of the rows (for example ProductBatch)
+ */
+public class FacetIndex<T> {
+
+    /** The order of the rows returned by items(). */
+    public enum Order { NAME, PRICE_LOW_HIGH, PRICE_HIGH_LOW, RELEVANCE }
+
+    private final List<T> items;
+    private final int words;
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+
+    // Per facet: value ID -> value (sorted A-Z), value -> value ID, and value ID -> row bits
+    private final String[][] values;
+    private final List<Map<String, Integer>> valueIds = new ArrayList<>();
+    private final long[][][] bits;
+
+    private final int[] byName;
+    private final int[] byPrice;
+
+    /**
+     * Builds the index in one pass over the rows.
+     *
+     * @param items The rows; the list is copied
+     * @param idOf Gets the unique ID of a row
+     * @param nameOf Gets the name used for A-Z sorting
+     * @param priceOf Gets the price used for price sorting
+     * @param facets One function per facet that gets the row's value (null or blank means none)
+     */
+    public FacetIndex(List<T> items, ToIntFunction<T> idOf, Function<T, String> nameOf,
+                      ToDoubleFunction<T> priceOf, List<Function<T, String>> facets) {
+        this.items = List.copyOf(items);
+        int n = this.items.size();
+        this.words = (n + 63) >>> 6;
+        this.values = new String[facets.size()][];
+        this.bits = new long[facets.size()][][];
+
+        for (int row = 0; row < n; row++) {
+            rowById.put(idOf.applyAsInt(this.items.get(row)), row);
+        }
+
+        for (int f = 0; f < facets.size(); f++) {
+            Function<T, String> valueOf = facets.get(f);
+
+            // Encode in first-seen order, then renumber so the IDs follow A-Z order
+            Map<String, Integer> seen = new HashMap<>();
+            int[] rowValue = new int[n];
+            for (int row = 0; row < n; row++) {
+                String v = valueOf.apply(this.items.get(row));
+                if (v == null || v.isBlank()) {
+                    rowValue[row] = -1;
+                    continue;
+                }
+                Integer id = seen.get(v);
+                if (id == null) {
+                    id = seen.size();
+                    seen.put(v, id);
+                }
+                rowValue[row] = id;
+            }
+
+            String[] sorted = seen.keySet().toArray(new String[0]);
+            Arrays.sort(sorted);
+            int[] renumber = new int[sorted.length];
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < sorted.length; i++) {
+                ids.put(sorted[i], i);
+                renumber[seen.get(sorted[i])] = i;
+            }
+
+            long[][] valueBits = new long[sorted.length][words];
+            for (int row = 0; row < n; row++) {
+                if (rowValue[row] >= 0) {
+                    valueBits[renumber[rowValue[row]]][row >>> 6] |= 1L << row;
+                }
+            }
+            values[f] = sorted;
+            valueIds.add(ids);
+            bits[f] = valueBits;
+        }
+
+        byName = sortByName(nameOf);
+        byPrice = sortByPrice(priceOf);
+    }
+
+    private int[] sortByName(Function<T, String> nameOf) {
+        // Lower-case once instead of comparing case-insensitively in every comparison
+        String[] keys = new String[items.size()];
+        Integer[] rows = new Integer[items.size()];
+        for (int i = 0; i < rows.length; i++) {
+            String name = nameOf.apply(items.get(i));
+            keys[i] = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            rows[i] = i;
+        }
+        Arrays.sort(rows, (a, b) -> keys[a].compareTo(keys[b]));
+        int[] result = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) result[i] = rows[i];
+        return result;
+    }
+
+    private int[] sortByPrice(ToDoubleFunction<T> priceOf) {
+        // Pack (price in cents, row) into one long so a primitive sort does the work
+        long[] packed = new long[items.size()];
+        for (int i = 0; i < packed.length; i++) {
+            long cents = Math.round(priceOf.applyAsDouble(items.get(i)) * 100);
+            cents = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, cents));
+            packed[i] = (cents << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] result = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) result[i] = (int) packed[i];
+        return result;
+    }
+
+    /** @return The number of rows */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Gets the distinct values of a facet, sorted A-Z.
+     *
+     * @param facet The facet number (its position in the constructor list)
+     * @return The values
+     */
+    public List<String> getValues(int facet) {
+        return List.of(values[facet]);
+    }
+
+    /**
+     * Gets the rows of a ranked list (for example search results) as a bitset.
+     * Rows that are not in this index are skipped.
+     *
+     * @param ranked The rows
+     * @param idOf Gets the unique ID of a row
+     * @return One bit per row of this index
+     */
+    public long[] rowsOf(List<T> ranked, ToIntFunction<T> idOf) {
+        long[] rows = new long[words];
+        for (T item : ranked) {
+            Integer row = rowById.get(idOf.applyAsInt(item));
+            if (row != null) {
+                rows[row >>> 6] |= 1L << row;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Filters the rows and counts, for every facet value, how many rows
+     * would be left if that value were picked instead of the current one.
+     *
+     * @param selected The picked value per facet, or null for "all"
+     * @param base Only rows set here are considered (for example the search matches), or null for all rows
+     * @return The filtered rows and the counts for the combo boxes
+     */
+    public Selection query(String[] selected, long[] base) {
+        long[] start = base != null ? base.clone() : allRows();
+
+        // Bits of each picked value (null = no filter; an unknown value matches nothing)
+        long[][] picked = new long[values.length][];
+        for (int f = 0; f < values.length; f++) {
+            if (selected[f] != null) {
+                Integer id = valueIds.get(f).get(selected[f]);
+                picked[f] = id != null ? bits[f][id] : new long[words];
+            }
+        }
+
+        long[] rows = start.clone();
+        for (long[] p : picked) {
+            if (p != null) and(rows, p);
+        }
+
+        // A facet's own choice is left out of its counts, so other values still show their totals
+        int[][] counts = new int[values.length][];
+        int[] totals = new int[values.length];
+        for (int f = 0; f < values.length; f++) {
+            long[] others = start.clone();
+            for (int g = 0; g < values.length; g++) {
+                if (g != f && picked[g] != null) and(others, picked[g]);
+            }
+            totals[f] = cardinality(others);
+            counts[f] = new int[values[f].length];
+            for (int v = 0; v < counts[f].length; v++) {
+                counts[f][v] = andCardinality(others, bits[f][v]);
+            }
+        }
+        return new Selection(rows, counts, totals);
+    }
+
+    /**
+     * Lists the rows of a selection in the given order.
+     *
+     * @param rows The rows to list, as returned by Selection.getRows()
+     * @param ranked The ranked list used for RELEVANCE order (ignored for other orders)
+     * @param idOf Gets the unique ID of a row (used for RELEVANCE order)
+     * @param order The order of the result
+     * @return The rows
+     */
+    public List<T> items(long[] rows, List<T> ranked, ToIntFunction<T> idOf, Order order) {
+        List<T> list = new ArrayList<>();
+        switch (order) {
+            case RELEVANCE -> {
+                for (T item : ranked) {
+                    Integer row = rowById.get(idOf.applyAsInt(item));
+                    if (row != null && contains(rows, row)) list.add(items.get(row));
+                }
+            }
+            case PRICE_LOW_HIGH -> {
+                for (int row : byPrice) {
+                    if (contains(rows, row)) list.add(items.get(row));
+                }
+            }
+            case PRICE_HIGH_LOW -> {
+                for (int i = byPrice.length - 1; i >= 0; i--) {
+                    if (contains(rows, byPrice[i])) list.add(items.get(byPrice[i]));
+                }
+            }
+            default -> {
+                for (int row : byName) {
+                    if (contains(rows, row)) list.add(items.get(row));
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Checks if a row is set in a bitset.
+     *
+     * @param rows The bitset
+     * @param row The row number
+     * @return true if the row is set
+     */
+    public static boolean contains(long[] rows, int row) {
+        return (rows[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private long[] allRows() {
+        long[] rows = new long[words];
+        Arrays.fill(rows, -1L);
+        int tail = items.size() & 63;
+        if (tail != 0) {
+            rows[words - 1] = (1L << tail) - 1;
+        }
+        return rows;
+    }
+
+    private static void and(long[] into, long[] other) {
+        for (int i = 0; i < into.length; i++) into[i] &= other[i];
+    }
+
+    private static int cardinality(long[] rows) {
+        int count = 0;
+        for (long w : rows) count += Long.bitCount(w);
+        return count;
+    }
+
+    private static int andCardinality(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+    /**
+     * The result of a facet query: the matching rows and the combo counts.
+     */
+    public class Selection {
+        private final long[] rows;
+        private final int[][] counts;
+        private final int[] totals;
+
+        Selection(long[] rows, int[][] counts, int[] totals) {
+            this.rows = rows;
+            this.counts = counts;
+            this.totals = totals;
+        }
+
+        /** @return One bit per row; set when the row matches every filter */
+        public long[] getRows() { return rows; }
+
+        /** @return The number of matching rows */
+        public int getMatchCount() { return cardinality(rows); }
+
+        /**
+         * Gets how many rows there would be with this facet value picked.
+         *
+         * @param facet The facet number
+         * @param value The facet value
+         * @return The count, or 0 if the value is not in the index
+         */
+        public int getCount(int facet, String value) {
+            Integer id = value == null ? null : valueIds.get(facet).get(value);
+            return id == null ? 0 : counts[facet][id];
+        }
+
+        /**
+         * Gets how many rows there would be with "all" picked for this facet.
+         *
+         * @param facet The facet number
+         * @return The count
+         */
+        public int getTotal(int facet) { return totals[facet]; }
+    }
+}
@@ -20,6 +20,12 @@ public class Global {
     public static InventoryController inventoryController;
     public static MonitoringController monitoringController;
 
+    // Held while the app runs, so another instance on this computer picks a different terminal ID
+    private static java.nio.channels.FileLock terminalLock;
+
+    // Identifies this POS terminal for stock reservations (set with -Dltb.terminal=NAME)
+    public static final String terminalId = initTerminalId();
+
     // User session information
     public static String currentUser = null;
     public static boolean isAdminMode = false;
@@ -32,4 +38,80 @@ public class Global {
     public static boolean isAdmin() {
         return isAdminMode;
     }
+
+    /**
+     * Works out the terminal ID: the ltb.terminal system property, or else the
+     * computer name plus a random suffix.
+     *
+     * The suffix is saved in ~/.ltbpaintcenter/terminal-N.id, so the terminal
+     * keeps its ID after a restart (and can release its old reservations).
+     * Every running instance locks one of these files, so a second instance
+     * on the same computer takes the next file and gets its own ID.
+     *
+     * @return The terminal ID
+     */
+    private static String initTerminalId() {
+        String id = System.getProperty("ltb.terminal");
+        if (id != null && !id.isBlank()) {
+            return id.trim();
+        }
+        String host;
+        try {
+            host = java.net.InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "terminal";
+        }
+
+        java.io.File dir = new java.io.File(System.getProperty("user.home"), ".ltbpaintcenter");
+        dir.mkdirs();
+        for (int slot = 1; slot <= 32; slot++) {
+            java.nio.file.Path file = new java.io.File(dir, "terminal-" + slot + ".id").toPath();
+            java.nio.channels.FileChannel channel = null;
+            try {
+                channel = java.nio.channels.FileChannel.open(file,
+                        java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,
+                        java.nio.file.StandardOpenOption.WRITE);
+                java.nio.channels.FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    closeQuietly(channel); // Another instance uses this one
+                    continue;
+                }
+                // Read through the locked channel (Windows blocks other readers of a locked file)
+                java.nio.ByteBuffer saved = java.nio.ByteBuffer.allocate(64);
+                channel.read(saved, 0);
+                String suffix = new String(saved.array(), 0, saved.position(),
+                        java.nio.charset.StandardCharsets.UTF_8).trim();
+                if (suffix.isEmpty()) {
+                    suffix = randomSuffix();
+                    channel.write(java.nio.ByteBuffer.wrap(suffix.getBytes(java.nio.charset.StandardCharsets.UTF_8)), 0);
+                    channel.force(true);
+                }
+                // Kept open for as long as the program runs, so the lock holds
+                terminalLock = lock;
+                return host + "-" + suffix;
+            } catch (java.nio.channels.OverlappingFileLockException e) {
+                // Locked by this same program already; try the next file
+                closeQuietly(channel);
+            } catch (java.io.IOException e) {
+                System.err.println("Could not save the terminal ID: " + e.getMessage());
+                closeQuietly(channel);
+                break;
+            }
+        }
+        // Unique for this run only
+        return host + "-" + randomSuffix();
+    }
+
+    private static void closeQuietly(java.nio.channels.FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close(); // Also releases its lock
+        } catch (java.io.IOException ignored) {
+            // Nothing left to do with it
+        }
+    }
+
+    private static String randomSuffix() {
+        return String.format("%06x", new java.security.SecureRandom().nextInt(1 << 24));
+    }
 }
@@ -75,6 +75,7 @@ public class Inventory {
             if (product.getStatus() != null) {
                 batch.setStatus(product.getStatus());
             }
+            batch.setProductCode(product.getProductCode());
             
             batches.add(batch);
         }
@@ -82,6 +83,16 @@ public class Inventory {
         return batches;
     }
 
+    /**
+     * Groups the batches into SKUs (same name, brand, color and type).
+     * Each SKU keeps its sellable batches in first-expired-first-out order.
+     *
+     * @return SKU ID -> SKU
+     */
+    public Map<Integer, Sku> getSkus() {
+        return Sku.byId(getAllBatches());
+    }
+
     /**
      * Updates the quantity of a product.
      * Adds or subtracts from the current quantity.
@@ -21,6 +21,7 @@ public class InventoryBatch {
     private LocalDate dateImported;
     private LocalDate expirationDate;
     private String status;  // "Active", "Expired", "Low Stock", "Out of Stock", etc.
+    private int version;    // Row version in the database, used to detect concurrent changes
 
     /**
      * Default constructor - creates an empty batch.
@@ -146,8 +147,84 @@ public class InventoryBatch {
         this.status = status; 
     }
 
+    public int getVersion() { 
+        return version; 
+    }
+    
+    public void setVersion(int version) { 
+        this.version = version; 
+    }
+
+    /**
+     * Merges an edit with changes someone else saved since the edit started.
+     *
+     * Each field keeps the edited value if only the editor changed it, and the
+     * saved value if only the other writer changed it. If both changed the same
+     * field, the edit wins. The quantity is merged as a change instead: the
+     * editor's adjustment (edited - original) is applied to the saved quantity,
+     * so checkouts made in the meantime are not lost.
+     *
+     * @param base The batch as it was when the edit started
+     * @param mine The edited batch
+     * @param theirs The batch as it is now in the database
+     * @return The merged batch, with the version of theirs
+     */
+    public static InventoryBatch merge(InventoryBatch base, InventoryBatch mine, InventoryBatch theirs) {
+        InventoryBatch m = new InventoryBatch(theirs.id,
+                pick(base.productCode, mine.productCode, theirs.productCode),
+                pick(base.name, mine.name, theirs.name),
+                pick(base.brand, mine.brand, theirs.brand),
+                pick(base.color, mine.color, theirs.color),
+                pick(base.type, mine.type, theirs.type),
+                pick(base.price, mine.price, theirs.price),
+                Math.max(0, theirs.quantity + (mine.quantity - base.quantity)),
+                pick(base.dateImported, mine.dateImported, theirs.dateImported),
+                pick(base.expirationDate, mine.expirationDate, theirs.expirationDate),
+                theirs.status);
+        m.setVersion(theirs.version);
+        return m;
+    }
+
+    // The edited value if the editor changed the field, otherwise the saved one
+    private static <T> T pick(T base, T mine, T theirs) {
+        return java.util.Objects.equals(base, mine) ? theirs : mine;
+    }
+
     // Utility methods to check product status
     
+    /**
+     * Determines the status of a product based on expiration date and quantity.
+     * Statuses can be: "Expired", "Expiring Soon", "Out of Stock", "Low Stock", or "Active"
+     * 
+     * @param expirationDate The expiration date (can be null)
+     * @param qty The quantity in stock
+     * @return A status string
+     */
+    public static String statusFor(LocalDate expirationDate, int qty) {
+        LocalDate today = LocalDate.now();
+        
+        // Check expiration status first
+        if (expirationDate != null) {
+            // Product is expired if expiration date is today or in the past
+            if (!expirationDate.isAfter(today)) {
+                return "Expired";
+            }
+            // Product is expiring soon if expiration is within the next 7 days
+            if (expirationDate.isBefore(today.plusDays(7))) {
+                return "Expiring Soon";
+            }
+        }
+        
+        // Check stock level
+        if (qty <= 0) {
+            return "Out of Stock";
+        } else if (qty <= 5) {
+            return "Low Stock";
+        } else {
+            return "Active";
+        }
+    }
+
     /**
      * Checks if the product has expired.
      * 
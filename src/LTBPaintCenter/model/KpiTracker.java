@@ -0,0 +1,347 @@
+package LTBPaintCenter.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * This class keeps live store performance figures (KPIs) in memory.
+ * It is fed by every recorded sale and never queries the database.
+ *
+ * Sales are added into ring buffers of time buckets: 60 one-minute buckets
+ * for the last hour and 168 one-hour buckets for the last 7 days. Each window
+ * keeps running totals that are adjusted when a bucket rolls out of the window,
+ * so reading revenue, receipts, average basket, units and the top-moving
+ * product is O(1). "Today" is kept as a separate running total that resets
+ * at midnight.
+ *
+ * Sale lines hold batch IDs, and one SKU can be sold from several batches in the
+ * same sale (FEFO). The top product is therefore counted per SKU (name, brand,
+ * color and type), found through the product lookup.
+ */
+public class KpiTracker {
+
+    /**
+     * An immutable set of figures for one time window.
+     */
+    public static final class Snapshot {
+        private final long revenueCents;
+        private final int receipts;
+        private final long units;
+        private final String topProduct;
+        private final long topProductUnits;
+
+        Snapshot(long revenueCents, int receipts, long units, String topProduct, long topProductUnits) {
+            this.revenueCents = revenueCents;
+            this.receipts = receipts;
+            this.units = units;
+            this.topProduct = topProduct;
+            this.topProductUnits = topProductUnits;
+        }
+
+        public double getRevenue() { return revenueCents / 100.0; }
+        public int getReceipts() { return receipts; }
+        public long getUnits() { return units; }
+        public double getAverageBasket() { return receipts == 0 ? 0.0 : revenueCents / 100.0 / receipts; }
+        public String getTopProduct() { return topProduct; }
+        public long getTopProductUnits() { return topProductUnits; }
+    }
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Integer, String> productNames = new HashMap<>();
+
+    // Looks up the product for a batch ID, and the SKU key each batch ID was counted under
+    private IntFunction<Product> productLookup;
+    private final Map<Integer, String> skuKeys = new HashMap<>();
+    private final Map<String, String> skuNames = new HashMap<>();
+
+    // Last hour in one-minute buckets, last 7 days in one-hour buckets
+    private final Window lastHour = new Window(60, 60);
+    private final Window lastWeek = new Window(168, 3600);
+    private final Window today = new Window(1, 86400);
+    private LocalDate todayDate = LocalDate.now();
+
+    /**
+     * Adds a sale to the live figures.
+     * Sales older than the 7-day window are ignored.
+     *
+     * @param sale The sale that was recorded
+     */
+    public void record(Sale sale) {
+        long now = System.currentTimeMillis() / 1000L;
+        long second = SalesIndex.toEpochSecond(sale.getDate());
+        long cents = Math.round(sale.getTotal() * 100.0);
+
+        advance(now);
+        for (SaleItem item : sale.getItems()) {
+            if (item.isDiscount()) continue;
+            productNames.put(item.getProductId(), item.getName());
+            skuNames.put(skuKeyOf(item.getProductId()), item.getName());
+        }
+        lastHour.add(second, cents, sale);
+        lastWeek.add(second, cents, sale);
+        if (toLocalDate(second).equals(todayDate)) {
+            today.add(second, cents, sale);
+        }
+    }
+
+    /**
+     * Removes all figures (used before reloading the sales history).
+     */
+    public void clear() {
+        lastHour.clear();
+        lastWeek.clear();
+        today.clear();
+        productNames.clear();
+        skuKeys.clear();
+        skuNames.clear();
+        todayDate = LocalDate.now();
+    }
+
+    /**
+     * Sets how batch IDs are mapped to products, so the top product is counted per SKU.
+     *
+     * @param lookup Returns the product for an ID, or null if unknown
+     */
+    public void setProductLookup(IntFunction<Product> lookup) {
+        this.productLookup = lookup;
+        invalidateProducts();
+    }
+
+    /**
+     * Tells the tracker that the products may have changed (for example after they were reloaded).
+     * The per-SKU unit totals are counted again from the buckets that are still in the windows.
+     */
+    public void invalidateProducts() {
+        skuKeys.clear();
+        skuNames.clear();
+        for (Map.Entry<Integer, String> e : productNames.entrySet()) {
+            skuNames.put(skuKeyOf(e.getKey()), e.getValue());
+        }
+        lastHour.recount();
+        lastWeek.recount();
+        today.recount();
+    }
+
+    // Batches of an unknown product are counted on their own
+    private String skuKeyOf(int productId) {
+        String key = skuKeys.get(productId);
+        if (key == null) {
+            Product p = productLookup != null ? productLookup.apply(productId) : null;
+            key = p != null ? Sku.keyOf(p) : "#" + productId;
+            skuKeys.put(productId, key);
+        }
+        return key;
+    }
+
+    /** @return Figures for the last 60 minutes */
+    public Snapshot getLastHour() {
+        advance(System.currentTimeMillis() / 1000L);
+        return lastHour.snapshot();
+    }
+
+    /** @return Figures since midnight */
+    public Snapshot getToday() {
+        advance(System.currentTimeMillis() / 1000L);
+        return today.snapshot();
+    }
+
+    /** @return Figures for the last 7 days */
+    public Snapshot getLastWeek() {
+        advance(System.currentTimeMillis() / 1000L);
+        return lastWeek.snapshot();
+    }
+
+    /**
+     * Rolls expired buckets out of every window.
+     * Each bucket is expired at most once, so this is O(1) on average.
+     */
+    private void advance(long nowSecond) {
+        lastHour.advance(nowSecond);
+        lastWeek.advance(nowSecond);
+        LocalDate date = toLocalDate(nowSecond);
+        if (!date.equals(todayDate)) {
+            today.clear();
+            todayDate = date;
+        }
+    }
+
+    private LocalDate toLocalDate(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond).atZone(zone).toLocalDate();
+    }
+
+    /**
+     * A sliding window made of a ring of fixed-width time buckets.
+     */
+    private final class Window {
+        private final int bucketCount;
+        private final long bucketSeconds;
+
+        // Per-bucket values, indexed by (bucket number % bucketCount)
+        private final long[] bucketIds;
+        private final long[] bucketCents;
+        private final int[] bucketReceipts;
+        private final long[] bucketUnits;
+        private final Map<Integer, Integer>[] bucketProductUnits;
+
+        // Running totals over the whole window
+        private long cents;
+        private int receipts;
+        private long units;
+        private final Map<String, Long> productUnits = new HashMap<>();
+        private String topProduct;
+        private boolean topDirty;
+        private long newestBucket = Long.MIN_VALUE;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Window(int bucketCount, long bucketSeconds) {
+            this.bucketCount = bucketCount;
+            this.bucketSeconds = bucketSeconds;
+            this.bucketIds = new long[bucketCount];
+            this.bucketCents = new long[bucketCount];
+            this.bucketReceipts = new int[bucketCount];
+            this.bucketUnits = new long[bucketCount];
+            this.bucketProductUnits = new Map[bucketCount];
+            java.util.Arrays.fill(bucketIds, Long.MIN_VALUE);
+        }
+
+        void add(long second, long saleCents, Sale sale) {
+            // "Today" has a single bucket; the owner decides which sales belong to it
+            long bucket = bucketCount == 1 ? 0 : Math.floorDiv(second, bucketSeconds);
+            if (newestBucket != Long.MIN_VALUE && bucket <= newestBucket - bucketCount) {
+                return; // Too old for this window
+            }
+            int slot = (int) Math.floorMod(bucket, (long) bucketCount);
+            if (bucketIds[slot] != bucket) {
+                expire(slot);
+                bucketIds[slot] = bucket;
+            }
+            newestBucket = Math.max(newestBucket, bucket);
+
+            bucketCents[slot] += saleCents;
+            bucketReceipts[slot]++;
+            cents += saleCents;
+            receipts++;
+
+            for (SaleItem item : sale.getItems()) {
+                // Discounts are already in the sale total; they are not units or products
+                if (item.isDiscount()) continue;
+                int qty = item.getQty();
+                bucketUnits[slot] += qty;
+                units += qty;
+                if (bucketProductUnits[slot] == null) {
+                    bucketProductUnits[slot] = new HashMap<>();
+                }
+                bucketProductUnits[slot].merge(item.getProductId(), qty, Integer::sum);
+                String sku = skuKeyOf(item.getProductId());
+                long total = productUnits.merge(sku, (long) qty, Long::sum);
+                if (!topDirty && (topProduct == null || total > productUnits.getOrDefault(topProduct, 0L))) {
+                    topProduct = sku;
+                }
+            }
+        }
+
+        void advance(long nowSecond) {
+            if (bucketCount == 1) {
+                return; // "Today" is reset by the owner at midnight
+            }
+            long nowBucket = Math.floorDiv(nowSecond, bucketSeconds);
+            if (newestBucket == Long.MIN_VALUE) {
+                newestBucket = nowBucket;
+                return;
+            }
+            if (nowBucket <= newestBucket) {
+                return;
+            }
+            // Expire at most one full ring, however long we were idle
+            long first = Math.max(newestBucket + 1, nowBucket - bucketCount + 1);
+            for (long b = first; b <= nowBucket; b++) {
+                int slot = (int) Math.floorMod(b, (long) bucketCount);
+                if (bucketIds[slot] != b) {
+                    expire(slot);
+                    bucketIds[slot] = b;
+                }
+            }
+            newestBucket = nowBucket;
+        }
+
+        private void expire(int slot) {
+            if (bucketIds[slot] == Long.MIN_VALUE) {
+                return;
+            }
+            cents -= bucketCents[slot];
+            receipts -= bucketReceipts[slot];
+            units -= bucketUnits[slot];
+            Map<Integer, Integer> products = bucketProductUnits[slot];
+            if (products != null) {
+                for (Map.Entry<Integer, Integer> e : products.entrySet()) {
+                    String sku = skuKeyOf(e.getKey());
+                    long left = productUnits.merge(sku, (long) -e.getValue(), Long::sum);
+                    if (left <= 0) {
+                        productUnits.remove(sku);
+                    }
+                }
+                products.clear();
+                topDirty = true;
+            }
+            bucketCents[slot] = 0;
+            bucketReceipts[slot] = 0;
+            bucketUnits[slot] = 0;
+            bucketIds[slot] = Long.MIN_VALUE;
+        }
+
+        void clear() {
+            for (int i = 0; i < bucketCount; i++) {
+                bucketIds[i] = Long.MIN_VALUE;
+                bucketCents[i] = 0;
+                bucketReceipts[i] = 0;
+                bucketUnits[i] = 0;
+                if (bucketProductUnits[i] != null) {
+                    bucketProductUnits[i].clear();
+                }
+            }
+            cents = 0;
+            receipts = 0;
+            units = 0;
+            productUnits.clear();
+            topProduct = null;
+            topDirty = false;
+            newestBucket = Long.MIN_VALUE;
+        }
+
+        // Sums the per-SKU units again from the live buckets (after the SKU keys changed)
+        void recount() {
+            productUnits.clear();
+            for (int i = 0; i < bucketCount; i++) {
+                if (bucketIds[i] == Long.MIN_VALUE || bucketProductUnits[i] == null) {
+                    continue;
+                }
+                for (Map.Entry<Integer, Integer> e : bucketProductUnits[i].entrySet()) {
+                    productUnits.merge(skuKeyOf(e.getKey()), (long) e.getValue(), Long::sum);
+                }
+            }
+            topDirty = true;
+        }
+
+        Snapshot snapshot() {
+            if (topDirty) {
+                // Only needed after a bucket expired; at most once per bucket width
+                topProduct = null;
+                long best = 0;
+                for (Map.Entry<String, Long> e : productUnits.entrySet()) {
+                    if (e.getValue() > best) {
+                        best = e.getValue();
+                        topProduct = e.getKey();
+                    }
+                }
+                topDirty = false;
+            }
+            String topName = topProduct != null ? skuNames.get(topProduct) : null;
+            long topUnits = topProduct != null ? productUnits.getOrDefault(topProduct, 0L) : 0L;
+            return new Snapshot(cents, receipts, units, topName, topUnits);
+        }
+    }
+}
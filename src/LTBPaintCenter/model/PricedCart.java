@@ -0,0 +1,224 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the result of pricing a cart with the PricingEngine.
+ *
+ * It is immutable: every cart change produces a new PricedCart, so the same
+ * result can be handed to the cart table, the checkout dialog and the receipt
+ * printer without any of them adding the lines up again.
+ * All amounts are in centavos. Prices already include VAT.
+ *
+ * Promotion discounts are kept apart from the product lines, as lines with
+ * product ID 0 and a negative amount. They lower the VATable total.
+ */
+public final class PricedCart {
+
+    /**
+     * One priced cart line.
+     */
+    public static final class Line {
+        private final int productId;
+        private final String name;
+        private final long unitCents;
+        private final int qty;
+        private final long amountCents;
+        private final boolean vatExempt;
+
+        Line(int productId, String name, long unitCents, int qty, boolean vatExempt) {
+            this.productId = productId;
+            this.name = name != null ? name : "Unnamed";
+            this.unitCents = unitCents;
+            this.qty = qty;
+            this.amountCents = unitCents * qty;
+            this.vatExempt = vatExempt;
+        }
+
+        public int getProductId() { return productId; }
+        public String getName() { return name; }
+        public long getUnitCents() { return unitCents; }
+        public int getQty() { return qty; }
+        /** @return The line amount (unit price × quantity) in centavos */
+        public long getAmountCents() { return amountCents; }
+        /** @return true if this line is not subject to VAT */
+        public boolean isVatExempt() { return vatExempt; }
+
+        /**
+         * Creates a SaleItem for this line (for recording the sale).
+         *
+         * @return A new SaleItem
+         */
+        public SaleItem toSaleItem() {
+            return new SaleItem(productId, name, unitCents / 100.0, qty);
+        }
+
+        /** @return true if this is a promotion discount line */
+        public boolean isDiscount() {
+            return productId == SaleItem.DISCOUNT_PRODUCT_ID;
+        }
+    }
+
+    /** An empty cart. */
+    public static final PricedCart EMPTY = new PricedCart(new Line[0], new Line[0], 0, 0, 0, 0);
+
+    private final Line[] lines;
+    private final Line[] discounts;
+    private final long vatableGrossCents;
+    private final long vatExemptCents;
+    private final long discountCents;
+    private final long vatCents;
+
+    PricedCart(Line[] lines, Line[] discounts, long vatableGrossCents, long vatExemptCents,
+               long discountCents, long vatCents) {
+        this.lines = lines;
+        this.discounts = discounts;
+        this.vatableGrossCents = vatableGrossCents;
+        this.vatExemptCents = vatExemptCents;
+        this.discountCents = discountCents;
+        this.vatCents = vatCents;
+    }
+
+    Line[] lines() {
+        return lines;
+    }
+
+    Line[] discounts() {
+        return discounts;
+    }
+
+    /** @return The number of lines */
+    public int size() {
+        return lines.length;
+    }
+
+    /** @return true if the cart has no lines */
+    public boolean isEmpty() {
+        return lines.length == 0;
+    }
+
+    /**
+     * Gets one line.
+     *
+     * @param index The line number
+     * @return The line
+     */
+    public Line getLine(int index) {
+        return lines[index];
+    }
+
+    /** @return The lines, in cart order */
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(java.util.Arrays.asList(lines));
+    }
+
+    /** @return The promotion discount lines (amounts are negative) */
+    public List<Line> getDiscounts() {
+        return Collections.unmodifiableList(java.util.Arrays.asList(discounts));
+    }
+
+    /** @return New SaleItems for all lines in cart order, then the discount lines */
+    public List<SaleItem> toSaleItems() {
+        List<SaleItem> items = new ArrayList<>(lines.length + discounts.length);
+        for (Line line : lines) items.add(line.toSaleItem());
+        for (Line line : discounts) items.add(line.toSaleItem());
+        return items;
+    }
+
+    /**
+     * Finds the line of a product.
+     *
+     * @param productId The product ID
+     * @return The line number, or -1 if the product is not in the cart
+     */
+    public int indexOf(int productId) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].productId == productId) return i;
+        }
+        return -1;
+    }
+
+    /** @return The amount to pay in centavos (VAT included, discounts taken off) */
+    public long getTotalCents() {
+        return vatableGrossCents - discountCents + vatExemptCents;
+    }
+
+    /** @return The amount before discounts in centavos */
+    public long getSubtotalCents() {
+        return vatableGrossCents + vatExemptCents;
+    }
+
+    /** @return The total promotion discount in centavos (0 or more) */
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    /** @return The VATable sales after discounts, without the VAT, in centavos */
+    public long getVatableCents() {
+        return vatableGrossCents - discountCents - vatCents;
+    }
+
+    /** @return The VAT included in the VATable lines, in centavos */
+    public long getVatCents() {
+        return vatCents;
+    }
+
+    /** @return The VAT-exempt sales in centavos */
+    public long getVatExemptCents() {
+        return vatExemptCents;
+    }
+
+    /** VATable product lines including their VAT, before discounts, in centavos (used when re-pricing one line). */
+    long getVatableGrossCents() {
+        return vatableGrossCents;
+    }
+
+    /**
+     * Gets a fingerprint of what is being bought: the lines (in product ID
+     * order, so the cart order does not matter), their prices and quantities,
+     * the discounts and the total. Two carts with the same hash are the same
+     * purchase, which lets a checkout that is tried again be recognized.
+     *
+     * @return The SHA-256 of the cart, as 64 hex characters
+     */
+    public String getHash() {
+        Line[] sorted = lines.clone();
+        java.util.Arrays.sort(sorted, java.util.Comparator.comparingInt(Line::getProductId));
+        StringBuilder sb = new StringBuilder();
+        for (Line line : sorted) {
+            sb.append(line.productId).append(':').append(line.unitCents).append(':')
+                    .append(line.qty).append(':').append(line.vatExempt ? 'X' : 'V').append(';');
+        }
+        sb.append('|');
+        for (Line line : discounts) {
+            sb.append(line.name).append(':').append(line.amountCents).append(';');
+        }
+        sb.append('|').append(getTotalCents());
+        try {
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256")
+                    .digest(sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            // Every Java runtime has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formats centavos as pesos with two decimals, like "1234.50".
+     *
+     * @param cents The amount in centavos
+     * @return The formatted amount
+     */
+    public static String formatCents(long cents) {
+        long abs = Math.abs(cents);
+        long frac = abs % 100;
+        return (cents < 0 ? "-" : "") + (abs / 100) + (frac < 10 ? ".0" : ".") + frac;
+    }
+}
@@ -0,0 +1,147 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * This class does all the price math for a cart: line amounts, the VATable
+ * and VAT-exempt totals, the VAT included in the prices, and rounding.
+ *
+ * Prices already include VAT. Line amounts are exact centavos (unit price in
+ * centavos × quantity). The VAT is taken out of the VATable total once,
+ * rounded half-up to the centavo, so the receipt always adds up.
+ *
+ * Changing one line (set or remove) only prices that line and adjusts the
+ * running totals by the difference; the other lines are not looked at again.
+ * Promotion discounts come from the PromotionEngine and are taken off the
+ * VATable total before the VAT is worked out.
+ */
+public final class PricingEngine {
+
+    /** The standard engine: 12% VAT on every product. */
+    public static final PricingEngine STANDARD = new PricingEngine(12, productId -> false);
+
+    private final int vatPercent;
+    private final IntPredicate vatExempt;
+
+    /**
+     * Creates a pricing engine.
+     *
+     * @param vatPercent The VAT rate in percent (for example 12)
+     * @param vatExempt Tells if a product ID is VAT-exempt
+     */
+    public PricingEngine(int vatPercent, IntPredicate vatExempt) {
+        this.vatPercent = vatPercent;
+        this.vatExempt = vatExempt;
+    }
+
+    /** @return The VAT rate in percent */
+    public int getVatPercent() {
+        return vatPercent;
+    }
+
+    /**
+     * Prices a whole cart.
+     *
+     * @param items The cart items
+     * @return The priced cart
+     */
+    public PricedCart price(List<SaleItem> items) {
+        List<PricedCart.Line> lines = new ArrayList<>(items.size());
+        List<PricedCart.Line> discounts = new ArrayList<>();
+        long vatable = 0;
+        long exempt = 0;
+        for (SaleItem it : items) {
+            if (it.isDiscount()) {
+                discounts.add(new PricedCart.Line(it.getProductId(), it.getName(),
+                        Math.round(it.getPrice() * 100), 1, false));
+                continue;
+            }
+            PricedCart.Line line = line(it.getProductId(), it.getName(), it.getPrice(), it.getQty());
+            lines.add(line);
+            if (line.isVatExempt()) exempt += line.getAmountCents();
+            else vatable += line.getAmountCents();
+        }
+        return build(lines.toArray(new PricedCart.Line[0]), discounts.toArray(new PricedCart.Line[0]),
+                vatable, exempt);
+    }
+
+    /**
+     * Sets one line of a cart and re-prices only that line.
+     *
+     * @param cart The current cart
+     * @param index The line to replace, or cart.size() to add a line at the end
+     * @param productId The product ID
+     * @param name The product name
+     * @param price The price per unit (VAT included)
+     * @param qty The quantity
+     * @return The new priced cart
+     */
+    public PricedCart set(PricedCart cart, int index, int productId, String name, double price, int qty) {
+        PricedCart.Line[] old = cart.lines();
+        PricedCart.Line[] lines = java.util.Arrays.copyOf(old, Math.max(old.length, index + 1));
+        PricedCart.Line line = line(productId, name, price, qty);
+        long vatable = cart.getVatableGrossCents();
+        long exempt = cart.getVatExemptCents();
+        if (index < old.length) {
+            if (old[index].isVatExempt()) exempt -= old[index].getAmountCents();
+            else vatable -= old[index].getAmountCents();
+        }
+        if (line.isVatExempt()) exempt += line.getAmountCents();
+        else vatable += line.getAmountCents();
+        lines[index] = line;
+        return build(lines, cart.discounts(), vatable, exempt);
+    }
+
+    /**
+     * Removes one line of a cart.
+     *
+     * @param cart The current cart
+     * @param index The line to remove
+     * @return The new priced cart
+     */
+    public PricedCart remove(PricedCart cart, int index) {
+        PricedCart.Line[] old = cart.lines();
+        PricedCart.Line[] lines = new PricedCart.Line[old.length - 1];
+        System.arraycopy(old, 0, lines, 0, index);
+        System.arraycopy(old, index + 1, lines, index, old.length - index - 1);
+        long vatable = cart.getVatableGrossCents();
+        long exempt = cart.getVatExemptCents();
+        if (old[index].isVatExempt()) exempt -= old[index].getAmountCents();
+        else vatable -= old[index].getAmountCents();
+        return build(lines, cart.discounts(), vatable, exempt);
+    }
+
+    /**
+     * Replaces the promotion discount lines of a cart. The product lines are not looked at again.
+     *
+     * @param cart The current cart
+     * @param discounts The discount lines from the PromotionEngine (negative amounts)
+     * @return The new priced cart
+     */
+    public PricedCart withDiscounts(PricedCart cart, List<PricedCart.Line> discounts) {
+        return build(cart.lines(), discounts.toArray(new PricedCart.Line[0]),
+                cart.getVatableGrossCents(), cart.getVatExemptCents());
+    }
+
+    // Discounts come off the VATable lines (never below zero), then the VAT is taken out
+    private PricedCart build(PricedCart.Line[] lines, PricedCart.Line[] discounts, long vatable, long exempt) {
+        long discount = 0;
+        for (PricedCart.Line d : discounts) discount -= d.getAmountCents();
+        discount = Math.max(0, Math.min(discount, vatable));
+        return new PricedCart(lines, discounts, vatable, exempt, discount, vatIncluded(vatable - discount));
+    }
+
+    private PricedCart.Line line(int productId, String name, double price, int qty) {
+        return new PricedCart.Line(productId, name, Math.round(price * 100), Math.max(qty, 0),
+                vatExempt.test(productId));
+    }
+
+    // The VAT inside a VAT-inclusive amount: amount - amount / (1 + rate), with the net rounded half-up
+    private long vatIncluded(long grossCents) {
+        long divisor = 100 + vatPercent;
+        long net = (grossCents * 100 + divisor / 2) / divisor;
+        return grossCents - net;
+    }
+}
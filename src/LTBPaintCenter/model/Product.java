@@ -19,6 +19,8 @@ public class Product {
     private LocalDate dateImported;
     private LocalDate expirationDate;
     private String status;
+    private String productCode;  // 8-character code shown to users (can be null)
+    private int version;         // Row version in the database, used to detect concurrent changes
 
     /**
      * Constructor - creates a new Product with all its information.
@@ -118,4 +120,20 @@ public class Product {
     public String getStatus() { 
         return status; 
     }
+
+    public String getProductCode() { 
+        return productCode; 
+    }
+
+    public int getVersion() { 
+        return version; 
+    }
+    
+    public void setVersion(int version) { 
+        this.version = version; 
+    }
+    
+    public void setProductCode(String productCode) { 
+        this.productCode = productCode; 
+    }
 }
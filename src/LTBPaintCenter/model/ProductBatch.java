@@ -18,6 +18,7 @@ public class ProductBatch {
     private int quantity;
     private LocalDate expirationDate;
     private String status;  // "Active" or "Expired"
+    private String productCode;
 
     /**
      * Constructor - creates a new ProductBatch and automatically computes its status.
@@ -110,6 +111,14 @@ public class ProductBatch {
         this.status = status; 
     }
 
+    public String getProductCode() { 
+        return productCode; 
+    }
+    
+    public void setProductCode(String productCode) { 
+        this.productCode = productCode; 
+    }
+
     // Utility methods to check product status
     
     /**
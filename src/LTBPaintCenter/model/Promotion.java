@@ -0,0 +1,79 @@
+package LTBPaintCenter.model;
+
+/**
+ * This class represents one promotion rule, like a brand promo or a bulk discount.
+ *
+ * A rule applies to the cart lines in its scope (one product, a brand, a type,
+ * or everything). It only takes effect when the cart holds at least minQty
+ * units in that scope, so "buy 10 gallons" and contractor tiers are just
+ * rules with a higher minQty. A line gets at most one promotion: the one
+ * that gives it the biggest discount.
+ */
+public class Promotion {
+
+    /** What the rule applies to. */
+    public enum Scope { PRODUCT, BRAND, TYPE, ALL }
+
+    /** How the discount is calculated. */
+    public enum DiscountType {
+        /** A percentage off the line amount. */
+        PERCENT,
+        /** A fixed peso amount off each unit. */
+        AMOUNT_PER_UNIT
+    }
+
+    private final int id;
+    private final String name;
+    private final Scope scope;
+    private final String scopeValue;
+    private final DiscountType discountType;
+    private final double discountValue;
+    private final int minQty;
+
+    /**
+     * Creates a promotion rule.
+     *
+     * @param id The rule ID
+     * @param name The name shown on the receipt
+     * @param scope What the rule applies to
+     * @param scopeValue The product ID, brand or type name (ignored for ALL)
+     * @param discountType How the discount is calculated
+     * @param discountValue The percentage, or the peso amount per unit
+     * @param minQty The units needed in the scope before the rule applies
+     */
+    public Promotion(int id, String name, Scope scope, String scopeValue,
+                     DiscountType discountType, double discountValue, int minQty) {
+        this.id = id;
+        this.name = name != null ? name : "Promotion";
+        this.scope = scope;
+        this.scopeValue = scopeValue != null ? scopeValue.trim() : "";
+        this.discountType = discountType;
+        this.discountValue = discountValue;
+        this.minQty = Math.max(1, minQty);
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public Scope getScope() { return scope; }
+    public String getScopeValue() { return scopeValue; }
+    public DiscountType getDiscountType() { return discountType; }
+    public double getDiscountValue() { return discountValue; }
+    public int getMinQty() { return minQty; }
+
+    /**
+     * Calculates the discount this rule gives one cart line.
+     * The discount is never more than the line amount.
+     *
+     * @param unitCents The unit price in centavos
+     * @param qty The quantity
+     * @return The discount in centavos (0 or more)
+     */
+    public long discountCents(long unitCents, int qty) {
+        long amount = unitCents * qty;
+        long discount = switch (discountType) {
+            case PERCENT -> Math.round(amount * discountValue / 100.0);
+            case AMOUNT_PER_UNIT -> Math.round(discountValue * 100) * qty;
+        };
+        return Math.max(0, Math.min(amount, discount));
+    }
+}
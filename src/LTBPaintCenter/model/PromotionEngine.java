@@ -0,0 +1,259 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class works out the promotion discounts for a cart.
+ *
+ * The rules are compiled once into an index keyed by SKU ID, brand and
+ * type (plus a list of rules for everything), so finding the rules for a cart
+ * line is a few map lookups no matter how many rules are active. A product
+ * rule is saved with the ID of one batch; it is moved to the SKU that batch
+ * belongs to, because cart lines are SKUs (see Sku).
+ *
+ * A Session follows one cart. When a line changes, only the rules found in
+ * the index for that line are updated: their unit count for the scope goes up
+ * or down, and if that makes a rule start or stop applying, the other lines in
+ * its scope get their best discount picked again. Nothing else is looked at.
+ */
+public class PromotionEngine {
+
+    /** An engine with no rules. */
+    public static final PromotionEngine NONE = new PromotionEngine(List.of());
+
+    private final Map<Integer, Promotion> rulesById = new HashMap<>();
+    private final Map<Integer, List<Promotion>> byProduct = new HashMap<>();
+    private final Map<String, List<Promotion>> byBrand = new HashMap<>();
+    private final Map<String, List<Promotion>> byType = new HashMap<>();
+    private final List<Promotion> forAll = new ArrayList<>();
+
+    /**
+     * Compiles the rules into the lookup index. Product rules are matched by
+     * the batch ID they were saved with.
+     *
+     * @param promotions The active rules
+     */
+    public PromotionEngine(Collection<Promotion> promotions) {
+        this(promotions, List.of());
+    }
+
+    /**
+     * Compiles the rules into the lookup index. Product rules are moved to the
+     * SKU of their batch, so they apply to every batch of that SKU.
+     *
+     * @param promotions The active rules
+     * @param batches The batches the cart lines are grouped from
+     */
+    public PromotionEngine(Collection<Promotion> promotions, Collection<ProductBatch> batches) {
+        Map<Integer, Integer> skuOfBatch = new HashMap<>();
+        for (Sku sku : Sku.group(batches)) {
+            for (ProductBatch b : sku.getBatches()) {
+                skuOfBatch.put(b.getId(), sku.getId());
+            }
+        }
+        for (Promotion p : promotions) {
+            rulesById.put(p.getId(), p);
+            switch (p.getScope()) {
+                case PRODUCT -> {
+                    try {
+                        int batchId = Integer.parseInt(p.getScopeValue());
+                        byProduct.computeIfAbsent(skuOfBatch.getOrDefault(batchId, batchId),
+                                k -> new ArrayList<>()).add(p);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Promotion " + p.getId() + " has an invalid product ID: " + p.getScopeValue());
+                    }
+                }
+                case BRAND -> byBrand.computeIfAbsent(key(p.getScopeValue()), k -> new ArrayList<>()).add(p);
+                case TYPE -> byType.computeIfAbsent(key(p.getScopeValue()), k -> new ArrayList<>()).add(p);
+                case ALL -> forAll.add(p);
+            }
+        }
+    }
+
+    /** @return true if there are no rules */
+    public boolean isEmpty() {
+        return rulesById.isEmpty();
+    }
+
+    /** @return The number of rules */
+    public int size() {
+        return rulesById.size();
+    }
+
+    private static String key(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // The rules that can apply to a line (productId is the SKU ID)
+    private List<Promotion> rulesFor(int productId, String brand, String type) {
+        List<Promotion> found = new ArrayList<>(forAll);
+        List<Promotion> list = byProduct.get(productId);
+        if (list != null) found.addAll(list);
+        list = byBrand.get(key(brand));
+        if (list != null) found.addAll(list);
+        list = byType.get(key(type));
+        if (list != null) found.addAll(list);
+        return found;
+    }
+
+    /**
+     * Starts following a new (empty) cart.
+     *
+     * @return A new session
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * The promotion state of one cart. Not thread-safe; use it from the thread that edits the cart.
+     */
+    public class Session {
+        private final Map<Integer, CartLine> lines = new HashMap<>();
+        private final Map<Integer, RuleState> ruleStates = new HashMap<>();
+        // Rule ID -> total discount, kept sorted so the discount lines have a stable order
+        private final TreeMap<Integer, Long> discountByRule = new TreeMap<>();
+        private int lastEvaluated;
+
+        /**
+         * Sets a cart line and updates the discounts.
+         *
+         * @param productId The product ID
+         * @param brand The product brand
+         * @param type The product type
+         * @param unitCents The unit price in centavos
+         * @param qty The new quantity (0 removes the line)
+         * @return The discount lines for the whole cart after the change
+         */
+        public List<PricedCart.Line> update(int productId, String brand, String type, long unitCents, int qty) {
+            CartLine line = lines.get(productId);
+            int oldQty = line != null ? line.qty : 0;
+            if (line == null) {
+                if (qty <= 0) return discountLines();
+                line = new CartLine(productId, brand, type, unitCents, rulesFor(productId, brand, type));
+                lines.put(productId, line);
+            }
+            line.unitCents = unitCents;
+            line.qty = Math.max(0, qty);
+
+            // Only the rules that cover this line get their counts updated
+            Set<CartLine> dirty = new HashSet<>();
+            dirty.add(line);
+            lastEvaluated = line.rules.size();
+            for (Promotion rule : line.rules) {
+                RuleState state = ruleStates.computeIfAbsent(rule.getId(), id -> new RuleState());
+                state.units += line.qty - oldQty;
+                if (line.qty > 0) state.lines.add(line);
+                else state.lines.remove(line);
+                boolean applies = state.units >= rule.getMinQty();
+                if (applies != state.applies) {
+                    state.applies = applies;
+                    dirty.addAll(state.lines);
+                }
+            }
+
+            for (CartLine d : dirty) {
+                pickBestRule(d);
+            }
+            if (line.qty == 0) {
+                lines.remove(productId);
+            }
+            return discountLines();
+        }
+
+        /**
+         * Updates the quantity of a line that is already in the cart.
+         *
+         * @param productId The product ID
+         * @param qty The new quantity (0 removes the line)
+         * @return The discount lines for the whole cart after the change
+         */
+        public List<PricedCart.Line> update(int productId, int qty) {
+            CartLine line = lines.get(productId);
+            if (line == null) return discountLines();
+            return update(productId, line.brand, line.type, line.unitCents, qty);
+        }
+
+        /** Forgets all lines. */
+        public void clear() {
+            lines.clear();
+            ruleStates.clear();
+            discountByRule.clear();
+        }
+
+        /** @return How many rules the last update had to look at (for diagnostics) */
+        public int getLastEvaluatedRules() {
+            return lastEvaluated;
+        }
+
+        private void pickBestRule(CartLine line) {
+            Promotion best = null;
+            long bestCents = 0;
+            if (line.qty > 0) {
+                for (Promotion rule : line.rules) {
+                    RuleState state = ruleStates.get(rule.getId());
+                    if (state == null || !state.applies) continue;
+                    long cents = rule.discountCents(line.unitCents, line.qty);
+                    if (cents > bestCents) {
+                        best = rule;
+                        bestCents = cents;
+                    }
+                }
+            }
+            if (line.rule != null) {
+                long left = discountByRule.merge(line.rule.getId(), -line.discountCents, Long::sum);
+                if (left == 0) discountByRule.remove(line.rule.getId());
+            }
+            line.rule = best;
+            line.discountCents = bestCents;
+            if (best != null) {
+                discountByRule.merge(best.getId(), bestCents, Long::sum);
+            }
+        }
+
+        private List<PricedCart.Line> discountLines() {
+            List<PricedCart.Line> result = new ArrayList<>(discountByRule.size());
+            for (Map.Entry<Integer, Long> e : discountByRule.entrySet()) {
+                Promotion rule = rulesById.get(e.getKey());
+                result.add(new PricedCart.Line(SaleItem.DISCOUNT_PRODUCT_ID,
+                        rule != null ? rule.getName() : "Promotion", -e.getValue(), 1, false));
+            }
+            return result;
+        }
+    }
+
+    // A product in the cart, with the rules that can apply to it
+    private static final class CartLine {
+        final int productId;
+        final String brand;
+        final String type;
+        final List<Promotion> rules;
+        long unitCents;
+        int qty;
+        Promotion rule;
+        long discountCents;
+
+        CartLine(int productId, String brand, String type, long unitCents, List<Promotion> rules) {
+            this.productId = productId;
+            this.brand = brand;
+            this.type = type;
+            this.unitCents = unitCents;
+            this.rules = rules;
+        }
+    }
+
+    // How many units of a rule's scope are in the cart, and which lines they are
+    private static final class RuleState {
+        int units;
+        boolean applies;
+        final Set<CartLine> lines = new HashSet<>();
+    }
+}
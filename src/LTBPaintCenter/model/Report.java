@@ -4,7 +4,6 @@ import java.sql.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -15,36 +14,74 @@ import java.util.Map;
  * This class manages sales reports and statistics.
  * It tracks all sales, stores them in the database, and provides
  * cumulative sales data for reporting purposes.
+ * Sales are kept in a SalesIndex ordered by date so date-range and
+ * brand filters do not have to scan the whole history.
  */
 public class Report {
     
-    private final List<Sale> sales = new ArrayList<>();
+    private final SalesIndex sales = new SalesIndex();
+    // Same sales, one row per sold line, for fast aggregation
+    private final SalesColumns columns = new SalesColumns();
+    // Live figures for the last hour, today and the last 7 days
+    private final KpiTracker kpis = new KpiTracker();
     private final Map<Integer, Integer> cumulativeProductSales = new HashMap<>();
     private static final SimpleDateFormat DB_DATETIME = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     /**
-     * Records a new sale and saves it to the database.
-     * Also updates the cumulative sales totals.
-     * 
-     * @param sale The Sale object to record
+     * Records a sale that is already saved in the database (for example by the
+     * checkout transaction). Only the in-memory reports are updated.
+     *
+     * @param sale The saved sale
      */
-    public void recordSale(Sale sale) {
-        // Add to in-memory list
+    public void recordCommittedSale(Sale sale) {
+        // Add to the in-memory index and the columnar store
         sales.add(sale);
+        columns.append(sale);
+        kpis.record(sale);
         
         // Update cumulative sales totals for each product
         for (SaleItem item : sale.getItems()) {
+            if (item.isDiscount()) continue;
             int currentTotal = cumulativeProductSales.getOrDefault(item.getProductId(), 0);
             cumulativeProductSales.put(item.getProductId(), currentTotal + item.getQty());
         }
+    }
+
+    /**
+     * Changes the reference of a recorded sale, after the checkout journal had
+     * to save it under another one (another terminal used its reference first).
+     *
+     * @param sale The sale as it was recorded (its reference and date are used to find it)
+     * @param savedReference The reference it was saved under
+     * @return true if the sale was found
+     */
+    public boolean renameSale(Sale sale, String savedReference) {
+        List<Sale> all = sales.all();
+        for (int i = all.size() - 1; i >= 0; i--) {
+            Sale recorded = all.get(i);
+            if (recorded.getId().equals(sale.getId()) && recorded.getDate().equals(sale.getDate())) {
+                Sale renamed = new Sale(savedReference, recorded.getDate());
+                for (SaleItem item : recorded.getItems()) {
+                    renamed.addItem(item);
+                }
+                return sales.replace(recorded, renamed);
+            }
+        }
+        return false;
+    }
 
-        // Save to database
+    /**
+     * Inserts one sales row per item of a sale, using the given connection
+     * (so it can be part of a bigger transaction).
+     *
+     * @param conn An open connection
+     * @param sale The sale to save
+     * @throws SQLException If the insert fails
+     */
+    public static void insertSaleRows(Connection conn, Sale sale) throws SQLException {
         String sql = "INSERT INTO sales (sale_reference, product_id, product_name, quantity, price, total, sale_date) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = Database.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             // Insert each item in the sale as a separate row
             for (SaleItem item : sale.getItems()) {
                 ps.setString(1, sale.getId());
@@ -57,9 +94,6 @@ public class Report {
                 ps.addBatch();
             }
             ps.executeBatch();
-        } catch (SQLException e) {
-            System.err.println("Error recording sale: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
@@ -68,14 +102,24 @@ public class Report {
      * Groups items by sale reference number and reconstructs Sale objects.
      */
     public void loadFromDatabase() {
-        sales.clear();
-        cumulativeProductSales.clear();
+        load(readFromDatabase());
+    }
 
+    /**
+     * Reads all historical sales from the database without changing this report.
+     * This is the slow part of loading, so it can run on a background thread
+     * and the result passed to load() on the Swing event thread.
+     *
+     * @return The sales, grouped by sale reference, in the order they were saved
+     */
+    public static List<Sale> readFromDatabase() {
         String sql = "SELECT id, sale_reference, product_id, product_name, quantity, price, total, sale_date " +
                 "FROM sales ORDER BY id ASC";
         
         // Use LinkedHashMap to preserve insertion order
         Map<String, Sale> salesByReference = new LinkedHashMap<>();
+        // Not the shared DB_DATETIME: this may run while the event thread records a sale
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         
         try (Connection conn = Database.getConnection();
              Statement st = conn.createStatement();
@@ -90,7 +134,7 @@ public class Report {
                 
                 // Parse the sale date
                 String dateStr = rs.getString("sale_date");
-                Date saleDate = parseDbDate(dateStr);
+                Date saleDate = parseDbDate(dateStr, format);
                 
                 // Get or create the Sale object for this reference
                 Sale sale = salesByReference.computeIfAbsent(reference, 
@@ -101,20 +145,58 @@ public class Report {
                 String name = rs.getString("product_name");
                 int qty = rs.getInt("quantity");
                 double price = rs.getDouble("price");
-                SaleItem item = new SaleItem(productId, name, price, qty);
-                sale.addItem(item);
-
-                // Track cumulative totals
-                int currentTotal = cumulativeProductSales.getOrDefault(productId, 0);
-                cumulativeProductSales.put(productId, currentTotal + qty);
+                sale.addItem(new SaleItem(productId, name, price, qty));
             }
         } catch (SQLException e) {
             System.err.println("Error loading sales from database: " + e.getMessage());
             e.printStackTrace();
         }
+        return new ArrayList<>(salesByReference.values());
+    }
+
+    /**
+     * Replaces the sales in this report with the given ones (from readFromDatabase()).
+     *
+     * @param loaded The sales
+     */
+    public void load(List<Sale> loaded) {
+        sales.clear();
+        columns.clear();
+        kpis.clear();
+        cumulativeProductSales.clear();
+
+        for (Sale sale : loaded) {
+            // Bulk-load the lines into the columnar store
+            columns.append(sale);
+
+            // Track cumulative totals
+            for (SaleItem item : sale.getItems()) {
+                if (item.isDiscount()) continue;
+                int currentTotal = cumulativeProductSales.getOrDefault(item.getProductId(), 0);
+                cumulativeProductSales.put(item.getProductId(), currentTotal + item.getQty());
+            }
+        }
+
+        // Add all loaded sales to the index (it keeps them ordered by date)
+        for (Sale sale : loaded) {
+            sales.add(sale);
+        }
 
-        // Add all loaded sales to the list
-        sales.addAll(salesByReference.values());
+        // Seed the live figures with the sales that still fall inside their windows
+        Date weekAgo = new Date(System.currentTimeMillis() - 7L * 24 * 60 * 60 * 1000);
+        for (Sale sale : sales.between(weekAgo, null)) {
+            kpis.record(sale);
+        }
+    }
+
+    /**
+     * Parses the sale_date of a sales row (for example one that came from another terminal).
+     *
+     * @param dateString The date string from the database
+     * @return A Date object, or current date if parsing fails
+     */
+    public static Date parseSaleDate(String dateString) {
+        return parseDbDate(dateString, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
     }
 
     /**
@@ -122,9 +204,10 @@ public class Report {
      * Handles different date formats that might be stored.
      * 
      * @param dateString The date string from the database
+     * @param format The date-time format to parse with (SimpleDateFormat is not thread-safe)
      * @return A Date object, or current date if parsing fails
      */
-    private Date parseDbDate(String dateString) {
+    private static Date parseDbDate(String dateString, SimpleDateFormat format) {
         if (dateString == null || dateString.isBlank()) {
             return new Date();
         }
@@ -133,9 +216,9 @@ public class Report {
             // Try parsing as full datetime (yyyy-MM-dd HH:mm:ss)
             if (dateString.length() >= 19) {
                 String trimmed = dateString.substring(0, 19).replace('T', ' ');
-                return DB_DATETIME.parse(trimmed);
+                return format.parse(trimmed);
             }
-            return DB_DATETIME.parse(dateString);
+            return format.parse(dateString);
         } catch (ParseException e) {
             // Fallback: try parsing as date only (yyyy-MM-dd)
             try {
@@ -148,11 +231,80 @@ public class Report {
     }
 
     /**
-     * Gets all sales (read-only).
+     * Gets all sales (read-only), oldest first.
      * 
      * @return An unmodifiable list of all sales
      */
     public List<Sale> getSales() {
-        return Collections.unmodifiableList(sales);
+        return sales.all();
+    }
+
+    /**
+     * Gets the sales made between two dates (both inclusive).
+     * Uses binary search on the date index, so no sales are scanned or copied.
+     * 
+     * @param from The start date, or null for no lower limit
+     * @param to The end date, or null for no upper limit
+     * @return A read-only list of matching sales, oldest first
+     */
+    public List<Sale> getSalesBetween(Date from, Date to) {
+        return sales.between(from, to);
+    }
+
+    /**
+     * Gets the sales between two dates that contain at least one item of the given brand.
+     * 
+     * @param brand The brand name (case-insensitive)
+     * @param from The start date, or null for no lower limit
+     * @param to The end date, or null for no upper limit
+     * @return A read-only list of matching sales, oldest first
+     */
+    public List<Sale> getSalesBetween(String brand, Date from, Date to) {
+        return sales.between(brand, from, to);
+    }
+
+    /**
+     * Sets how product IDs are mapped to products.
+     * The brand filter, the brand/type aggregations and the top product use this lookup.
+     * 
+     * @param lookup Returns the product for an ID, or null if unknown
+     */
+    public void setProductLookup(java.util.function.IntFunction<Product> lookup) {
+        sales.setBrandResolver(productId -> {
+            Product product = lookup.apply(productId);
+            return product != null ? product.getBrand() : null;
+        });
+        columns.setProductLookup(lookup);
+        kpis.setProductLookup(lookup);
+    }
+
+    /**
+     * Gets the column-oriented copy of the sales, used for heavy aggregation.
+     * 
+     * @return The columnar sales store
+     */
+    public SalesColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the live KPI figures (revenue, receipts, basket size, units, top product).
+     * Reading them never touches the database or the sales history.
+     * 
+     * @return The KPI tracker
+     */
+    public KpiTracker getKpis() {
+        return kpis;
+    }
+
+    /**
+     * Tells the report that product brands or types may have changed.
+     * The brand lists and column codes are rebuilt the next time they are used,
+     * and the top product is counted per SKU again.
+     */
+    public void invalidateBrandIndex() {
+        sales.invalidateBrands();
+        columns.invalidateCodes();
+        kpis.invalidateProducts();
     }
 }
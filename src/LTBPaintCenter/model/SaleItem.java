@@ -5,6 +5,12 @@ package LTBPaintCenter.model;
  * It stores the product information and quantity purchased.
  */
 public class SaleItem {
+
+    /** The product ID used for promotion discount lines (no real product has ID 0). */
+    public static final int DISCOUNT_PRODUCT_ID = 0;
+
+    /** The brand and type name that discount lines are grouped under in reports. */
+    public static final String DISCOUNT_GROUP = "Discounts";
     
     private final int productId;  // The ID of the product being sold
     private final String name;    // The name of the product
@@ -26,6 +32,28 @@ public class SaleItem {
         this.qty = Math.max(qty, 0);  // Make sure quantity is never negative
     }
 
+    /**
+     * Creates a discount line for a promotion.
+     * It has a negative price and a quantity of 1, so it lowers the sale total.
+     *
+     * @param name The promotion name
+     * @param amount The discount amount (a positive number)
+     * @return The discount line
+     */
+    public static SaleItem discount(String name, double amount) {
+        return new SaleItem(DISCOUNT_PRODUCT_ID, name, -Math.abs(amount), 1);
+    }
+
+    /**
+     * Tells if this item is a promotion discount and not a product.
+     * Discount lines are not taken out of stock and are not counted as units sold.
+     *
+     * @return true if this is a discount line
+     */
+    public boolean isDiscount() {
+        return productId == DISCOUNT_PRODUCT_ID;
+    }
+
     /**
      * Adds more quantity to this item.
      * 
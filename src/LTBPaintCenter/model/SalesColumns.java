@@ -0,0 +1,596 @@
+package LTBPaintCenter.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * This class stores every sold line in a column-oriented layout.
+ * Instead of a list of Sale/SaleItem objects, each field lives in its own
+ * primitive array (timestamp, product ID, brand code, type code, SKU code, quantity, cents).
+ * Scanning a column is cache-friendly, and the aggregation methods split the
+ * rows into chunks that are summed in parallel with fork-join.
+ *
+ * Brand and type names are dictionary-encoded: each distinct name gets a small
+ * integer code, and code 0 is always "Unknown". Products are grouped by SKU
+ * (name, brand, color and type) the same way, because the product ID of a
+ * sold line is a batch ID and one SKU can be sold from several batches.
+ */
+public class SalesColumns {
+
+    /** The columns that can be used as a grouping key (PRODUCT groups by SKU). */
+    public enum Key { BRAND, TYPE, PRODUCT }
+
+    /**
+     * Revenue and units summed into fixed-width time buckets.
+     * Bucket i covers [start + i * bucketSeconds, start + (i + 1) * bucketSeconds).
+     */
+    public static final class TimeBuckets {
+        private final long startSecond;
+        private final long bucketSeconds;
+        private final long[] cents;
+        private final long[] units;
+
+        TimeBuckets(long startSecond, long bucketSeconds, long[] cents, long[] units) {
+            this.startSecond = startSecond;
+            this.bucketSeconds = bucketSeconds;
+            this.cents = cents;
+            this.units = units;
+        }
+
+        public long getStartSecond() { return startSecond; }
+        public long getBucketSeconds() { return bucketSeconds; }
+        public int size() { return cents.length; }
+        /** @return Revenue per bucket in centavos (the array is shared, do not modify) */
+        public long[] getCents() { return cents; }
+        /** @return Units sold per bucket (the array is shared, do not modify) */
+        public long[] getUnits() { return units; }
+    }
+
+    // Rows per fork-join leaf task
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private long[] time = new long[1024];      // epoch seconds
+    private int[] productId = new int[1024];
+    private int[] brandCode = new int[1024];
+    private int[] typeCode = new int[1024];
+    private int[] skuCode = new int[1024];
+    private int[] qty = new int[1024];
+    private long[] cents = new long[1024];     // line subtotal in centavos
+    private int size;
+    private int maxProductId;
+
+    private final Dictionary brands = new Dictionary();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary skus = new Dictionary();
+
+    // Looks up the product for a product ID (used to find its brand and type)
+    private IntFunction<Product> productLookup;
+    private boolean codesStale;
+
+    /**
+     * Sets how product IDs are mapped to products.
+     * Brand, type and SKU codes are recomputed before the next aggregation.
+     *
+     * @param lookup Returns the product for an ID, or null if unknown
+     */
+    public void setProductLookup(IntFunction<Product> lookup) {
+        this.productLookup = lookup;
+        invalidateCodes();
+    }
+
+    /**
+     * Marks the brand/type/SKU codes as out of date (for example after products were reloaded).
+     */
+    public void invalidateCodes() {
+        codesStale = true;
+    }
+
+    /**
+     * Appends all lines of a sale.
+     *
+     * @param sale The sale to append
+     */
+    public void append(Sale sale) {
+        long seconds = SalesIndex.toEpochSecond(sale.getDate());
+        for (SaleItem item : sale.getItems()) {
+            // Discount lines lower the revenue but are not units sold
+            append(seconds, item.getProductId(), item.isDiscount() ? 0 : item.getQty(),
+                    Math.round(item.getSubtotal() * 100.0));
+        }
+    }
+
+    /**
+     * Appends a single sold line. Used directly when bulk-loading from the database.
+     *
+     * @param epochSecond When the line was sold
+     * @param product The product ID
+     * @param quantity The quantity sold
+     * @param amountCents The line total in centavos
+     */
+    public void append(long epochSecond, int product, int quantity, long amountCents) {
+        if (size == time.length) {
+            grow();
+        }
+        time[size] = epochSecond;
+        productId[size] = product;
+        qty[size] = quantity;
+        cents[size] = amountCents;
+        if (codesStale) {
+            brandCode[size] = 0;
+            typeCode[size] = 0;
+            skuCode[size] = 0;
+        } else {
+            Product p = productLookup != null ? productLookup.apply(product) : null;
+            brandCode[size] = brandCodeOf(product, p);
+            typeCode[size] = typeCodeOf(product, p);
+            skuCode[size] = skuCodeOf(product, p);
+        }
+        if (product > maxProductId) {
+            maxProductId = product;
+        }
+        size++;
+    }
+
+    /**
+     * Removes every row.
+     */
+    public void clear() {
+        size = 0;
+        maxProductId = 0;
+        codesStale = true;
+    }
+
+    /**
+     * Gets the number of stored lines.
+     *
+     * @return The row count
+     */
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = time.length * 2;
+        time = Arrays.copyOf(time, capacity);
+        productId = Arrays.copyOf(productId, capacity);
+        brandCode = Arrays.copyOf(brandCode, capacity);
+        typeCode = Arrays.copyOf(typeCode, capacity);
+        skuCode = Arrays.copyOf(skuCode, capacity);
+        qty = Arrays.copyOf(qty, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+    }
+
+    /**
+     * Recomputes the brand, type and SKU code of every row from the current products.
+     * Each product is looked up once; the rows are then filled by array indexing.
+     */
+    private void recode() {
+        brands.clear();
+        types.clear();
+        skus.clear();
+        int[] brandOfProduct = new int[maxProductId + 1];
+        int[] typeOfProduct = new int[maxProductId + 1];
+        int[] skuOfProduct = new int[maxProductId + 1];
+        boolean[] seen = new boolean[maxProductId + 1];
+        for (int i = 0; i < size; i++) {
+            int id = productId[i];
+            if (id < 0) {
+                brandCode[i] = 0;
+                typeCode[i] = 0;
+                skuCode[i] = 0;
+                continue;
+            }
+            if (!seen[id]) {
+                Product p = productLookup != null ? productLookup.apply(id) : null;
+                brandOfProduct[id] = brandCodeOf(id, p);
+                typeOfProduct[id] = typeCodeOf(id, p);
+                skuOfProduct[id] = skuCodeOf(id, p);
+                seen[id] = true;
+            }
+            brandCode[i] = brandOfProduct[id];
+            typeCode[i] = typeOfProduct[id];
+            skuCode[i] = skuOfProduct[id];
+        }
+        codesStale = false;
+    }
+
+    // Discount lines are grouped under their own name instead of "Unknown"
+    private int brandCodeOf(int id, Product p) {
+        if (id == SaleItem.DISCOUNT_PRODUCT_ID) return brands.code(SaleItem.DISCOUNT_GROUP);
+        return p != null ? brands.code(p.getBrand()) : 0;
+    }
+
+    private int typeCodeOf(int id, Product p) {
+        if (id == SaleItem.DISCOUNT_PRODUCT_ID) return types.code(SaleItem.DISCOUNT_GROUP);
+        return p != null ? types.code(p.getType()) : 0;
+    }
+
+    // All batches of a SKU share one code; it is named after the product
+    private int skuCodeOf(int id, Product p) {
+        if (id == SaleItem.DISCOUNT_PRODUCT_ID) return skus.code(SaleItem.DISCOUNT_GROUP, SaleItem.DISCOUNT_GROUP);
+        return p != null ? skus.code(Sku.keyOf(p), p.getName()) : 0;
+    }
+
+    private Dictionary dictionary(Key key) {
+        return switch (key) {
+            case BRAND -> brands;
+            case TYPE -> types;
+            case PRODUCT -> skus;
+        };
+    }
+
+    private void ensureCodes() {
+        if (codesStale) {
+            recode();
+        }
+    }
+
+    // AGGREGATIONS
+
+    /**
+     * Sums line totals (in centavos) per key for lines sold between two dates.
+     *
+     * @param key The grouping column
+     * @param from The start date (inclusive), or null for no lower limit
+     * @param to The end date (inclusive), or null for no upper limit
+     * @return An array indexed by key code holding the summed centavos
+     */
+    public long[] sumCentsByKey(Key key, Date from, Date to) {
+        ensureCodes();
+        return ForkJoinPool.commonPool().invoke(
+                new AggregateTask(key, false, lower(from), upper(to), 0, size));
+    }
+
+    /**
+     * Counts sold lines per key for lines sold between two dates.
+     *
+     * @param key The grouping column
+     * @param from The start date (inclusive), or null for no lower limit
+     * @param to The end date (inclusive), or null for no upper limit
+     * @return An array indexed by key code holding the line counts
+     */
+    public long[] countByKey(Key key, Date from, Date to) {
+        ensureCodes();
+        return ForkJoinPool.commonPool().invoke(
+                new AggregateTask(key, true, lower(from), upper(to), 0, size));
+    }
+
+    /**
+     * Sums line totals per brand, type or product name, in code order.
+     * Convenient for the Monitoring summaries.
+     *
+     * @param key BRAND, TYPE or PRODUCT
+     * @param from The start date (inclusive), or null
+     * @param to The end date (inclusive), or null
+     * @return A map of name to revenue in pesos (only names with sales)
+     */
+    public Map<String, Double> revenueByName(Key key, Date from, Date to) {
+        long[] sums = sumCentsByKey(key, from, to);
+        long[] counts = countByKey(key, from, to);
+        Dictionary dictionary = dictionary(key);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int code = 0; code < sums.length; code++) {
+            if (counts[code] > 0) {
+                result.put(dictionary.name(code), sums[code] / 100.0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the codes of the N largest values, largest first.
+     * Uses a bounded heap so only N entries are kept while scanning.
+     * Zero and negative values (like the Discounts group) are never ranked.
+     *
+     * @param values Values indexed by code (for example from sumCentsByKey)
+     * @param n How many codes to return
+     * @return The codes of the top N positive values
+     */
+    public static int[] topN(long[] values, int n) {
+        if (n <= 0) {
+            return new int[0];
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(n + 1,
+                (a, b) -> Long.compare(values[a], values[b]));
+        for (int code = 0; code < values.length; code++) {
+            if (values[code] <= 0) {
+                continue;
+            }
+            if (heap.size() < n) {
+                heap.add(code);
+            } else if (values[code] > values[heap.peek()]) {
+                heap.poll();
+                heap.add(code);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+
+    /**
+     * Builds a histogram of line totals.
+     * Bucket i counts lines with edges[i] <= cents < edges[i + 1];
+     * the last bucket counts everything at or above the last edge.
+     *
+     * @param edgesCents Ascending bucket start values in centavos
+     * @param from The start date (inclusive), or null
+     * @param to The end date (inclusive), or null
+     * @return The count for each bucket
+     */
+    public long[] histogramOfLineCents(long[] edgesCents, Date from, Date to) {
+        return ForkJoinPool.commonPool().invoke(
+                new HistogramTask(edgesCents, lower(from), upper(to), 0, size));
+    }
+
+    /**
+     * Sums revenue and units into fixed-width time buckets, in parallel.
+     * Lines outside the buckets are ignored.
+     *
+     * @param startSecond The start of the first bucket (epoch seconds)
+     * @param bucketSeconds The width of each bucket in seconds
+     * @param bucketCount The number of buckets
+     * @param brand Only count lines of this brand (trimmed, ignoring case), or null for all brands
+     * @return The bucketed revenue and units
+     */
+    public TimeBuckets timeBuckets(long startSecond, long bucketSeconds, int bucketCount, String brand) {
+        boolean[] brandFilter = null;
+        if (brand != null) {
+            ensureCodes();
+            brandFilter = brands.matching(brand);
+            if (brandFilter == null) {
+                return new TimeBuckets(startSecond, bucketSeconds, new long[bucketCount], new long[bucketCount]);
+            }
+        }
+        long[][] sums = ForkJoinPool.commonPool().invoke(
+                new TimeBucketTask(startSecond, bucketSeconds, bucketCount, brandFilter, 0, size));
+        return new TimeBuckets(startSecond, bucketSeconds, sums[0], sums[1]);
+    }
+
+    /**
+     * Gets the name for a brand, type or SKU code.
+     *
+     * @param key BRAND, TYPE or PRODUCT
+     * @param code The dictionary code
+     * @return The name, or "Unknown" for code 0
+     */
+    public String nameOf(Key key, int code) {
+        return dictionary(key).name(code);
+    }
+
+    private static long lower(Date from) {
+        return from == null ? Long.MIN_VALUE : SalesIndex.toEpochSecond(from);
+    }
+
+    private static long upper(Date to) {
+        return to == null ? Long.MAX_VALUE : SalesIndex.toEpochSecond(to);
+    }
+
+    private int keyCardinality(Key key) {
+        return switch (key) {
+            case BRAND -> brands.size();
+            case TYPE -> types.size();
+            case PRODUCT -> skus.size();
+        };
+    }
+
+    /**
+     * Fork-join task that sums (or counts) one chunk of rows per key.
+     */
+    private final class AggregateTask extends RecursiveTask<long[]> {
+        private final Key key;
+        private final boolean count;
+        private final long from;
+        private final long to;
+        private final int start;
+        private final int end;
+
+        AggregateTask(Key key, boolean count, long from, long to, int start, int end) {
+            this.key = key;
+            this.count = count;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (end - start <= CHUNK_SIZE) {
+                return computeDirectly();
+            }
+            int mid = (start + end) >>> 1;
+            AggregateTask left = new AggregateTask(key, count, from, to, start, mid);
+            AggregateTask right = new AggregateTask(key, count, from, to, mid, end);
+            left.fork();
+            long[] r = right.compute();
+            long[] l = left.join();
+            for (int i = 0; i < l.length; i++) {
+                l[i] += r[i];
+            }
+            return l;
+        }
+
+        private long[] computeDirectly() {
+            long[] out = new long[keyCardinality(key)];
+            int[] keys = switch (key) {
+                case BRAND -> brandCode;
+                case TYPE -> typeCode;
+                case PRODUCT -> skuCode;
+            };
+            for (int i = start; i < end; i++) {
+                long t = time[i];
+                if (t < from || t > to) {
+                    continue;
+                }
+                int k = keys[i];
+                if (k < 0) {
+                    continue;
+                }
+                out[k] += count ? 1 : cents[i];
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Fork-join task that builds a histogram over one chunk of rows.
+     */
+    private final class HistogramTask extends RecursiveTask<long[]> {
+        private final long[] edges;
+        private final long from;
+        private final long to;
+        private final int start;
+        private final int end;
+
+        HistogramTask(long[] edges, long from, long to, int start, int end) {
+            this.edges = edges;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (end - start <= CHUNK_SIZE) {
+                long[] out = new long[edges.length];
+                for (int i = start; i < end; i++) {
+                    long t = time[i];
+                    if (t < from || t > to || cents[i] < edges[0]) {
+                        continue;
+                    }
+                    int bucket = Arrays.binarySearch(edges, cents[i]);
+                    out[bucket >= 0 ? bucket : -bucket - 2]++;
+                }
+                return out;
+            }
+            int mid = (start + end) >>> 1;
+            HistogramTask left = new HistogramTask(edges, from, to, start, mid);
+            HistogramTask right = new HistogramTask(edges, from, to, mid, end);
+            left.fork();
+            long[] r = right.compute();
+            long[] l = left.join();
+            for (int i = 0; i < l.length; i++) {
+                l[i] += r[i];
+            }
+            return l;
+        }
+    }
+
+    /**
+     * Fork-join task that sums revenue and units per time bucket over one chunk of rows.
+     * Returns {cents[], units[]}.
+     */
+    private final class TimeBucketTask extends RecursiveTask<long[][]> {
+        private final long startSecond;
+        private final long bucketSeconds;
+        private final int bucketCount;
+        private final boolean[] brandFilter; // brand code -> counted, or null for all brands
+        private final int start;
+        private final int end;
+
+        TimeBucketTask(long startSecond, long bucketSeconds, int bucketCount, boolean[] brandFilter, int start, int end) {
+            this.startSecond = startSecond;
+            this.bucketSeconds = bucketSeconds;
+            this.bucketCount = bucketCount;
+            this.brandFilter = brandFilter;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected long[][] compute() {
+            if (end - start <= CHUNK_SIZE) {
+                long[] outCents = new long[bucketCount];
+                long[] outUnits = new long[bucketCount];
+                for (int i = start; i < end; i++) {
+                    if (brandFilter != null && !brandFilter[brandCode[i]]) {
+                        continue;
+                    }
+                    long bucket = Math.floorDiv(time[i] - startSecond, bucketSeconds);
+                    if (bucket < 0 || bucket >= bucketCount) {
+                        continue;
+                    }
+                    outCents[(int) bucket] += cents[i];
+                    outUnits[(int) bucket] += qty[i];
+                }
+                return new long[][]{outCents, outUnits};
+            }
+            int mid = (start + end) >>> 1;
+            TimeBucketTask left = new TimeBucketTask(startSecond, bucketSeconds, bucketCount, brandFilter, start, mid);
+            TimeBucketTask right = new TimeBucketTask(startSecond, bucketSeconds, bucketCount, brandFilter, mid, end);
+            left.fork();
+            long[][] r = right.compute();
+            long[][] l = left.join();
+            for (int i = 0; i < bucketCount; i++) {
+                l[0][i] += r[0][i];
+                l[1][i] += r[1][i];
+            }
+            return l;
+        }
+    }
+
+    /**
+     * Maps names to small integer codes. Code 0 is reserved for "Unknown".
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>(List.of("Unknown"));
+
+        int code(String name) {
+            return code(name, name);
+        }
+
+        // Codes by key but shows the given name (the first one seen for the key)
+        int code(String key, String name) {
+            if (key == null || key.isBlank()) {
+                return 0;
+            }
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = names.size();
+                codes.put(key, code);
+                names.add(name);
+            }
+            return code;
+        }
+
+        // Code -> true for the names equal to this one (trimmed, ignoring case), or null if there are none
+        boolean[] matching(String name) {
+            boolean[] mask = new boolean[names.size()];
+            boolean any = false;
+            for (int code = 1; code < names.size(); code++) {
+                if (names.get(code).trim().equalsIgnoreCase(name.trim())) {
+                    mask[code] = true;
+                    any = true;
+                }
+            }
+            return any ? mask : null;
+        }
+
+        String name(int code) {
+            return code >= 0 && code < names.size() ? names.get(code) : "Unknown";
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        void clear() {
+            codes.clear();
+            names.subList(1, names.size()).clear();
+        }
+    }
+}
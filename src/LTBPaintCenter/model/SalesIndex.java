@@ -0,0 +1,274 @@
+package LTBPaintCenter.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * This class keeps the in-memory sales ordered by their date/time.
+ * Timestamps are stored as epoch seconds in a primitive array, so a date range
+ * is found with two binary searches instead of checking every sale.
+ * Each brand also has its own posting list of sales, so a brand filter only
+ * touches the sales that actually contain that brand.
+ *
+ * Lists returned by the query methods are read-only views over the index
+ * (nothing is copied). They are meant to be used right away and should not
+ * be kept after the next sale is added.
+ */
+public class SalesIndex {
+
+    private final Timeline all = new Timeline();
+    private final Map<String, Timeline> byBrand = new HashMap<>();
+
+    // Looks up the brand of a product ID (set by the owner of the inventory)
+    private IntFunction<String> brandResolver;
+    private boolean brandIndexStale = true;
+
+    /**
+     * Adds a sale to the index, keeping the time order.
+     *
+     * @param sale The sale to add
+     */
+    public void add(Sale sale) {
+        long time = toEpochSecond(sale.getDate());
+        all.add(time, sale);
+        if (!brandIndexStale) {
+            addToBrandPostings(time, sale);
+        }
+    }
+
+    /**
+     * Puts another sale in the place of one in the index, for example the same
+     * sale under the reference it was saved with. Both must have the same date.
+     *
+     * @param old The sale in the index
+     * @param replacement The sale to put in its place
+     * @return true if the old sale was found
+     */
+    public boolean replace(Sale old, Sale replacement) {
+        for (int i = all.size - 1; i >= 0; i--) {
+            if (all.sales[i] == old) {
+                all.sales[i] = replacement;
+                // The brand postings hold the old object
+                invalidateBrands();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every sale from the index.
+     */
+    public void clear() {
+        all.clear();
+        byBrand.clear();
+        brandIndexStale = true;
+    }
+
+    /**
+     * Gets the number of sales in the index.
+     *
+     * @return The number of sales
+     */
+    public int size() {
+        return all.size;
+    }
+
+    /**
+     * Gets all sales, oldest first.
+     *
+     * @return A read-only view of all sales
+     */
+    public List<Sale> all() {
+        return all.view(0, all.size);
+    }
+
+    /**
+     * Gets the sales made between two dates (both inclusive).
+     *
+     * @param from The start of the range, or null for no lower limit
+     * @param to The end of the range, or null for no upper limit
+     * @return A read-only view of the matching sales, oldest first
+     */
+    public List<Sale> between(Date from, Date to) {
+        return all.range(from, to);
+    }
+
+    /**
+     * Gets the sales between two dates that contain at least one item of a brand.
+     * The brand is compared without regard to case.
+     *
+     * @param brand The brand to look for
+     * @param from The start of the range, or null for no lower limit
+     * @param to The end of the range, or null for no upper limit
+     * @return A read-only view of the matching sales, oldest first
+     */
+    public List<Sale> between(String brand, Date from, Date to) {
+        if (brandIndexStale) {
+            rebuildBrandPostings();
+        }
+        Timeline postings = byBrand.get(brandKey(brand));
+        return postings == null ? Collections.emptyList() : postings.range(from, to);
+    }
+
+    /**
+     * Sets how product IDs are mapped to brand names.
+     * The brand postings are rebuilt the next time they are needed.
+     *
+     * @param resolver Returns the brand of a product ID, or null if unknown
+     */
+    public void setBrandResolver(IntFunction<String> resolver) {
+        this.brandResolver = resolver;
+        invalidateBrands();
+    }
+
+    /**
+     * Marks the brand postings as out of date (for example after products were reloaded).
+     * They are rebuilt lazily by the next brand query.
+     */
+    public void invalidateBrands() {
+        brandIndexStale = true;
+    }
+
+    private void rebuildBrandPostings() {
+        byBrand.clear();
+        for (int i = 0; i < all.size; i++) {
+            addToBrandPostings(all.times[i], all.sales[i]);
+        }
+        brandIndexStale = false;
+    }
+
+    private void addToBrandPostings(long time, Sale sale) {
+        if (brandResolver == null) {
+            return;
+        }
+        // A sale is posted once per distinct brand it contains
+        Set<String> seen = new HashSet<>();
+        for (SaleItem item : sale.getItems()) {
+            String brand = brandResolver.apply(item.getProductId());
+            if (brand == null || brand.isBlank()) {
+                continue;
+            }
+            String key = brandKey(brand);
+            if (seen.add(key)) {
+                byBrand.computeIfAbsent(key, k -> new Timeline()).add(time, sale);
+            }
+        }
+    }
+
+    private static String brandKey(String brand) {
+        return brand.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static long toEpochSecond(Date date) {
+        return Math.floorDiv(date.getTime(), 1000L);
+    }
+
+    /**
+     * A growable pair of parallel arrays (epoch seconds and sales) kept sorted by time.
+     */
+    private static final class Timeline {
+        private long[] times = new long[64];
+        private Sale[] sales = new Sale[64];
+        private int size;
+
+        void add(long time, Sale sale) {
+            if (size == times.length) {
+                int capacity = times.length * 2;
+                times = Arrays.copyOf(times, capacity);
+                sales = Arrays.copyOf(sales, capacity);
+            }
+            // Sales almost always arrive in time order, so this is usually a plain append
+            int pos = size;
+            if (size > 0 && times[size - 1] > time) {
+                pos = upperBound(time);
+                System.arraycopy(times, pos, times, pos + 1, size - pos);
+                System.arraycopy(sales, pos, sales, pos + 1, size - pos);
+            }
+            times[pos] = time;
+            sales[pos] = sale;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(sales, 0, size, null);
+            size = 0;
+        }
+
+        List<Sale> range(Date from, Date to) {
+            int start = from == null ? 0 : lowerBound(toEpochSecond(from));
+            int end = to == null ? size : upperBound(toEpochSecond(to));
+            return view(start, Math.max(start, end));
+        }
+
+        List<Sale> view(int start, int end) {
+            return new RangeView(sales, start, end);
+        }
+
+        // First index whose time is >= the given time
+        private int lowerBound(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < time) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // First index whose time is > the given time
+        private int upperBound(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= time) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * A read-only list backed directly by a slice of the sales array.
+     */
+    private static final class RangeView extends AbstractList<Sale> implements RandomAccess {
+        private final Sale[] sales;
+        private final int start;
+        private final int end;
+
+        RangeView(Sale[] sales, int start, int end) {
+            this.sales = sales;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Sale get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return sales[start + index];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public List<Sale> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex);
+            }
+            return new RangeView(sales, start + fromIndex, start + toIndex);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package LTBPaintCenter.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This class groups the inventory batches of one sellable item (a SKU).
+ *
+ * Every inventory row is a batch with its own expiration date. Batches with
+ * the same name, brand, color and type are the same SKU (product codes are
+ * generated per batch, so they cannot be used). The POS shows one card per SKU, and
+ * at checkout the quantity sold is taken from the batches first-expired,
+ * first-out (FEFO) using a priority queue ordered by expiration date.
+ */
+public class Sku {
+
+    // Earliest expiration first; batches that never expire go last, then the oldest batch (lowest ID)
+    private static final Comparator<ProductBatch> FEFO = Comparator
+            .comparing(ProductBatch::getExpirationDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingInt(ProductBatch::getId);
+
+    private final String key;
+    private final List<ProductBatch> allBatches = new ArrayList<>();
+    // Only batches that can still be sold (in stock and not expired)
+    private final PriorityQueue<ProductBatch> sellable = new PriorityQueue<>(FEFO);
+    private int id = Integer.MAX_VALUE;
+    private int quantity;
+
+    private Sku(String key) {
+        this.key = key;
+    }
+
+    /**
+     * One batch and the quantity to take from it.
+     */
+    public static final class Allocation {
+        private final ProductBatch batch;
+        private final int qty;
+
+        Allocation(ProductBatch batch, int qty) {
+            this.batch = batch;
+            this.qty = qty;
+        }
+
+        public ProductBatch getBatch() { return batch; }
+        public int getQty() { return qty; }
+    }
+
+    /**
+     * Groups batches into SKUs.
+     *
+     * @param batches The batches (any order)
+     * @return The SKUs, in the order their first batch was seen
+     */
+    public static List<Sku> group(Collection<ProductBatch> batches) {
+        Map<String, Sku> byKey = new LinkedHashMap<>();
+        for (ProductBatch b : batches) {
+            byKey.computeIfAbsent(keyOf(b), Sku::new).add(b);
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    /**
+     * Groups batches into SKUs and indexes them by SKU ID.
+     *
+     * @param batches The batches
+     * @return SKU ID -> SKU
+     */
+    public static Map<Integer, Sku> byId(Collection<ProductBatch> batches) {
+        Map<Integer, Sku> map = new HashMap<>();
+        for (Sku sku : group(batches)) {
+            map.put(sku.getId(), sku);
+        }
+        return map;
+    }
+
+    /**
+     * Gets the SKU key of a batch: its name, brand, color and type (ignoring case and spaces around).
+     *
+     * @param b The batch
+     * @return The key
+     */
+    public static String keyOf(ProductBatch b) {
+        return clean(b.getName()) + "|" + clean(b.getBrand()) + "|"
+                + clean(b.getColor()) + "|" + clean(b.getType());
+    }
+
+    /**
+     * Gets the SKU key of an inventory product, the same way as for a batch.
+     *
+     * @param p The product
+     * @return The key
+     */
+    public static String keyOf(Product p) {
+        return clean(p.getName()) + "|" + clean(p.getBrand()) + "|"
+                + clean(p.getColor()) + "|" + clean(p.getType());
+    }
+
+    private static String clean(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void add(ProductBatch b) {
+        allBatches.add(b);
+        id = Math.min(id, b.getId());
+        if (b.getQuantity() > 0 && !b.isExpired()) {
+            sellable.add(b);
+            quantity += b.getQuantity();
+        }
+    }
+
+    /** @return The SKU ID (the lowest batch ID, so it stays the same while batches sell out) */
+    public int getId() {
+        return id;
+    }
+
+    /** @return The SKU key */
+    public String getKey() {
+        return key;
+    }
+
+    /** @return The total quantity of the sellable batches */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /** @return The IDs of the batches that are not expired (their stock is read from the database when reserving) */
+    public List<Integer> getBatchIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (ProductBatch b : allBatches) {
+            if (!b.isExpired()) ids.add(b.getId());
+        }
+        return ids;
+    }
+
+    /** @return All batches, including expired and empty ones */
+    public List<ProductBatch> getBatches() {
+        return allBatches;
+    }
+
+    /** @return The batch that sells next, or null if none can be sold */
+    public ProductBatch nextBatch() {
+        return sellable.peek();
+    }
+
+    /**
+     * Creates the POS card for this SKU: the details and price of the batch that
+     * sells next, the SKU ID, and the total sellable quantity. If no batch can be
+     * sold, the card shows the first batch with a quantity of 0.
+     *
+     * @return The card
+     */
+    public ProductBatch toCard() {
+        return toCard(0);
+    }
+
+    /**
+     * Creates the POS card for this SKU, showing the available-to-sell quantity:
+     * the sellable stock minus what other terminals have reserved.
+     *
+     * @param reservedElsewhere The quantity reserved by other carts
+     * @return The card
+     */
+    public ProductBatch toCard(int reservedElsewhere) {
+        ProductBatch next = sellable.peek();
+        ProductBatch shown = next != null ? next : allBatches.get(0);
+        LocalDate expires = shown.getExpirationDate();
+        int available = Math.max(0, quantity - reservedElsewhere);
+        ProductBatch card = new ProductBatch(id, shown.getName(), shown.getBrand(), shown.getColor(),
+                shown.getType(), shown.getPrice(), available, null, expires);
+        card.setProductCode(shown.getProductCode());
+        return card;
+    }
+
+    /**
+     * Splits a quantity across the batches, first-expired first-out.
+     * The SKU itself is not changed.
+     *
+     * @param qty The quantity to sell
+     * @return The batches and quantities, or null if there is not enough stock
+     */
+    public List<Allocation> allocate(int qty) {
+        if (qty > quantity) {
+            return null;
+        }
+        List<Allocation> result = new ArrayList<>();
+        PriorityQueue<ProductBatch> queue = new PriorityQueue<>(sellable);
+        int left = qty;
+        while (left > 0) {
+            ProductBatch b = queue.poll();
+            int take = Math.min(left, b.getQuantity());
+            result.add(new Allocation(b, take));
+            left -= take;
+        }
+        return result;
+    }
+
+    /**
+     * Turns a priced cart into a sale with one item per batch sold.
+     * Cart lines are SKUs; each line is split FEFO across the SKU's batches
+     * and every batch item keeps the cart's unit price. Discount lines are copied as they are.
+     *
+     * @param reference The sale reference number
+     * @param cart The priced cart
+     * @param skus SKU ID -> SKU, from the current inventory
+     * @return The sale
+     * @throws IllegalStateException If a SKU is gone or does not have enough stock
+     */
+    public static Sale toSale(String reference, PricedCart cart, Map<Integer, Sku> skus) {
+        Sale sale = new Sale(reference);
+        for (PricedCart.Line line : cart.getLines()) {
+            Sku sku = skus.get(line.getProductId());
+            List<Allocation> allocations = sku != null ? sku.allocate(line.getQty()) : null;
+            if (allocations == null) {
+                throw new IllegalStateException("Not enough stock for " + line.getName());
+            }
+            for (Allocation a : allocations) {
+                sale.addItem(new SaleItem(a.getBatch().getId(), line.getName(),
+                        line.getUnitCents() / 100.0, a.getQty()));
+            }
+        }
+        for (PricedCart.Line discount : cart.getDiscounts()) {
+            sale.addItem(discount.toSaleItem());
+        }
+        return sale;
+    }
+}
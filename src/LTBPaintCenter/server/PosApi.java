@@ -0,0 +1,157 @@
+package LTBPaintCenter.server;
+
+import LTBPaintCenter.dao.CheckoutDAO;
+import LTBPaintCenter.model.ProductBatch;
+import LTBPaintCenter.model.Promotion;
+import LTBPaintCenter.model.Sale;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface is what a POS terminal needs from the store: the catalog,
+ * promotions, stock reservations, cart pricing, sale references and checkout.
+ *
+ * PosService does the work on this machine's database, and PosClient sends
+ * the same calls to a PosServer over HTTP, so the POS screen works the same
+ * way against either one.
+ */
+public interface PosApi {
+
+    /**
+     * Gets the batches of the catalog. Every batch of a matching SKU is returned,
+     * sold out or expired ones too, so the caller groups them into the same SKUs
+     * (and SKU IDs) as the store does.
+     *
+     * @param query Text to look for in the code, name, brand, color or type, or null for all
+     * @return The batches
+     * @throws IOException If the server cannot be reached
+     */
+    List<ProductBatch> getCatalog(String query) throws IOException;
+
+    /**
+     * Gets the promotions that are active today.
+     *
+     * @return The promotions
+     * @throws IOException If the server cannot be reached
+     */
+    List<Promotion> getPromotions() throws IOException;
+
+    /**
+     * Gets the live stock reservations of the other terminals.
+     *
+     * @param terminalId This terminal (its own reservations are left out)
+     * @return SKU ID -> reserved quantity
+     * @throws IOException If the server cannot be reached
+     */
+    Map<Integer, Integer> getReservedByOthers(String terminalId) throws IOException;
+
+    /**
+     * Reserves the new cart quantity of a SKU for a terminal (0 releases it),
+     * if the store's stock less the other terminals' reservations is enough.
+     * The terminal's other cart lines are reserved again first if their
+     * reservations ran out.
+     *
+     * @param terminalId The terminal
+     * @param skuId The SKU ID
+     * @param qty The new cart quantity
+     * @param cart SKU ID -> quantity of every cart line, before this change
+     * @return true if the quantity is reserved (or released)
+     * @throws IOException If the server cannot be reached
+     */
+    boolean reserve(String terminalId, int skuId, int qty, Map<Integer, Integer> cart) throws IOException;
+
+    /**
+     * Releases all stock reservations of a terminal (when its cart is cleared or checked out).
+     *
+     * @param terminalId The terminal
+     * @throws IOException If the server cannot be reached
+     */
+    void releaseReservations(String terminalId) throws IOException;
+
+    /**
+     * Prices a cart with the store's VAT rules and active promotions.
+     *
+     * @param lines SKU ID -> quantity
+     * @return The totals
+     * @throws IOException If the server cannot be reached
+     * @throws IllegalArgumentException If a SKU is unknown or a quantity is not positive
+     */
+    Quote price(Map<Integer, Integer> lines) throws IOException;
+
+    /**
+     * Hands out a new sale reference. The store never hands out the same one
+     * twice, so terminals that share it do not pick the same number. Keep it
+     * and send it again when a checkout of the same cart is retried.
+     *
+     * @return The reference
+     * @throws IOException If the server cannot be reached
+     */
+    String newReference() throws IOException;
+
+    /**
+     * Prices a cart again and saves it as a sale. Sending the same reference
+     * and cart again (after a timeout) does not sell it twice, even when the
+     * sale had to be saved under another reference.
+     *
+     * @param reference The sale reference from newReference(), or null to let the store pick one
+     * @param lines SKU ID -> quantity
+     * @return The outcome and the saved sale
+     * @throws IOException If the server cannot be reached
+     * @throws IllegalArgumentException If a SKU is unknown or a quantity is not positive
+     */
+    Receipt checkout(String reference, Map<Integer, Integer> lines) throws IOException;
+
+    /**
+     * The totals of a priced cart, in centavos.
+     */
+    final class Quote {
+        private final long subtotalCents;
+        private final long discountCents;
+        private final long vatableCents;
+        private final long vatCents;
+        private final long vatExemptCents;
+        private final long totalCents;
+
+        public Quote(long subtotalCents, long discountCents, long vatableCents,
+                     long vatCents, long vatExemptCents, long totalCents) {
+            this.subtotalCents = subtotalCents;
+            this.discountCents = discountCents;
+            this.vatableCents = vatableCents;
+            this.vatCents = vatCents;
+            this.vatExemptCents = vatExemptCents;
+            this.totalCents = totalCents;
+        }
+
+        public long getSubtotalCents() { return subtotalCents; }
+        public long getDiscountCents() { return discountCents; }
+        public long getVatableCents() { return vatableCents; }
+        public long getVatCents() { return vatCents; }
+        public long getVatExemptCents() { return vatExemptCents; }
+        public long getTotalCents() { return totalCents; }
+    }
+
+    /**
+     * The outcome of a checkout.
+     */
+    final class Receipt {
+        private final String reference;
+        private final CheckoutDAO.Result result;
+        private final Sale sale;
+
+        /**
+         * @param reference The reference the sale was saved under (it can differ from the one sent)
+         * @param result The outcome
+         * @param sale The saved sale, or null if it was not saved
+         */
+        public Receipt(String reference, CheckoutDAO.Result result, Sale sale) {
+            this.reference = reference;
+            this.result = result;
+            this.sale = sale;
+        }
+
+        public String getReference() { return reference; }
+        public CheckoutDAO.Result getResult() { return result; }
+        public Sale getSale() { return sale; }
+    }
+}
@@ -0,0 +1,191 @@
+package LTBPaintCenter.server;
+
+import LTBPaintCenter.model.ProductBatch;
+import LTBPaintCenter.model.Promotion;
+import LTBPaintCenter.util.Json;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * This class calls a PosServer over HTTP, so a POS screen can run on a
+ * machine that does not have the store database.
+ *
+ * The desktop application uses it when it is started with
+ * -Dltb.server=http://host:port (see fromSystemProperty()).
+ */
+public class PosClient implements PosApi {
+
+    /** The system property that holds the server address. */
+    public static final String SERVER_PROPERTY = "ltb.server";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    /**
+     * Creates a client.
+     *
+     * @param baseUrl The server address, for example http://192.168.1.10:8085
+     */
+    public PosClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    /**
+     * Creates a client for the server named by the ltb.server system property.
+     *
+     * @return The client, or null if the property is not set (use the local database)
+     */
+    public static PosClient fromSystemProperty() {
+        String url = System.getProperty(SERVER_PROPERTY);
+        return url == null || url.isBlank() ? null : new PosClient(url.trim());
+    }
+
+    /** @return The server address */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ProductBatch> getCatalog(String query) throws IOException {
+        String path = "/api/catalog";
+        if (query != null && !query.isBlank()) {
+            path += "?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8);
+        }
+        Object body = send(HttpRequest.newBuilder(uri(path)).GET());
+        List<ProductBatch> batches = new ArrayList<>();
+        if (body instanceof List<?> list) {
+            for (Object o : list) {
+                batches.add(PosJson.toBatch((Map<String, Object>) o));
+            }
+        }
+        return batches;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Promotion> getPromotions() throws IOException {
+        Object body = send(HttpRequest.newBuilder(uri("/api/promotions")).GET());
+        List<Promotion> promotions = new ArrayList<>();
+        if (body instanceof List<?> list) {
+            for (Object o : list) {
+                try {
+                    promotions.add(PosJson.toPromotion((Map<String, Object>) o));
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    System.err.println("Skipping a promotion from " + baseUrl + ": " + e.getMessage());
+                }
+            }
+        }
+        return promotions;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Integer, Integer> getReservedByOthers(String terminalId) throws IOException {
+        Object body = send(HttpRequest.newBuilder(uri("/api/reservations?terminal="
+                + URLEncoder.encode(terminalId, StandardCharsets.UTF_8))).GET());
+        return body instanceof List<?> list ? PosJson.toLines((List<Object>) list) : new HashMap<>();
+    }
+
+    @Override
+    public boolean reserve(String terminalId, int skuId, int qty, Map<Integer, Integer> cart) throws IOException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("terminal", terminalId);
+        request.put("productId", skuId);
+        request.put("qty", qty);
+        request.put("lines", PosJson.fromLines(cart));
+        return Boolean.TRUE.equals(sendObject(post("/api/reservations", request)).get("ok"));
+    }
+
+    @Override
+    public void releaseReservations(String terminalId) throws IOException {
+        send(HttpRequest.newBuilder(uri("/api/reservations?terminal="
+                + URLEncoder.encode(terminalId, StandardCharsets.UTF_8))).DELETE());
+    }
+
+    @Override
+    public Quote price(Map<Integer, Integer> lines) throws IOException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("lines", PosJson.fromLines(lines));
+        return PosJson.toQuote(sendObject(post("/api/cart/price", request)));
+    }
+
+    @Override
+    public String newReference() throws IOException {
+        String reference = Json.getString(sendObject(post("/api/reference", Map.of())), "reference");
+        if (reference == null || reference.isBlank()) {
+            throw new IOException("Unexpected answer from " + baseUrl);
+        }
+        return reference;
+    }
+
+    @Override
+    public Receipt checkout(String reference, Map<Integer, Integer> lines) throws IOException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("reference", reference);
+        request.put("lines", PosJson.fromLines(lines));
+        return PosJson.toReceipt(sendObject(post("/api/checkout", request)));
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private HttpRequest.Builder post(String path, Object body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> sendObject(HttpRequest.Builder request) throws IOException {
+        Object body = send(request);
+        if (!(body instanceof Map)) {
+            throw new IOException("Unexpected answer from " + baseUrl);
+        }
+        return (Map<String, Object>) body;
+    }
+
+    /**
+     * Sends a request and reads the JSON answer.
+     * A 400 answer becomes an IllegalArgumentException (like the local service
+     * throws), any other error status an IOException.
+     */
+    @SuppressWarnings("unchecked")
+    private Object send(HttpRequest.Builder request) throws IOException {
+        HttpResponse<String> response;
+        try {
+            response = http.send(request.timeout(TIMEOUT).build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling " + baseUrl, e);
+        }
+
+        Object body;
+        try {
+            body = Json.parse(response.body());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unexpected answer from " + baseUrl + " (HTTP " + response.statusCode() + ")");
+        }
+        if (response.statusCode() == 200) {
+            return body;
+        }
+        String error = body instanceof Map ? Json.getString((Map<String, Object>) body, "error") : null;
+        if (error == null) error = "HTTP " + response.statusCode();
+        if (response.statusCode() == 400) {
+            throw new IllegalArgumentException(error);
+        }
+        throw new IOException(error);
+    }
+}
@@ -0,0 +1,216 @@
+package LTBPaintCenter.server;
+
+import LTBPaintCenter.dao.CheckoutDAO;
+import LTBPaintCenter.model.InventoryBatch;
+import LTBPaintCenter.model.KpiTracker;
+import LTBPaintCenter.model.ProductBatch;
+import LTBPaintCenter.model.Promotion;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.SaleItem;
+import LTBPaintCenter.util.Json;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * This class turns the POS objects into JSON objects and back, so the
+ * server and the client agree on the field names.
+ * Dates are written as yyyy-MM-dd and sale times as milliseconds since 1970.
+ */
+final class PosJson {
+
+    private PosJson() {
+    }
+
+    /**
+     * Writes a catalog batch. The SKU ID is the ID that pricing, reservations
+     * and checkout take for this batch's product.
+     */
+    static Map<String, Object> fromBatch(ProductBatch b, int skuId) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", b.getId());
+        m.put("skuId", skuId);
+        m.put("productCode", b.getProductCode());
+        m.put("name", b.getName());
+        m.put("brand", b.getBrand());
+        m.put("color", b.getColor());
+        m.put("type", b.getType());
+        m.put("price", b.getPrice());
+        m.put("qty", b.getQuantity());
+        m.put("expirationDate", dateText(b.getExpirationDate()));
+        return m;
+    }
+
+    static ProductBatch toBatch(Map<String, Object> m) {
+        ProductBatch b = new ProductBatch((int) Json.getLong(m, "id", 0), Json.getString(m, "name"),
+                Json.getString(m, "brand"), Json.getString(m, "color"), Json.getString(m, "type"),
+                Json.getDouble(m, "price", 0), (int) Json.getLong(m, "qty", 0), null,
+                date(Json.getString(m, "expirationDate")));
+        b.setProductCode(Json.getString(m, "productCode"));
+        return b;
+    }
+
+    static Map<String, Object> fromInventoryBatch(InventoryBatch b) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", b.getId());
+        m.put("productCode", b.getProductCode());
+        m.put("name", b.getName());
+        m.put("brand", b.getBrand());
+        m.put("color", b.getColor());
+        m.put("type", b.getType());
+        m.put("price", b.getPrice());
+        m.put("qty", b.getQuantity());
+        m.put("dateImported", dateText(b.getDateImported()));
+        m.put("expirationDate", dateText(b.getExpirationDate()));
+        m.put("status", b.getStatus());
+        m.put("version", b.getVersion());
+        return m;
+    }
+
+    static InventoryBatch toInventoryBatch(Map<String, Object> m) {
+        String name = Json.getString(m, "name");
+        String brand = Json.getString(m, "brand");
+        if (name == null || name.isBlank() || brand == null || brand.isBlank()) {
+            throw new IllegalArgumentException("Name and brand are required");
+        }
+        LocalDate imported = date(Json.getString(m, "dateImported"));
+        InventoryBatch b = new InventoryBatch((int) Json.getLong(m, "id", 0), Json.getString(m, "productCode"),
+                name, brand, Json.getString(m, "color"), Json.getString(m, "type"),
+                Json.getDouble(m, "price", 0), (int) Json.getLong(m, "qty", 0),
+                imported != null ? imported : LocalDate.now(), date(Json.getString(m, "expirationDate")), null);
+        b.setVersion((int) Json.getLong(m, "version", 0));
+        return b;
+    }
+
+    static Map<String, Object> fromSale(Sale sale) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("reference", sale.getId());
+        m.put("time", sale.getDate().getTime());
+        m.put("total", sale.getTotal());
+        List<Object> items = new ArrayList<>();
+        for (SaleItem item : sale.getItems()) {
+            Map<String, Object> i = new LinkedHashMap<>();
+            i.put("productId", item.getProductId());
+            i.put("name", item.getName());
+            i.put("price", item.getPrice());
+            i.put("qty", item.getQty());
+            items.add(i);
+        }
+        m.put("items", items);
+        return m;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Sale toSale(Map<String, Object> m) {
+        Sale sale = new Sale(Json.getString(m, "reference"), new Date(Json.getLong(m, "time", System.currentTimeMillis())));
+        for (Object o : Json.getList(m, "items")) {
+            Map<String, Object> i = (Map<String, Object>) o;
+            sale.addItem(new SaleItem((int) Json.getLong(i, "productId", 0), Json.getString(i, "name"),
+                    Json.getDouble(i, "price", 0), (int) Json.getLong(i, "qty", 0)));
+        }
+        return sale;
+    }
+
+    static Map<String, Object> fromPromotion(Promotion p) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", p.getId());
+        m.put("name", p.getName());
+        m.put("scope", p.getScope().name());
+        m.put("scopeValue", p.getScopeValue());
+        m.put("discountType", p.getDiscountType().name());
+        m.put("discountValue", p.getDiscountValue());
+        m.put("minQty", p.getMinQty());
+        return m;
+    }
+
+    static Promotion toPromotion(Map<String, Object> m) {
+        return new Promotion((int) Json.getLong(m, "id", 0), Json.getString(m, "name"),
+                Promotion.Scope.valueOf(Json.getString(m, "scope")), Json.getString(m, "scopeValue"),
+                Promotion.DiscountType.valueOf(Json.getString(m, "discountType")),
+                Json.getDouble(m, "discountValue", 0), (int) Json.getLong(m, "minQty", 1));
+    }
+
+    static Map<String, Object> fromQuote(PosApi.Quote q) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("subtotalCents", q.getSubtotalCents());
+        m.put("discountCents", q.getDiscountCents());
+        m.put("vatableCents", q.getVatableCents());
+        m.put("vatCents", q.getVatCents());
+        m.put("vatExemptCents", q.getVatExemptCents());
+        m.put("totalCents", q.getTotalCents());
+        return m;
+    }
+
+    static PosApi.Quote toQuote(Map<String, Object> m) {
+        return new PosApi.Quote(Json.getLong(m, "subtotalCents", 0), Json.getLong(m, "discountCents", 0),
+                Json.getLong(m, "vatableCents", 0), Json.getLong(m, "vatCents", 0),
+                Json.getLong(m, "vatExemptCents", 0), Json.getLong(m, "totalCents", 0));
+    }
+
+    static Map<String, Object> fromReceipt(PosApi.Receipt r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("reference", r.getReference());
+        m.put("result", r.getResult().name());
+        m.put("sale", r.getSale() != null ? fromSale(r.getSale()) : null);
+        return m;
+    }
+
+    @SuppressWarnings("unchecked")
+    static PosApi.Receipt toReceipt(Map<String, Object> m) {
+        Object sale = m.get("sale");
+        return new PosApi.Receipt(Json.getString(m, "reference"),
+                CheckoutDAO.Result.valueOf(Json.getString(m, "result")),
+                sale instanceof Map ? toSale((Map<String, Object>) sale) : null);
+    }
+
+    static Map<String, Object> fromSnapshot(KpiTracker.Snapshot s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("revenue", s.getRevenue());
+        m.put("receipts", s.getReceipts());
+        m.put("units", s.getUnits());
+        m.put("averageBasket", s.getAverageBasket());
+        m.put("topProduct", s.getTopProduct());
+        m.put("topProductUnits", s.getTopProductUnits());
+        return m;
+    }
+
+    /** Writes cart lines as [{"productId": 1, "qty": 2}, ...]. */
+    static List<Object> fromLines(Map<Integer, Integer> lines) {
+        List<Object> list = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : lines.entrySet()) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("productId", e.getKey());
+            line.put("qty", e.getValue());
+            list.add(line);
+        }
+        return list;
+    }
+
+    /** Reads cart lines; the same product twice is added up. */
+    @SuppressWarnings("unchecked")
+    static Map<Integer, Integer> toLines(List<Object> list) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        for (Object o : list) {
+            if (!(o instanceof Map)) {
+                throw new IllegalArgumentException("Each line needs a productId and a qty");
+            }
+            Map<String, Object> line = (Map<String, Object>) o;
+            int productId = (int) Json.getLong(line, "productId", -1);
+            int qty = (int) Json.getLong(line, "qty", 0);
+            lines.merge(productId, qty, Integer::sum);
+        }
+        return lines;
+    }
+
+    private static String dateText(LocalDate date) {
+        return date != null ? date.toString() : null;
+    }
+
+    private static LocalDate date(String text) {
+        if (text == null || text.isBlank()) return null;
+        try {
+            return LocalDate.parse(text.trim());
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad date " + text + " (use yyyy-MM-dd)");
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package LTBPaintCenter.server;
+
+import LTBPaintCenter.dao.ConcurrentUpdateException;
+import LTBPaintCenter.dao.DbWriteExecutor;
+import LTBPaintCenter.model.InventoryBatch;
+import LTBPaintCenter.model.KpiTracker;
+import LTBPaintCenter.model.ProductBatch;
+import LTBPaintCenter.model.Promotion;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.Sku;
+import LTBPaintCenter.sync.Change;
+import LTBPaintCenter.sync.HttpSyncPeer;
+import LTBPaintCenter.sync.SyncEngine;
+import LTBPaintCenter.util.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs the POS without screens, as an HTTP server that speaks JSON.
+ *
+ * The endpoints call a PosService, so they price, sell and change stock
+ * exactly like the desktop application does:
+ *
+ * <pre>
+ * GET    /api/health                        status and database write figures
+ * GET    /api/catalog?q=text                batches of the catalog, each with the skuId the cart uses
+ * GET    /api/promotions                    the promotions active today
+ * GET    /api/reservations?terminal=ID      [{"productId":1,"qty":2}] reserved by the other terminals
+ * POST   /api/reservations                  {"terminal":"...","productId":1,"qty":2,"lines":[cart]} -&gt; {"ok":true}
+ * DELETE /api/reservations?terminal=ID      release all reservations of a terminal
+ * POST   /api/cart/price                    {"lines":[{"productId":1,"qty":2}]} -&gt; totals
+ * POST   /api/reference                     -&gt; {"reference":"..."} a new sale reference
+ * POST   /api/checkout                      {"reference":"...","lines":[...]} -&gt; receipt
+ * GET    /api/inventory/{id}                one inventory batch
+ * POST   /api/inventory                     add a batch        (X-Admin-Password header)
+ * PUT    /api/inventory/{id}                update a batch     (X-Admin-Password header)
+ * DELETE /api/inventory/{id}                delete a batch     (X-Admin-Password header)
+ * GET    /api/reports/kpis                  KPIs for the last hour, today and the last 7 days
+ * GET    /api/reports/sales?from=&amp;to=       sales between two dates (yyyy-MM-dd)
+ * GET    /api/sync/marks                    highest change number per origin terminal
+ * POST   /api/sync/pull                     {"marks":{...},"limit":500} -&gt; changes after the marks
+ * POST   /api/sync/push                     {"changes":[...]} -&gt; applies them
+ * </pre>
+ *
+ * The sync endpoints make the server the hub that terminals sync their
+ * change logs with (see SyncEngine). They need the shared sync token in the
+ * X-Sync-Token header (the server's -Dltb.sync.token) or the admin password
+ * in the X-Admin-Password header.
+ *
+ * Errors come back as {"error": "..."} with status 400 (bad request),
+ * 403 (wrong admin password or sync token), 404, 405, 409 (the batch was changed by
+ * someone else; the current batch is included), 413 (the request body is
+ * bigger than MAX_BODY_BYTES) or 500.
+ *
+ * Each request runs on its own virtual thread when the JDK has them
+ * (Java 21 and later), and on a fixed pool of threads otherwise.
+ */
+public class PosServer {
+
+    /** The port used when none is given. */
+    public static final int DEFAULT_PORT = 8085;
+
+    /** The biggest request body accepted, in bytes. A full sync push fits easily. */
+    public static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    private static final String PASSWORD_HEADER = "X-Admin-Password";
+
+    private final HttpServer http;
+    private final PosService service;
+    private final ExecutorService executor;
+
+    /**
+     * An endpoint. It returns the object to send as JSON.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        Object handle(HttpExchange ex) throws Exception;
+    }
+
+    /** An error with its own HTTP status. */
+    private static final class HttpError extends RuntimeException {
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Creates the server. It does not accept requests until start() is called.
+     *
+     * @param service The service that does the work
+     * @param port The port to listen on
+     * @throws IOException If the port cannot be opened
+     */
+    public PosServer(PosService service, int port) throws IOException {
+        this.service = service;
+        this.http = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newRequestExecutor();
+        http.setExecutor(executor);
+
+        route("/api/health", this::health);
+        route("/api/catalog", this::catalog);
+        route("/api/promotions", this::promotions);
+        route("/api/reservations", this::reservations);
+        route("/api/cart/price", this::price);
+        route("/api/reference", this::reference);
+        route("/api/checkout", this::checkout);
+        route("/api/inventory", this::inventory);
+        route("/api/reports/kpis", this::kpis);
+        route("/api/reports/sales", this::sales);
+        route("/api/sync/marks", this::syncMarks);
+        route("/api/sync/pull", this::syncPull);
+        route("/api/sync/push", this::syncPush);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        http.start();
+        System.err.println("POS server listening on port " + getPort());
+    }
+
+    /**
+     * Stops the server, giving running requests up to a second to finish.
+     */
+    public void stop() {
+        http.stop(1);
+        executor.shutdown();
+    }
+
+    /** @return The port the server listens on */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Creates the executor for requests: one virtual thread per request if
+     * the JDK has them, otherwise a fixed pool of daemon threads.
+     *
+     * @return The executor
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            // Looked up by name so the application still builds and runs on Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "pos-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void route(String path, Endpoint endpoint) {
+        http.createContext(path, ex -> {
+            try {
+                send(ex, 200, endpoint.handle(ex));
+            } catch (HttpError e) {
+                sendError(ex, e.status, e.getMessage(), null);
+            } catch (SecurityException e) {
+                sendError(ex, 403, e.getMessage(), null);
+            } catch (ConcurrentUpdateException e) {
+                InventoryBatch current = e.getCurrent();
+                sendError(ex, 409, e.getMessage(), current != null ? PosJson.fromInventoryBatch(current) : null);
+            } catch (IllegalArgumentException e) {
+                sendError(ex, 400, e.getMessage(), null);
+            } catch (Exception e) {
+                System.err.println("Error handling " + ex.getRequestMethod() + " " + ex.getRequestURI()
+                        + ": " + e);
+                sendError(ex, 500, "Internal error", null);
+            } finally {
+                ex.close();
+            }
+        });
+    }
+
+    private Object health(HttpExchange ex) {
+        requireMethod(ex, "GET");
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("status", "ok");
+        m.put("dbWrites", DbWriteExecutor.getMetrics().toString());
+        return m;
+    }
+
+    private Object catalog(HttpExchange ex) {
+        requireMethod(ex, "GET");
+        List<Object> list = new ArrayList<>();
+        // The catalog has whole SKUs, so grouping it gives the store's SKU IDs
+        for (Sku sku : Sku.group(service.getCatalog(query(ex).get("q")))) {
+            for (ProductBatch b : sku.getBatches()) {
+                list.add(PosJson.fromBatch(b, sku.getId()));
+            }
+        }
+        return list;
+    }
+
+    private Object promotions(HttpExchange ex) {
+        requireMethod(ex, "GET");
+        List<Object> list = new ArrayList<>();
+        for (Promotion p : service.getPromotions()) {
+            list.add(PosJson.fromPromotion(p));
+        }
+        return list;
+    }
+
+    private Object reservations(HttpExchange ex) throws IOException {
+        switch (ex.getRequestMethod()) {
+            case "GET":
+                return PosJson.fromLines(service.getReservedByOthers(query(ex).get("terminal")));
+            case "POST": {
+                Map<String, Object> body = readBody(ex);
+                long skuId = Json.getLong(body, "productId", -1);
+                long qty = Json.getLong(body, "qty", -1);
+                if (skuId < 0 || qty < 0) throw new IllegalArgumentException("A productId and a qty are needed");
+                return result(service.reserve(Json.getString(body, "terminal"), (int) skuId, (int) qty,
+                        PosJson.toLines(Json.getList(body, "lines"))));
+            }
+            case "DELETE":
+                service.releaseReservations(query(ex).get("terminal"));
+                return result(true);
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Object price(HttpExchange ex) throws IOException {
+        requireMethod(ex, "POST");
+        Map<String, Object> body = readBody(ex);
+        return PosJson.fromQuote(service.price(PosJson.toLines(Json.getList(body, "lines"))));
+    }
+
+    private Object reference(HttpExchange ex) {
+        requireMethod(ex, "POST");
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("reference", service.newReference());
+        return m;
+    }
+
+    private Object checkout(HttpExchange ex) throws IOException {
+        requireMethod(ex, "POST");
+        Map<String, Object> body = readBody(ex);
+        PosApi.Receipt receipt = service.checkout(Json.getString(body, "reference"),
+                PosJson.toLines(Json.getList(body, "lines")));
+        return PosJson.fromReceipt(receipt);
+    }
+
+    private Object inventory(HttpExchange ex) throws IOException, ConcurrentUpdateException {
+        String method = ex.getRequestMethod();
+        Integer id = pathId(ex, "/api/inventory");
+        String password = ex.getRequestHeaders().getFirst(PASSWORD_HEADER);
+
+        if (id == null) {
+            if (!method.equals("POST")) throw new HttpError(405, "Use POST to add a batch");
+            InventoryBatch batch = PosJson.toInventoryBatch(readBody(ex));
+            if (!service.addBatch(password, batch)) throw new HttpError(500, "The batch could not be saved");
+            return result(true);
+        }
+        switch (method) {
+            case "GET": {
+                InventoryBatch batch = service.getBatch(id);
+                if (batch == null) throw new HttpError(404, "Batch " + id + " not found");
+                return PosJson.fromInventoryBatch(batch);
+            }
+            case "PUT": {
+                InventoryBatch batch = PosJson.toInventoryBatch(readBody(ex));
+                batch.setId(id);
+                if (!service.updateBatch(password, batch)) throw new HttpError(500, "The batch could not be saved");
+                return PosJson.fromInventoryBatch(batch);
+            }
+            case "DELETE":
+                if (!service.deleteBatch(password, id)) throw new HttpError(404, "Batch " + id + " not found");
+                return result(true);
+            default:
+                throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private Object kpis(HttpExchange ex) {
+        requireMethod(ex, "GET");
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (Map.Entry<String, KpiTracker.Snapshot> e : service.getKpis().entrySet()) {
+            m.put(e.getKey(), PosJson.fromSnapshot(e.getValue()));
+        }
+        return m;
+    }
+
+    private Object sales(HttpExchange ex) {
+        requireMethod(ex, "GET");
+        Map<String, String> q = query(ex);
+        Date from = startOf(q.get("from"), 0);
+        // "to" is inclusive, so take everything before the next day
+        Date to = startOf(q.get("to"), 1);
+        List<Object> list = new ArrayList<>();
+        for (Sale sale : service.getSales(from, to)) {
+            list.add(PosJson.fromSale(sale));
+        }
+        return list;
+    }
+
+    private Object syncMarks(HttpExchange ex) throws IOException {
+        requireMethod(ex, "GET");
+        requireSyncAccess(ex);
+        return SyncEngine.LOCAL.getHighWaterMarks();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object syncPull(HttpExchange ex) throws IOException, SQLException {
+        requireMethod(ex, "POST");
+        requireSyncAccess(ex);
+        Map<String, Object> body = readBody(ex);
+        Map<String, Long> marks = new HashMap<>();
+        if (body.get("marks") instanceof Map) {
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) body.get("marks")).entrySet()) {
+                if (e.getValue() instanceof Number n) marks.put(e.getKey(), n.longValue());
+            }
+        }
+        int limit = (int) Math.min(SyncEngine.BATCH, Math.max(1, Json.getLong(body, "limit", SyncEngine.BATCH)));
+        List<Object> list = new ArrayList<>();
+        for (Change c : SyncEngine.LOCAL.pull(marks, limit)) {
+            list.add(c.toJson());
+        }
+        // A terminal that is caught up has everything up to its marks
+        String node = Json.getString(body, "node");
+        if (node != null && !node.isBlank() && list.size() < limit) {
+            SyncEngine.acknowledge(node, marks);
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object syncPush(HttpExchange ex) throws IOException {
+        requireMethod(ex, "POST");
+        requireSyncAccess(ex);
+        List<Change> changes = new ArrayList<>();
+        for (Object o : Json.getList(readBody(ex), "changes")) {
+            if (!(o instanceof Map)) throw new IllegalArgumentException("Each change must be an object");
+            changes.add(Change.fromJson((Map<String, Object>) o));
+        }
+        SyncEngine.LOCAL.push(changes);
+        return result(true);
+    }
+
+    private void requireSyncAccess(HttpExchange ex) {
+        service.requireSyncAccess(ex.getRequestHeaders().getFirst(HttpSyncPeer.TOKEN_HEADER),
+                ex.getRequestHeaders().getFirst(PASSWORD_HEADER));
+    }
+
+    private static Date startOf(String text, int plusDays) {
+        if (text == null || text.isBlank()) return null;
+        try {
+            LocalDate day = LocalDate.parse(text.trim()).plusDays(plusDays);
+            return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("Bad date " + text + " (use yyyy-MM-dd)");
+        }
+    }
+
+    private static Map<String, Object> result(boolean ok) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("ok", ok);
+        return m;
+    }
+
+    private static void requireMethod(HttpExchange ex, String method) {
+        if (!ex.getRequestMethod().equals(method)) {
+            throw new HttpError(405, "Use " + method);
+        }
+    }
+
+    // Gets the number after the context path (/api/inventory/12 -> 12), or null if there is none
+    private static Integer pathId(HttpExchange ex, String prefix) {
+        String rest = ex.getRequestURI().getPath().substring(prefix.length());
+        if (rest.isEmpty() || rest.equals("/")) return null;
+        try {
+            return Integer.parseInt(rest.substring(1));
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Not found");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    // Reads the JSON body, refusing it with 413 if it is bigger than MAX_BODY_BYTES
+    private static Map<String, Object> readBody(HttpExchange ex) throws IOException {
+        String length = ex.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > MAX_BODY_BYTES) throw tooLarge();
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Bad Content-Length");
+            }
+        }
+        try (InputStream in = ex.getRequestBody()) {
+            // Chunked bodies have no length, so never read more than one byte past the limit
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw tooLarge();
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return text.isBlank() ? new LinkedHashMap<>() : Json.parseObject(text);
+        }
+    }
+
+    private static HttpError tooLarge() {
+        return new HttpError(413, "The request body is bigger than " + MAX_BODY_BYTES + " bytes");
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message, Object current) throws IOException {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("error", message);
+        if (current != null) {
+            m.put("current", current);
+        }
+        send(ex, status, m);
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     *
+     * @param port The port to listen on
+     * @throws IOException If the port cannot be opened
+     * @throws SQLException If the database cannot be opened
+     */
+    public static void run(int port) throws IOException, SQLException {
+        PosServer server = new PosServer(new PosService(), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "pos-server-stop"));
+        server.start();
+    }
+}
@@ -0,0 +1,517 @@
+package LTBPaintCenter.server;
+
+import LTBPaintCenter.dao.AdminDAO;
+import LTBPaintCenter.dao.CheckoutDAO;
+import LTBPaintCenter.dao.CheckoutJournal;
+import LTBPaintCenter.dao.ConcurrentUpdateException;
+import LTBPaintCenter.dao.InventoryDAO;
+import LTBPaintCenter.dao.ProductDAO;
+import LTBPaintCenter.dao.PromotionDAO;
+import LTBPaintCenter.dao.ReservationDAO;
+import LTBPaintCenter.dao.SaleReferenceGenerator;
+import LTBPaintCenter.model.*;
+import LTBPaintCenter.sync.SyncEngine;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs the POS operations on this machine's database, without any screens.
+ *
+ * It keeps its own copy of the inventory, promotions and sales report, the
+ * same way MainController does for the desktop application, and uses the
+ * same pricing engine, checkout journal and DAOs. It is called by many
+ * request threads at once: the inventory and report are only used while
+ * holding their lock, and checkouts run one at a time.
+ */
+public class PosService implements PosApi {
+
+    private final Inventory inventory = new Inventory();
+    private final Report report = new Report();
+    private final InventoryDAO inventoryDAO;
+    private volatile PromotionEngine promotions = PromotionEngine.NONE;
+    private volatile List<Promotion> activePromotions = List.of();
+    private final Object checkoutLock = new Object();
+
+    // Deletes timed-out stock reservations of all terminals in the background
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "reservation-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // How many receipts are kept for clients that retry a checkout
+    private static final int RECENT_RECEIPTS = 512;
+
+    // The last reference handed out, so the next one is above it even before it is saved (guarded by checkoutLock)
+    private String lastReference;
+
+    // Reference -> cart hash and receipt of the last checkouts (guarded by checkoutLock)
+    private final Map<String, SavedReceipt> recentReceipts = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SavedReceipt> eldest) {
+            return size() > RECENT_RECEIPTS;
+        }
+    };
+
+    private static final class SavedReceipt {
+        final String cartHash;
+        final Receipt receipt;
+
+        SavedReceipt(String cartHash, Receipt receipt) {
+            this.cartHash = cartHash;
+            this.receipt = receipt;
+        }
+    }
+
+    /**
+     * Creates the service and loads the products, promotions and sales from the database.
+     *
+     * @throws SQLException If the database cannot be opened
+     */
+    public PosService() throws SQLException {
+        Connection conn = Database.getConnection();
+        inventoryDAO = new InventoryDAO(conn);
+
+        report.setProductLookup(id -> {
+            synchronized (inventory) {
+                return inventory.getProduct(id);
+            }
+        });
+        report.loadFromDatabase();
+        reload();
+
+        // Load the database stock again once journaled sales are saved,
+        // and add the stock and sales terminals synced
+        CheckoutJournal.setOnApplied(this::reload);
+        CheckoutJournal.setOnRenamed(this::applyRenamed);
+        SWEEPER.scheduleWithFixedDelay(ReservationDAO::sweepExpired, 1, 1, TimeUnit.MINUTES);
+        SyncEngine.setOnApplied(this::applySynced);
+    }
+
+    /**
+     * Loads the products and active promotions again from the database.
+     */
+    public void reload() {
+        List<Product> products = ProductDAO.getAll();
+        Collection<ProductBatch> batches;
+        synchronized (inventory) {
+            inventory.clear();
+            for (Product product : products) {
+                inventory.addProduct(product);
+            }
+            batches = inventory.getAllBatches();
+        }
+        synchronized (report) {
+            report.invalidateBrandIndex();
+        }
+        activePromotions = PromotionDAO.getActivePromotions();
+        promotions = new PromotionEngine(activePromotions, batches);
+    }
+
+    /**
+     * Records that a journaled sale was saved under another reference, because
+     * another terminal used its reference first. A client that retries with
+     * the old reference gets the saved one back.
+     *
+     * @param sale The sale as it was journaled
+     * @param savedReference The reference it was saved under
+     */
+    private void applyRenamed(Sale sale, String savedReference) {
+        synchronized (report) {
+            report.renameSale(sale, savedReference);
+        }
+        synchronized (checkoutLock) {
+            SavedReceipt recent = recentReceipts.get(sale.getId());
+            if (recent != null) {
+                Sale renamed = new Sale(savedReference, sale.getDate());
+                for (SaleItem item : recent.receipt.getSale().getItems()) {
+                    renamed.addItem(item);
+                }
+                SavedReceipt saved = new SavedReceipt(recent.cartHash,
+                        new Receipt(savedReference, recent.receipt.getResult(), renamed));
+                recentReceipts.put(sale.getId(), saved);
+                recentReceipts.put(savedReference, saved);
+            }
+        }
+    }
+
+    /**
+     * Adds what a sync brought from the terminals: only the batches it changed
+     * are read again, and its sales are added to the report.
+     *
+     * @param applied The synced sales and changed batch IDs
+     */
+    private void applySynced(SyncEngine.Applied applied) {
+        Set<Integer> ids = applied.getBatchIds();
+        if (!ids.isEmpty()) {
+            List<Product> changed = ProductDAO.getByIds(ids);
+            Collection<ProductBatch> batches;
+            synchronized (inventory) {
+                for (int id : ids) {
+                    inventory.removeProduct(id);
+                }
+                for (Product product : changed) {
+                    inventory.addProduct(product);
+                }
+                batches = inventory.getAllBatches();
+            }
+            synchronized (report) {
+                report.invalidateBrandIndex();
+            }
+            promotions = new PromotionEngine(activePromotions, batches);
+        }
+        synchronized (report) {
+            for (Sale sale : applied.getSales()) {
+                report.recordCommittedSale(sale);
+            }
+        }
+    }
+
+    @Override
+    public List<ProductBatch> getCatalog(String query) {
+        Collection<ProductBatch> batches;
+        synchronized (inventory) {
+            batches = inventory.getAllBatches();
+        }
+        if (query == null || query.isBlank()) {
+            return new ArrayList<>(batches);
+        }
+
+        // Match whole SKUs, so the caller still gets every batch of a SKU
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        List<ProductBatch> result = new ArrayList<>();
+        for (Sku sku : Sku.group(batches)) {
+            boolean match = false;
+            for (ProductBatch b : sku.getBatches()) {
+                if (contains(b.getProductCode(), q) || contains(b.getName(), q) || contains(b.getBrand(), q)
+                        || contains(b.getColor(), q) || contains(b.getType(), q)) {
+                    match = true;
+                    break;
+                }
+            }
+            if (match) {
+                result.addAll(sku.getBatches());
+            }
+        }
+        return result;
+    }
+
+    private static boolean contains(String field, String q) {
+        return field != null && field.toLowerCase(Locale.ROOT).contains(q);
+    }
+
+    @Override
+    public List<Promotion> getPromotions() {
+        return activePromotions;
+    }
+
+    @Override
+    public Map<Integer, Integer> getReservedByOthers(String terminalId) {
+        return ReservationDAO.getReservedByOthers(requireTerminal(terminalId));
+    }
+
+    @Override
+    public boolean reserve(String terminalId, int skuId, int qty, Map<Integer, Integer> cart) {
+        requireTerminal(terminalId);
+        // The batch IDs come from this store's SKUs; their stock is read from the database
+        Map<Integer, List<Integer>> batches = new HashMap<>();
+        for (Map.Entry<Integer, Sku> e : currentSkus().entrySet()) {
+            batches.put(e.getKey(), e.getValue().getBatchIds());
+        }
+        return ReservationDAO.reserveInCart(terminalId, skuId, qty, cart, batches);
+    }
+
+    @Override
+    public void releaseReservations(String terminalId) {
+        ReservationDAO.releaseAll(requireTerminal(terminalId));
+    }
+
+    private static String requireTerminal(String terminalId) {
+        if (terminalId == null || terminalId.isBlank()) {
+            throw new IllegalArgumentException("A terminal is needed");
+        }
+        return terminalId;
+    }
+
+    @Override
+    public Quote price(Map<Integer, Integer> lines) {
+        PricedCart cart = priceCart(lines, currentSkus());
+        return new Quote(cart.getSubtotalCents(), cart.getDiscountCents(), cart.getVatableCents(),
+                cart.getVatCents(), cart.getVatExemptCents(), cart.getTotalCents());
+    }
+
+    @Override
+    public String newReference() {
+        synchronized (checkoutLock) {
+            String reference = SaleReferenceGenerator.generateSaleReference(LocalDate.now());
+            // A reference handed out but not used yet is not in the database or the journal
+            String prefix = reference.substring(0, 6);
+            if (lastReference != null && lastReference.startsWith(prefix)
+                    && lastReference.length() == reference.length() && lastReference.compareTo(reference) >= 0) {
+                try {
+                    reference = prefix + String.format("%03d", Integer.parseInt(lastReference.substring(6)) + 1);
+                } catch (NumberFormatException ignored) {
+                    // Keep the generated one
+                }
+            }
+            lastReference = reference;
+            return reference;
+        }
+    }
+
+    @Override
+    public Receipt checkout(String reference, Map<Integer, Integer> lines) {
+        synchronized (checkoutLock) {
+            Map<Integer, Sku> skus = currentSkus();
+            PricedCart cart = priceCart(lines, skus);
+            if (cart.isEmpty()) {
+                throw new IllegalArgumentException("Cart is empty");
+            }
+            String cartHash = cart.getHash();
+            String requested = reference == null || reference.isBlank() ? newReference() : reference.trim();
+            String referenceNo = requested;
+
+            // A retry of a checkout that was saved: its stock is already gone,
+            // so answer from what was saved before splitting the cart again
+            Receipt earlier = findSaved(referenceNo, cartHash);
+            if (earlier != null) {
+                return earlier;
+            }
+
+            Sale sale;
+            try {
+                sale = Sku.toSale(referenceNo, cart, skus);
+            } catch (IllegalStateException e) {
+                return new Receipt(referenceNo, CheckoutDAO.Result.STOCK_CHANGED, null);
+            }
+            CheckoutDAO.Result outcome = CheckoutJournal.commit(sale, cartHash);
+            for (int n = 1; outcome == CheckoutDAO.Result.REFERENCE_TAKEN && n <= 3; n++) {
+                // Another terminal used this number first. The renamed reference is
+                // derived from it, so a retry of this cart finds the sale (see findSaved)
+                referenceNo = CheckoutDAO.renamedReference(requested, n);
+                sale = Sku.toSale(referenceNo, cart, skus);
+                outcome = CheckoutJournal.commit(sale, cartHash);
+            }
+
+            if (outcome == CheckoutDAO.Result.COMMITTED) {
+                // The database may not have the sale yet, so take its stock out here
+                synchronized (inventory) {
+                    for (SaleItem item : sale.getItems()) {
+                        if (!item.isDiscount()) {
+                            inventory.updateQuantity(item.getProductId(), -item.getQty());
+                        }
+                    }
+                }
+                synchronized (report) {
+                    report.recordCommittedSale(sale);
+                }
+            } else if (outcome == CheckoutDAO.Result.ALREADY_COMMITTED) {
+                // A retry of a sale this server already saved; send back what was saved
+                Sale saved = CheckoutDAO.loadSale(referenceNo);
+                if (saved != null) {
+                    sale = saved;
+                }
+            }
+            Receipt receipt = new Receipt(referenceNo, outcome, outcome.isSaved() ? sale : null);
+            if (outcome.isSaved()) {
+                SavedReceipt saved = new SavedReceipt(cartHash, receipt);
+                recentReceipts.put(referenceNo, saved);
+                // A retry sends the reference it asked for
+                recentReceipts.put(requested, saved);
+            }
+            return receipt;
+        }
+    }
+
+    /**
+     * Looks for an earlier checkout of the same cart under a reference, or
+     * under the reference it was renamed to because it was taken.
+     *
+     * @param reference The sale reference
+     * @param cartHash The hash of the cart
+     * @return An ALREADY_COMMITTED receipt, or null if this cart was not saved under the reference
+     */
+    private Receipt findSaved(String reference, String cartHash) {
+        SavedReceipt recent = recentReceipts.get(reference);
+        if (recent != null) {
+            // The saved reference can differ from the one asked for (see applyRenamed)
+            return recent.cartHash.equals(cartHash) ? new Receipt(recent.receipt.getReference(),
+                    CheckoutDAO.Result.ALREADY_COMMITTED, recent.receipt.getSale()) : null;
+        }
+        // Saved before this server started
+        String savedReference = CheckoutDAO.findSavedReference(reference, cartHash);
+        if (savedReference != null) {
+            Sale saved = CheckoutDAO.loadSale(savedReference);
+            if (saved != null) {
+                return new Receipt(savedReference, CheckoutDAO.Result.ALREADY_COMMITTED, saved);
+            }
+        }
+        return null;
+    }
+
+    private Map<Integer, Sku> currentSkus() {
+        synchronized (inventory) {
+            return inventory.getSkus();
+        }
+    }
+
+    /**
+     * Prices cart lines the same way the POS cart does: the card price of each
+     * SKU, then the discounts of the active promotions.
+     *
+     * @param lines SKU ID -> quantity
+     * @param skus SKU ID -> SKU
+     * @return The priced cart
+     * @throws IllegalArgumentException If a SKU is unknown or a quantity is not positive
+     */
+    private PricedCart priceCart(Map<Integer, Integer> lines, Map<Integer, Sku> skus) {
+        List<SaleItem> items = new ArrayList<>();
+        PromotionEngine.Session session = promotions.newSession();
+        List<PricedCart.Line> discounts = List.of();
+        for (Map.Entry<Integer, Integer> e : lines.entrySet()) {
+            Sku sku = skus.get(e.getKey());
+            if (sku == null) {
+                throw new IllegalArgumentException("Unknown product " + e.getKey());
+            }
+            int qty = e.getValue() == null ? 0 : e.getValue();
+            if (qty <= 0) {
+                throw new IllegalArgumentException("Quantity of product " + e.getKey() + " must be positive");
+            }
+            ProductBatch card = sku.toCard();
+            items.add(new SaleItem(sku.getId(), card.getName(), card.getPrice(), qty));
+            discounts = session.update(sku.getId(), card.getBrand(), card.getType(),
+                    Math.round(card.getPrice() * 100), qty);
+        }
+        return PricingEngine.STANDARD.withDiscounts(PricingEngine.STANDARD.price(items), discounts);
+    }
+
+    /**
+     * Gets one inventory batch.
+     *
+     * @param id The batch ID
+     * @return The batch, or null if it does not exist
+     */
+    public InventoryBatch getBatch(int id) {
+        synchronized (inventoryDAO) {
+            return inventoryDAO.getBatch(id);
+        }
+    }
+
+    /**
+     * Adds an inventory batch. Its status is worked out from its expiration date and quantity.
+     *
+     * @param password The admin password
+     * @param batch The new batch
+     * @return true if it was saved
+     * @throws SecurityException If the password is wrong
+     */
+    public boolean addBatch(String password, InventoryBatch batch) {
+        requireAdmin(password);
+        batch.setStatus(InventoryBatch.statusFor(batch.getExpirationDate(), batch.getQuantity()));
+        boolean ok;
+        synchronized (inventoryDAO) {
+            ok = inventoryDAO.addBatch(batch);
+        }
+        if (ok) reload();
+        return ok;
+    }
+
+    /**
+     * Updates an inventory batch, if nobody changed it since it was loaded.
+     *
+     * @param password The admin password
+     * @param batch The batch, with the version it was loaded with
+     * @return true if it was saved
+     * @throws SecurityException If the password is wrong
+     * @throws ConcurrentUpdateException If the batch was changed or deleted since it was loaded
+     */
+    public boolean updateBatch(String password, InventoryBatch batch) throws ConcurrentUpdateException {
+        requireAdmin(password);
+        batch.setStatus(InventoryBatch.statusFor(batch.getExpirationDate(), batch.getQuantity()));
+        boolean ok;
+        synchronized (inventoryDAO) {
+            ok = inventoryDAO.updateBatch(batch);
+        }
+        if (ok) reload();
+        return ok;
+    }
+
+    /**
+     * Deletes an inventory batch.
+     *
+     * @param password The admin password
+     * @param id The batch ID
+     * @return true if it was deleted
+     * @throws SecurityException If the password is wrong
+     */
+    public boolean deleteBatch(String password, int id) {
+        requireAdmin(password);
+        boolean ok;
+        synchronized (inventoryDAO) {
+            ok = inventoryDAO.deleteBatch(id);
+        }
+        if (ok) reload();
+        return ok;
+    }
+
+    /**
+     * Checks that a sync request may be served: it must carry the shared sync
+     * token this server was started with (-Dltb.sync.token), or the admin password.
+     *
+     * @param token The sync token sent with the request, or null
+     * @param password The admin password sent with the request, or null
+     * @throws SecurityException If neither is right
+     */
+    public void requireSyncAccess(String token, String password) {
+        String expected = System.getProperty(SyncEngine.TOKEN_PROPERTY);
+        if (token != null && expected != null && !expected.isBlank()
+                && MessageDigest.isEqual(token.trim().getBytes(StandardCharsets.UTF_8),
+                        expected.trim().getBytes(StandardCharsets.UTF_8))) {
+            return;
+        }
+        if (password == null || !AdminDAO.verifyPassword(password)) {
+            throw new SecurityException("Sync needs the sync token or the admin password");
+        }
+    }
+
+    private static void requireAdmin(String password) {
+        if (password == null || !AdminDAO.verifyPassword(password)) {
+            throw new SecurityException("Invalid admin password");
+        }
+    }
+
+    /**
+     * Gets the sales KPIs for the last hour, today and the last 7 days.
+     *
+     * @return Window name -> figures
+     */
+    public Map<String, KpiTracker.Snapshot> getKpis() {
+        Map<String, KpiTracker.Snapshot> kpis = new LinkedHashMap<>();
+        synchronized (report) {
+            kpis.put("lastHour", report.getKpis().getLastHour());
+            kpis.put("today", report.getKpis().getToday());
+            kpis.put("lastWeek", report.getKpis().getLastWeek());
+        }
+        return kpis;
+    }
+
+    /**
+     * Gets the sales between two dates.
+     *
+     * @param from The start date, or null for no lower limit
+     * @param to The end date, or null for no upper limit
+     * @return The sales, oldest first
+     */
+    public List<Sale> getSales(Date from, Date to) {
+        synchronized (report) {
+            return new ArrayList<>(report.getSalesBetween(from, to));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package LTBPaintCenter.sync;
+
+import LTBPaintCenter.util.Json;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is one row of the change log: one change to the inventory or
+ * the sales, made on one terminal (its origin).
+ *
+ * The origin and the origin's number for the change identify it on every
+ * terminal, so the same change is never applied twice.
+ */
+public final class Change {
+
+    private final String originNode;
+    private final long originSeq;
+    private final String table;
+    private final String rowKey;
+    private final String op;
+    private final String payload;
+    private final String stamp;
+
+    /**
+     * @param originNode The terminal that made the change
+     * @param originSeq The change's number on that terminal (1, 2, 3, ...)
+     * @param table "inventory" or "sales"
+     * @param rowKey The batch's sync ID, or the sale reference
+     * @param op INSERT, UPDATE, QTY or DELETE
+     * @param payload The changed values as JSON (null for DELETE)
+     * @param stamp When the change was made, as "millis|origin" (orders field changes)
+     */
+    public Change(String originNode, long originSeq, String table, String rowKey,
+                  String op, String payload, String stamp) {
+        this.originNode = originNode;
+        this.originSeq = originSeq;
+        this.table = table;
+        this.rowKey = rowKey;
+        this.op = op;
+        this.payload = payload;
+        this.stamp = stamp;
+    }
+
+    public String getOriginNode() { return originNode; }
+    public long getOriginSeq() { return originSeq; }
+    public String getTable() { return table; }
+    public String getRowKey() { return rowKey; }
+    public String getOp() { return op; }
+    public String getPayload() { return payload; }
+    public String getStamp() { return stamp; }
+
+    /**
+     * Gets the payload as a JSON object.
+     *
+     * @return The values, or an empty map if there is no payload
+     */
+    public Map<String, Object> getValues() {
+        return payload == null ? new LinkedHashMap<>() : Json.parseObject(payload);
+    }
+
+    /**
+     * Converts the change to a JSON object (for a file drop or the server).
+     *
+     * @return The JSON object
+     */
+    public Map<String, Object> toJson() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("origin", originNode);
+        m.put("seq", originSeq);
+        m.put("table", table);
+        m.put("key", rowKey);
+        m.put("op", op);
+        m.put("payload", payload);
+        m.put("stamp", stamp);
+        return m;
+    }
+
+    /**
+     * Reads a change from a JSON object.
+     *
+     * @param m The JSON object
+     * @return The change
+     * @throws IllegalArgumentException If a field is missing
+     */
+    public static Change fromJson(Map<String, Object> m) {
+        String origin = Json.getString(m, "origin");
+        long seq = Json.getLong(m, "seq", 0);
+        if (origin == null || seq <= 0 || Json.getString(m, "op") == null) {
+            throw new IllegalArgumentException("A change needs an origin, a seq and an op");
+        }
+        return new Change(origin, seq, Json.getString(m, "table"), Json.getString(m, "key"),
+                Json.getString(m, "op"), Json.getString(m, "payload"), Json.getString(m, "stamp"));
+    }
+
+    @Override
+    public String toString() {
+        return originNode + "#" + originSeq + " " + op + " " + table + " " + rowKey;
+    }
+}
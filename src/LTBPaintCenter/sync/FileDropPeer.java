@@ -0,0 +1,145 @@
+package LTBPaintCenter.sync;
+
+import LTBPaintCenter.util.Json;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * This class is a peer made of a shared folder (a network share, a USB
+ * stick, or a test directory). Every push writes one file per origin named
+ * origin~first~last.json, holding that origin's changes first to last.
+ *
+ * The file names alone give the high-water marks, and a pull only opens
+ * the files with changes after the caller's marks.
+ */
+public class FileDropPeer implements SyncPeer {
+
+    private final File dir;
+
+    /**
+     * @param dir The shared folder (created if it does not exist)
+     */
+    public FileDropPeer(File dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public String getId() {
+        return dir.getAbsolutePath();
+    }
+
+    /** One change file and the change numbers it holds. */
+    private static final class DropFile implements Comparable<DropFile> {
+        final File file;
+        final String origin;
+        final long first;
+        final long last;
+
+        DropFile(File file, String origin, long first, long last) {
+            this.file = file;
+            this.origin = origin;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public int compareTo(DropFile o) {
+            return Long.compare(first, o.first);
+        }
+    }
+
+    // Lists the change files, by origin, first change first
+    private Map<String, List<DropFile>> listFiles() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Sync folder " + dir + " cannot be created");
+        }
+        Map<String, List<DropFile>> byOrigin = new HashMap<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json") && !name.startsWith("."));
+        if (files == null) {
+            throw new IOException("Sync folder " + dir + " cannot be read");
+        }
+        for (File f : files) {
+            String[] parts = f.getName().substring(0, f.getName().length() - 5).split("~");
+            if (parts.length != 3) continue;
+            try {
+                String origin = URLDecoder.decode(parts[0], StandardCharsets.UTF_8);
+                byOrigin.computeIfAbsent(origin, k -> new ArrayList<>())
+                        .add(new DropFile(f, origin, Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            } catch (NumberFormatException e) {
+                // Not a change file
+            }
+        }
+        for (List<DropFile> list : byOrigin.values()) {
+            Collections.sort(list);
+        }
+        return byOrigin;
+    }
+
+    @Override
+    public Map<String, Long> getHighWaterMarks() throws IOException {
+        Map<String, Long> marks = new HashMap<>();
+        for (Map.Entry<String, List<DropFile>> e : listFiles().entrySet()) {
+            long high = 0;
+            // Only count files that follow on from each other
+            for (DropFile f : e.getValue()) {
+                if (f.first > high + 1) break;
+                high = Math.max(high, f.last);
+            }
+            marks.put(e.getKey(), high);
+        }
+        return marks;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Change> pull(Map<String, Long> marks, int limit) throws IOException {
+        List<Change> changes = new ArrayList<>();
+        for (Map.Entry<String, List<DropFile>> e : listFiles().entrySet()) {
+            long next = marks.getOrDefault(e.getKey(), 0L) + 1;
+            for (DropFile f : e.getValue()) {
+                if (changes.size() >= limit) return changes;
+                if (f.last < next) continue;
+                if (f.first > next) break;
+                String text = Files.readString(f.file.toPath(), StandardCharsets.UTF_8);
+                for (Object o : (List<Object>) Json.parse(text)) {
+                    Change c = Change.fromJson((Map<String, Object>) o);
+                    if (c.getOriginSeq() == next && changes.size() < limit) {
+                        changes.add(c);
+                        next++;
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void push(List<Change> changes) throws IOException {
+        Map<String, List<Change>> byOrigin = new LinkedHashMap<>();
+        for (Change c : changes) {
+            byOrigin.computeIfAbsent(c.getOriginNode(), k -> new ArrayList<>()).add(c);
+        }
+        listFiles();
+        for (Map.Entry<String, List<Change>> e : byOrigin.entrySet()) {
+            List<Change> list = e.getValue();
+            List<Object> json = new ArrayList<>();
+            for (Change c : list) {
+                json.add(c.toJson());
+            }
+            String name = URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "~"
+                    + list.get(0).getOriginSeq() + "~" + list.get(list.size() - 1).getOriginSeq() + ".json";
+
+            // Write under a hidden name first, so a reader never sees half a file
+            File tmp = new File(dir, "." + name + "." + UUID.randomUUID() + ".tmp");
+            Files.writeString(tmp.toPath(), Json.write(json), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), new File(dir, name).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package LTBPaintCenter.sync;
+
+import LTBPaintCenter.model.Global;
+import LTBPaintCenter.util.Json;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * This class is a peer that is a POS server (App --server) used as the hub:
+ * every terminal syncs with the hub, and the hub passes changes on.
+ *
+ * Every request carries the shared sync token (-Dltb.sync.token) in the
+ * X-Sync-Token header; the hub refuses requests without the right one.
+ */
+public class HttpSyncPeer implements SyncPeer {
+
+    /** The header that carries the shared sync token. */
+    public static final String TOKEN_HEADER = "X-Sync-Token";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final String token;
+    private final HttpClient http;
+
+    /**
+     * @param baseUrl The server address, for example http://192.168.1.10:8085
+     */
+    public HttpSyncPeer(String baseUrl) {
+        this(baseUrl, System.getProperty(SyncEngine.TOKEN_PROPERTY));
+    }
+
+    /**
+     * @param baseUrl The server address, for example http://192.168.1.10:8085
+     * @param token The shared sync token, or null to send none
+     */
+    public HttpSyncPeer(String baseUrl, String token) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.token = token == null || token.isBlank() ? null : token.trim();
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    }
+
+    @Override
+    public String getId() {
+        return baseUrl;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> getHighWaterMarks() throws IOException {
+        Object body = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/sync/marks")).GET());
+        Map<String, Long> marks = new HashMap<>();
+        if (body instanceof Map) {
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) body).entrySet()) {
+                if (e.getValue() instanceof Number n) {
+                    marks.put(e.getKey(), n.longValue());
+                }
+            }
+        }
+        return marks;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Change> pull(Map<String, Long> marks, int limit) throws IOException {
+        Map<String, Object> request = new LinkedHashMap<>();
+        // Tells the hub which terminal has these marks, so it can prune what every terminal has
+        request.put("node", Global.terminalId);
+        request.put("marks", marks);
+        request.put("limit", limit);
+        Object body = send(post("/api/sync/pull", request));
+        List<Change> changes = new ArrayList<>();
+        if (body instanceof List) {
+            for (Object o : (List<Object>) body) {
+                changes.add(Change.fromJson((Map<String, Object>) o));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void push(List<Change> changes) throws IOException {
+        List<Object> json = new ArrayList<>();
+        for (Change c : changes) {
+            json.add(c.toJson());
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("changes", json);
+        send(post("/api/sync/push", request));
+    }
+
+    private HttpRequest.Builder post(String path, Object body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8));
+    }
+
+    private Object send(HttpRequest.Builder request) throws IOException {
+        if (token != null) {
+            request.header(TOKEN_HEADER, token);
+        }
+        HttpResponse<String> response;
+        try {
+            response = http.send(request.timeout(TIMEOUT).build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing with " + baseUrl, e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Sync with " + baseUrl + " failed (HTTP " + response.statusCode() + "): "
+                    + response.body());
+        }
+        try {
+            return Json.parse(response.body());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unexpected answer from " + baseUrl);
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package LTBPaintCenter.sync;
+
+import LTBPaintCenter.dao.DbWriteExecutor;
+import LTBPaintCenter.dao.InventoryDAO;
+import LTBPaintCenter.model.Database;
+import LTBPaintCenter.model.InventoryBatch;
+import LTBPaintCenter.model.Report;
+import LTBPaintCenter.model.Sale;
+import LTBPaintCenter.model.SaleItem;
+import LTBPaintCenter.util.Json;
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps the databases of several terminals (or branches) in step
+ * by exchanging their change logs.
+ *
+ * Every terminal logs its own inventory and sales changes into change_log
+ * (see DatabaseSetup). A sync sends the peer the changes it does not have
+ * yet and applies the ones this terminal does not have, judged by the
+ * high-water marks of each origin. A change is applied once, in the order
+ * of its origin, and is logged again here so it can be passed on to others.
+ *
+ * How changes are merged:
+ * - Quantity changes are amounts added or taken out, so sales on two
+ *   terminals both count, whatever order they arrive in.
+ * - Field changes (name, price, dates, ...) keep the newest one by time.
+ * - A deleted batch stays deleted.
+ * - Sales rows are copied; a sale whose reference is already used here by
+ *   another terminal is saved under the reference followed by that terminal's ID.
+ *
+ * Every peer's high-water marks are remembered in sync_acks after a sync.
+ * Changes that every peer already has are then pruned from change_log,
+ * except the rows later merges still look at (see prune).
+ *
+ * All terminals must start from the same database (or an empty one), and
+ * each needs its own terminal ID (-Dltb.terminal). Because acknowledged
+ * changes are pruned, a terminal that joins later starts from a copy of
+ * the hub's database.
+ */
+public final class SyncEngine {
+
+    /** The most changes sent or applied at once. */
+    public static final int BATCH = 500;
+
+    /** The system property that names the peer: a hub URL or a shared folder. */
+    public static final String PEER_PROPERTY = "ltb.sync";
+
+    /**
+     * The system property with the shared secret a hub asks for before it
+     * takes or hands out changes. Set the same value on the hub and on every terminal.
+     */
+    public static final String TOKEN_PROPERTY = "ltb.sync.token";
+
+    private static volatile Consumer<Applied> onApplied;
+    private static ScheduledExecutorService scheduler;
+
+    /** This database as a peer (used by the hub server). */
+    public static final SyncPeer LOCAL = new SyncPeer() {
+        @Override
+        public String getId() {
+            return "local";
+        }
+
+        @Override
+        public Map<String, Long> getHighWaterMarks() throws IOException {
+            try {
+                return SyncEngine.getHighWaterMarks();
+            } catch (SQLException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public List<Change> pull(Map<String, Long> marks, int limit) throws IOException {
+            try {
+                return changesAfter(marks, limit);
+            } catch (SQLException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void push(List<Change> changes) throws IOException {
+            try {
+                Applied applied = new Applied();
+                apply(changes, applied);
+                notifyApplied(applied);
+            } catch (SQLException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+    };
+
+    private SyncEngine() {
+    }
+
+    /**
+     * The outcome of one sync.
+     */
+    public static final class Result {
+        private final int sent;
+        private final int received;
+
+        Result(int sent, int received) {
+            this.sent = sent;
+            this.received = received;
+        }
+
+        /** @return The changes given to the peer */
+        public int getSent() { return sent; }
+        /** @return The changes from the peer that were applied here */
+        public int getReceived() { return received; }
+
+        @Override
+        public String toString() {
+            return "sent " + sent + ", received " + received + " changes";
+        }
+    }
+
+    /**
+     * What the changes from other terminals added here: the sales lines,
+     * grouped into sales by reference, and the IDs of the inventory batches
+     * that were added, changed or deleted.
+     */
+    public static final class Applied {
+        private final Map<String, Sale> sales = new LinkedHashMap<>();
+        private final Set<Integer> batchIds = new LinkedHashSet<>();
+        private int count;
+
+        /** @return The synced sales lines, as sales (a sale can come in more than one part) */
+        public Collection<Sale> getSales() { return sales.values(); }
+        /** @return The IDs of the batches that were added, changed or deleted here */
+        public Set<Integer> getBatchIds() { return batchIds; }
+        /** @return How many changes were applied */
+        public int getCount() { return count; }
+
+        private void addSaleLine(String reference, String date, SaleItem item) {
+            sales.computeIfAbsent(reference, k -> new Sale(k, Report.parseSaleDate(date))).addItem(item);
+        }
+
+        private void addAll(Applied other) {
+            for (Sale sale : other.sales.values()) {
+                Sale mine = sales.computeIfAbsent(sale.getId(), k -> new Sale(k, sale.getDate()));
+                for (SaleItem item : sale.getItems()) {
+                    mine.addItem(item);
+                }
+            }
+            batchIds.addAll(other.batchIds);
+            count += other.count;
+        }
+    }
+
+    /**
+     * Sets what to run after changes from another terminal were applied
+     * (for example adding the synced sales and batches to the screens).
+     *
+     * @param listener The listener (it runs on the sync thread), or null
+     */
+    public static void setOnApplied(Consumer<Applied> listener) {
+        onApplied = listener;
+    }
+
+    private static void notifyApplied(Applied applied) {
+        Consumer<Applied> listener = onApplied;
+        if (listener != null && applied.getCount() > 0) {
+            listener.accept(applied);
+        }
+    }
+
+    /**
+     * Syncs with a peer: first sends what it is missing, then applies what this terminal is missing.
+     *
+     * @param peer The peer
+     * @return How many changes went each way
+     * @throws IOException If the peer cannot be reached
+     * @throws SQLException If the database fails
+     */
+    public static synchronized Result sync(SyncPeer peer) throws IOException, SQLException {
+        int sent = 0;
+        Map<String, Long> theirs = new HashMap<>(peer.getHighWaterMarks());
+        while (true) {
+            List<Change> out = changesAfter(theirs, BATCH);
+            if (out.isEmpty()) break;
+            peer.push(out);
+            sent += out.size();
+            for (Change c : out) {
+                theirs.merge(c.getOriginNode(), c.getOriginSeq(), Math::max);
+            }
+        }
+
+        Applied applied = new Applied();
+        try {
+            while (true) {
+                List<Change> in = peer.pull(getHighWaterMarks(), BATCH);
+                if (in.isEmpty()) break;
+                // Nothing usable (changes are missing before them); try next time
+                if (apply(in, applied) == 0) break;
+            }
+        } finally {
+            // The batches applied before a failure are saved, so they are shown too
+            notifyApplied(applied);
+        }
+
+        // What the peer has now can be pruned here once every peer has it
+        acknowledge(peer.getId(), peer.getHighWaterMarks());
+        return new Result(sent, applied.getCount());
+    }
+
+    /**
+     * Remembers which changes a peer has (its high-water marks), then prunes
+     * the changes every known peer has from change_log.
+     *
+     * @param peerId The peer (SyncPeer.getId(), or the terminal ID of a terminal pulling from this hub)
+     * @param marks Origin -> highest change number the peer has
+     * @throws SQLException If the database fails
+     */
+    public static void acknowledge(String peerId, Map<String, Long> marks) throws SQLException {
+        DbWriteExecutor.execute("sync acknowledge", conn -> {
+            try (PreparedStatement del = conn.prepareStatement("DELETE FROM sync_acks WHERE peer = ?");
+                 PreparedStatement ins = conn.prepareStatement(
+                         "INSERT INTO sync_acks (peer, origin_node, high_seq) VALUES (?, ?, ?)")) {
+                del.setString(1, peerId);
+                del.executeUpdate();
+                for (Map.Entry<String, Long> e : marks.entrySet()) {
+                    ins.setString(1, peerId);
+                    ins.setString(2, e.getKey());
+                    ins.setLong(3, e.getValue());
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+            }
+            return prune(conn);
+        });
+    }
+
+    /**
+     * Deletes the changes every peer in sync_acks has. A peer that has
+     * nothing from an origin keeps all of that origin's changes. Some inventory
+     * rows are kept because applying later changes reads them:
+     * - deletes, so a late insert or update does not bring the batch back
+     * - the newest insert or update of a batch, which later field changes are compared with
+     * - every change of a batch that is not here (yet), which its insert adds up
+     *
+     * @param conn The connection, inside the write transaction
+     * @return How many changes were deleted
+     */
+    private static int prune(Connection conn) throws SQLException {
+        Map<String, Long> acked = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT m.origin_node, MIN(COALESCE(a.high_seq, 0)) FROM sync_marks m " +
+                     "CROSS JOIN (SELECT DISTINCT peer FROM sync_acks) p " +
+                     "LEFT JOIN sync_acks a ON a.peer = p.peer AND a.origin_node = m.origin_node " +
+                     "GROUP BY m.origin_node")) {
+            while (rs.next()) {
+                if (rs.getLong(2) > 0) acked.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        int pruned = 0;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM change_log WHERE origin_node = ? AND origin_seq <= ? " +
+                "AND NOT (table_name = 'inventory' AND (op = 'DELETE' " +
+                "OR (op IN ('INSERT', 'UPDATE') AND stamp = (SELECT MAX(l.stamp) FROM change_log l " +
+                "    WHERE l.row_key = change_log.row_key AND l.table_name = 'inventory' " +
+                "    AND l.op IN ('INSERT', 'UPDATE'))) " +
+                "OR NOT EXISTS (SELECT 1 FROM inventory WHERE sync_uid = change_log.row_key)))")) {
+            for (Map.Entry<String, Long> e : acked.entrySet()) {
+                ps.setString(1, e.getKey());
+                ps.setLong(2, e.getValue());
+                pruned += ps.executeUpdate();
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Gets the highest change number this database has from each origin.
+     *
+     * @return Origin -> highest change number
+     * @throws SQLException If the database fails
+     */
+    public static Map<String, Long> getHighWaterMarks() throws SQLException {
+        try (Connection conn = Database.getConnection()) {
+            return readMarks(conn);
+        }
+    }
+
+    private static Map<String, Long> readMarks(Connection conn) throws SQLException {
+        Map<String, Long> marks = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT origin_node, high_seq FROM sync_marks")) {
+            while (rs.next()) {
+                marks.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * Gets the changes after the given marks, in order of their number for each origin.
+     *
+     * @param marks Origin -> highest change number already known
+     * @param limit The most changes to return
+     * @return The changes
+     * @throws SQLException If the database fails
+     */
+    public static List<Change> changesAfter(Map<String, Long> marks, int limit) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        String sql = "SELECT origin_node, origin_seq, table_name, row_key, op, payload, stamp FROM change_log " +
+                "WHERE origin_node = ? AND origin_seq > ? ORDER BY origin_seq LIMIT ?";
+        try (Connection conn = Database.getConnection()) {
+            Map<String, Long> ours = readMarks(conn);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, Long> e : ours.entrySet()) {
+                    long from = marks.getOrDefault(e.getKey(), 0L);
+                    if (e.getValue() <= from || changes.size() >= limit) continue;
+                    ps.setString(1, e.getKey());
+                    ps.setLong(2, from);
+                    ps.setInt(3, limit - changes.size());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            changes.add(new Change(rs.getString(1), rs.getLong(2), rs.getString(3),
+                                    rs.getString(4), rs.getString(5), rs.getString(6), rs.getString(7)));
+                        }
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Applies changes from other terminals in one transaction. Changes that
+     * are already here are skipped, and so are changes that come after a
+     * missing one from the same origin.
+     *
+     * @param changes The changes
+     * @return How many changes were applied
+     * @throws SQLException If the database fails (nothing is applied)
+     */
+    public static int apply(List<Change> changes) throws SQLException {
+        return apply(changes, new Applied());
+    }
+
+    /**
+     * Applies changes like apply(changes), and adds what they changed to applied.
+     *
+     * @param changes The changes
+     * @param applied Collects the synced sales and batches
+     * @return How many changes were applied
+     * @throws SQLException If the database fails (nothing is applied)
+     */
+    public static int apply(List<Change> changes, Applied applied) throws SQLException {
+        if (changes.isEmpty()) return 0;
+        // A fresh Applied per try: the write is run again if the database was busy
+        Applied batch = DbWriteExecutor.execute("sync apply", conn -> applyAll(conn, changes));
+        applied.addAll(batch);
+        return batch.getCount();
+    }
+
+    private static Applied applyAll(Connection conn, List<Change> changes) throws SQLException {
+        Applied applied = new Applied();
+        Map<String, Long> marks = readMarks(conn);
+        try (Statement st = conn.createStatement()) {
+            // Stop the triggers from logging these changes as this terminal's own
+            st.execute("INSERT INTO sync_applying (flag) VALUES (1)");
+        }
+        try {
+            for (Change c : changes) {
+                long mark = marks.getOrDefault(c.getOriginNode(), 0L);
+                if (c.getOriginSeq() <= mark) continue;
+                if (c.getOriginSeq() != mark + 1) {
+                    System.err.println("Sync: skipping " + c + ", change " + (mark + 1) + " of its origin is missing");
+                    continue;
+                }
+                logChange(conn, c);
+                marks.put(c.getOriginNode(), c.getOriginSeq());
+                if ("inventory".equals(c.getTable())) {
+                    applyInventory(conn, c, applied);
+                } else if ("sales".equals(c.getTable())) {
+                    applySale(conn, c, applied);
+                }
+                applied.count++;
+            }
+        } finally {
+            try (Statement st = conn.createStatement()) {
+                st.execute("DELETE FROM sync_applying");
+            }
+        }
+        return applied;
+    }
+
+    private static void logChange(Connection conn, Change c) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO change_log (origin_node, origin_seq, table_name, row_key, op, payload, stamp) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, c.getOriginNode());
+            ps.setLong(2, c.getOriginSeq());
+            ps.setString(3, c.getTable());
+            ps.setString(4, c.getRowKey());
+            ps.setString(5, c.getOp());
+            ps.setString(6, c.getPayload());
+            ps.setString(7, c.getStamp());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void applyInventory(Connection conn, Change c, Applied applied) throws SQLException {
+        String uid = c.getRowKey();
+        // Looked up first, so a deleted batch is taken out of the screens too
+        String before = queryString(conn, "SELECT id FROM inventory WHERE sync_uid = ?", uid);
+        if (before != null) {
+            applied.batchIds.add(Integer.parseInt(before));
+        }
+        switch (c.getOp()) {
+            case "INSERT" -> insertBatch(conn, uid);
+            case "UPDATE" -> {
+                // Only the newest field change counts (they may arrive in any order)
+                String newest = queryString(conn, "SELECT MAX(stamp) FROM change_log WHERE row_key = ? " +
+                        "AND table_name = 'inventory' AND op IN ('INSERT', 'UPDATE')", uid);
+                if (c.getStamp() != null && c.getStamp().compareTo(newest) >= 0) {
+                    setFields(conn, uid, c.getValues());
+                }
+            }
+            case "QTY" -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE inventory SET qty = qty + ?, version = version + 1 WHERE sync_uid = ?")) {
+                    ps.setLong(1, Json.getLong(c.getValues(), "delta", 0));
+                    ps.setString(2, uid);
+                    ps.executeUpdate();
+                }
+            }
+            case "DELETE" -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM inventory WHERE sync_uid = ?")) {
+                    ps.setString(1, uid);
+                    ps.executeUpdate();
+                }
+            }
+            default -> System.err.println("Sync: unknown change " + c);
+        }
+        Integer id = refreshStatus(conn, uid);
+        if (id != null) {
+            applied.batchIds.add(id);
+        }
+    }
+
+    /**
+     * Creates a batch from its logged changes: the newest fields, and the
+     * first quantity plus every quantity change that arrived before it.
+     */
+    private static void insertBatch(Connection conn, String uid) throws SQLException {
+        if (queryString(conn, "SELECT 1 FROM change_log WHERE row_key = ? AND table_name = 'inventory' " +
+                "AND op = 'DELETE' LIMIT 1", uid) != null
+                || queryString(conn, "SELECT 1 FROM inventory WHERE sync_uid = ?", uid) != null) {
+            return;
+        }
+        String first = queryString(conn, "SELECT payload FROM change_log WHERE row_key = ? " +
+                "AND table_name = 'inventory' AND op = 'INSERT' LIMIT 1", uid);
+        String newest = queryString(conn, "SELECT payload FROM change_log WHERE row_key = ? " +
+                "AND table_name = 'inventory' AND op IN ('INSERT', 'UPDATE') ORDER BY stamp DESC LIMIT 1", uid);
+        String deltas = queryString(conn, "SELECT COALESCE(SUM(json_extract(payload, '$.delta')), 0) " +
+                "FROM change_log WHERE row_key = ? AND table_name = 'inventory' AND op = 'QTY'", uid);
+        Map<String, Object> v = Json.parseObject(newest);
+        long qty = Json.getLong(Json.parseObject(first), "qty", 0) + (long) Double.parseDouble(deltas);
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO inventory (product_code, name, brand, color, type, price, qty, " +
+                "date_imported, expiration_date, sync_uid) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setObject(1, v.get("product_code"));
+            ps.setObject(2, v.get("name"));
+            ps.setObject(3, v.get("brand"));
+            ps.setObject(4, v.get("color"));
+            ps.setObject(5, v.get("type"));
+            ps.setDouble(6, Json.getDouble(v, "price", 0));
+            ps.setLong(7, qty);
+            ps.setObject(8, v.get("date_imported"));
+            ps.setObject(9, v.get("expiration_date"));
+            ps.setString(10, uid);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void setFields(Connection conn, String uid, Map<String, Object> v) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE inventory SET product_code = ?, name = ?, brand = ?, color = ?, type = ?, price = ?, " +
+                "date_imported = ?, expiration_date = ?, version = version + 1 WHERE sync_uid = ?")) {
+            ps.setObject(1, v.get("product_code"));
+            ps.setObject(2, v.get("name"));
+            ps.setObject(3, v.get("brand"));
+            ps.setObject(4, v.get("color"));
+            ps.setObject(5, v.get("type"));
+            ps.setDouble(6, Json.getDouble(v, "price", 0));
+            ps.setObject(7, v.get("date_imported"));
+            ps.setObject(8, v.get("expiration_date"));
+            ps.setString(9, uid);
+            ps.executeUpdate();
+        }
+    }
+
+    // Works out the status again after the quantity or dates changed; returns the batch ID, or null if it is gone
+    private static Integer refreshStatus(Connection conn, String uid) throws SQLException {
+        String id = queryString(conn, "SELECT id FROM inventory WHERE sync_uid = ?", uid);
+        if (id == null) return null;
+        InventoryBatch batch = new InventoryDAO(conn).getBatch(Integer.parseInt(id));
+        if (batch == null) return null;
+        String status = InventoryBatch.statusFor(batch.getExpirationDate(), batch.getQuantity());
+        if (!status.equals(batch.getStatus())) {
+            // A new version, so an edit loaded before this status change is refused (see InventoryDAO.updateBatch)
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE inventory SET status = ?, version = version + 1 WHERE id = ?")) {
+                ps.setString(1, status);
+                ps.setInt(2, batch.getId());
+                ps.executeUpdate();
+            }
+        }
+        return batch.getId();
+    }
+
+    private static void applySale(Connection conn, Change c, Applied applied) throws SQLException {
+        Map<String, Object> v = c.getValues();
+        String terminal = Json.getString(v, "terminal_id");
+        String reference = c.getRowKey();
+
+        // The same reference from another terminal is a different sale
+        String owner = queryString(conn, "SELECT COALESCE(terminal_id, '') FROM sale_headers WHERE sale_reference = ?",
+                reference);
+        if (owner != null && !owner.equals(terminal == null ? "" : terminal)) {
+            reference = reference + "-" + (terminal != null ? terminal : c.getOriginNode());
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO sale_headers (sale_reference, cart_hash, terminal_id, total, created_at) " +
+                "VALUES (?, 'synced', ?, 0, ?) ON CONFLICT(sale_reference) DO NOTHING")) {
+            ps.setString(1, reference);
+            ps.setString(2, terminal);
+            ps.setString(3, Json.getString(v, "sale_date"));
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE sale_headers SET total = total + ? WHERE sale_reference = ? AND cart_hash = 'synced'")) {
+            ps.setDouble(1, Json.getDouble(v, "total", 0));
+            ps.setString(2, reference);
+            ps.executeUpdate();
+        }
+
+        // Discount lines have no product; a product that is gone here gets -1
+        String productUid = Json.getString(v, "product_uid");
+        int productId = 0;
+        if (productUid != null) {
+            String id = queryString(conn, "SELECT id FROM inventory WHERE sync_uid = ?", productUid);
+            productId = id != null ? Integer.parseInt(id) : -1;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO sales (sale_reference, product_id, product_name, quantity, price, total, sale_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, reference);
+            ps.setInt(2, productId);
+            ps.setString(3, Json.getString(v, "product_name"));
+            ps.setLong(4, Json.getLong(v, "quantity", 0));
+            ps.setDouble(5, Json.getDouble(v, "price", 0));
+            ps.setDouble(6, Json.getDouble(v, "total", 0));
+            ps.setString(7, Json.getString(v, "sale_date"));
+            ps.executeUpdate();
+        }
+        applied.addSaleLine(reference, Json.getString(v, "sale_date"), new SaleItem(productId,
+                Json.getString(v, "product_name"), Json.getDouble(v, "price", 0), (int) Json.getLong(v, "quantity", 0)));
+    }
+
+    private static String queryString(Connection conn, String sql, String param) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, param);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Creates the peer named by the ltb.sync system property: an http:// URL
+     * is a hub server, anything else is a shared folder.
+     *
+     * @return The peer, or null if the property is not set (no syncing)
+     */
+    public static SyncPeer peerFromSystemProperty() {
+        String value = System.getProperty(PEER_PROPERTY);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.trim();
+        if (value.startsWith("http://") || value.startsWith("https://")) {
+            return new HttpSyncPeer(value);
+        }
+        return new FileDropPeer(new File(value));
+    }
+
+    /**
+     * Syncs with a peer in the background, every few seconds.
+     *
+     * @param peer The peer
+     * @param intervalSeconds The pause between two syncs
+     */
+    public static synchronized void startBackground(SyncPeer peer, long intervalSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sync");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sync(peer);
+            } catch (Exception e) {
+                System.err.println("Sync failed: " + e.getMessage());
+            }
+        }, 1, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,51 @@
+package LTBPaintCenter.sync;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface is another place that holds change logs: a hub server
+ * (HttpSyncPeer) or a shared folder (FileDropPeer).
+ *
+ * Changes are asked for by high-water marks: for every origin terminal, the
+ * highest change number already known. Only the changes after those numbers
+ * are sent, so a sync costs as much as the number of new changes.
+ */
+public interface SyncPeer {
+
+    /**
+     * Gets a name for the peer that stays the same between runs. It is used
+     * to remember which changes the peer already has.
+     *
+     * @return The peer's name
+     */
+    String getId();
+
+    /**
+     * Gets the highest change number the peer has from each origin.
+     *
+     * @return Origin -> highest change number
+     * @throws IOException If the peer cannot be reached
+     */
+    Map<String, Long> getHighWaterMarks() throws IOException;
+
+    /**
+     * Gets the changes the peer has after the given marks, in order of their
+     * number for each origin.
+     *
+     * @param marks Origin -> highest change number already known (missing means none)
+     * @param limit The most changes to return
+     * @return The changes
+     * @throws IOException If the peer cannot be reached
+     */
+    List<Change> pull(Map<String, Long> marks, int limit) throws IOException;
+
+    /**
+     * Gives the peer changes it does not have yet.
+     *
+     * @param changes The changes, in order of their number for each origin
+     * @throws IOException If the peer cannot be reached
+     */
+    void push(List<Change> changes) throws IOException;
+}
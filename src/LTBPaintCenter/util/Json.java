@@ -0,0 +1,305 @@
+package LTBPaintCenter.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads and writes JSON for the POS server and its client.
+ *
+ * JSON objects become LinkedHashMaps, arrays become ArrayLists, numbers
+ * become Longs (whole numbers) or Doubles, and true/false/null become
+ * Boolean and null. Writing accepts the same types plus any other Number.
+ * It only covers what the server needs, so there is no extra library to ship.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Writes a value as JSON text.
+     *
+     * @param value A Map, List, String, Number, Boolean or null
+     * @return The JSON text
+     */
+    public static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String s) {
+            writeString(sb, s);
+        } else if (value instanceof Double d && (d.isNaN() || d.isInfinite())) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                writeString(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Iterable<?> list) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : list) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, item);
+            }
+            sb.append(']');
+        } else {
+            writeString(sb, value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Reads JSON text.
+     *
+     * @param text The JSON text
+     * @return The value (Map, List, String, Long, Double, Boolean or null)
+     * @throws IllegalArgumentException If the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        Parser p = new Parser(text);
+        p.skipSpace();
+        Object value = p.value();
+        p.skipSpace();
+        if (p.pos != text.length()) {
+            throw p.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a JSON object.
+     *
+     * @param text The JSON text
+     * @return The object
+     * @throws IllegalArgumentException If the text is not a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Gets a whole number from a parsed object.
+     *
+     * @param obj The object
+     * @param key The key
+     * @param fallback The value to use if the key is missing or null
+     * @return The number
+     */
+    public static long getLong(Map<String, Object> obj, String key, long fallback) {
+        Object v = obj.get(key);
+        if (v instanceof Number n) return n.longValue();
+        if (v instanceof String s && !s.isBlank()) return Long.parseLong(s.trim());
+        return fallback;
+    }
+
+    /**
+     * Gets a number from a parsed object.
+     *
+     * @param obj The object
+     * @param key The key
+     * @param fallback The value to use if the key is missing or null
+     * @return The number
+     */
+    public static double getDouble(Map<String, Object> obj, String key, double fallback) {
+        Object v = obj.get(key);
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof String s && !s.isBlank()) return Double.parseDouble(s.trim());
+        return fallback;
+    }
+
+    /**
+     * Gets a string from a parsed object.
+     *
+     * @param obj The object
+     * @param key The key
+     * @return The string, or null if the key is missing or null
+     */
+    public static String getString(Map<String, Object> obj, String key) {
+        Object v = obj.get(key);
+        return v == null ? null : v.toString();
+    }
+
+    /**
+     * Gets a list from a parsed object.
+     *
+     * @param obj The object
+     * @param key The key
+     * @return The list, or an empty list if the key is missing
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Object> getList(Map<String, Object> obj, String key) {
+        Object v = obj.get(key);
+        return v instanceof List ? (List<Object>) v : new ArrayList<>();
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            if (pos >= s.length()) throw error("Unexpected end");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                if (peek() != '"') throw error("Expected a key");
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                map.put(key, value());
+                skipSpace();
+                char c = next();
+                if (c == '}') return map;
+                if (c != ',') throw error("Expected , or }");
+            }
+        }
+
+        List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                skipSpace();
+                list.add(value());
+                skipSpace();
+                char c = next();
+                if (c == ']') return list;
+                if (c != ',') throw error("Expected , or ]");
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw error("Bad escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+
+        Object number() {
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            String n = s.substring(start, pos);
+            if (n.isEmpty()) throw error("Unexpected character");
+            try {
+                if (n.contains(".") || n.contains("e") || n.contains("E")) return Double.parseDouble(n);
+                return Long.parseLong(n);
+            } catch (NumberFormatException e) {
+                throw error("Bad number " + n);
+            }
+        }
+
+        Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) throw error("Unexpected character");
+            pos += word.length();
+            return value;
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        char peek() {
+            return pos < s.length() ? s.charAt(pos) : '\0';
+        }
+
+        char next() {
+            if (pos >= s.length()) throw error("Unexpected end");
+            return s.charAt(pos++);
+        }
+
+        void expect(char c) {
+            if (next() != c) throw error("Expected " + c);
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package LTBPaintCenter.util;
 
+import LTBPaintCenter.model.PricedCart;
+import LTBPaintCenter.model.PricingEngine;
 import LTBPaintCenter.model.SaleItem;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
@@ -14,9 +16,6 @@ import java.util.List;
  */
 public class ReceiptPrinter {
 
-    // VAT (Value Added Tax) rate is 12% in the Philippines
-    private static final float VAT_RATE = 0.12f;
-
     /**
      * Generates a text receipt for the given items.
      * 
@@ -35,13 +34,19 @@ public class ReceiptPrinter {
      * @return A formatted text receipt string
      */
     public static String generateReceiptText(List<SaleItem> items, String referenceNo) {
+        return generateReceiptText(PricingEngine.STANDARD.price(items), referenceNo);
+    }
+
+    /**
+     * Generates a text receipt for an already priced cart.
+     * The amounts come from the priced cart; nothing is added up again here.
+     *
+     * @param cart The priced cart
+     * @param referenceNo The sale reference number (can be null)
+     * @return A formatted text receipt string
+     */
+    public static String generateReceiptText(PricedCart cart, String referenceNo) {
         StringBuilder receipt = new StringBuilder();
-        
-        // Calculate totals
-        double subtotal = items.stream().mapToDouble(SaleItem::getSubtotal).sum();
-        double vatable = subtotal / (1 + VAT_RATE);
-        double vat = subtotal - vatable;
-        double total = subtotal;
 
         // Build receipt header
         receipt.append("        LTB Paint Center\n");
@@ -59,18 +64,27 @@ public class ReceiptPrinter {
         receipt.append("--------------------------------------\n");
 
         // Add each item to the receipt
-        for (SaleItem item : items) {
-            String itemName = item.getName().length() > 20 ? 
-                    item.getName().substring(0, 20) : item.getName();
-            receipt.append(String.format("%-20s %5d %10.2f\n",
-                    itemName, item.getQty(), item.getSubtotal()));
+        for (PricedCart.Line line : cart.getLines()) {
+            String itemName = line.getName().length() > 20 ? 
+                    line.getName().substring(0, 20) : line.getName();
+            receipt.append(String.format("%-20s %5d %10s\n",
+                    itemName, line.getQty(), PricedCart.formatCents(line.getAmountCents())));
+        }
+
+        // Add the promotion discounts (negative amounts)
+        for (PricedCart.Line discount : cart.getDiscounts()) {
+            String name = "Promo: " + discount.getName();
+            receipt.append(String.format("%-26s %10s\n",
+                    name.length() > 26 ? name.substring(0, 26) : name,
+                    PricedCart.formatCents(discount.getAmountCents())));
         }
 
         // Add totals
         receipt.append("--------------------------------------\n");
-        receipt.append(String.format("VATable: %26.2f\n", vatable));
-        receipt.append(String.format("VAT (12%%): %25.2f\n", vat));
-        receipt.append(String.format("TOTAL: %28.2f\n", total));
+        receipt.append(String.format("VATable: %26s\n", PricedCart.formatCents(cart.getVatableCents())));
+        receipt.append(String.format("VAT-Exempt: %23s\n", PricedCart.formatCents(cart.getVatExemptCents())));
+        receipt.append(String.format("VAT (12%%): %25s\n", PricedCart.formatCents(cart.getVatCents())));
+        receipt.append(String.format("TOTAL: %28s\n", PricedCart.formatCents(cart.getTotalCents())));
         receipt.append("--------------------------------------\n");
         receipt.append("Thank you for shopping with us!\n");
         receipt.append("       - LTB Paint Center -\n");
@@ -87,6 +101,17 @@ public class ReceiptPrinter {
      * @param referenceNo The sale reference number
      */
     public static void saveAsPDF(List<SaleItem> items, String filePath, String referenceNo) {
+        saveAsPDF(PricingEngine.STANDARD.price(items), filePath, referenceNo);
+    }
+
+    /**
+     * Saves the receipt of an already priced cart as a PDF file.
+     *
+     * @param cart The priced cart
+     * @param filePath The path where to save the PDF file
+     * @param referenceNo The sale reference number
+     */
+    public static void saveAsPDF(PricedCart cart, String filePath, String referenceNo) {
         try {
             // Create PDF document (A5 size for receipt format)
             Document document = new Document(PageSize.A5, 36, 36, 36, 36);
@@ -139,11 +164,10 @@ public class ReceiptPrinter {
             table.addCell(header3);
 
             // Add items to table
-            double subtotal = 0;
-            for (SaleItem item : items) {
-                PdfPCell cell1 = new PdfPCell(new Phrase(item.getName(), normalFont));
-                PdfPCell cell2 = new PdfPCell(new Phrase(String.valueOf(item.getQty()), normalFont));
-                PdfPCell cell3 = new PdfPCell(new Phrase(String.format("%.2f", item.getSubtotal()), normalFont));
+            for (PricedCart.Line line : cart.getLines()) {
+                PdfPCell cell1 = new PdfPCell(new Phrase(line.getName(), normalFont));
+                PdfPCell cell2 = new PdfPCell(new Phrase(String.valueOf(line.getQty()), normalFont));
+                PdfPCell cell3 = new PdfPCell(new Phrase(PricedCart.formatCents(line.getAmountCents()), normalFont));
                 cell1.setBorder(Rectangle.NO_BORDER);
                 cell2.setBorder(Rectangle.NO_BORDER);
                 cell3.setBorder(Rectangle.NO_BORDER);
@@ -153,27 +177,37 @@ public class ReceiptPrinter {
                 table.addCell(cell1);
                 table.addCell(cell2);
                 table.addCell(cell3);
-                subtotal += item.getSubtotal();
+            }
+
+            // Add the promotion discounts (negative amounts)
+            for (PricedCart.Line discount : cart.getDiscounts()) {
+                PdfPCell cell1 = new PdfPCell(new Phrase("Promo: " + discount.getName(), normalFont));
+                PdfPCell cell2 = new PdfPCell(new Phrase("", normalFont));
+                PdfPCell cell3 = new PdfPCell(new Phrase(PricedCart.formatCents(discount.getAmountCents()), normalFont));
+                cell1.setBorder(Rectangle.NO_BORDER);
+                cell2.setBorder(Rectangle.NO_BORDER);
+                cell3.setBorder(Rectangle.NO_BORDER);
+                cell3.setHorizontalAlignment(Element.ALIGN_RIGHT);
+                table.addCell(cell1);
+                table.addCell(cell2);
+                table.addCell(cell3);
             }
 
             document.add(table);
             document.add(new Paragraph("--------------------------------------------------", normalFont));
 
-            // Calculate VAT and totals
-            double vatable = subtotal / (1 + VAT_RATE);
-            double vat = subtotal - vatable;
-            double total = subtotal;
-
             // Add summary table
             PdfPTable summary = new PdfPTable(2);
             summary.setWidthPercentage(100);
             summary.getDefaultCell().setBorder(Rectangle.NO_BORDER);
             summary.addCell(new Phrase("VATable Sales:", normalFont));
-            summary.addCell(new Phrase(String.format("%.2f", vatable), normalFont));
+            summary.addCell(new Phrase(PricedCart.formatCents(cart.getVatableCents()), normalFont));
+            summary.addCell(new Phrase("VAT-Exempt Sales:", normalFont));
+            summary.addCell(new Phrase(PricedCart.formatCents(cart.getVatExemptCents()), normalFont));
             summary.addCell(new Phrase("VAT (12%):", normalFont));
-            summary.addCell(new Phrase(String.format("%.2f", vat), normalFont));
+            summary.addCell(new Phrase(PricedCart.formatCents(cart.getVatCents()), normalFont));
             summary.addCell(new Phrase("Total Amount:", boldFont));
-            PdfPCell totalCell = new PdfPCell(new Phrase(String.format("%.2f", total), boldFont));
+            PdfPCell totalCell = new PdfPCell(new Phrase(PricedCart.formatCents(cart.getTotalCents()), boldFont));
             totalCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
             totalCell.setBorder(Rectangle.NO_BORDER);
             summary.addCell(totalCell);
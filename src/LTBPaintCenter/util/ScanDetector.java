@@ -0,0 +1,121 @@
+package LTBPaintCenter.util;
+
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.KeyEvent;
+
+/**
+ * This class recognizes keyboard-wedge barcode scanners by their typing speed.
+ *
+ * A scanner "types" the whole code in a burst (a few milliseconds per key) and
+ * ends it with Enter, which a person cannot do. Every typed key is watched while
+ * the focus is inside the given area; when Enter ends a fast enough burst of at
+ * least MIN_LENGTH characters, the code is handed to the scan handler and the
+ * Enter key is swallowed. Slower typing is left alone and works as usual.
+ *
+ * The keys of the burst still reach the focused component (they cannot be known
+ * to be a scan until Enter arrives), so the handler is told which component
+ * had the focus and can remove the scanned text from it.
+ */
+public class ScanDetector implements KeyEventDispatcher {
+    /** Longest pause between two scanner keys. People type much slower than this. */
+    private static final long MAX_GAP_MILLIS = 35;
+    /** Shortest code that counts as a scan. */
+    private static final int MIN_LENGTH = 4;
+
+    private final Component area;
+    private final ScanHandler handler;
+    private final StringBuilder burst = new StringBuilder();
+    private long lastKeyMillis;
+    private boolean enabled = true;
+
+    /**
+     * Receives a recognized scan.
+     */
+    public interface ScanHandler {
+        /**
+         * Called on the Swing event thread when a scan is recognized.
+         *
+         * @param code The scanned code, without the Enter
+         * @param focusOwner The component that received the scanned keys
+         */
+        void onScan(String code, Component focusOwner);
+    }
+
+    /**
+     * Creates a detector. Call install() to start listening.
+     *
+     * @param area Only keys typed inside this component (or its children) are watched
+     * @param handler Receives each recognized scan
+     */
+    public ScanDetector(Component area, ScanHandler handler) {
+        this.area = area;
+        this.handler = handler;
+    }
+
+    /** Starts watching the keyboard. */
+    public void install() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(this);
+    }
+
+    /** Stops watching the keyboard. */
+    public void uninstall() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(this);
+    }
+
+    /**
+     * Turns scan recognition on or off without uninstalling.
+     *
+     * @param enabled true to recognize scans
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        burst.setLength(0);
+    }
+
+    /** @return true if scans are being recognized */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent e) {
+        Component owner = e.getComponent();
+        if (!enabled || owner == null || !area.isShowing()
+                || (owner != area && !SwingUtilities.isDescendingFrom(owner, area))) {
+            return false;
+        }
+
+        // Use the time the key was pressed, not when it was handled, so a busy UI does not hide a burst
+        long now = e.getWhen();
+        boolean fast = burst.length() > 0 && now - lastKeyMillis <= MAX_GAP_MILLIS;
+
+        if (e.getID() == KeyEvent.KEY_TYPED) {
+            char ch = e.getKeyChar();
+            if (ch == '\n' || ch == '\r') {
+                return false;
+            }
+            if (!fast) {
+                burst.setLength(0); // Too slow: a person is typing, start over
+            }
+            if (ch >= ' ' && ch != KeyEvent.CHAR_UNDEFINED && ch != 127) {
+                burst.append(ch);
+                lastKeyMillis = now;
+            }
+            return false;
+        }
+
+        if (e.getID() == KeyEvent.KEY_PRESSED && e.getKeyCode() == KeyEvent.VK_ENTER) {
+            boolean scan = fast && burst.length() >= MIN_LENGTH;
+            String code = burst.toString();
+            burst.setLength(0);
+            if (scan) {
+                handler.onScan(code, owner);
+                return true; // Swallow the scanner's Enter
+            }
+        }
+        return false;
+    }
+}
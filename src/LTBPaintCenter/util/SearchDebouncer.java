@@ -0,0 +1,130 @@
+package LTBPaintCenter.util;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * This class runs search/filter work off the Swing event thread.
+ *
+ * Each keystroke calls submit() with a query that has already captured
+ * everything it needs (search text, selected filters, a snapshot of the data).
+ * The query only starts after the user has stopped typing for a short delay.
+ * It runs on a background thread, and a newer query cancels an older one that
+ * is still running. Only the result of the newest query is handed back to the
+ * event thread, in one call, so the screen is updated once per search.
+ *
+ * All methods must be called on the Swing event thread.
+ *
+ * @param <T> The type of the search result
+ */
+public class SearchDebouncer<T> {
+
+    // One shared worker: searches are short and only the newest one matters
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Timer timer;
+    private final Consumer<T> onResult;
+    private Callable<T> pending;
+    private Future<?> running;
+    // Increased for every started or cancelled search; results from older generations are dropped
+    private volatile long generation;
+
+    /**
+     * Creates a debouncer.
+     *
+     * @param delayMillis How long the input must be quiet before searching
+     * @param onResult Receives the newest result on the Swing event thread
+     */
+    public SearchDebouncer(int delayMillis, Consumer<T> onResult) {
+        this.onResult = onResult;
+        this.timer = new Timer(delayMillis, e -> start());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Schedules a search after the debounce delay, replacing any waiting search.
+     *
+     * @param query The search to run; it must not touch Swing components
+     */
+    public void submit(Callable<T> query) {
+        pending = query;
+        timer.restart();
+    }
+
+    /**
+     * Starts a search right away (for example when a combo box changes).
+     *
+     * @param query The search to run; it must not touch Swing components
+     */
+    public void submitNow(Callable<T> query) {
+        pending = query;
+        timer.stop();
+        start();
+    }
+
+    /**
+     * Cancels any waiting or running search. Its result will not be published.
+     */
+    public void cancel() {
+        timer.stop();
+        pending = null;
+        generation++;
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void start() {
+        Callable<T> query = pending;
+        pending = null;
+        if (query == null) {
+            return;
+        }
+        if (running != null) {
+            running.cancel(true);
+        }
+        long myGeneration = ++generation;
+        running = EXECUTOR.submit(() -> {
+            T result;
+            try {
+                result = query.call();
+            } catch (InterruptedException e) {
+                return; // A newer search replaced this one
+            } catch (Exception e) {
+                System.err.println("Search failed: " + e.getMessage());
+                return;
+            }
+            if (result == null || myGeneration != generation) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                // Check again: a newer search may have started while this was queued
+                if (myGeneration == generation) {
+                    onResult.accept(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Lets a long-running query stop early when it has been replaced.
+     * Call it every few hundred items inside the matching loop.
+     *
+     * @throws InterruptedException If the current search was cancelled
+     */
+    public static void checkCancelled() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Search cancelled");
+        }
+    }
+}
@@ -2,16 +2,40 @@ package LTBPaintCenter.view;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.Map;
+import LTBPaintCenter.model.SalesColumns;
 
 /**
  * This panel displays a horizontal bar chart for revenue visualization.
  * It shows revenue data by brand or type, with bars proportional to values.
  * Used in the Monitoring panel to visualize sales breakdowns.
+ *
+ * Only the largest entries that fit on the panel are drawn; the rest are added
+ * together into an "Other" bar. The chart is drawn once into an image, which is
+ * only redrawn when the data or the panel size changes, so ordinary repaints
+ * (for example while the window is dragged) just copy that image.
  */
 public class BarChartPanel extends JPanel {
-    private Map<String, Double> data;
-    private double maxValue;
+    private static final Color BAR_COLOR = new Color(70, 130, 180); // blueish tone
+    private static final Color OTHER_COLOR = new Color(160, 170, 180);
+    private static final int BAR_HEIGHT = 25;
+    private static final int ROW_HEIGHT = BAR_HEIGHT + 15;
+    private static final int FIRST_ROW_Y = 40;
+
+    // Snapshot of the data given to setData
+    private String[] labels = new String[0];
+    private double[] values = new double[0];
+    // The same values in centavos, for picking the top entries
+    private long[] cents = new long[0];
+    private int maxBars = 10;
+
+    // Cached rendering and the size it was made for
+    private BufferedImage cache;
+    private int cacheWidth = -1;
+    private int cacheHeight = -1;
+    private double cacheScale = 1.0;
 
     public BarChartPanel() {
         setPreferredSize(new Dimension(800, 200));
@@ -19,51 +43,121 @@ public class BarChartPanel extends JPanel {
     }
 
     public void setData(Map<String, Double> data) {
-        this.data = data;
-        if (data == null || data.isEmpty()) {
-            maxValue = 0;
-        } else {
-            maxValue = data.values().stream().max(Double::compare).orElse(0.0);
+        int size = data == null ? 0 : data.size();
+        labels = new String[size];
+        values = new double[size];
+        cents = new long[size];
+        if (data != null) {
+            int i = 0;
+            for (Map.Entry<String, Double> entry : data.entrySet()) {
+                labels[i] = entry.getKey();
+                values[i] = entry.getValue() == null ? 0.0 : entry.getValue();
+                cents[i] = Math.round(values[i] * 100);
+                i++;
+            }
         }
+        invalidateCache();
+    }
+
+    /**
+     * Sets the most bars to draw before the remaining entries go into "Other".
+     *
+     * @param maxBars The maximum number of bars, including "Other"
+     */
+    public void setMaxBars(int maxBars) {
+        this.maxBars = Math.max(2, maxBars);
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        cache = null;
         repaint();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (data == null || data.isEmpty()) {
-            g.setColor(Color.GRAY);
-            g.drawString("No data to display", 20, 30);
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
             return;
         }
 
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        int width = getWidth();
-        int barHeight = 25;
-        int x = 100;
-        int y = 40;
-        g2.getFontMetrics();
+        // Render at the device scale so the image stays sharp on high-DPI screens
+        AffineTransform tx = ((Graphics2D) g).getTransform();
+        double scale = Math.max(1.0, tx.getScaleX());
+        if (cache == null || width != cacheWidth || height != cacheHeight || scale != cacheScale) {
+            cache = render(width, height, scale);
+            cacheWidth = width;
+            cacheHeight = height;
+            cacheScale = scale;
+        }
+        g.drawImage(cache, 0, 0, width, height, null);
+    }
 
-        for (Map.Entry<String, Double> entry : data.entrySet()) {
-            String label = entry.getKey();
-            double value = entry.getValue();
+    private BufferedImage render(int width, int height, double scale) {
+        BufferedImage image = new BufferedImage(
+                (int) Math.ceil(width * scale), (int) Math.ceil(height * scale), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.scale(scale, scale);
+            g2.setFont(getFont());
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-            // Calculate bar length based on max value
-            int barLength = (int) ((width - 200) * (value / maxValue));
-            g2.setColor(new Color(70, 130, 180)); // blueish tone
-            g2.fillRoundRect(x, y - 15, barLength, barHeight, 8, 8);
+            // Only positive amounts get a bar; the negative Discounts group would shrink "Other"
+            int positive = 0;
+            for (long c : cents) {
+                if (c > 0) positive++;
+            }
+            if (positive == 0) {
+                g2.setColor(Color.GRAY);
+                g2.drawString("No data to display", 20, 30);
+                return image;
+            }
 
-            // Draw brand name
-            g2.setColor(Color.BLACK);
-            g2.drawString(label, 20, y);
+            // How many rows fit on the panel
+            int rowsThatFit = Math.max(1, (height - FIRST_ROW_Y + ROW_HEIGHT - 10) / ROW_HEIGHT);
+            int rows = Math.min(maxBars, rowsThatFit);
+            boolean needOther = positive > rows;
+            int[] top = SalesColumns.topN(cents, needOther ? Math.max(1, rows - 1) : positive);
 
-            // Draw value at the end of the bar
-            String valText = String.format("₱%.2f", value);
-            g2.drawString(valText, x + barLength + 10, y);
+            double other = 0;
+            if (needOther) {
+                boolean[] shown = new boolean[labels.length];
+                for (int i : top) shown[i] = true;
+                for (int i = 0; i < values.length; i++) {
+                    if (!shown[i] && cents[i] > 0) other += values[i];
+                }
+            }
 
-            y += barHeight + 15;
+            double maxValue = Math.max(other, top.length > 0 ? values[top[0]] : 0);
+            int x = 100;
+            int y = FIRST_ROW_Y;
+            for (int i : top) {
+                drawBar(g2, labels[i], values[i], maxValue, BAR_COLOR, x, y, width);
+                y += ROW_HEIGHT;
+            }
+            if (needOther) {
+                int hidden = positive - top.length;
+                drawBar(g2, "Other (" + hidden + ")", other, maxValue, OTHER_COLOR, x, y, width);
+            }
+        } finally {
+            g2.dispose();
         }
+        return image;
+    }
+
+    private void drawBar(Graphics2D g2, String label, double value, double maxValue,
+                         Color color, int x, int y, int width) {
+        // Calculate bar length based on max value
+        int barLength = maxValue > 0 ? (int) ((width - 200) * (value / maxValue)) : 0;
+        g2.setColor(color);
+        g2.fillRoundRect(x, y - 15, Math.max(0, barLength), BAR_HEIGHT, 8, 8);
+
+        // Draw the label and the value at the end of the bar
+        g2.setColor(Color.BLACK);
+        g2.drawString(label, 20, y);
+        g2.drawString(String.format("₱%.2f", value), x + Math.max(0, barLength) + 10, y);
     }
 }
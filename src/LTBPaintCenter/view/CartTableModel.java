@@ -0,0 +1,215 @@
+package LTBPaintCenter.view;
+
+import LTBPaintCenter.model.PricedCart;
+import LTBPaintCenter.model.PricingEngine;
+import LTBPaintCenter.model.PromotionEngine;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This table model holds the POS cart.
+ *
+ * Rows stay in the order they were added. Every change fires an event for
+ * just the row that changed (insert, update or delete), so the table never
+ * rebuilds itself. The rows are the lines of a PricedCart: each change
+ * re-prices only the changed line, and the priced cart is shared with the
+ * checkout dialog and the receipt instead of being added up again there.
+ *
+ * Promotions are followed by a PromotionEngine session: each change tells the
+ * session about the one line that changed, and the discount lines it returns
+ * are put into the priced cart. Discounts are not rows of the table.
+ */
+public class CartTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Name", "Price", "Qty", "Subtotal"};
+
+    private final PricingEngine engine;
+    private PricedCart cart = PricedCart.EMPTY;
+    private final Map<Integer, Integer> rowByProduct = new HashMap<>();
+    // Brand and type of each product in the cart (needed by the promotion rules)
+    private final Map<Integer, String[]> brandTypeByProduct = new HashMap<>();
+    private PromotionEngine promotions = PromotionEngine.NONE;
+    private PromotionEngine.Session promoSession = promotions.newSession();
+
+    /**
+     * Creates an empty cart model.
+     *
+     * @param engine Prices the cart lines
+     */
+    public CartTableModel(PricingEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Sets the promotion rules and works out the discounts of the current cart again.
+     *
+     * @param promotions The active promotions
+     */
+    public void setPromotions(PromotionEngine promotions) {
+        this.promotions = promotions != null ? promotions : PromotionEngine.NONE;
+        promoSession = this.promotions.newSession();
+        java.util.List<PricedCart.Line> discounts = java.util.List.of();
+        for (PricedCart.Line line : cart.getLines()) {
+            String[] bt = brandTypeByProduct.getOrDefault(line.getProductId(), new String[2]);
+            discounts = promoSession.update(line.getProductId(), bt[0], bt[1], line.getUnitCents(), line.getQty());
+        }
+        cart = engine.withDiscounts(cart, discounts);
+        if (!cart.isEmpty()) {
+            fireTableRowsUpdated(0, cart.size() - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return cart.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 || column == 3 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        PricedCart.Line line = cart.getLine(row);
+        return switch (column) {
+            case 0 -> line.getProductId();
+            case 1 -> line.getName();
+            case 2 -> PricedCart.formatCents(line.getUnitCents());
+            case 3 -> line.getQty();
+            default -> PricedCart.formatCents(line.getAmountCents());
+        };
+    }
+
+    /**
+     * Adds quantity of a product. If the product is already in the cart,
+     * its row is updated; otherwise a new row is added at the end.
+     *
+     * @param productId The product ID
+     * @param name The product name
+     * @param brand The product brand (for promotions)
+     * @param type The product type (for promotions)
+     * @param price The price per unit
+     * @param qty The quantity to add
+     * @return The row of the product
+     */
+    public int add(int productId, String name, String brand, String type, double price, int qty) {
+        Integer row = rowByProduct.get(productId);
+        if (row != null) {
+            setQty(row, cart.getLine(row).getQty() + qty);
+            return row;
+        }
+        int newRow = cart.size();
+        cart = engine.set(cart, newRow, productId, name, price, qty);
+        rowByProduct.put(productId, newRow);
+        brandTypeByProduct.put(productId, new String[]{brand, type});
+        PricedCart.Line line = cart.getLine(newRow);
+        cart = engine.withDiscounts(cart,
+                promoSession.update(productId, brand, type, line.getUnitCents(), line.getQty()));
+        fireTableRowsInserted(newRow, newRow);
+        return newRow;
+    }
+
+    /**
+     * Changes the quantity of a row. A quantity of 0 or less removes the row.
+     *
+     * @param row The row
+     * @param qty The new quantity
+     */
+    public void setQty(int row, int qty) {
+        if (qty <= 0) {
+            remove(row);
+            return;
+        }
+        PricedCart.Line line = cart.getLine(row);
+        cart = engine.set(cart, row, line.getProductId(), line.getName(), line.getUnitCents() / 100.0, qty);
+        cart = engine.withDiscounts(cart, promoSession.update(line.getProductId(), qty));
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * Removes a row from the cart.
+     *
+     * @param row The row
+     */
+    public void remove(int row) {
+        int productId = cart.getLine(row).getProductId();
+        rowByProduct.remove(productId);
+        brandTypeByProduct.remove(productId);
+        cart = engine.remove(cart, row);
+        cart = engine.withDiscounts(cart, promoSession.update(productId, 0));
+        // Rows after the removed one move up by one
+        for (int r = row; r < cart.size(); r++) {
+            rowByProduct.put(cart.getLine(r).getProductId(), r);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Empties the cart.
+     */
+    public void clear() {
+        int size = cart.size();
+        if (size == 0) {
+            return;
+        }
+        cart = PricedCart.EMPTY;
+        rowByProduct.clear();
+        brandTypeByProduct.clear();
+        promoSession.clear();
+        fireTableRowsDeleted(0, size - 1);
+    }
+
+    /**
+     * Gets the row of a product.
+     *
+     * @param productId The product ID
+     * @return The row, or -1 if the product is not in the cart
+     */
+    public int rowOf(int productId) {
+        Integer row = rowByProduct.get(productId);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * Gets the cart line in a row.
+     *
+     * @param row The row
+     * @return The line
+     */
+    public PricedCart.Line getLine(int row) {
+        return cart.getLine(row);
+    }
+
+    /**
+     * Gets the quantity of a product in the cart.
+     *
+     * @param productId The product ID
+     * @return The quantity, or 0 if the product is not in the cart
+     */
+    public int getQty(int productId) {
+        Integer row = rowByProduct.get(productId);
+        return row == null ? 0 : cart.getLine(row).getQty();
+    }
+
+    /** @return The priced cart (immutable; replaced on every change) */
+    public PricedCart getPricedCart() {
+        return cart;
+    }
+
+    /** @return true if the cart has no items */
+    public boolean isEmpty() {
+        return cart.isEmpty();
+    }
+}
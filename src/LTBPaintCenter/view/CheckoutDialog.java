@@ -1,11 +1,9 @@
 package LTBPaintCenter.view;
 
-import LTBPaintCenter.model.SaleItem;
+import LTBPaintCenter.model.PricedCart;
+import LTBPaintCenter.util.ReceiptPrinter;
 import javax.swing.*;
 import java.awt.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
 
 /**
  * This dialog shows a checkout summary before completing a sale.
@@ -14,14 +12,13 @@ import java.util.List;
  */
 public class CheckoutDialog extends JDialog {
 
-    private final double subtotal;
-    private final double vatRate = 0.12;  // 12% VAT rate
-    private final List<SaleItem> cartItems;
+    private final PricedCart cart;  // Already priced by the POS cart; nothing is re-added here
 
     // Labels for displaying totals
     private final JLabel lblVatable = new JLabel();
     private final JLabel lblNonVat = new JLabel();
     private final JLabel lblSubtotal = new JLabel();
+    private final JLabel lblDiscount = new JLabel();
     private final JLabel lblVAT = new JLabel();
     private final JLabel lblTotal = new JLabel();
     private final JLabel lblRef = new JLabel();
@@ -33,19 +30,14 @@ public class CheckoutDialog extends JDialog {
      * Constructor - creates the checkout dialog with cart items.
      *
      * @param owner       The parent frame
-     * @param cartItems   The list of items in the cart
+     * @param cart        The priced cart
      * @param referenceNo The pre-generated sale reference number (MMDDYYXXX)
      */
-    public CheckoutDialog(Frame owner, List<SaleItem> cartItems, String referenceNo) {
+    public CheckoutDialog(Frame owner, PricedCart cart, String referenceNo) {
         super(owner, "Checkout Summary", true);
-        this.cartItems = cartItems;
+        this.cart = cart;
         this.referenceNo = referenceNo;
 
-        // Calculate subtotal from all items
-        this.subtotal = cartItems.stream()
-                .mapToDouble(SaleItem::getSubtotal)
-                .sum();
-
         initUI();
         updateTotals();
     }
@@ -54,13 +46,13 @@ public class CheckoutDialog extends JDialog {
      * Initializes the user interface components.
      */
     private void initUI() {
-        setSize(420, 360);
+        setSize(420, 400);
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(10, 10));
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 
         // Create center panel with totals
-        JPanel center = new JPanel(new GridLayout(6, 2, 10, 10));
+        JPanel center = new JPanel(new GridLayout(7, 2, 10, 10));
         center.setBorder(BorderFactory.createEmptyBorder(20, 20, 10, 20));
         center.add(new JLabel("Reference No.:"));
         center.add(lblRef);
@@ -70,6 +62,8 @@ public class CheckoutDialog extends JDialog {
         center.add(lblNonVat);
         center.add(new JLabel("Subtotal:"));
         center.add(lblSubtotal);
+        center.add(new JLabel("Discount:"));
+        center.add(lblDiscount);
         center.add(new JLabel("VAT (12%):"));
         center.add(lblVAT);
         center.add(new JLabel("TOTAL:"));
@@ -102,17 +96,13 @@ public class CheckoutDialog extends JDialog {
      * Updates all the total labels with calculated values.
      */
     private void updateTotals() {
-        double vatable = subtotal / (1 + vatRate);
-        double vat = subtotal - vatable;
-        double nonVat = 0.0;  // Currently no VAT-exempt items
-        double total = subtotal;
-
         lblRef.setText(referenceNo);
-        lblVatable.setText(String.format("₱%.2f", vatable));
-        lblNonVat.setText(String.format("₱%.2f", nonVat));
-        lblSubtotal.setText(String.format("₱%.2f", subtotal));
-        lblVAT.setText(String.format("₱%.2f", vat));
-        lblTotal.setText(String.format("₱%.2f", total));
+        lblVatable.setText("₱" + PricedCart.formatCents(cart.getVatableCents()));
+        lblNonVat.setText("₱" + PricedCart.formatCents(cart.getVatExemptCents()));
+        lblSubtotal.setText("₱" + PricedCart.formatCents(cart.getSubtotalCents()));
+        lblDiscount.setText("-₱" + PricedCart.formatCents(cart.getDiscountCents()));
+        lblVAT.setText("₱" + PricedCart.formatCents(cart.getVatCents()));
+        lblTotal.setText("₱" + PricedCart.formatCents(cart.getTotalCents()));
     }
 
     /**
@@ -140,45 +130,10 @@ public class CheckoutDialog extends JDialog {
         txtReceipt.setEditable(false);
         txtReceipt.setFont(new Font("Monospaced", Font.PLAIN, 12));
 
-        // Build receipt text
-        StringBuilder receiptText = new StringBuilder();
-        receiptText.append("        LTB Paint Center\n");
-        receiptText.append("      Official Sales Receipt\n");
-        receiptText.append("--------------------------------------\n");
-        receiptText.append("Date: ").append(
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).append("\n");
-        receiptText.append("Ref No.: ").append(referenceNo).append("\n");
-        receiptText.append("--------------------------------------\n");
-        receiptText.append(String.format("%-20s %5s %10s\n", "Item", "Qty", "Subtotal"));
-        receiptText.append("--------------------------------------\n");
-
-        // Add each item to receipt
-        for (SaleItem item : cartItems) {
-            String itemName = item.getName().length() > 20 ? 
-                    item.getName().substring(0, 20) : item.getName();
-            receiptText.append(String.format("%-20s %5d %10.2f\n",
-                    itemName, item.getQty(), item.getSubtotal()));
-        }
-
-        receiptText.append("--------------------------------------\n");
-
-        // Calculate totals
-        double subtotalWithVat = subtotal;
-        double vatable = subtotalWithVat / (1 + vatRate);
-        double vat = subtotalWithVat - vatable;
-        double nonVat = 0.0;
-        double total = subtotalWithVat;
-
-        receiptText.append(String.format("VATable: %26.2f\n", vatable));
-        receiptText.append(String.format("VAT-Exempt: %23.2f\n", nonVat));
-        receiptText.append(String.format("Subtotal: %26.2f\n", subtotalWithVat));
-        receiptText.append(String.format("VAT (12%%): %25.2f\n", vat));
-        receiptText.append(String.format("TOTAL: %28.2f\n", total));
-        receiptText.append("--------------------------------------\n");
-        receiptText.append("Thank you for shopping with us!\n");
-        receiptText.append("       - LTB Paint Center -\n");
-
-        txtReceipt.setText(receiptText.toString());
+        // Same receipt text as the printed/PDF receipt
+        String receiptText = ReceiptPrinter.generateReceiptText(cart, referenceNo);
+
+        txtReceipt.setText(receiptText);
         receipt.add(new JScrollPane(txtReceipt), BorderLayout.CENTER);
 
         // Add close button
@@ -0,0 +1,78 @@
+package LTBPaintCenter.view;
+
+import LTBPaintCenter.model.FacetIndex;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * This renderer shows a facet combo box entry with its number of matches, like "Boysen (12)".
+ * The combo box items stay plain values; only the displayed text gets the count,
+ * so changing the counts never changes the selection or fires combo events.
+ */
+public class FacetComboRenderer extends DefaultListCellRenderer {
+    private final int facet;
+    private final String allItem;
+    private FacetIndex<?>.Selection selection;
+
+    /**
+     * Creates a renderer for one facet.
+     *
+     * @param facet The facet number in the FacetIndex
+     * @param allItem The combo item that means "no filter" (for example "All Brands")
+     */
+    public FacetComboRenderer(int facet, String allItem) {
+        this.facet = facet;
+        this.allItem = allItem;
+    }
+
+    /**
+     * Sets the counts to show. Call repaint() on the combo box afterwards.
+     *
+     * @param selection The latest facet query result, or null to hide the counts
+     */
+    public void setSelection(FacetIndex<?>.Selection selection) {
+        this.selection = selection;
+    }
+
+    /**
+     * Replaces the items of a facet combo box, but only when the values changed.
+     * The selected value is kept if it still exists.
+     *
+     * @param combo The combo box
+     * @param allItem The first item, meaning "no filter"
+     * @param values The facet values, already sorted
+     */
+    public static void fillCombo(JComboBox<String> combo, String allItem, List<String> values) {
+        boolean same = combo.getItemCount() == values.size() + 1;
+        for (int i = 0; same && i < values.size(); i++) {
+            same = values.get(i).equals(combo.getItemAt(i + 1));
+        }
+        if (same) {
+            return;
+        }
+        Object selected = combo.getSelectedItem();
+        combo.removeAllItems();
+        combo.addItem(allItem);
+        for (String v : values) combo.addItem(v);
+        if (selected != null && values.contains(selected.toString())) {
+            combo.setSelectedItem(selected);
+        }
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        if (selection != null && value != null) {
+            String item = value.toString();
+            int count = item.equals(allItem) ? selection.getTotal(facet) : selection.getCount(facet, item);
+            setText(item + " (" + count + ")");
+            if (count == 0 && !isSelected) {
+                setForeground(Color.GRAY);
+            }
+        }
+        return this;
+    }
+}
@@ -1,6 +1,8 @@
 package LTBPaintCenter.view;
 
 import LTBPaintCenter.controller.InventoryController;
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.dao.ConcurrentUpdateException;
 import LTBPaintCenter.model.InventoryBatch;
 import LTBPaintCenter.model.Global;
 
@@ -10,6 +12,7 @@ import java.awt.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This panel provides the Inventory interface.
@@ -40,11 +43,35 @@ public class InventoryPanel extends JPanel {
     private final JComboBox<String> cbFilterColor = new JComboBox<>();
     private final JComboBox<String> cbSort = new JComboBox<>(new String[]{"A–Z (Name)", "Price Low–High", "Price High–Low"});
     private javax.swing.table.TableRowSorter<DefaultTableModel> rowSorter;
+    // Brand/color/type bitsets over the model rows (rebuilt by refreshTable); filtering is a bitset AND
+    private static final int BRAND = 0, COLOR = 1, TYPE = 2;
+    private LTBPaintCenter.model.FacetIndex<InventoryBatch> facets = buildFacets(List.of());
+    private final FacetComboRenderer brandFilterRenderer = new FacetComboRenderer(BRAND, "All Brands");
+    private final FacetComboRenderer colorFilterRenderer = new FacetComboRenderer(COLOR, "All Colors");
+
+    // Text searches go to the database index and show one page of ranked results
+    private static final int PAGE_SIZE = 100;
+    private final LTBPaintCenter.util.SearchDebouncer<LTBPaintCenter.dao.InventoryDAO.SearchPage> pageSearch =
+            new LTBPaintCenter.util.SearchDebouncer<>(150, this::showSearchPage);
+    private List<InventoryBatch> allBatches = new java.util.ArrayList<>();
+    // Set when the inventory changed during a search; allBatches is reloaded when the search ends
+    private boolean allBatchesStale;
+    // The batch behind each shown row (as loaded, with its version), and the one in the form
+    private final java.util.Map<Integer, InventoryBatch> shownBatches = new java.util.HashMap<>();
+    private InventoryBatch formBatch = null;
+    private LTBPaintCenter.dao.InventoryDAO.SearchPage shownPage; // null when not showing search results
+    private int searchPageNumber;
+    private final JButton btnPrevPage = new JButton("◀");
+    private final JButton btnNextPage = new JButton("▶");
+    private final JLabel lblPage = new JLabel();
 
     private final JButton btnAdd = new JButton("Add Batch");
     private final JButton btnUpdate = new JButton("Update");
     private final JButton btnDelete = new JButton("Delete");
     private final JButton btnRefresh = new JButton("Refresh");
+    private final LoadingIndicator loading = new LoadingIndicator();
+    // Increased for every refresh; only the newest refresh's batches are shown
+    private long refreshGeneration;
 
     public InventoryPanel(InventoryController controller) {
         this.controller = controller;
@@ -83,6 +110,9 @@ public class InventoryPanel extends JPanel {
             }
             int row = table.convertRowIndexToModel(viewRow);
             try {
+                // Remember what the form was loaded from, to detect and merge concurrent changes
+                formBatch = shownBatches.get(Integer.parseInt(String.valueOf(tableModel.getValueAt(row, 0))));
+
                 // Enable Product ID field when updating (row selected)
                 txtCode.setEditable(true);
                 txtCode.setEnabled(true);
@@ -190,20 +220,33 @@ public class InventoryPanel extends JPanel {
 
         filterBar.add(new JLabel("Brand:"));
         cbFilterBrand.addItem("All Brands");
+        cbFilterBrand.setRenderer(brandFilterRenderer);
         filterBar.add(cbFilterBrand);
 
         filterBar.add(new JLabel("Color:"));
         cbFilterColor.addItem("All Colors");
+        cbFilterColor.setRenderer(colorFilterRenderer);
         filterBar.add(cbFilterColor);
 
         filterBar.add(new JLabel("Sort:"));
         filterBar.add(cbSort);
 
+        // Paging for search results (hidden while browsing the whole inventory)
+        btnPrevPage.setToolTipText("Previous page");
+        btnNextPage.setToolTipText("Next page");
+        btnPrevPage.addActionListener(e -> showResultPage(searchPageNumber - 1));
+        btnNextPage.addActionListener(e -> showResultPage(searchPageNumber + 1));
+        filterBar.add(btnPrevPage);
+        filterBar.add(lblPage);
+        filterBar.add(btnNextPage);
+        setPagingVisible(false);
+
         northContainer.add(filterBar, BorderLayout.SOUTH);
         add(northContainer, BorderLayout.NORTH);
 
         // Buttons
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        buttonPanel.add(loading);
         buttonPanel.add(btnAdd);
         buttonPanel.add(btnUpdate);
         buttonPanel.add(btnDelete);
@@ -286,21 +329,39 @@ public class InventoryPanel extends JPanel {
 
         // Delegate to controller - always pass null to force auto-generation for new products
         // This ensures unique IDs even if multiple products are added quickly
-        boolean added = controller.addBatch(null, name, brand, color, type, price, qty, imported, expiration);
-        if (added) {
-            addItemToComboIfMissing(cbBrand, brand);
-            addItemToComboIfMissing(cbColor, color);
-            addItemToComboIfMissing(cbType, type);
-
-            JOptionPane.showMessageDialog(this, "Batch added successfully!");
-            // Clear form and update product ID preview for next entry
-            clearForm();
-            refreshTable();
-            if (Global.posController != null) Global.posController.refreshPOS();
-            if (Global.monitoringController != null) Global.monitoringController.refresh();
-        } else {
+        setSaving(true);
+        AsyncDao.onEdt(controller.addBatch(null, name, brand, color, type, price, qty, imported, expiration), added -> {
+            setSaving(false);
+            if (added) {
+                addItemToComboIfMissing(cbBrand, brand);
+                addItemToComboIfMissing(cbColor, color);
+                addItemToComboIfMissing(cbType, type);
+
+                JOptionPane.showMessageDialog(this, "Batch added successfully!");
+                // Clear form and update product ID preview for next entry
+                clearForm();
+                refreshTable();
+                refreshOtherPanels();
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to add batch.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, error -> {
+            setSaving(false);
             JOptionPane.showMessageDialog(this, "Failed to add batch.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
+    }
+
+    // Turns off the buttons that change the inventory while a save runs, so it cannot be started twice
+    private void setSaving(boolean saving) {
+        btnAdd.setEnabled(!saving);
+        btnUpdate.setEnabled(!saving);
+        btnDelete.setEnabled(!saving);
+    }
+
+    // The POS and Monitoring panels show the inventory too
+    private void refreshOtherPanels() {
+        if (Global.posController != null) Global.posController.refreshPOS();
+        if (Global.monitoringController != null) Global.monitoringController.refresh();
     }
     
     // Clear form fields
@@ -310,6 +371,7 @@ public class InventoryPanel extends JPanel {
         txtCode.setEnabled(false);
         txtCode.setBackground(new Color(240, 240, 240));
         txtCode.setText("(Auto-generated when adding)");
+        formBatch = null;
         
         txtName.setText("");
         txtPrice.setText("");
@@ -408,13 +470,22 @@ public class InventoryPanel extends JPanel {
             return;
         }
         
+        InventoryBatch batch = new InventoryBatch(id, productCode, name, brand, color, type, price, qty, imported, expiration, "");
+        InventoryBatch loaded = (formBatch != null && formBatch.getId() == id) ? formBatch : shownBatches.get(id);
+        batch.setVersion(loaded != null ? loaded.getVersion() : 0);
+
         // Validate that the product code doesn't already exist (unless it's the same product)
         String existingCode = String.valueOf(tableModel.getValueAt(row, 1));
-        if (!productCode.equals(existingCode)) {
+        boolean codeChanged = !productCode.equals(existingCode);
+        setSaving(true);
+        CompletableFuture<List<InventoryBatch>> current = codeChanged
+                ? controller.loadAllBatches()
+                : CompletableFuture.completedFuture(List.of());
+        AsyncDao.onEdt(current, batches -> {
             // Check if the new product code already exists in the database
-            List<InventoryBatch> allBatches = controller.getAllBatches();
-            for (InventoryBatch b : allBatches) {
+            for (InventoryBatch b : batches) {
                 if (b.getId() != id && productCode.equals(b.getProductCode())) {
+                    setSaving(false);
                     JOptionPane.showMessageDialog(this, 
                         "Product ID '" + productCode + "' already exists. Please use a unique Product ID.", 
                         "Duplicate Product ID", 
@@ -423,10 +494,26 @@ public class InventoryPanel extends JPanel {
                     return;
                 }
             }
-        }
-        
-        InventoryBatch batch = new InventoryBatch(id, productCode, name, brand, color, type, price, qty, imported, expiration, "");
-        boolean updated = controller.updateBatch(batch);
+            AsyncDao.onEdt(controller.updateBatch(batch), updated -> finishUpdate(updated, brand, color, type), error -> {
+                if (error instanceof ConcurrentUpdateException conflict) {
+                    saveWithMerge(loaded, batch, conflict).thenAccept(saved -> {
+                        if (saved) {
+                            finishUpdate(true, brand, color, type);
+                        } else {
+                            setSaving(false);
+                            refreshTable();
+                        }
+                    });
+                } else {
+                    finishUpdate(false, brand, color, type);
+                }
+            });
+        }, error -> finishUpdate(false, brand, color, type));
+    }
+
+    // Shows the result of an update and turns the buttons back on
+    private void finishUpdate(boolean updated, String brand, String color, String type) {
+        setSaving(false);
         if (updated) {
             addItemToComboIfMissing(cbBrand, brand);
             addItemToComboIfMissing(cbColor, color);
@@ -434,13 +521,77 @@ public class InventoryPanel extends JPanel {
 
             JOptionPane.showMessageDialog(this, "Batch updated!");
             refreshTable();
-            if (Global.posController != null) Global.posController.refreshPOS();
-            if (Global.monitoringController != null) Global.monitoringController.refresh();
+            refreshOtherPanels();
         } else {
             JOptionPane.showMessageDialog(this, "Update failed.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /**
+     * Called when the batch was changed by someone else (for example a checkout)
+     * after the form was loaded. Shows both changes, merges them, and saves the
+     * merged batch if the user agrees.
+     *
+     * @param base The batch as it was when the form was loaded
+     * @param mine The batch from the form
+     * @param conflict The conflict, with the batch as it is now
+     * @return Completes on the event thread with true if the merged batch was saved
+     */
+    private CompletableFuture<Boolean> saveWithMerge(InventoryBatch base, InventoryBatch mine, ConcurrentUpdateException conflict) {
+        InventoryBatch theirs = conflict.getCurrent();
+        if (theirs == null || base == null) {
+            JOptionPane.showMessageDialog(this, conflict.getMessage() + " The table has been reloaded.",
+                    "Update Conflict", JOptionPane.WARNING_MESSAGE);
+            return CompletableFuture.completedFuture(false);
+        }
+        InventoryBatch merged = InventoryBatch.merge(base, mine, theirs);
+        if (!confirmMerge(base, mine, theirs, merged)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> saved = new CompletableFuture<>();
+        AsyncDao.onEdt(controller.saveMergedBatch(merged), saved::complete, error -> {
+            if (error instanceof ConcurrentUpdateException again) {
+                // Changed once more while the dialog was open: merge against the newer row
+                saveWithMerge(theirs, merged, again).thenAccept(saved::complete);
+            } else {
+                saved.complete(false);
+            }
+        });
+        return saved;
+    }
+
+    // Shows the loaded, saved, edited and merged values side by side
+    private boolean confirmMerge(InventoryBatch base, InventoryBatch mine, InventoryBatch theirs, InventoryBatch merged) {
+        String[] columns = {"Field", "When loaded", "Saved now", "Your edit", "Will save"};
+        InventoryBatch[] b = {base, theirs, mine, merged};
+        java.util.function.Function<InventoryBatch, Object[]> fields = x -> new Object[]{
+                x.getProductCode(), x.getName(), x.getBrand(), x.getColor(), x.getType(),
+                String.format("%.2f", x.getPrice()), x.getQuantity(),
+                x.getDateImported() != null ? x.getDateImported().toString() : "",
+                x.getExpirationDate() != null ? x.getExpirationDate().toString() : "None"};
+        String[] names = {"Product ID", "Name", "Brand", "Color", "Type", "Price", "Quantity", "Imported", "Expires"};
+        Object[][] data = new Object[names.length][columns.length];
+        for (int c = 0; c < b.length; c++) {
+            Object[] values = fields.apply(b[c]);
+            for (int r = 0; r < names.length; r++) {
+                data[r][0] = names[r];
+                data[r][c + 1] = values[r];
+            }
+        }
+        JTable diff = new JTable(new DefaultTableModel(data, columns) {
+            @Override public boolean isCellEditable(int row, int column) { return false; }
+        });
+        JScrollPane scroll = new JScrollPane(diff);
+        scroll.setPreferredSize(new Dimension(560, 190));
+
+        JPanel message = new JPanel(new BorderLayout(0, 8));
+        message.add(new JLabel("<html>This batch was changed by someone else (for example a checkout) after you selected it.<br>"
+                + "The quantity keeps their change plus your adjustment. Save the merged batch?</html>"), BorderLayout.NORTH);
+        message.add(scroll, BorderLayout.CENTER);
+        return JOptionPane.showConfirmDialog(this, message, "Update Conflict",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
+    }
+
     private void handleDelete() {
         int viewRow = table.getSelectedRow();
         if (viewRow == -1) {
@@ -460,62 +611,93 @@ public class InventoryPanel extends JPanel {
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure?", "Confirm Delete",
                 JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean ok = controller.deleteBatch(id);
-            if (ok) {
-                refreshTable();
-                if (Global.posController != null) Global.posController.refreshPOS();
-                if (Global.monitoringController != null) Global.monitoringController.refresh();
-            } else {
+            setSaving(true);
+            AsyncDao.onEdt(controller.deleteBatch(id), ok -> {
+                setSaving(false);
+                if (ok) {
+                    refreshTable();
+                    refreshOtherPanels();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Delete failed.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, error -> {
+                setSaving(false);
                 JOptionPane.showMessageDialog(this, "Delete failed.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         }
     }
 
-    // Refresh table
+    // Refresh table (the batches are loaded in the background)
     public void refreshTable() {
-        tableModel.setRowCount(0);
-        List<InventoryBatch> batches = controller.getAllBatches();
-        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        if (shownPage != null && !txtSearch.getText().isBlank()) {
+            // Only the shown page is re-run; the whole inventory is loaded when the search is cleared
+            allBatchesStale = true;
+            showResultPage(searchPageNumber);
+            return;
+        }
+        allBatchesStale = false;
+        long generation = ++refreshGeneration;
+        AsyncDao.onEdt(loading.track("Loading inventory...", controller.loadAllBatches()), batches -> {
+            // A newer refresh was started while this one was loading
+            if (generation == refreshGeneration) {
+                showBatches(batches);
+            }
+        });
+    }
 
-        // Populate combos
-        java.util.Set<String> brands = new java.util.TreeSet<>();
-        java.util.Set<String> colors = new java.util.TreeSet<>();
-        java.util.Set<String> types = new java.util.TreeSet<>();
-
-        for (InventoryBatch b : batches) {
-            if (b.getBrand() != null && !b.getBrand().isBlank()) brands.add(b.getBrand());
-            if (b.getColor() != null && !b.getColor().isBlank()) colors.add(b.getColor());
-            if (b.getType() != null && !b.getType().isBlank()) types.add(b.getType());
-
-            String status = computeDisplayStatus(b);
-            tableModel.addRow(new Object[]{
-                    b.getId(), b.getProductCode(), b.getName(), b.getBrand(), b.getColor(), b.getType(),
-                    String.format("%.2f", b.getPrice()), b.getQuantity(),
-                    b.getDateImported() != null ? b.getDateImported().format(df) : "",
-                    b.getExpirationDate() != null ? b.getExpirationDate().format(df) : "",
-                    status
-            });
+    private void showBatches(List<InventoryBatch> batches) {
+        // While searching, the table keeps the current page until the search is re-run below
+        boolean searching = rowSorter != null && !txtSearch.getText().isBlank();
+        int page = searchPageNumber; // Refilling the filter combos below resets it
+        if (!searching) {
+            tableModel.setRowCount(0);
+            shownBatches.clear();
         }
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-        // Update filter combos
-        cbFilterBrand.removeAllItems();
-        cbFilterBrand.addItem("All Brands");
-        for (String s : brands) cbFilterBrand.addItem(s);
+        if (!searching) {
+            for (InventoryBatch b : batches) {
+                addBatchRow(b, df);
+            }
+        }
+        allBatches = batches;
+        facets = buildFacets(batches);
 
-        cbFilterColor.removeAllItems();
-        cbFilterColor.addItem("All Colors");
-        for (String s : colors) cbFilterColor.addItem(s);
+        // Populate combos from the facet dictionaries (already sorted A-Z)
+        FacetComboRenderer.fillCombo(cbFilterBrand, "All Brands", facets.getValues(BRAND));
+        FacetComboRenderer.fillCombo(cbFilterColor, "All Colors", facets.getValues(COLOR));
 
         cbBrand.removeAllItems();
-        for (String s : brands) cbBrand.addItem(s);
+        for (String s : facets.getValues(BRAND)) cbBrand.addItem(s);
 
         cbColor.removeAllItems();
-        for (String s : colors) cbColor.addItem(s);
+        for (String s : facets.getValues(COLOR)) cbColor.addItem(s);
 
         cbType.removeAllItems();
-        for (String s : types) cbType.addItem(s);
+        for (String s : facets.getValues(TYPE)) cbType.addItem(s);
+
+        if (searching) {
+            // Show the same results page again with the changed rows
+            showResultPage(page);
+        } else if (rowSorter != null) {
+            applyFilters(true);
+        }
+    }
+
+    private static LTBPaintCenter.model.FacetIndex<InventoryBatch> buildFacets(List<InventoryBatch> batches) {
+        return new LTBPaintCenter.model.FacetIndex<>(batches, InventoryBatch::getId, InventoryBatch::getName,
+                InventoryBatch::getPrice, List.of(InventoryBatch::getBrand, InventoryBatch::getColor, InventoryBatch::getType));
+    }
 
-        if (rowSorter != null) applyFilters();
+    private void addBatchRow(InventoryBatch b, DateTimeFormatter df) {
+        shownBatches.put(b.getId(), b);
+        tableModel.addRow(new Object[]{
+                b.getId(), b.getProductCode(), b.getName(), b.getBrand(), b.getColor(), b.getType(),
+                String.format("%.2f", b.getPrice()), b.getQuantity(),
+                b.getDateImported() != null ? b.getDateImported().format(df) : "",
+                b.getExpirationDate() != null ? b.getExpirationDate().format(df) : "",
+                computeDisplayStatus(b)
+        });
     }
 
     private String computeDisplayStatus(InventoryBatch b) {
@@ -565,14 +747,15 @@ public class InventoryPanel extends JPanel {
 
         // Search and filter listeners
         javax.swing.event.DocumentListener dl = new javax.swing.event.DocumentListener() {
-            private void changed() { applyFilters(); }
+            // Typing is debounced; the matching runs in the background
+            private void changed() { applyFilters(false); }
             public void insertUpdate(javax.swing.event.DocumentEvent e) { changed(); }
             public void removeUpdate(javax.swing.event.DocumentEvent e) { changed(); }
             public void changedUpdate(javax.swing.event.DocumentEvent e) { changed(); }
         };
         txtSearch.getDocument().addDocumentListener(dl);
-        cbFilterBrand.addActionListener(e -> applyFilters());
-        cbFilterColor.addActionListener(e -> applyFilters());
+        cbFilterBrand.addActionListener(e -> applyFilters(true));
+        cbFilterColor.addActionListener(e -> applyFilters(true));
         cbSort.addActionListener(e -> applySort());
 
         // Row renderer to highlight status when not selected; preserve selection highlight when selected
@@ -580,6 +763,13 @@ public class InventoryPanel extends JPanel {
             @Override
             public java.awt.Component getTableCellRendererComponent(JTable tbl, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
                 java.awt.Component c = super.getTableCellRendererComponent(tbl, value, isSelected, hasFocus, row, col);
+                if (shownPage != null && tbl.convertColumnIndexToModel(col) == 2) {
+                    Object id = tableModel.getValueAt(tbl.convertRowIndexToModel(row), 0);
+                    String marked = id instanceof Integer i ? shownPage.getHighlightedName(i) : null;
+                    if (marked != null) {
+                        setText(toHighlightHtml(marked));
+                    }
+                }
                 if (isSelected) {
                     c.setBackground(tbl.getSelectionBackground());
                     c.setForeground(tbl.getSelectionForeground());
@@ -603,13 +793,15 @@ public class InventoryPanel extends JPanel {
         });
 
         applySort();
-        applyFilters();
+        applyFilters(true);
     }
 
     private void applySort() {
         String sort = (String) cbSort.getSelectedItem();
         java.util.List<javax.swing.RowSorter.SortKey> keys = new java.util.ArrayList<>();
-        if ("A–Z (Name)".equals(sort)) {
+        if (shownPage != null && "A–Z (Name)".equals(sort)) {
+            // Search results stay in best-match order unless sorted by price
+        } else if ("A–Z (Name)".equals(sort)) {
             keys.add(new javax.swing.RowSorter.SortKey(2, javax.swing.SortOrder.ASCENDING));
         } else if ("Price Low–High".equals(sort)) {
             keys.add(new javax.swing.RowSorter.SortKey(6, javax.swing.SortOrder.ASCENDING));
@@ -619,34 +811,150 @@ public class InventoryPanel extends JPanel {
         rowSorter.setSortKeys(keys);
     }
 
-    private void applyFilters() {
+    /**
+     * Filters the table for the current search text and filters.
+     * With search text, the database index is searched and one page of
+     * ranked results is shown. Without it, the whole inventory is shown and
+     * the brand/color filters are an AND of facet bitsets, applied with a
+     * row filter that just looks up the row's bit.
+     *
+     * @param immediate true to search now, false to wait until typing pauses
+     */
+    private void applyFilters(boolean immediate) {
         String search = txtSearch.getText().trim().toLowerCase();
+        if (!search.isEmpty()) {
+            searchPageNumber = 0;
+            runPageSearch(immediate);
+            return;
+        }
+        if (shownPage != null) {
+            leaveSearchResults();
+        }
+
+        if (facets.size() != tableModel.getRowCount()) {
+            return; // The table is being reloaded; refreshTable filters again when it is done
+        }
         String brandSel = (String) cbFilterBrand.getSelectedItem();
         String colorSel = (String) cbFilterColor.getSelectedItem();
-        boolean filterBrand = brandSel != null && !brandSel.equals("All Brands");
-        boolean filterColor = colorSel != null && !colorSel.equals("All Colors");
+        String[] selected = {
+                brandSel == null || brandSel.equals("All Brands") ? null : brandSel,
+                colorSel == null || colorSel.equals("All Colors") ? null : colorSel,
+                null
+        };
+        LTBPaintCenter.model.FacetIndex<InventoryBatch>.Selection selection = facets.query(selected, null);
+        showIncludedRows(selection.getRows());
+        brandFilterRenderer.setSelection(selection);
+        colorFilterRenderer.setSelection(selection);
+        cbFilterBrand.repaint();
+        cbFilterColor.repaint();
+    }
+
+    private void showResultPage(int page) {
+        searchPageNumber = Math.max(0, page);
+        runPageSearch(true);
+    }
+
+    private void runPageSearch(boolean immediate) {
+        String text = txtSearch.getText().trim();
+        String brandSel = (String) cbFilterBrand.getSelectedItem();
+        String colorSel = (String) cbFilterColor.getSelectedItem();
+        String brand = brandSel == null || brandSel.equals("All Brands") ? null : brandSel;
+        String color = colorSel == null || colorSel.equals("All Colors") ? null : colorSel;
+        int page = searchPageNumber;
+
+        java.util.concurrent.Callable<LTBPaintCenter.dao.InventoryDAO.SearchPage> query =
+                () -> controller.searchBatches(text, brand, color, PAGE_SIZE, page);
+        if (immediate) {
+            pageSearch.submitNow(query);
+        } else {
+            pageSearch.submit(query);
+        }
+    }
+
+    // Replaces the table rows with one page of search results
+    private void showSearchPage(LTBPaintCenter.dao.InventoryDAO.SearchPage result) {
+        if (txtSearch.getText().isBlank()) {
+            return; // The search was cleared while this page was loading
+        }
+        shownPage = result;
+        // The facet counts are for the whole inventory, so hide them for search results
+        brandFilterRenderer.setSelection(null);
+        colorFilterRenderer.setSelection(null);
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        tableModel.setRowCount(0);
+        for (InventoryBatch b : result.getRows()) {
+            addBatchRow(b, df);
+        }
+        rowSorter.setRowFilter(null);
+        applySort();
 
-        javax.swing.RowFilter<DefaultTableModel, Integer> rf = new javax.swing.RowFilter<>() {
+        int pages = Math.max(1, (result.getTotalMatches() + PAGE_SIZE - 1) / PAGE_SIZE);
+        lblPage.setText("Page " + (searchPageNumber + 1) + " of " + pages
+                + " (" + result.getTotalMatches() + " found)");
+        btnPrevPage.setEnabled(searchPageNumber > 0);
+        btnNextPage.setEnabled(searchPageNumber + 1 < pages);
+        setPagingVisible(true);
+    }
+
+    // Goes back to showing the whole inventory
+    private void leaveSearchResults() {
+        pageSearch.cancel();
+        shownPage = null;
+        setPagingVisible(false);
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        tableModel.setRowCount(0);
+        if (allBatchesStale) {
+            // Batches were changed while searching; the reload fills the table and filters again
+            applySort();
+            refreshTable();
+            return;
+        }
+        for (InventoryBatch b : allBatches) {
+            addBatchRow(b, df);
+        }
+        applySort();
+    }
+
+    private void setPagingVisible(boolean visible) {
+        btnPrevPage.setVisible(visible);
+        lblPage.setVisible(visible);
+        btnNextPage.setVisible(visible);
+    }
+
+    // Turns a name marked by the search into HTML with the matched words in bold
+    private static String toHighlightHtml(String marked) {
+        StringBuilder sb = new StringBuilder("<html>");
+        for (int i = 0; i < marked.length(); i++) {
+            char ch = marked.charAt(i);
+            switch (ch) {
+                case LTBPaintCenter.dao.InventoryDAO.HIGHLIGHT_START -> sb.append("<b>");
+                case LTBPaintCenter.dao.InventoryDAO.HIGHLIGHT_END -> sb.append("</b>");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                default -> sb.append(ch);
+            }
+        }
+        return sb.append("</html>").toString();
+    }
+
+    private void showIncludedRows(long[] included) {
+        rowSorter.setRowFilter(new javax.swing.RowFilter<DefaultTableModel, Integer>() {
             @Override
             public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
-                String code = String.valueOf(entry.getValue(1)).toLowerCase();
-                String name = String.valueOf(entry.getValue(2)).toLowerCase();
-                String brand = String.valueOf(entry.getValue(3));
-                String color = String.valueOf(entry.getValue(4));
-                String type = String.valueOf(entry.getValue(5)).toLowerCase();
-                boolean matchesSearch = search.isEmpty() || code.contains(search) || name.contains(search) || type.contains(search)
-                        || brand.toLowerCase().contains(search) || color.toLowerCase().contains(search);
-                boolean matchesBrand = !filterBrand || brand.equals(brandSel);
-                boolean matchesColor = !filterColor || color.equals(colorSel);
-                return matchesSearch && matchesBrand && matchesColor;
+                return LTBPaintCenter.model.FacetIndex.contains(included, entry.getIdentifier());
             }
-        };
-        rowSorter.setRowFilter(rf);
+        });
     }
 
     // Navigate/select a row by its internal numeric ID; optionally focus fields for editing
     public void selectRowById(int id, boolean focusEditor) {
         if (id <= 0) return;
+        // The row may not be on the current search page, so show the whole inventory
+        if (!txtSearch.getText().isEmpty()) {
+            txtSearch.setText("");
+            applyFilters(true);
+        }
         // Ensure table is up to date
         refreshTable();
         int modelRow = -1;
@@ -0,0 +1,65 @@
+package LTBPaintCenter.view;
+
+import LTBPaintCenter.dao.AsyncDao;
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is a small "Loading..." bar shown on a panel while its
+ * database work runs in the background. It counts the running jobs and
+ * hides itself when the last one is done.
+ *
+ * All methods must be called on the Swing event thread.
+ */
+public class LoadingIndicator extends JPanel {
+
+    private final JProgressBar bar = new JProgressBar();
+    private final JLabel label = new JLabel();
+    private int running;
+
+    public LoadingIndicator() {
+        super(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        setOpaque(false);
+        bar.setIndeterminate(true);
+        bar.setPreferredSize(new Dimension(80, 12));
+        label.setFont(new Font("Segoe UI", Font.ITALIC, 12));
+        label.setForeground(new Color(108, 117, 125));
+        add(bar);
+        add(label);
+        setVisible(false);
+    }
+
+    /**
+     * Shows the indicator for one more job.
+     *
+     * @param text What is being loaded, for example "Loading sales..."
+     */
+    public void start(String text) {
+        running++;
+        label.setText(text);
+        setVisible(true);
+    }
+
+    /**
+     * Marks one job as done. The indicator is hidden after the last one.
+     */
+    public void stop() {
+        if (running > 0 && --running == 0) {
+            setVisible(false);
+        }
+    }
+
+    /**
+     * Shows the indicator until the background work is done.
+     *
+     * @param text What is being loaded
+     * @param future The background work
+     * @return The same future, so calls can be chained
+     */
+    public <T> CompletableFuture<T> track(String text, CompletableFuture<T> future) {
+        start(text);
+        future.whenCompleteAsync((result, error) -> stop(), AsyncDao.EDT);
+        return future;
+    }
+}
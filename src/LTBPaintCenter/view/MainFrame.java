@@ -2,6 +2,9 @@ package LTBPaintCenter.view;
 
 import LTBPaintCenter.controller.*;
 import LTBPaintCenter.dao.AdminDAO;
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.model.Global;
+import LTBPaintCenter.model.KpiTracker;
 import javax.swing.*;
 import java.awt.*;
 import java.util.HashMap;
@@ -40,6 +43,8 @@ public class MainFrame extends JFrame {
     private final MonitoringController monitoringController;
 
     private JButton changePasswordButton;
+    // True while an admin password is checked in the background
+    private boolean verifyingPassword;
 
     /**
      * Constructor - creates the main window and sets up all components.
@@ -76,13 +81,24 @@ public class MainFrame extends JFrame {
         lblDateTime.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
         leftStatus.add(lblDateTime);
         statusBar.add(leftStatus, BorderLayout.WEST);
+
+        JPanel rightStatus = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 4));
+        rightStatus.setOpaque(false);
+        JLabel lblKpis = new JLabel();
+        rightStatus.add(lblKpis);
+        statusBar.add(rightStatus, BorderLayout.EAST);
         add(statusBar, BorderLayout.SOUTH);
 
-        // Update date/time every second
+        // Update date/time and today's sales figures every second
         javax.swing.Timer timer = new javax.swing.Timer(1000, e -> {
             String now = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
                     .format(new java.util.Date());
             lblDateTime.setText("System Date/Time: " + now);
+            if (Global.report != null) {
+                KpiTracker.Snapshot today = Global.report.getKpis().getToday();
+                lblKpis.setText(String.format("Today: ₱%.2f | %d receipts | avg ₱%.2f",
+                        today.getRevenue(), today.getReceipts(), today.getAverageBasket()));
+            }
         });
         timer.setRepeats(true);
         timer.start();
@@ -229,6 +245,10 @@ public class MainFrame extends JFrame {
      * Requires password verification to switch to admin mode.
      */
     private void handleAdminToggle() {
+        if (verifyingPassword) {
+            // The last password is still being checked
+            return;
+        }
         if (!isAdmin) {
             // Switch to admin mode - require password
             JPasswordField passwordField = new JPasswordField();
@@ -237,14 +257,24 @@ public class MainFrame extends JFrame {
             
             if (option == JOptionPane.OK_OPTION) {
                 String password = new String(passwordField.getPassword());
-                if (AdminDAO.verifyPassword(password)) {
-                    isAdmin = true;
-                    lblRole.setText("Admin");
-                    JOptionPane.showMessageDialog(this, "Admin mode activated!");
-                } else {
-                    JOptionPane.showMessageDialog(this, "Incorrect password.", 
+                // Checked in the background; clicks on the profile icon are ignored until then
+                verifyingPassword = true;
+                AsyncDao.onEdt(AsyncDao.supply("verify admin password", () -> AdminDAO.verifyPassword(password)), valid -> {
+                    verifyingPassword = false;
+                    if (valid) {
+                        isAdmin = true;
+                        lblRole.setText("Admin");
+                        updateAccess();
+                        JOptionPane.showMessageDialog(this, "Admin mode activated!");
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Incorrect password.", 
+                                "Access Denied", JOptionPane.ERROR_MESSAGE);
+                    }
+                }, error -> {
+                    verifyingPassword = false;
+                    JOptionPane.showMessageDialog(this, "The admin password could not be checked.",
                             "Access Denied", JOptionPane.ERROR_MESSAGE);
-                }
+                });
             }
         } else {
             // Switch back to cashier mode
@@ -371,14 +401,22 @@ public class MainFrame extends JFrame {
             return;
         }
 
-        // Change the password
-        boolean success = AdminDAO.changePassword(currentPassword, newPassword);
-        if (success) {
-            JOptionPane.showMessageDialog(this, "Admin password updated successfully.");
-        } else {
-            JOptionPane.showMessageDialog(this, 
-                    "Current password is incorrect.", 
+        // Change the password in the background; the button stays off until it is done
+        changePasswordButton.setEnabled(false);
+        AsyncDao.onEdt(AsyncDao.supply("change admin password",
+                () -> AdminDAO.changePassword(currentPassword, newPassword)), success -> {
+            changePasswordButton.setEnabled(true);
+            if (success) {
+                JOptionPane.showMessageDialog(this, "Admin password updated successfully.");
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                        "Current password is incorrect.", 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, error -> {
+            changePasswordButton.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "The admin password could not be changed.",
                     "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 }
@@ -1,6 +1,8 @@
 package LTBPaintCenter.view;
 
+import LTBPaintCenter.dao.DbWriteExecutor;
 import LTBPaintCenter.model.InventoryBatch;
+import LTBPaintCenter.model.KpiTracker;
 import LTBPaintCenter.model.Sale;
 import LTBPaintCenter.model.SaleItem;
 import LTBPaintCenter.util.ReceiptPrinter;
@@ -40,6 +42,11 @@ public class MonitoringPanel extends JPanel {
     };
     private final JLabel lblTotalSales = new JLabel("Total Sales: 0");
     private final JLabel lblRevenue = new JLabel("Total Revenue: ₱0.00");
+    private final JLabel lblKpiHour = new JLabel("Last Hour: ₱0.00");
+    private final JLabel lblKpiToday = new JLabel("Today: ₱0.00");
+    private final JLabel lblKpiWeek = new JLabel("Last 7 Days: ₱0.00");
+    private final JLabel lblDbWrites = new JLabel("DB writes: 0");
+    private final LoadingIndicator loading = new LoadingIndicator();
 
     private final JComboBox<String> cbFilterBrand = new JComboBox<>(new String[]{"All Brands"});
     private final JComboBox<String> cbFromDay = new JComboBox<>();
@@ -52,13 +59,19 @@ public class MonitoringPanel extends JPanel {
     private final JButton btnApplyFilter = new JButton("Apply");
     private final JButton btnClearFilter = new JButton("Clear");
     private final JButton btnResetTransactions = new JButton("Reset Transactions");
+    private final JButton btnBranches = new JButton("Branches...");
 
     private final JTextArea taBrandSummary = new JTextArea();
     private final JTextArea taTypeSummary = new JTextArea();
-    private final JComboBox<String> cbChartMode = new JComboBox<>(new String[]{"Brand Revenue", "Type Revenue"});
+    private final JComboBox<String> cbChartMode = new JComboBox<>(new String[]{"Brand Revenue", "Type Revenue", "Revenue Over Time", "Branch Revenue"});
     private final BarChartPanel barChartPanel = new BarChartPanel();
+    private final TimeSeriesChartPanel timeSeriesPanel = new TimeSeriesChartPanel();
+    private final JPanel chartCards = new JPanel(new CardLayout());
 
-    private List<Sale> currentSales;
+    private static final SimpleDateFormat ROW_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // Running totals of what the sales table currently shows
+    private int shownReceipts;
+    private double shownRevenue;
     private static class RowRef {
         final Sale sale;
         RowRef(Sale sale, SaleItem item) { this.sale = sale; }
@@ -97,12 +110,33 @@ public class MonitoringPanel extends JPanel {
         styleButton(btnClearFilter, new Color(108, 117, 125), Color.WHITE);
         styleButton(btnResetTransactions, new Color(220, 53, 69), Color.WHITE); // Danger red
         btnResetTransactions.setToolTipText("Clear all recorded transactions from the database");
+        styleButton(btnBranches, new Color(40, 167, 69), Color.WHITE);
+        btnBranches.setToolTipText("Choose other stores' database files for a consolidated report");
 
         filterPanel.add(btnApplyFilter);
         filterPanel.add(btnClearFilter);
+        filterPanel.add(btnBranches);
         filterPanel.add(Box.createHorizontalStrut(12));
         //filterPanel.add(btnResetTransactions);
-        add(filterPanel, BorderLayout.NORTH);
+
+        // Live KPI strip above the filters
+        JPanel kpiPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 24, 4));
+        kpiPanel.setBackground(Color.WHITE);
+        kpiPanel.setBorder(BorderFactory.createTitledBorder("Live"));
+        for (JLabel lbl : new JLabel[]{lblKpiHour, lblKpiToday, lblKpiWeek}) {
+            lbl.setFont(new Font("Segoe UI", Font.BOLD, 13));
+            kpiPanel.add(lbl);
+        }
+        lblDbWrites.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        lblDbWrites.setForeground(new Color(108, 117, 125));
+        kpiPanel.add(lblDbWrites);
+        kpiPanel.add(loading);
+
+        JPanel north = new JPanel(new BorderLayout());
+        north.setBackground(Color.WHITE);
+        north.add(kpiPanel, BorderLayout.NORTH);
+        north.add(filterPanel, BorderLayout.CENTER);
+        add(north, BorderLayout.NORTH);
     }
 
     private void styleButton(JButton b, Color bg, Color fg) {
@@ -214,10 +248,14 @@ public class MonitoringPanel extends JPanel {
         chartHeader.add(cbChartMode);
 
         barChartPanel.setBorder(BorderFactory.createTitledBorder("Visual Breakdown"));
+        timeSeriesPanel.setBorder(BorderFactory.createTitledBorder("Revenue Over Time"));
+        chartCards.setBackground(Color.WHITE);
+        chartCards.add(barChartPanel, "bar");
+        chartCards.add(timeSeriesPanel, "time");
 
         summaryContainer.add(Box.createVerticalStrut(8));
         summaryContainer.add(chartHeader);
-        summaryContainer.add(barChartPanel);
+        summaryContainer.add(chartCards);
 
         add(summaryContainer, BorderLayout.SOUTH);
     }
@@ -250,6 +288,11 @@ public class MonitoringPanel extends JPanel {
 
     private final DefaultListModel<AlertItem> alertModel = new DefaultListModel<>();
     private final JList<AlertItem> lstAlerts = new JList<>(alertModel);
+    // Consolidated view of the other branches (read from their database files)
+    private final JTextArea taBranchSummary = new JTextArea("No branches chosen.\nUse Branches... to pick their database files.");
+    private final DefaultListModel<AlertItem> branchAlertModel = new DefaultListModel<>();
+    private final JList<AlertItem> lstBranchAlerts = new JList<>(branchAlertModel);
+    private final JTabbedPane alertTabs = new JTabbedPane();
 
     private void initAlertsPanel() {
         JPanel alertsContainer = new JPanel(new BorderLayout());
@@ -257,11 +300,41 @@ public class MonitoringPanel extends JPanel {
         alertsContainer.setBorder(BorderFactory.createTitledBorder("Stock & Expiration Alerts"));
         alertsContainer.setPreferredSize(new Dimension(360, 0));
 
-        lstAlerts.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        lstAlerts.setFont(new Font("Segoe UI", Font.PLAIN, 13));
-        lstAlerts.setBackground(Color.WHITE);
-        lstAlerts.setFixedCellHeight(24);
-        lstAlerts.setCellRenderer(new DefaultListCellRenderer() {
+        styleAlertList(lstBranchAlerts);
+        styleAlertList(lstAlerts);
+
+        lstAlerts.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override public void mouseClicked(java.awt.event.MouseEvent e) {
+                int idx = lstAlerts.locationToIndex(e.getPoint());
+                if (idx < 0) return;
+                lstAlerts.setSelectedIndex(idx); // visual indicator
+                AlertItem ai = alertModel.getElementAt(idx);
+                if (onAlertClick != null && ai.productId > 0 && ai.type != AlertItem.Type.HEALTHY) {
+                    onAlertClick.accept(ai.productId);
+                }
+            }
+        });
+
+        taBranchSummary.setEditable(false);
+        taBranchSummary.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        taBranchSummary.setBackground(new Color(248, 248, 248));
+        JPanel branchPanel = new JPanel(new BorderLayout(0, 6));
+        branchPanel.setBackground(Color.WHITE);
+        branchPanel.add(new JScrollPane(taBranchSummary), BorderLayout.NORTH);
+        branchPanel.add(new JScrollPane(lstBranchAlerts), BorderLayout.CENTER);
+
+        alertTabs.addTab("This Store", new JScrollPane(lstAlerts));
+        alertTabs.addTab("Branches", branchPanel);
+        alertsContainer.add(alertTabs, BorderLayout.CENTER);
+        add(alertsContainer, BorderLayout.EAST);
+    }
+
+    private void styleAlertList(JList<AlertItem> list) {
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        list.setBackground(Color.WHITE);
+        list.setFixedCellHeight(24);
+        list.setCellRenderer(new DefaultListCellRenderer() {
             @Override
             public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
                 Component c = super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
@@ -284,63 +357,75 @@ public class MonitoringPanel extends JPanel {
                     }
                     if (c instanceof JComponent jc) {
                         jc.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
-                        jc.setToolTipText("Click to open this product in Inventory");
-                        jc.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+                        // Alerts of other branches cannot be opened here
+                        boolean clickable = ai.productId > 0;
+                        jc.setToolTipText(clickable ? "Click to open this product in Inventory" : null);
+                        jc.setCursor(Cursor.getPredefinedCursor(clickable ? Cursor.HAND_CURSOR : Cursor.DEFAULT_CURSOR));
                     }
                 }
                 return c;
             }
         });
-
-        lstAlerts.addMouseListener(new java.awt.event.MouseAdapter() {
-            @Override public void mouseClicked(java.awt.event.MouseEvent e) {
-                int idx = lstAlerts.locationToIndex(e.getPoint());
-                if (idx < 0) return;
-                lstAlerts.setSelectedIndex(idx); // visual indicator
-                AlertItem ai = alertModel.getElementAt(idx);
-                if (onAlertClick != null && ai.productId > 0 && ai.type != AlertItem.Type.HEALTHY) {
-                    onAlertClick.accept(ai.productId);
-                }
-            }
-        });
-
-        JScrollPane scroll = new JScrollPane(lstAlerts);
-        alertsContainer.add(scroll, BorderLayout.CENTER);
-        add(alertsContainer, BorderLayout.EAST);
     }
 
     public void updateAlerts(List<InventoryBatch> batches) {
         alertModel.clear();
+        addAlerts(alertModel, "", batches, true);
+
+        // Only shows the healthy message when there are products and none triggered alerts
+        if (alertModel.isEmpty() && batches != null && !batches.isEmpty()) {
+            alertModel.addElement(new AlertItem(0, "All products are healthy and in stock.", AlertItem.Type.HEALTHY));
+        }
+    }
+
+    /**
+     * Shows the consolidated report of the other branches in the Branches tab.
+     *
+     * @param summary The per-branch revenue text
+     * @param alertsByBranch Branch name -> its alert batches
+     */
+    public void updateBranches(String summary, Map<String, List<InventoryBatch>> alertsByBranch) {
+        taBranchSummary.setText(summary);
+        taBranchSummary.setCaretPosition(0);
+        branchAlertModel.clear();
+        for (Map.Entry<String, List<InventoryBatch>> e : alertsByBranch.entrySet()) {
+            addAlerts(branchAlertModel, "[" + e.getKey() + "] ", e.getValue(), false);
+        }
+        if (branchAlertModel.isEmpty() && !alertsByBranch.isEmpty()) {
+            branchAlertModel.addElement(new AlertItem(0, "All branches are healthy and in stock.", AlertItem.Type.HEALTHY));
+        }
+        alertTabs.setSelectedIndex(1);
+    }
+
+    // Adds the alerts of some batches; only this store's alerts open the product when clicked
+    private static void addAlerts(DefaultListModel<AlertItem> model, String prefix,
+                                  List<InventoryBatch> batches, boolean clickable) {
         LocalDate today = LocalDate.now();
 
         for (InventoryBatch b : batches) {
             LocalDate exp = b.getExpirationDate();
             int qty = b.getQuantity();
+            int id = clickable ? b.getId() : 0;
 
             if (exp != null) {
                 long daysLeft = ChronoUnit.DAYS.between(today, exp);
                 if (daysLeft <= 7 && daysLeft > 0) {
-                    String text = String.format("%s (%s) — Expiring in %d day%s", b.getName(), nullSafe(b.getBrand()), daysLeft, daysLeft==1?"":"s");
-                    alertModel.addElement(new AlertItem(b.getId(), text, AlertItem.Type.EXPIRING_SOON));
+                    String text = String.format("%s%s (%s) — Expiring in %d day%s", prefix, b.getName(), nullSafe(b.getBrand()), daysLeft, daysLeft==1?"":"s");
+                    model.addElement(new AlertItem(id, text, AlertItem.Type.EXPIRING_SOON));
                 } else if (daysLeft <= 0) {
-                    String text = String.format("%s (%s) — EXPIRED", b.getName(), nullSafe(b.getBrand()));
-                    alertModel.addElement(new AlertItem(b.getId(), text, AlertItem.Type.EXPIRED));
+                    String text = String.format("%s%s (%s) — EXPIRED", prefix, b.getName(), nullSafe(b.getBrand()));
+                    model.addElement(new AlertItem(id, text, AlertItem.Type.EXPIRED));
                 }
             }
 
             if (qty == 0) {
-                String text = String.format("%s (%s) — OUT OF STOCK", b.getName(), nullSafe(b.getBrand()));
-                alertModel.addElement(new AlertItem(b.getId(), text, AlertItem.Type.OUT_OF_STOCK));
+                String text = String.format("%s%s (%s) — OUT OF STOCK", prefix, b.getName(), nullSafe(b.getBrand()));
+                model.addElement(new AlertItem(id, text, AlertItem.Type.OUT_OF_STOCK));
             } else if (qty <= 5) {
-                String text = String.format("%s (%s) — Low stock: %d left", b.getName(), nullSafe(b.getBrand()), qty);
-                alertModel.addElement(new AlertItem(b.getId(), text, AlertItem.Type.LOW_STOCK));
+                String text = String.format("%s%s (%s) — Low stock: %d left", prefix, b.getName(), nullSafe(b.getBrand()), qty);
+                model.addElement(new AlertItem(id, text, AlertItem.Type.LOW_STOCK));
             }
         }
-
-        // Only shows the healthy message when there are products and none triggered alerts
-        if (alertModel.isEmpty() && batches != null && !batches.isEmpty()) {
-            alertModel.addElement(new AlertItem(0, "All products are healthy and in stock.", AlertItem.Type.HEALTHY));
-        }
     }
 
     private static String nullSafe(String s) {
@@ -351,32 +436,45 @@ public class MonitoringPanel extends JPanel {
     public void refreshSales(Collection<Sale> sales) {
         tableModel.setRowCount(0);
         currentRows.clear();
+        shownReceipts = 0; // number of receipts (distinct reference numbers)
+        shownRevenue = 0;
 
-        double totalRevenue = 0;
-        int totalSales = 0; // number of receipts (distinct reference numbers)
-        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (Sale s : sales) {
+            addSaleRows(s);
+        }
+        updateSalesTotals();
+    }
 
-        currentSales = sales instanceof List ? (List<Sale>) sales : List.copyOf(sales);
-
-        for (Sale s : currentSales) {
-            totalSales++;
-            totalRevenue += s.getTotal();
-
-            for (SaleItem it : s.getItems()) {
-                currentRows.add(new RowRef(s, it));
-                tableModel.addRow(new Object[]{
-                        s.getId(),
-                        fmt.format(s.getDate()),
-                        it.getName(),
-                        String.format("₱%.2f", it.getPrice()),
-                        it.getQty(),
-                        String.format("₱%.2f", it.getSubtotal())
-                });
-            }
+    /**
+     * Adds one new sale to the bottom of the sales table without rebuilding it.
+     *
+     * @param sale The sale that was just recorded
+     */
+    public void appendSale(Sale sale) {
+        addSaleRows(sale);
+        updateSalesTotals();
+    }
+
+    private void addSaleRows(Sale s) {
+        shownReceipts++;
+        shownRevenue += s.getTotal();
+
+        for (SaleItem it : s.getItems()) {
+            currentRows.add(new RowRef(s, it));
+            tableModel.addRow(new Object[]{
+                    s.getId(),
+                    ROW_DATE_FORMAT.format(s.getDate()),
+                    it.getName(),
+                    String.format("₱%.2f", it.getPrice()),
+                    it.getQty(),
+                    String.format("₱%.2f", it.getSubtotal())
+            });
         }
+    }
 
-        lblTotalSales.setText("Total Sales: " + totalSales);
-        lblRevenue.setText(String.format("Total Revenue: ₱%.2f", totalRevenue));
+    private void updateSalesTotals() {
+        lblTotalSales.setText("Total Sales: " + shownReceipts);
+        lblRevenue.setText(String.format("Total Revenue: ₱%.2f", shownRevenue));
     }
 
     // GETTERS
@@ -386,6 +484,43 @@ public class MonitoringPanel extends JPanel {
         for (String b : brands) cbFilterBrand.addItem(b);
     }
 
+    /**
+     * Shows the live KPI figures in the header strip.
+     *
+     * @param hour The figures for the last 60 minutes
+     * @param today The figures since midnight
+     * @param week The figures for the last 7 days
+     */
+    public void updateKpis(KpiTracker.Snapshot hour, KpiTracker.Snapshot today, KpiTracker.Snapshot week) {
+        lblKpiHour.setText(formatKpi("Last Hour", hour));
+        lblKpiToday.setText(formatKpi("Today", today));
+        lblKpiWeek.setText(formatKpi("Last 7 Days", week));
+        lblKpiWeek.setToolTipText(week.getTopProduct() == null ? null
+                : "Top product: " + week.getTopProduct() + " (" + week.getTopProductUnits() + " units)");
+    }
+
+    /**
+     * Shows the database write figures (retries and lock waits) in the header strip.
+     * The text turns red once a write has failed.
+     *
+     * @param metrics The current write figures
+     */
+    public void updateDbMetrics(DbWriteExecutor.Metrics metrics) {
+        lblDbWrites.setText(metrics.toString());
+        lblDbWrites.setForeground(metrics.getFailedWrites() > 0 ? new Color(220, 53, 69) : new Color(108, 117, 125));
+        lblDbWrites.setToolTipText(String.format("%d writes had to wait for another terminal; %d ms queued behind this terminal's own writes",
+                metrics.getBusyWrites(), metrics.getQueueWaitMillis()));
+    }
+
+    private static String formatKpi(String title, KpiTracker.Snapshot s) {
+        String text = String.format("%s: ₱%.2f | %d receipts | avg ₱%.2f | %d units",
+                title, s.getRevenue(), s.getReceipts(), s.getAverageBasket(), s.getUnits());
+        if (s.getTopProduct() != null) {
+            text += " | top: " + s.getTopProduct();
+        }
+        return text;
+    }
+
     public void updateBreakdown(String brandText, String typeText) {
         taBrandSummary.setText(brandText);
         taTypeSummary.setText(typeText);
@@ -393,8 +528,20 @@ public class MonitoringPanel extends JPanel {
 
     public JButton getBtnApplyFilter() { return btnApplyFilter; }
     public JButton getBtnClearFilter() { return btnClearFilter; }
+    public JButton getBtnBranches() { return btnBranches; }
+    public LoadingIndicator getLoadingIndicator() { return loading; }
     public JComboBox<String> getCbFilterBrand() { return cbFilterBrand; }
     public BarChartPanel getBarChartPanel() { return barChartPanel; }
+    public TimeSeriesChartPanel getTimeSeriesPanel() { return timeSeriesPanel; }
+
+    /**
+     * Switches the chart area between the bar chart and the time-series chart.
+     *
+     * @param timeSeries true to show revenue over time
+     */
+    public void showTimeSeriesChart(boolean timeSeries) {
+        ((CardLayout) chartCards.getLayout()).show(chartCards, timeSeries ? "time" : "bar");
+    }
     public JComboBox<String> getCbChartMode() { return cbChartMode; }
 
     // Click wiring for alerts
@@ -1,59 +1,42 @@
 package LTBPaintCenter.view;
 
+import LTBPaintCenter.dao.AsyncDao;
+import LTBPaintCenter.model.CatalogSearchIndex;
+import LTBPaintCenter.model.FacetIndex;
+import LTBPaintCenter.model.PricedCart;
+import LTBPaintCenter.model.PricingEngine;
 import LTBPaintCenter.model.ProductBatch;
-import LTBPaintCenter.model.SaleItem;
+import LTBPaintCenter.model.PromotionEngine;
+import LTBPaintCenter.model.Sku;
+import LTBPaintCenter.util.ScanDetector;
+import LTBPaintCenter.util.SearchDebouncer;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * This panel provides the Point of Sale (POS) interface.
  * It displays available products in a grid, allows filtering and searching,
  * manages a shopping cart, calculates totals with VAT, and handles checkout.
  * Products are shown as cards that can be clicked to add to cart.
+ * Batches of the same product are grouped into one card (a SKU) with their
+ * total stock; the checkout decides which batches the stock comes from.
  */
 public class POSPanel extends JPanel {
-    private static class ScrollableWrapPanel extends JPanel implements javax.swing.Scrollable {
-        private static final int COLS = 4;
-        private static final int HGAP = 12;
-        private static final int VGAP = 12;
-        private static final int PADDING = 12;
-        public ScrollableWrapPanel(LayoutManager layout) { super(layout); }
-        @Override public Dimension getPreferredScrollableViewportSize() { return getPreferredSize(); }
-        @Override public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) { return 16; }
-        @Override public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) { return Math.max(visibleRect.height - 16, 50); }
-        @Override public boolean getScrollableTracksViewportWidth() { return false; }
-        @Override public boolean getScrollableTracksViewportHeight() { return false; }
-        @Override public Dimension getPreferredSize() {
-            int n = getComponentCount();
-            int cardW = 220, cardH = 220;
-            if (n > 0) {
-                Dimension d = getComponent(0).getPreferredSize();
-                if (d != null) { cardW = d.width; cardH = d.height; }
-            }
-            int rows = (int) Math.ceil(n / (double) COLS);
-            int width = COLS * cardW + (COLS - 1) * HGAP + 2 * PADDING;
-            int height = (rows == 0 ? cardH : rows * cardH + (rows - 1) * VGAP) + 2 * PADDING;
-            Insets in = getInsets();
-            width += in.left + in.right;
-            height += in.top + in.bottom;
-            return new Dimension(width, height);
-        }
-    }
-    private final JPanel productGrid = new ScrollableWrapPanel(new GridLayout(0, 4, 12, 12));
+    // Virtualized grid: cards are painted only for the visible cells
+    private final ProductGridPanel productGrid = new ProductGridPanel();
     private final JScrollPane productScroll = new JScrollPane(productGrid);
 
-    private final DefaultTableModel cartTableModel = new DefaultTableModel(
-            new String[]{"ID", "Name", "Price", "Qty", "Subtotal"}, 0
-    ) {
-        @Override public boolean isCellEditable(int row, int column) { return false; }
-    };
-    private final JTable cartTable = new JTable(cartTableModel);
+    // Row-level cart model with running totals
+    private final CartTableModel cartModel = new CartTableModel(PricingEngine.STANDARD);
+    private final JTable cartTable = new JTable(cartModel);
     private final JLabel lblSubtotalLabel = new JLabel("Subtotal: ₱0.00");
     private final JLabel lblVAT = new JLabel("VAT (12%): ₱0.00");
+    private final JLabel lblDiscount = new JLabel("Discount: -₱0.00");
     private final JLabel lblTotal = new JLabel("TOTAL: ₱0.00");
 
     // Cart buttons
@@ -61,9 +44,20 @@ public class POSPanel extends JPanel {
     private final JButton btnClear = new JButton("Clear Cart");
     private final JButton btnRemove = new JButton("Remove");
 
-    // Internal state
-    private final Map<Integer, SaleItem> cart = new HashMap<>();
+    // Internal state: SKU ID -> the SKU's card
     private final Map<Integer, ProductBatch> batchMap = new HashMap<>();
+    // SKU ID -> IDs of its sellable batches, used to check the stock when reserving
+    private final Map<Integer, List<Integer>> batchIdsBySku = new HashMap<>();
+    // Product code of any batch (upper case) -> the SKU's card, for barcode scans
+    private final Map<String, ProductBatch> batchByCode = new HashMap<>();
+    // Snapshot used by background searches; replaced (never changed) on each refresh
+    private List<ProductBatch> catalog = List.of();
+    // Token/trigram index for the search box, updated incrementally on refresh
+    private final CatalogSearchIndex searchIndex = new CatalogSearchIndex();
+    // Brand/color/type bitsets and presorted rows, rebuilt on refresh
+    private static final int BRAND = 0, COLOR = 1, TYPE = 2;
+    private FacetIndex<ProductBatch> facets = buildFacets(List.of());
+    private final SearchDebouncer<GridResult> gridSearch = new SearchDebouncer<>(150, this::showGridResult);
 
     // Filters
     private final JComboBox<String> cbBrand = new JComboBox<>();
@@ -71,12 +65,43 @@ public class POSPanel extends JPanel {
     private final JComboBox<String> cbType = new JComboBox<>();
     private final JTextField txtSearch = new JTextField(16);
     private final JComboBox<String> cbSort = new JComboBox<>(new String[]{"Name A–Z", "Price Low–High", "Price High–Low"});
+    private final FacetComboRenderer brandRenderer = new FacetComboRenderer(BRAND, "All Brands");
+    private final FacetComboRenderer colorRenderer = new FacetComboRenderer(COLOR, "All Colors");
+    private final FacetComboRenderer typeRenderer = new FacetComboRenderer(TYPE, "All Types");
     private boolean suppressFilterEvents = false;
 
+    // Barcode scanner input
+    private final ScanDetector scanDetector = new ScanDetector(this, this::handleScan);
+    private final JCheckBox chkScanner = new JCheckBox("Scanner", true);
+    private final JLabel lblScanStatus = new JLabel(" ");
+    private final LoadingIndicator loading = new LoadingIndicator();
+
     // Checkout handler
-    public interface CheckoutHandler { boolean handleCheckout(List<SaleItem> cartSnapshot); }
+    // Completes on the Swing event thread with true if the sale was saved
+    public interface CheckoutHandler { CompletableFuture<Boolean> handleCheckout(PricedCart cart); }
     private CheckoutHandler checkoutHandler = null;
 
+    // Stock reservations for the cart lines (shared with other terminals)
+    public interface ReservationHandler {
+        /**
+         * Reserves the new cart quantity of a product (0 releases it) in the background.
+         * The other cart lines are reserved again first if their reservations ran out.
+         *
+         * @param cart SKU ID -> quantity of every cart line, before this change
+         * @param batches SKU ID -> IDs of its sellable batches (their stock is checked in the database)
+         * @return Completes with false if there is not enough stock left once other terminals' reservations are taken off
+         */
+        CompletableFuture<Boolean> reserve(int productId, int qty, Map<Integer, Integer> cart,
+                                           Map<Integer, List<Integer>> batches);
+        /** Releases all of this cart's reservations in the background. */
+        void releaseAll();
+    }
+    private ReservationHandler reservationHandler = null;
+    // Set while a reservation or checkout is being saved; the cart cannot be changed until it is done
+    private boolean cartBusy = false;
+    // Codes scanned while the cart was busy, added in order once it is free again
+    private final Deque<String> pendingScans = new ArrayDeque<>();
+
     public POSPanel() {
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
@@ -86,12 +111,12 @@ public class POSPanel extends JPanel {
         initProductArea();
         initCartArea();
 
-        cartTableModel.addTableModelListener(e -> updateTotal());
+        cartModel.addTableModelListener(e -> updateTotal());
 
         // Wire filter listeners
-        cbBrand.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(batchMap.values()); });
-        cbColor.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(batchMap.values()); });
-        cbType.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(batchMap.values()); });
+        cbBrand.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(true); });
+        cbColor.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(true); });
+        cbType.addActionListener(e -> { if (!suppressFilterEvents) updateProductGrid(true); });
     }
 
     private void initFilterBar() {
@@ -102,6 +127,9 @@ public class POSPanel extends JPanel {
         cbBrand.addItem("All Brands");
         cbColor.addItem("All Colors");
         cbType.addItem("All Types");
+        cbBrand.setRenderer(brandRenderer);
+        cbColor.setRenderer(colorRenderer);
+        cbType.setRenderer(typeRenderer);
 
         GridBagConstraints gc = new GridBagConstraints();
         gc.insets = new Insets(4, 6, 4, 6);
@@ -114,7 +142,7 @@ public class POSPanel extends JPanel {
         gc.gridx++;
         gc.fill = GridBagConstraints.HORIZONTAL;
         gc.weightx = 1.0;
-        txtSearch.setToolTipText("Search by name, brand, color, or type");
+        txtSearch.setToolTipText("Search by name, brand, color, type, or product code");
         filterPanel.add(txtSearch, gc);
 
         gc.gridx++;
@@ -141,6 +169,12 @@ public class POSPanel extends JPanel {
         gc.gridx++;
         filterPanel.add(cbSort, gc);
 
+        gc.gridx++;
+        chkScanner.setBackground(Color.WHITE);
+        chkScanner.setToolTipText("Add products to the cart by scanning their product code");
+        chkScanner.addActionListener(e -> scanDetector.setEnabled(chkScanner.isSelected()));
+        filterPanel.add(chkScanner, gc);
+
         // filler to push left and allow expansion
         gc.gridx++;
         gc.weightx = 1.0;
@@ -149,12 +183,13 @@ public class POSPanel extends JPanel {
 
         // Live search
         txtSearch.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            private void refilter() { updateProductGrid(batchMap.values()); }
+            // Typing is debounced; the matching runs in the background
+            private void refilter() { if (!suppressFilterEvents) updateProductGrid(false); }
             public void insertUpdate(javax.swing.event.DocumentEvent e) { refilter(); }
             public void removeUpdate(javax.swing.event.DocumentEvent e) { refilter(); }
             public void changedUpdate(javax.swing.event.DocumentEvent e) { refilter(); }
         });
-        cbSort.addActionListener(e -> updateProductGrid(batchMap.values()));
+        cbSort.addActionListener(e -> updateProductGrid(true));
 
         add(filterPanel, BorderLayout.NORTH);
     }
@@ -165,7 +200,7 @@ public class POSPanel extends JPanel {
         gridContainer.setLayout(new BorderLayout());
         gridContainer.setBackground(Color.WHITE);
 
-        productGrid.setBackground(Color.WHITE);
+        productGrid.setOnProductClick(this::openQuantityDialogAndAdd);
         productScroll.setViewportView(productGrid);
         productScroll.setBorder(BorderFactory.createTitledBorder("Available Products"));
         productScroll.getVerticalScrollBar().setUnitIncrement(16);
@@ -199,6 +234,9 @@ public class POSPanel extends JPanel {
         JPanel top = new JPanel(new BorderLayout());
         top.setBackground(Color.WHITE);
         top.add(lblCart, BorderLayout.WEST);
+        top.add(loading, BorderLayout.EAST);
+        lblScanStatus.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        top.add(lblScanStatus, BorderLayout.SOUTH);
         lblTotal.setFont(new Font("Segoe UI", Font.BOLD, 13));
 
         JPanel totalsPanel = new JPanel();
@@ -206,8 +244,12 @@ public class POSPanel extends JPanel {
         totalsPanel.setLayout(new BoxLayout(totalsPanel, BoxLayout.Y_AXIS));
         lblSubtotalLabel.setAlignmentX(Component.RIGHT_ALIGNMENT);
         lblVAT.setAlignmentX(Component.RIGHT_ALIGNMENT);
+        lblDiscount.setAlignmentX(Component.RIGHT_ALIGNMENT);
+        lblDiscount.setForeground(new Color(0, 128, 0));
+        lblDiscount.setVisible(false);
         lblTotal.setAlignmentX(Component.RIGHT_ALIGNMENT);
         totalsPanel.add(lblSubtotalLabel);
+        totalsPanel.add(lblDiscount);
         totalsPanel.add(lblVAT);
         totalsPanel.add(lblTotal);
         top.add(totalsPanel, BorderLayout.EAST);
@@ -234,161 +276,197 @@ public class POSPanel extends JPanel {
         add(rightPanel, BorderLayout.EAST);
 
         btnClear.addActionListener(e -> {
-            if (!cart.isEmpty()) {
+            if (!cartModel.isEmpty() && !cartBusy) {
                 int confirm = JOptionPane.showConfirmDialog(this, "Clear entire cart?", "Confirm", JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) clearCart();
             }
         });
 
-        btnRemove.addActionListener(e -> removeSelectedCartItem());
+        btnRemove.addActionListener(e -> { if (!cartBusy) removeSelectedCartItem(); });
         btnCheckout.addActionListener(e -> {
+            if (cartBusy) return;
             if (checkoutHandler == null) {
                 JOptionPane.showMessageDialog(this, "Checkout handler not set!");
                 return;
             }
-            if (cart.isEmpty()) {
+            if (cartModel.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Cart is empty!");
                 return;
             }
-            boolean ok = checkoutHandler.handleCheckout(getCartSnapshot());
-            if (ok) clearCart();
+            // The checkout waits for the database; scans in the meantime go into the next cart
+            setCartBusy(true);
+            AsyncDao.onEdt(checkoutHandler.handleCheckout(getCartSnapshot()), ok -> {
+                setCartBusy(false);
+                if (ok) clearCart();
+                addPendingScans();
+            }, error -> {
+                setCartBusy(false);
+                addPendingScans();
+            });
         });
 
         cartTable.addMouseListener(new java.awt.event.MouseAdapter() {
             @Override public void mouseClicked(MouseEvent e) {
-                if (e.getClickCount() == 2) editSelectedCartQty();
+                if (e.getClickCount() == 2 && !cartBusy) editSelectedCartQty();
             }
         });
     }
 
     public void setCheckoutHandler(CheckoutHandler handler) { this.checkoutHandler = handler; }
-    public List<SaleItem> getCartSnapshot() { return new ArrayList<>(cart.values()); }
-    public void clearCart() { cart.clear(); refreshCartTable(); }
+    public PricedCart getCartSnapshot() { return cartModel.getPricedCart(); }
+    public void setReservationHandler(ReservationHandler handler) { this.reservationHandler = handler; }
+    public LoadingIndicator getLoadingIndicator() { return loading; }
+
+    public void clearCart() {
+        cartModel.clear();
+        if (reservationHandler != null) reservationHandler.releaseAll();
+    }
+
+    /**
+     * Sets the active promotions. The discounts of the current cart are worked out again.
+     *
+     * @param promotions The promotion rules
+     */
+    public void setPromotions(PromotionEngine promotions) { cartModel.setPromotions(promotions); }
 
-    // Refreshes product grid from batches.
+    // Refreshes product grid from batches (one card per SKU).
     public void refreshProducts(Collection<ProductBatch> batches) {
+        refreshProducts(batches, Collections.emptyMap());
+    }
+
+    /**
+     * Refreshes the product grid. Each card shows the available-to-sell stock:
+     * the SKU's stock minus what other terminals have reserved.
+     *
+     * @param batches All batches
+     * @param reservedByOthers SKU ID -> quantity reserved by other terminals
+     */
+    public void refreshProducts(Collection<ProductBatch> batches, Map<Integer, Integer> reservedByOthers) {
         if (batches == null) batches = Collections.emptyList();
 
         batchMap.clear();
-        for (ProductBatch b : batches) {
-            batchMap.put(b.getId(), b);
+        batchByCode.clear();
+        batchIdsBySku.clear();
+        for (Sku sku : Sku.group(batches)) {
+            ProductBatch card = sku.toCard(reservedByOthers.getOrDefault(sku.getId(), 0));
+            batchMap.put(card.getId(), card);
+            batchIdsBySku.put(card.getId(), sku.getBatchIds());
+            // Scanning the code of any batch adds the SKU
+            for (ProductBatch b : sku.getBatches()) {
+                String code = normalizeCode(b.getProductCode());
+                if (!code.isEmpty()) {
+                    // If a code is shared, prefer a SKU that can still be sold
+                    ProductBatch other = batchByCode.get(code);
+                    if (other == null || (!isSellable(other) && isSellable(card))) {
+                        batchByCode.put(code, card);
+                    }
+                }
+            }
         }
 
-        Set<String> brands = new TreeSet<>();
-        Set<String> colors = new TreeSet<>();
-        Set<String> types = new TreeSet<>();
-        for (ProductBatch b : batches) {
-            if (b.getBrand() != null && !b.getBrand().isBlank()) brands.add(b.getBrand());
-            if (b.getColor() != null && !b.getColor().isBlank()) colors.add(b.getColor());
-            if (b.getType() != null && !b.getType().isBlank())  types.add(b.getType());
-        }
+        // Only products whose text changed are re-indexed
+        catalog = List.copyOf(batchMap.values());
+        searchIndex.sync(catalog);
+        facets = buildFacets(catalog);
 
+        // The facet values come from the index dictionaries (already sorted A-Z)
         suppressFilterEvents = true;
         try {
-            cbBrand.removeAllItems(); cbBrand.addItem("All Brands");
-            for (String s : brands) cbBrand.addItem(s);
-
-            cbColor.removeAllItems(); cbColor.addItem("All Colors");
-            for (String s : colors) cbColor.addItem(s);
-
-            cbType.removeAllItems(); cbType.addItem("All Types");
-            for (String s : types) cbType.addItem(s);
+            FacetComboRenderer.fillCombo(cbBrand, "All Brands", facets.getValues(BRAND));
+            FacetComboRenderer.fillCombo(cbColor, "All Colors", facets.getValues(COLOR));
+            FacetComboRenderer.fillCombo(cbType, "All Types", facets.getValues(TYPE));
         } finally {
             suppressFilterEvents = false;
         }
 
-        updateProductGrid(batchMap.values());
+        updateProductGrid(true);
         layoutGridToFitWidth();
     }
 
-    private void updateProductGrid(Collection<ProductBatch> batches) {
-        productGrid.removeAll();
+    private static FacetIndex<ProductBatch> buildFacets(List<ProductBatch> products) {
+        return new FacetIndex<>(products, ProductBatch::getId, ProductBatch::getName, ProductBatch::getPrice,
+                List.of(ProductBatch::getBrand, ProductBatch::getColor, ProductBatch::getType));
+    }
 
+    /**
+     * Filters and sorts the products in the background and shows the result in the grid.
+     * The filter values are read here, on the event thread, and passed to the search.
+     *
+     * @param immediate true to search now, false to wait until typing pauses
+     */
+    private void updateProductGrid(boolean immediate) {
         String selectedBrand = Objects.toString(cbBrand.getSelectedItem(), "All Brands");
         String selectedColor = Objects.toString(cbColor.getSelectedItem(), "All Colors");
         String selectedType  = Objects.toString(cbType.getSelectedItem(), "All Types");
         String q = txtSearch.getText() != null ? txtSearch.getText().trim().toLowerCase() : "";
-
-        java.util.List<ProductBatch> list = new ArrayList<>();
-        for (ProductBatch b : batches) {
-
-            boolean brandOk = selectedBrand.equals("All Brands") || selectedBrand.equals(b.getBrand());
-            boolean colorOk = selectedColor.equals("All Colors") || selectedColor.equals(b.getColor());
-            boolean typeOk  = selectedType.equals("All Types")  || selectedType.equals(b.getType());
-
-            boolean textOk = q.isEmpty() ||
-                    (b.getName() != null && b.getName().toLowerCase().contains(q)) ||
-                    (b.getBrand() != null && b.getBrand().toLowerCase().contains(q)) ||
-                    (b.getColor() != null && b.getColor().toLowerCase().contains(q)) ||
-                    (b.getType() != null && b.getType().toLowerCase().contains(q));
-
-            if (brandOk && colorOk && typeOk && textOk) list.add(b);
-        }
-
         String sortOpt = Objects.toString(cbSort.getSelectedItem(), "Name A–Z");
-        switch (sortOpt) {
-            case "Price Low–High" -> list.sort(Comparator.comparingDouble(ProductBatch::getPrice));
-            case "Price High–Low" -> list.sort(Comparator.comparingDouble(ProductBatch::getPrice).reversed());
-            default -> list.sort(Comparator.comparing(ProductBatch::getName, String.CASE_INSENSITIVE_ORDER));
+        FacetIndex<ProductBatch> index = facets;
+
+        java.util.concurrent.Callable<GridResult> query = () ->
+                filterProducts(index, selectedBrand, selectedColor, selectedType, q, sortOpt);
+        if (immediate) {
+            gridSearch.submitNow(query);
+        } else {
+            gridSearch.submit(query);
         }
+    }
 
-        for (ProductBatch b : list) productGrid.add(createProductCard(b));
+    // Runs on the search thread: must not touch any Swing component
+    private GridResult filterProducts(FacetIndex<ProductBatch> index,
+                                      String selectedBrand, String selectedColor, String selectedType,
+                                      String q, String sortOpt) throws InterruptedException {
+        String[] selected = {
+                selectedBrand.equals("All Brands") ? null : selectedBrand,
+                selectedColor.equals("All Colors") ? null : selectedColor,
+                selectedType.equals("All Types") ? null : selectedType
+        };
 
-        productGrid.revalidate();
-        productGrid.repaint();
+        // With search text, the index returns the ranked matches (best first)
+        List<ProductBatch> ranked = q.isEmpty() ? null : searchIndex.search(q);
+        SearchDebouncer.checkCancelled();
+        long[] base = ranked == null ? null : index.rowsOf(ranked, ProductBatch::getId);
+        FacetIndex<ProductBatch>.Selection selection = index.query(selected, base);
+        SearchDebouncer.checkCancelled();
+
+        // Keep the relevance order for searches unless a price sort was chosen
+        FacetIndex.Order order = switch (sortOpt) {
+            case "Price Low–High" -> FacetIndex.Order.PRICE_LOW_HIGH;
+            case "Price High–Low" -> FacetIndex.Order.PRICE_HIGH_LOW;
+            default -> ranked != null ? FacetIndex.Order.RELEVANCE : FacetIndex.Order.NAME;
+        };
+        return new GridResult(index.items(selection.getRows(), ranked, ProductBatch::getId, order), selection);
     }
 
-    private JPanel createProductCard(ProductBatch b) {
-        JPanel card = new JPanel(new BorderLayout());
-        Dimension cardSize = new Dimension(220, 220);
-        card.setPreferredSize(cardSize);
-        card.setMinimumSize(cardSize);
-        card.setMaximumSize(cardSize);
-        card.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
-        card.setBackground(Color.WHITE);
-
-        JLabel imgLabel = new JLabel("🖌️", SwingConstants.CENTER);
-        imgLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 36));
-        card.add(imgLabel, BorderLayout.CENTER);
-
-        JLabel lblName = new JLabel("<html><center>" + b.getName() + "</center></html>", SwingConstants.CENTER);
-        lblName.setFont(new Font("Segoe UI", Font.PLAIN, 12));
-        JLabel lblPrice = new JLabel(String.format("₱%.2f", b.getPrice()), SwingConstants.CENTER);
-        lblPrice.setFont(new Font("Segoe UI", Font.BOLD, 12));
-
-        JPanel bottom = new JPanel(new GridLayout(2, 1));
-        bottom.setBackground(Color.WHITE);
-        bottom.add(lblName);
-        bottom.add(lblPrice);
-        card.add(bottom, BorderLayout.SOUTH);
-
-        // Add warnings
-        if (b.isExpiringSoon() || b.getQuantity() <= 5) {
-            JLabel warn = new JLabel("⚠️", SwingConstants.RIGHT);
-            warn.setToolTipText(b.isExpiringSoon()
-                    ? "Expiring soon!"
-                    : "Low stock: " + b.getQuantity());
-            card.add(warn, BorderLayout.NORTH);
-        }
+    private void showGridResult(GridResult result) {
+        productGrid.setProducts(result.products);
+        brandRenderer.setSelection(result.selection);
+        colorRenderer.setSelection(result.selection);
+        typeRenderer.setSelection(result.selection);
+        cbBrand.repaint();
+        cbColor.repaint();
+        cbType.repaint();
+    }
 
-        card.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
-        card.addMouseListener(new java.awt.event.MouseAdapter() {
-            @Override public void mouseClicked(MouseEvent e) { openQuantityDialogAndAdd(b); }
-            @Override public void mouseEntered(java.awt.event.MouseEvent e) { card.setBackground(new Color(245, 245, 245)); }
-            @Override public void mouseExited(java.awt.event.MouseEvent e) { card.setBackground(Color.WHITE); }
-        });
+    // The products to show plus the facet counts for the combo boxes
+    private static final class GridResult {
+        final List<ProductBatch> products;
+        final FacetIndex<ProductBatch>.Selection selection;
 
-        return card;
+        GridResult(List<ProductBatch> products, FacetIndex<ProductBatch>.Selection selection) {
+            this.products = products;
+            this.selection = selection;
+        }
     }
 
     private void openQuantityDialogAndAdd(ProductBatch b) {
+        if (cartBusy) return;
         if (b.isExpired()) {
-            JOptionPane.showMessageDialog(this, "This batch is expired and cannot be sold.");
+            JOptionPane.showMessageDialog(this, "All batches of this product are expired and cannot be sold.");
             return;
         }
 
         int stock = b.getQuantity();
-        int alreadyInCart = cart.containsKey(b.getId()) ? cart.get(b.getId()).getQty() : 0;
+        int alreadyInCart = cartModel.getQty(b.getId());
         int available = stock - alreadyInCart;
         if (available <= 0) {
             JOptionPane.showMessageDialog(this, "Out of stock!");
@@ -400,89 +478,223 @@ public class POSPanel extends JPanel {
         if (qty != null && qty > 0) addToCart(b, qty);
     }
 
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        scanDetector.install();
+    }
+
+    @Override
+    public void removeNotify() {
+        scanDetector.uninstall();
+        super.removeNotify();
+    }
+
+    private static String normalizeCode(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isSellable(ProductBatch b) {
+        return !b.isExpired() && b.getQuantity() > 0;
+    }
+
+    /**
+     * Adds one unit of the scanned product to the cart.
+     * Only the affected cart row is changed; the product grid is not touched.
+     *
+     * @param code The scanned product code
+     * @param focusOwner The component the scanner keys were typed into
+     */
+    private void handleScan(String code, Component focusOwner) {
+        // The scanner typed the code into the focused field; take it back out
+        if (focusOwner instanceof javax.swing.text.JTextComponent field && field.getText().endsWith(code)) {
+            String text = field.getText();
+            suppressFilterEvents = true;
+            try {
+                field.setText(text.substring(0, text.length() - code.length()));
+            } finally {
+                suppressFilterEvents = false;
+            }
+            if (field == txtSearch) {
+                gridSearch.cancel(); // The pending search was for the scanned characters
+            }
+        }
+
+        if (cartBusy) {
+            // Added once the reservation or checkout being saved is done
+            pendingScans.add(code);
+            return;
+        }
+        addScanned(code);
+    }
+
+    // Adds one unit of a scanned product, reserving it in the background first
+    private void addScanned(String code) {
+        ProductBatch b = batchByCode.get(normalizeCode(code));
+        if (b == null) {
+            showScanStatus("Unknown product code: " + code, false);
+            return;
+        }
+        if (b.isExpired()) {
+            showScanStatus(b.getName() + " is expired and cannot be sold.", false);
+            return;
+        }
+        if (b.getQuantity() - cartModel.getQty(b.getId()) <= 0) {
+            showScanStatus(b.getName() + " is out of stock.", false);
+            return;
+        }
+
+        int id = b.getId();
+        int before = cartModel.getQty(id);
+        reserve(id, before + 1, ok -> {
+            if (!ok) {
+                showScanStatus(b.getName() + " could not be reserved: not enough stock is left.", false);
+                return;
+            }
+            // The products may have been reloaded while the reservation was saved
+            if (!batchMap.containsKey(id) || cartModel.getQty(id) != before) {
+                reserveCartQty(id);
+                showScanStatus(b.getName() + " changed while it was being reserved; please scan it again.", false);
+                return;
+            }
+            int row = cartModel.add(id, b.getName(), b.getBrand(), b.getType(), b.getPrice(), 1);
+            cartTable.getSelectionModel().setSelectionInterval(row, row);
+            cartTable.scrollRectToVisible(cartTable.getCellRect(row, 0, true));
+            showScanStatus("Scanned: " + b.getName() + " × " + cartModel.getLine(row).getQty(), true);
+        });
+    }
+
+    private void showScanStatus(String message, boolean ok) {
+        lblScanStatus.setForeground(ok ? new Color(0, 128, 0) : new Color(200, 0, 0));
+        lblScanStatus.setText(message);
+        if (!ok) Toolkit.getDefaultToolkit().beep();
+    }
+
     private void addToCart(ProductBatch b, int qty) {
-        SaleItem existing = cart.get(b.getId());
-        if (existing != null) existing.addQuantity(qty);
-        else cart.put(b.getId(), new SaleItem(b.getId(), b.getName(), b.getPrice(), qty));
-        refreshCartTable();
+        int id = b.getId();
+        int before = cartModel.getQty(id);
+        reserve(id, before + qty, ok -> {
+            if (!ok) {
+                JOptionPane.showMessageDialog(this, "Not enough stock of " + b.getName()
+                        + " is left: it may be sold or reserved by another terminal.");
+                return;
+            }
+            // The products may have been reloaded while the reservation was saved
+            if (!batchMap.containsKey(id) || cartModel.getQty(id) != before) {
+                reserveCartQty(id);
+                JOptionPane.showMessageDialog(this, b.getName() + " changed while it was being reserved. "
+                        + "Please add it again.");
+                return;
+            }
+            cartModel.add(id, b.getName(), b.getBrand(), b.getType(), b.getPrice(), qty);
+        });
     }
 
-    private void refreshCartTable() {
-        cartTableModel.setRowCount(0);
-        for (SaleItem it : cart.values()) {
-            cartTableModel.addRow(new Object[]{
-                    it.getProductId(),
-                    it.getName(),
-                    String.format("%.2f", it.getPrice()),
-                    it.getQty(),
-                    String.format("%.2f", it.getSubtotal())
-            });
+    /**
+     * Places, changes or (with 0) releases this cart's reservation of a product
+     * in the background. The cart cannot be changed until the reservation is
+     * saved; then is run on the event thread with the outcome, and the codes
+     * scanned in the meantime are added.
+     *
+     * @param productId The SKU ID
+     * @param qty The new cart quantity
+     * @param then Receives true if the stock was reserved (not run if saving failed)
+     */
+    private void reserve(int productId, int qty, Consumer<Boolean> then) {
+        if (reservationHandler == null) {
+            then.accept(true);
+            return;
+        }
+        Map<Integer, Integer> cart = new HashMap<>();
+        for (int row = 0; row < cartModel.getRowCount(); row++) {
+            PricedCart.Line line = cartModel.getLine(row);
+            cart.put(line.getProductId(), line.getQty());
+        }
+        setCartBusy(true);
+        reservationHandler.reserve(productId, qty, cart, new HashMap<>(batchIdsBySku))
+                .whenCompleteAsync((ok, error) -> {
+                    setCartBusy(false);
+                    if (error != null) {
+                        showScanStatus("The stock could not be reserved. Please try again.", false);
+                    } else {
+                        then.accept(ok);
+                    }
+                    addPendingScans();
+                }, SwingUtilities::invokeLater);
+    }
+
+    // Sets the reservation of a product back to what the cart holds (after a change was given up)
+    private void reserveCartQty(int productId) {
+        reserve(productId, cartModel.getQty(productId), ok -> { });
+    }
+
+    private void setCartBusy(boolean busy) {
+        cartBusy = busy;
+        btnRemove.setEnabled(!busy);
+        btnClear.setEnabled(!busy);
+        btnCheckout.setEnabled(!busy);
+        cartTable.setEnabled(!busy);
+        productGrid.setEnabled(!busy);
+    }
+
+    // Adds the codes scanned while the cart was busy, until one of them makes it busy again
+    private void addPendingScans() {
+        while (!cartBusy && !pendingScans.isEmpty()) {
+            addScanned(pendingScans.poll());
         }
-        updateTotal();
     }
 
     private void removeSelectedCartItem() {
         int row = cartTable.getSelectedRow();
         if (row < 0) return;
-        int id = Integer.parseInt(cartTableModel.getValueAt(row, 0).toString());
-        cart.remove(id);
-        refreshCartTable();
+        int productId = cartModel.getLine(row).getProductId();
+        reserve(productId, 0, ok -> {
+            // Looked up again: the row number may be stale by now
+            int current = cartModel.rowOf(productId);
+            if (current >= 0) cartModel.remove(current);
+        });
     }
 
     private void editSelectedCartQty() {
         int selectedRow = cartTable.getSelectedRow();
         if (selectedRow < 0) return;
-        int id = Integer.parseInt(cartTableModel.getValueAt(selectedRow, 0).toString());
+        PricedCart.Line item = cartModel.getLine(selectedRow);
 
-        SaleItem item = cart.get(id);
-        if (item == null) return;
-
-        ProductBatch batch = batchMap.get(id);
+        ProductBatch batch = batchMap.get(item.getProductId());
         int available = (batch != null) ? batch.getQuantity() : item.getQty();
 
         QuantityDialog qd = new QuantityDialog(item.getName(), available);
         Integer newQty = qd.showDialog();
 
         if (newQty != null) {
-            if (newQty <= 0) cart.remove(id);
-            else item.setQty(newQty);
-            refreshCartTable();
+            int productId = item.getProductId();
+            int qty = Math.max(0, newQty);
+            reserve(productId, qty, ok -> {
+                if (!ok) {
+                    JOptionPane.showMessageDialog(this, "Not enough stock of " + item.getName()
+                            + " is left: it may be sold or reserved by another terminal.");
+                    return;
+                }
+                // Looked up again: the row number may be stale, or the line gone
+                int row = cartModel.rowOf(productId);
+                if (row < 0) {
+                    reserveCartQty(productId);
+                    return;
+                }
+                // 0 removes the row
+                cartModel.setQty(row, qty);
+            });
         }
     }
 
+    // Called for every cart change; the priced cart already has the totals
     private void updateTotal() {
-        // Ensure UI updates happen on the EDT for consistent repaint behavior
-        Runnable r = () -> {
-            // Use BigDecimal for accurate currency math and rounding
-            java.math.BigDecimal subtotal = cart.values().stream()
-                    .map(it -> java.math.BigDecimal.valueOf(it.getSubtotal()))
-                    .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-
-            java.math.BigDecimal vatable = subtotal.divide(java.math.BigDecimal.valueOf(1.12), 2, java.math.RoundingMode.HALF_UP);
-
-            java.math.BigDecimal vat = subtotal.subtract(vatable).setScale(2, java.math.RoundingMode.HALF_UP);
-
-            java.math.BigDecimal total = subtotal.setScale(2, java.math.RoundingMode.HALF_UP);
-
-            // Update labels
-            lblSubtotalLabel.setText(String.format("Subtotal: ₱%.2f", subtotal.doubleValue()));
-            lblVAT.setText(String.format("VAT (12%%): ₱%.2f", vat.doubleValue()));
-            lblTotal.setText(String.format("TOTAL: ₱%.2f", total.doubleValue()));
-
-            // Debug log to help diagnose user report
-            System.out.println("[DEBUG_LOG][POSPanel.updateTotal] subtotal=" + subtotal + ", vat=" + vat + ", total=" + total + ", cartSize=" + cart.size());
-
-            // Ensure the UI reflects changes immediately
-            java.awt.Container totalsParent = lblTotal.getParent();
-            if (totalsParent != null) {
-                totalsParent.revalidate();
-                totalsParent.repaint();
-            }
-            POSPanel.this.revalidate();
-            POSPanel.this.repaint();
-        };
-        if (javax.swing.SwingUtilities.isEventDispatchThread()) r.run();
-        else javax.swing.SwingUtilities.invokeLater(r);
+        PricedCart priced = cartModel.getPricedCart();
+        lblSubtotalLabel.setText("Subtotal: ₱" + PricedCart.formatCents(priced.getSubtotalCents()));
+        lblDiscount.setText("Discount: -₱" + PricedCart.formatCents(priced.getDiscountCents()));
+        lblDiscount.setVisible(priced.getDiscountCents() > 0);
+        lblVAT.setText("VAT (12%): ₱" + PricedCart.formatCents(priced.getVatCents()));
+        lblTotal.setText("TOTAL: ₱" + PricedCart.formatCents(priced.getTotalCents()));
     }
 
     // Quantity dialog reused from before
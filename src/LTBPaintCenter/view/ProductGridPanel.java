@@ -0,0 +1,216 @@
+package LTBPaintCenter.view;
+
+import LTBPaintCenter.model.ProductBatch;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This component shows product cards in a scrollable grid for the POS screen.
+ *
+ * It works like a JList: there is only one card component (the renderer), and
+ * it is "stamped" onto every visible cell while painting. Cells that are
+ * scrolled out of view are never painted, and no components are created per
+ * product, so the catalog size does not affect the number of Swing components.
+ * Clicks and tooltips are mapped back to the product from the mouse position.
+ */
+public class ProductGridPanel extends JComponent implements Scrollable {
+    private static final int CARD_W = 220;
+    private static final int CARD_H = 220;
+    private static final int GAP = 12;
+    private static final int PADDING = 12;
+
+    private static final Font ICON_FONT = new Font("Segoe UI Emoji", Font.PLAIN, 36);
+    private static final Font NAME_FONT = new Font("Segoe UI", Font.PLAIN, 12);
+    private static final Font PRICE_FONT = new Font("Segoe UI", Font.BOLD, 12);
+    private static final Border CARD_BORDER = BorderFactory.createLineBorder(new Color(200, 200, 200));
+    private static final Color HOVER_BG = new Color(245, 245, 245);
+
+    private List<ProductBatch> products = new ArrayList<>();
+    private Consumer<ProductBatch> onProductClick;
+    private int hoverIndex = -1;
+
+    // The single card used to paint every cell
+    private final JPanel card = new JPanel(new BorderLayout());
+    private final JLabel lblWarn = new JLabel("⚠️", SwingConstants.RIGHT);
+    private final JLabel lblName = new JLabel("", SwingConstants.CENTER);
+    private final JLabel lblPrice = new JLabel("", SwingConstants.CENTER);
+    private final JPanel bottom = new JPanel(new GridLayout(2, 1));
+    private final CellRendererPane rendererPane = new CellRendererPane();
+
+    public ProductGridPanel() {
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        JLabel imgLabel = new JLabel("🖌️", SwingConstants.CENTER);
+        imgLabel.setFont(ICON_FONT);
+        lblName.setFont(NAME_FONT);
+        lblPrice.setFont(PRICE_FONT);
+        bottom.setOpaque(false);
+        bottom.add(lblName);
+        bottom.add(lblPrice);
+        card.setBorder(CARD_BORDER);
+        card.add(lblWarn, BorderLayout.NORTH);
+        card.add(imgLabel, BorderLayout.CENTER);
+        card.add(bottom, BorderLayout.SOUTH);
+        add(rendererPane);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = indexAt(e.getPoint());
+                if (index >= 0 && onProductClick != null) {
+                    onProductClick.accept(products.get(index));
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setHoverIndex(indexAt(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHoverIndex(-1);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    /**
+     * Replaces the products shown in the grid (already filtered and sorted).
+     *
+     * @param products The products to show, in display order
+     */
+    public void setProducts(List<ProductBatch> products) {
+        this.products = products;
+        hoverIndex = -1;
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Sets what happens when a card is clicked.
+     *
+     * @param handler Receives the clicked product
+     */
+    public void setOnProductClick(Consumer<ProductBatch> handler) {
+        this.onProductClick = handler;
+    }
+
+    private int columns() {
+        int width = getParent() instanceof JViewport vp ? vp.getWidth() : getWidth();
+        return Math.max(1, (width - 2 * PADDING + GAP) / (CARD_W + GAP));
+    }
+
+    private Rectangle cellBounds(int index, int cols) {
+        int row = index / cols;
+        int col = index % cols;
+        return new Rectangle(PADDING + col * (CARD_W + GAP), PADDING + row * (CARD_H + GAP), CARD_W, CARD_H);
+    }
+
+    private int indexAt(Point p) {
+        int cols = columns();
+        int col = (p.x - PADDING) / (CARD_W + GAP);
+        int row = (p.y - PADDING) / (CARD_H + GAP);
+        if (p.x < PADDING || p.y < PADDING || col >= cols) {
+            return -1;
+        }
+        int index = row * cols + col;
+        if (index >= products.size() || !cellBounds(index, cols).contains(p)) {
+            return -1; // Outside the list, or in the gap between cards
+        }
+        return index;
+    }
+
+    private void setHoverIndex(int index) {
+        if (index == hoverIndex) {
+            return;
+        }
+        int cols = columns();
+        if (hoverIndex >= 0 && hoverIndex < products.size()) {
+            repaint(cellBounds(hoverIndex, cols));
+        }
+        hoverIndex = index;
+        if (index >= 0) {
+            repaint(cellBounds(index, cols));
+        }
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int index = indexAt(e.getPoint());
+        if (index < 0) {
+            return null;
+        }
+        ProductBatch b = products.get(index);
+        if (b.isExpiringSoon()) {
+            return b.getName() + " – Expiring soon!";
+        }
+        if (b.getQuantity() <= 5) {
+            return b.getName() + " – Low stock: " + b.getQuantity();
+        }
+        return b.getName();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (products.isEmpty()) {
+            return;
+        }
+
+        // Only the rows that intersect the clip are painted
+        int cols = columns();
+        int rowH = CARD_H + GAP;
+        int firstRow = Math.max(0, (clip.y - PADDING) / rowH);
+        int lastRow = Math.max(0, (clip.y + clip.height - PADDING) / rowH);
+        int first = firstRow * cols;
+        int last = Math.min(products.size() - 1, (lastRow + 1) * cols - 1);
+        for (int i = first; i <= last; i++) {
+            Rectangle r = cellBounds(i, cols);
+            if (!r.intersects(clip)) {
+                continue;
+            }
+            prepareCard(products.get(i), i == hoverIndex);
+            rendererPane.paintComponent(g, card, this, r.x, r.y, r.width, r.height, true);
+        }
+    }
+
+    private void prepareCard(ProductBatch b, boolean hover) {
+        card.setBackground(hover ? HOVER_BG : Color.WHITE);
+        lblName.setText(b.getName());
+        lblPrice.setText(String.format("₱%.2f", b.getPrice()));
+        // Keep the warning row's height so every card has the same layout
+        lblWarn.setText(b.isExpiringSoon() || b.getQuantity() <= 5 ? "⚠️" : " ");
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int cols = columns();
+        int rows = Math.max(1, (products.size() + cols - 1) / cols);
+        int width = cols * CARD_W + (cols - 1) * GAP + 2 * PADDING;
+        int height = rows * CARD_H + (rows - 1) * GAP + 2 * PADDING;
+        return new Dimension(width, height);
+    }
+
+    @Override public Dimension getPreferredScrollableViewportSize() { return getPreferredSize(); }
+    @Override public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) { return 16; }
+    @Override public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) { return Math.max(visibleRect.height - 16, 50); }
+    @Override public boolean getScrollableTracksViewportWidth() { return true; }
+    @Override public boolean getScrollableTracksViewportHeight() { return false; }
+}
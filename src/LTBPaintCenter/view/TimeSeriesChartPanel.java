@@ -0,0 +1,352 @@
+package LTBPaintCenter.view;
+
+import LTBPaintCenter.model.SalesColumns;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Path2D;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * This panel draws revenue (filled area) and units sold (line) over time.
+ * It is fed with time buckets from the columnar sales store, so a long history
+ * is already summed into a few thousand buckets before it reaches the chart.
+ *
+ * The visible buckets are reduced to about one point per pixel with the
+ * Largest-Triangle-Three-Buckets (LTTB) algorithm, which keeps the peaks and
+ * dips that matter visually. While the user is zooming (mouse wheel) or panning
+ * (drag), a coarser sample is drawn; the full-detail sample is drawn once the
+ * mouse has been still for a moment. Double-click resets the zoom.
+ */
+public class TimeSeriesChartPanel extends JPanel {
+    private static final Color AREA_COLOR = new Color(70, 130, 180, 90);
+    private static final Color REVENUE_COLOR = new Color(70, 130, 180);
+    private static final Color UNITS_COLOR = new Color(230, 126, 34);
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+    private static final Stroke LINE_STROKE = new BasicStroke(1.5f);
+    private static final int LEFT = 80;
+    private static final int RIGHT = 60;
+    private static final int TOP = 24;
+    private static final int BOTTOM = 30;
+    private static final int MIN_VISIBLE_BUCKETS = 8;
+
+    private long startSecond;
+    private long bucketSeconds = 3600;
+    private double[] revenue = new double[0];   // pesos per bucket
+    private double[] units = new double[0];     // units per bucket
+    private int bucketCount;
+
+    // Visible range of bucket indexes [viewStart, viewEnd)
+    private double viewStart;
+    private double viewEnd;
+
+    // Coarse drawing while interacting, refined when idle
+    private boolean interacting;
+    private final Timer refineTimer = new Timer(150, e -> {
+        interacting = false;
+        repaint();
+    });
+
+    // Last sample, reused while the view has not changed
+    private int[] sample = new int[0];
+    private int sampleFrom = -1;
+    private int sampleTo = -1;
+    private int sampleThreshold = -1;
+
+    private int dragX;
+    private double dragViewStart;
+
+    public TimeSeriesChartPanel() {
+        setPreferredSize(new Dimension(800, 200));
+        setBackground(Color.WHITE);
+        refineTimer.setRepeats(false);
+        setToolTipText("Scroll to zoom, drag to pan, double-click to reset");
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragViewStart = viewStart;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                double span = viewEnd - viewStart;
+                double shift = (dragX - e.getX()) * span / Math.max(1, plotWidth());
+                setView(dragViewStart + shift, dragViewStart + shift + span);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    setView(0, bucketCount);
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                double span = viewEnd - viewStart;
+                double anchor = viewStart + (e.getX() - LEFT) * span / Math.max(1, plotWidth());
+                double factor = Math.pow(1.2, e.getPreciseWheelRotation());
+                double newSpan = Math.max(MIN_VISIBLE_BUCKETS, Math.min(bucketCount, span * factor));
+                double newStart = anchor - (anchor - viewStart) * newSpan / span;
+                setView(newStart, newStart + newSpan);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Replaces the chart data and resets the zoom to show everything.
+     *
+     * @param buckets The bucketed revenue and units
+     */
+    public void setData(SalesColumns.TimeBuckets buckets) {
+        startSecond = buckets.getStartSecond();
+        bucketSeconds = buckets.getBucketSeconds();
+        bucketCount = buckets.size();
+        revenue = new double[bucketCount];
+        units = new double[bucketCount];
+        long[] cents = buckets.getCents();
+        long[] qty = buckets.getUnits();
+        for (int i = 0; i < bucketCount; i++) {
+            revenue[i] = cents[i] / 100.0;
+            units[i] = qty[i];
+        }
+        viewStart = 0;
+        viewEnd = bucketCount;
+        invalidateSample();
+    }
+
+    /**
+     * Adds one sold line to the chart without rebuilding it.
+     * Sales after the last bucket extend the chart to the right.
+     *
+     * @param epochSecond When the line was sold
+     * @param amount The line total in pesos
+     * @param quantity The quantity sold
+     */
+    public void addSale(long epochSecond, double amount, int quantity) {
+        long bucket = Math.floorDiv(epochSecond - startSecond, bucketSeconds);
+        if (bucket < 0 || bucket > Integer.MAX_VALUE - 1) {
+            return;
+        }
+        int index = (int) bucket;
+        if (index >= bucketCount) {
+            boolean followingEnd = viewEnd >= bucketCount;
+            if (index >= revenue.length) {
+                int capacity = Math.max(index + 1, revenue.length + revenue.length / 2);
+                revenue = Arrays.copyOf(revenue, capacity);
+                units = Arrays.copyOf(units, capacity);
+            }
+            bucketCount = index + 1;
+            if (followingEnd) {
+                viewEnd = bucketCount;
+            }
+        }
+        revenue[index] += amount;
+        units[index] += quantity;
+        invalidateSample();
+    }
+
+    private void setView(double start, double end) {
+        double span = end - start;
+        if (start < 0) {
+            start = 0;
+            end = span;
+        }
+        if (end > bucketCount) {
+            end = bucketCount;
+            start = Math.max(0, end - span);
+        }
+        viewStart = start;
+        viewEnd = end;
+        interacting = true;
+        refineTimer.restart();
+        repaint();
+    }
+
+    private void invalidateSample() {
+        sampleFrom = -1;
+        repaint();
+    }
+
+    private int plotWidth() {
+        return getWidth() - LEFT - RIGHT;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int plotW = plotWidth();
+        int plotH = getHeight() - TOP - BOTTOM;
+        if (bucketCount == 0 || plotW <= 0 || plotH <= 0) {
+            g.setColor(Color.GRAY);
+            g.drawString("No data to display", 20, 30);
+            return;
+        }
+
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int from = Math.max(0, (int) Math.floor(viewStart));
+        int to = Math.min(bucketCount, (int) Math.ceil(viewEnd));
+        int threshold = interacting ? Math.max(32, plotW / 4) : plotW;
+        if (from != sampleFrom || to != sampleTo || threshold != sampleThreshold) {
+            sample = lttb(revenue, from, to, threshold);
+            sampleFrom = from;
+            sampleTo = to;
+            sampleThreshold = threshold;
+        }
+
+        double maxRevenue = 0;
+        double maxUnits = 0;
+        for (int i : sample) {
+            maxRevenue = Math.max(maxRevenue, revenue[i]);
+            maxUnits = Math.max(maxUnits, units[i]);
+        }
+        if (maxRevenue <= 0) maxRevenue = 1;
+        if (maxUnits <= 0) maxUnits = 1;
+
+        drawAxes(g2, plotW, plotH, maxRevenue, maxUnits);
+
+        // Revenue as a filled area
+        double span = Math.max(1e-9, viewEnd - viewStart);
+        int baseY = TOP + plotH;
+        Path2D.Double area = new Path2D.Double();
+        Path2D.Double line = new Path2D.Double();
+        Path2D.Double unitLine = new Path2D.Double();
+        for (int k = 0; k < sample.length; k++) {
+            int i = sample[k];
+            double x = LEFT + (i + 0.5 - viewStart) * plotW / span;
+            double y = baseY - revenue[i] / maxRevenue * plotH;
+            double uy = baseY - units[i] / maxUnits * plotH;
+            if (k == 0) {
+                area.moveTo(x, baseY);
+                line.moveTo(x, y);
+                unitLine.moveTo(x, uy);
+            } else {
+                line.lineTo(x, y);
+                unitLine.lineTo(x, uy);
+            }
+            area.lineTo(x, y);
+            if (k == sample.length - 1) {
+                area.lineTo(x, baseY);
+                area.closePath();
+            }
+        }
+
+        Shape oldClip = g2.getClip();
+        g2.clipRect(LEFT, TOP, plotW, plotH + 1);
+        g2.setColor(AREA_COLOR);
+        g2.fill(area);
+        g2.setStroke(LINE_STROKE);
+        g2.setColor(REVENUE_COLOR);
+        g2.draw(line);
+        g2.setColor(UNITS_COLOR);
+        g2.draw(unitLine);
+        g2.setClip(oldClip);
+    }
+
+    private void drawAxes(Graphics2D g2, int plotW, int plotH, double maxRevenue, double maxUnits) {
+        FontMetrics fm = g2.getFontMetrics();
+        int baseY = TOP + plotH;
+
+        // Horizontal grid with revenue (left) and units (right) labels
+        for (int i = 0; i <= 4; i++) {
+            int y = baseY - i * plotH / 4;
+            g2.setColor(GRID_COLOR);
+            g2.drawLine(LEFT, y, LEFT + plotW, y);
+            g2.setColor(REVENUE_COLOR);
+            String rev = String.format("₱%,.0f", maxRevenue * i / 4);
+            g2.drawString(rev, LEFT - 6 - fm.stringWidth(rev), y + fm.getAscent() / 2);
+            g2.setColor(UNITS_COLOR);
+            g2.drawString(String.format("%,.0f", maxUnits * i / 4), LEFT + plotW + 6, y + fm.getAscent() / 2);
+        }
+
+        // Date labels along the bottom
+        g2.setColor(Color.DARK_GRAY);
+        double spanSeconds = (viewEnd - viewStart) * bucketSeconds;
+        SimpleDateFormat fmt = new SimpleDateFormat(spanSeconds <= 3 * 86400 ? "MM-dd HH:mm" : "yyyy-MM-dd");
+        for (int i = 0; i <= 4; i++) {
+            double bucket = viewStart + (viewEnd - viewStart) * i / 4;
+            long second = startSecond + (long) (bucket * bucketSeconds);
+            String text = fmt.format(new Date(second * 1000L));
+            int x = LEFT + i * plotW / 4 - fm.stringWidth(text) / 2;
+            g2.drawString(text, x, baseY + fm.getAscent() + 6);
+        }
+
+        // Legend
+        g2.setColor(REVENUE_COLOR);
+        g2.drawString("Revenue", LEFT, TOP - 8);
+        g2.setColor(UNITS_COLOR);
+        g2.drawString("Units", LEFT + fm.stringWidth("Revenue") + 16, TOP - 8);
+    }
+
+    /**
+     * Picks about threshold points from y[start..end) with Largest-Triangle-Three-Buckets.
+     * The first and last points are always kept. Each middle bucket keeps the point
+     * that forms the largest triangle with the previously kept point and the
+     * average of the next bucket.
+     *
+     * @param y The values (x is the index)
+     * @param start The first index (inclusive)
+     * @param end The last index (exclusive)
+     * @param threshold How many points to keep
+     * @return The kept indexes, in ascending order
+     */
+    static int[] lttb(double[] y, int start, int end, int threshold) {
+        int count = end - start;
+        if (count <= 0) {
+            return new int[0];
+        }
+        if (threshold >= count || threshold < 3) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) all[i] = start + i;
+            return all;
+        }
+
+        int[] out = new int[threshold];
+        out[0] = start;
+        double every = (double) (count - 2) / (threshold - 2);
+        int a = start;
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket
+            int avgStart = start + (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min(end, start + (int) Math.floor((i + 2) * every) + 1);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += j;
+                avgY += y[j];
+            }
+            int avgLen = Math.max(1, avgEnd - avgStart);
+            avgX /= avgLen;
+            avgY /= avgLen;
+
+            // Point in the current bucket with the largest triangle
+            int rangeStart = start + (int) Math.floor(i * every) + 1;
+            int rangeEnd = start + (int) Math.floor((i + 1) * every) + 1;
+            double maxArea = -1;
+            int chosen = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((a - avgX) * (y[j] - y[a]) - (a - j) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            out[i + 1] = chosen;
+            a = chosen;
+        }
+        out[threshold - 1] = end - 1;
+        return out;
+    }
+}